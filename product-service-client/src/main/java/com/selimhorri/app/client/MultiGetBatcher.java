@@ -0,0 +1,109 @@
+package com.selimhorri.app.client;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collects the single-id lookups issued within a short window and loads them with one multi-get call. A batch is
+ * sent when its window closes or as soon as it reaches {@code maxSize}, whichever comes first. Lookups of the same
+ * id in one batch share the result.
+ */
+class MultiGetBatcher<V> {
+	
+	private final Function<Collection<Integer>, Map<Integer, V>> loader;
+	private final ScheduledExecutorService scheduler;
+	private final Executor executor;
+	private final long windowNanos;
+	private final int maxSize;
+	
+	/**
+	 * Guarded by {@code this}.
+	 */
+	private Map<Integer, CompletableFuture<V>> pending = new LinkedHashMap<>();
+	private ScheduledFuture<?> windowTimer;
+	
+	MultiGetBatcher(final Function<Collection<Integer>, Map<Integer, V>> loader,
+			final ScheduledExecutorService scheduler, final Executor executor, final Duration window, final int maxSize) {
+		this.loader = loader;
+		this.scheduler = scheduler;
+		this.executor = executor;
+		this.windowNanos = window.toNanos();
+		this.maxSize = maxSize;
+	}
+	
+	/**
+	 * @return completes with {@code null} when the id is unknown
+	 */
+	CompletableFuture<V> get(final Integer id) {
+		final CompletableFuture<V> future;
+		Map<Integer, CompletableFuture<V>> full = null;
+		synchronized (this) {
+			future = this.pending.computeIfAbsent(id, key -> new CompletableFuture<>());
+			if (this.pending.size() >= this.maxSize)
+				full = this.takeBatch();
+			else if (this.windowTimer == null)
+				this.windowTimer = this.scheduler.schedule(this::flush, this.windowNanos, TimeUnit.NANOSECONDS);
+		}
+		if (full != null)
+			this.send(full);
+		return future;
+	}
+	
+	private void flush() {
+		final Map<Integer, CompletableFuture<V>> batch;
+		synchronized (this) {
+			batch = this.takeBatch();
+		}
+		if (!batch.isEmpty())
+			this.send(batch);
+	}
+	
+	private Map<Integer, CompletableFuture<V>> takeBatch() {
+		final Map<Integer, CompletableFuture<V>> batch = this.pending;
+		this.pending = new LinkedHashMap<>();
+		if (this.windowTimer != null) {
+			this.windowTimer.cancel(false);
+			this.windowTimer = null;
+		}
+		return batch;
+	}
+	
+	private void send(final Map<Integer, CompletableFuture<V>> batch) {
+		try {
+			this.executor.execute(() -> {
+				try {
+					final Map<Integer, V> found = this.loader.apply(batch.keySet());
+					batch.forEach((id, future) -> future.complete(found.get(id)));
+				}
+				catch (RuntimeException e) {
+					batch.values().forEach(future -> future.completeExceptionally(e));
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			batch.values().forEach(future -> future.completeExceptionally(e));
+		}
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,279 @@
+package com.selimhorri.app.client;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.http.client.HttpClient;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.selimhorri.app.client.dto.CategoryDto;
+import com.selimhorri.app.client.dto.DtoCollectionResponse;
+import com.selimhorri.app.client.dto.ProductDto;
+import com.selimhorri.app.client.http.HedgingExecutor;
+import com.selimhorri.app.client.http.ValidatingResponseCache;
+
+/**
+ * Typed client of product-service for the other microservices.
+ *
+ * <ul>
+ * <li>Calls go through a pooled, kept-alive {@link HttpClient} (see {@code PooledHttpClients}); with the load
+ * balancer interceptor the base URL is a service id resolved through discovery.</li>
+ * <li>Concurrent {@link #findById(Integer)} lookups are batched into {@code GET /api/products?ids=...}.</li>
+ * <li>GET responses are kept with their {@code ETag} and revalidated with {@code If-None-Match}; a {@code 304}
+ * saves transferring and parsing the body again.</li>
+ * <li>Slow calls are hedged with a second attempt, within a small budget.</li>
+ * </ul>
+ *
+ * Must be {@link #close() closed}; the {@link HttpClient} belongs to the caller.
+ */
+public class ProductServiceClient implements AutoCloseable {
+	
+	/**
+	 * Ids per multi-get call accepted by the service.
+	 */
+	static final int MULTI_GET_MAX_IDS = 500;
+	
+	private static final TypeReference<DtoCollectionResponse<ProductDto>> PRODUCT_COLLECTION =
+			new TypeReference<DtoCollectionResponse<ProductDto>>() {};
+	private static final TypeReference<DtoCollectionResponse<CategoryDto>> CATEGORY_COLLECTION =
+			new TypeReference<DtoCollectionResponse<CategoryDto>>() {};
+	
+	private final String baseUrl;
+	private final RestTemplate restTemplate;
+	private final ObjectMapper objectMapper;
+	private final ValidatingResponseCache responseCache;
+	private final HedgingExecutor hedgingExecutor;
+	private final MultiGetBatcher<ProductDto> productBatcher;
+	private final ExecutorService workers;
+	private final ScheduledExecutorService scheduler;
+	
+	public ProductServiceClient(final ProductServiceClientProperties properties, final HttpClient httpClient,
+			final List<ClientHttpRequestInterceptor> interceptors) {
+		this.baseUrl = properties.getBaseUrl().replaceAll("/+$", "");
+		this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+		this.restTemplate.setInterceptors(new ArrayList<>(interceptors));
+		this.objectMapper = JsonMapper.builder()
+				.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+				.build();
+		this.responseCache = properties.getCache().isEnabled()
+				? new ValidatingResponseCache(properties.getCache().getMaximumSize())
+				: null;
+		
+		// Every worker holds a connection while it runs, so more of them than the connection pool would only wait for
+		// one; beyond that many queued calls, the call fails (or the hedge is skipped) instead of piling up threads
+		final int maxTotal = properties.getPool().getMaxTotal();
+		final ThreadPoolExecutor workers = new ThreadPoolExecutor(maxTotal, maxTotal, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(maxTotal), daemonThreads("product-service-client"));
+		workers.allowCoreThreadTimeOut(true);
+		this.workers = workers;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("product-service-client-timer"));
+		final ProductServiceClientProperties.Hedge hedge = properties.getHedge();
+		this.hedgingExecutor = hedge.isEnabled()
+				? new HedgingExecutor(this.workers, this.scheduler, hedge.getDelay(), hedge.getMaxPercent())
+				: null;
+		final ProductServiceClientProperties.Batch batch = properties.getBatch();
+		this.productBatcher = batch.isEnabled()
+				? new MultiGetBatcher<>(this::loadProducts, this.scheduler, this.workers, batch.getWindow(),
+						Math.min(batch.getMaxSize(), MULTI_GET_MAX_IDS))
+				: null;
+	}
+	
+	/**
+	 * @return empty when the product does not exist or was deleted
+	 */
+	public Optional<ProductDto> findById(final Integer productId) {
+		return join(this.findByIdAsync(productId));
+	}
+	
+	public CompletableFuture<Optional<ProductDto>> findByIdAsync(final Integer productId) {
+		Objects.requireNonNull(productId, "productId");
+		if (this.productBatcher != null)
+			return this.productBatcher.get(productId).thenApply(Optional::ofNullable);
+		return CompletableFuture.supplyAsync(() -> Optional.ofNullable(
+				this.get("/api/products/" + productId, ProductDto.class)), this.workers);
+	}
+	
+	/**
+	 * Multi-get, in the order of {@code productIds}; unknown or deleted products are left out.
+	 */
+	public List<ProductDto> findAllByIds(final Collection<Integer> productIds) {
+		final Map<Integer, ProductDto> found = this.loadProducts(productIds);
+		return productIds.stream()
+				.distinct()
+				.map(found::get)
+				.filter(Objects::nonNull)
+				.collect(Collectors.toUnmodifiableList());
+	}
+	
+	public List<ProductDto> findAll() {
+		return List.copyOf(this.get("/api/products", PRODUCT_COLLECTION).getCollection());
+	}
+	
+	public Optional<CategoryDto> findCategoryById(final Integer categoryId) {
+		Objects.requireNonNull(categoryId, "categoryId");
+		return Optional.ofNullable(this.get("/api/categories/" + categoryId, CategoryDto.class));
+	}
+	
+	public List<CategoryDto> findAllCategories() {
+		return List.copyOf(this.get("/api/categories", CATEGORY_COLLECTION).getCollection());
+	}
+	
+	/**
+	 * One call per {@value #MULTI_GET_MAX_IDS} ids. Ids are sorted so that the same set always maps to the same
+	 * URL, and so to the same cached response.
+	 */
+	private Map<Integer, ProductDto> loadProducts(final Collection<Integer> productIds) {
+		final List<Integer> sorted = new ArrayList<>(new TreeSet<>(productIds));
+		final List<ProductDto> products = new ArrayList<>(sorted.size());
+		for (int from = 0; from < sorted.size(); from += MULTI_GET_MAX_IDS) {
+			final String ids = sorted.subList(from, Math.min(from + MULTI_GET_MAX_IDS, sorted.size()))
+					.stream()
+					.map(String::valueOf)
+					.collect(Collectors.joining(","));
+			products.addAll(this.get("/api/products?ids=" + ids, PRODUCT_COLLECTION).getCollection());
+		}
+		return products.stream().collect(Collectors.toMap(ProductDto::getProductId, Function.identity()));
+	}
+	
+	private <T> T get(final String path, final Class<T> type) {
+		return this.get(path, body -> this.objectMapper.readValue(body, type));
+	}
+	
+	private <T> T get(final String path, final TypeReference<T> type) {
+		return this.get(path, body -> this.objectMapper.readValue(body, type));
+	}
+	
+	/**
+	 * @return {@code null} on {@code 404}
+	 */
+	private <T> T get(final String path, final BodyReader<T> reader) {
+		final String url = this.baseUrl + path;
+		final byte[] body = this.hedgingExecutor != null
+				? this.hedgingExecutor.execute(() -> this.exchange(url))
+				: this.exchange(url);
+		try {
+			return body == null ? null : reader.read(body);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException("Unreadable response from " + url, e);
+		}
+	}
+	
+	private byte[] exchange(final String url) {
+		final ValidatingResponseCache.Entry cached = this.responseCache != null ? this.responseCache.get(url) : null;
+		if (cached != null && cached.isFresh())
+			return cached.getBody();
+		
+		try {
+			return this.restTemplate.execute(URI.create(url), HttpMethod.GET, request -> {
+				request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON));
+				if (cached != null && cached.getEtag() != null)
+					request.getHeaders().setIfNoneMatch(cached.getEtag());
+			}, response -> {
+				final HttpHeaders headers = response.getHeaders();
+				if (response.getRawStatusCode() == HttpStatus.NOT_MODIFIED.value() && cached != null)
+					return this.responseCache.revalidated(url, cached, headers.getCacheControl()).getBody();
+				
+				final byte[] body = StreamUtils.copyToByteArray(response.getBody());
+				if (this.responseCache != null)
+					this.responseCache.store(url, headers.getETag(), headers.getCacheControl(), body);
+				return body;
+			});
+		}
+		catch (HttpClientErrorException.NotFound e) {
+			if (this.responseCache != null)
+				this.responseCache.remove(url);
+			return null;
+		}
+	}
+	
+	HedgingExecutor getHedgingExecutor() {
+		return this.hedgingExecutor;
+	}
+	
+	ValidatingResponseCache getResponseCache() {
+		return this.responseCache;
+	}
+	
+	@Override
+	public void close() {
+		this.scheduler.shutdownNow();
+		this.workers.shutdownNow();
+	}
+	
+	private static <T> T join(final CompletableFuture<T> future) {
+		try {
+			return future.get();
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for product-service", e);
+		}
+	}
+	
+	private static ThreadFactory daemonThreads(final String name) {
+		final AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			final Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+	
+	@FunctionalInterface
+	private interface BodyReader<T> {
+		
+		T read(byte[] body) throws IOException;
+		
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,98 @@
+package com.selimhorri.app.client;
+
+import java.net.URI;
+import java.util.List;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerInterceptor;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerRequestFactory;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClientSpecification;
+
+import com.selimhorri.app.client.http.PooledHttpClients;
+import com.selimhorri.app.client.loadbalancer.LoadAwareLoadBalancer;
+import com.selimhorri.app.client.loadbalancer.LoadAwareLoadBalancerConfiguration;
+
+/**
+ * Declares a {@link ProductServiceClient} in the consumer's context. With Spring Cloud LoadBalancer on the
+ * class path the base URL is resolved through discovery; the client keeps its own {@code RestTemplate}, so an
+ * application's {@code @LoadBalanced RestTemplate} bean stays the only one.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "product-service.client", name = "enabled", matchIfMissing = true)
+@EnableConfigurationProperties(ProductServiceClientProperties.class)
+@AutoConfigureAfter(name = {
+		"org.springframework.cloud.client.loadbalancer.LoadBalancerAutoConfiguration",
+		"org.springframework.cloud.loadbalancer.config.BlockingLoadBalancerClientAutoConfiguration" })
+public class ProductServiceClientAutoConfiguration {
+	
+	@Bean(destroyMethod = "close")
+	@ConditionalOnMissingBean(name = "productServiceHttpClient")
+	public CloseableHttpClient productServiceHttpClient(final ProductServiceClientProperties properties) {
+		return PooledHttpClients.builder(properties).build();
+	}
+	
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnClass(LoadBalancerClient.class)
+	@ConditionalOnBean({ LoadBalancerClient.class, LoadBalancerRequestFactory.class })
+	@ConditionalOnProperty(prefix = "product-service.client", name = "load-balanced", matchIfMissing = true)
+	static class LoadBalancedClientConfiguration {
+		
+		@Bean(destroyMethod = "close")
+		@ConditionalOnMissingBean
+		public ProductServiceClient loadBalancedProductServiceClient(final ProductServiceClientProperties properties,
+				final CloseableHttpClient productServiceHttpClient, final LoadBalancerClient loadBalancerClient,
+				final LoadBalancerRequestFactory loadBalancerRequestFactory) {
+			return new ProductServiceClient(properties, productServiceHttpClient,
+					List.of(new LoadBalancerInterceptor(loadBalancerClient, loadBalancerRequestFactory)));
+		}
+		
+	}
+	
+	/**
+	 * {@link LoadAwareLoadBalancer} for the service id of {@code base-url} only; other services keep the
+	 * application's balancer.
+	 */
+	@Configuration(proxyBeanMethods = false)
+	@ConditionalOnClass(LoadBalancerClientSpecification.class)
+	@ConditionalOnProperty(prefix = "product-service.client", name = { "enabled", "load-balanced", "load-aware.enabled" },
+			matchIfMissing = true)
+	static class LoadAwareConfiguration {
+		
+		@Bean
+		public LoadBalancerClientSpecification productServiceLoadBalancerSpecification(
+				final ProductServiceClientProperties properties) {
+			return new LoadBalancerClientSpecification(URI.create(properties.getBaseUrl()).getHost(),
+					new Class<?>[] { LoadAwareLoadBalancerConfiguration.class });
+		}
+		
+	}
+	
+	@Bean(destroyMethod = "close")
+	@ConditionalOnMissingBean
+	public ProductServiceClient productServiceClient(final ProductServiceClientProperties properties,
+			final CloseableHttpClient productServiceHttpClient) {
+		return new ProductServiceClient(properties, productServiceHttpClient, List.of());
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
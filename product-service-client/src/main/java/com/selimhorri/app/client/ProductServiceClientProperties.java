@@ -0,0 +1,130 @@
+package com.selimhorri.app.client;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+@ConfigurationProperties(prefix = "product-service.client")
+@Data
+public class ProductServiceClientProperties {
+	
+	private boolean enabled = true;
+	
+	/**
+	 * Service id resolved by the load balancer; with {@link #loadBalanced} off, a plain URL.
+	 */
+	private String baseUrl = "http://PRODUCT-SERVICE/product-service";
+	
+	private boolean loadBalanced = true;
+	
+	private Duration connectTimeout = Duration.ofSeconds(1);
+	private Duration readTimeout = Duration.ofSeconds(5);
+	
+	private Pool pool = new Pool();
+	private Batch batch = new Batch();
+	private Hedge hedge = new Hedge();
+	private Cache cache = new Cache();
+	private LoadAware loadAware = new LoadAware();
+	
+	@Data
+	public static class Pool {
+		
+		private int maxTotal = 200;
+		private int maxPerRoute = 50;
+		
+		/**
+		 * Idle kept-alive connections older than this are closed by the pool.
+		 */
+		private Duration idleTimeout = Duration.ofSeconds(30);
+		
+		/**
+		 * Used when the server does not send a {@code Keep-Alive} header.
+		 */
+		private Duration keepAlive = Duration.ofSeconds(20);
+		
+	}
+	
+	/**
+	 * Concurrent single-id lookups are grouped into one {@code GET /api/products?ids=} call.
+	 */
+	@Data
+	public static class Batch {
+		
+		private boolean enabled = true;
+		
+		/**
+		 * How long the first lookup of a batch waits for others to join.
+		 */
+		private Duration window = Duration.ofMillis(2);
+		
+		/**
+		 * A batch is sent as soon as it reaches this size; the service accepts up to 500 ids.
+		 */
+		private int maxSize = 100;
+		
+	}
+	
+	/**
+	 * A second attempt is sent when the first has not answered after {@link #delay}; the first to answer wins.
+	 */
+	@Data
+	public static class Hedge {
+		
+		private boolean enabled = true;
+		
+		/**
+		 * Around the p95 of the calls, so that only the tail is hedged.
+		 */
+		private Duration delay = Duration.ofMillis(50);
+		
+		/**
+		 * Extra load allowed for hedges, as a percentage of the calls.
+		 */
+		private int maxPercent = 5;
+		
+		private int threads = 16;
+		
+	}
+	
+	/**
+	 * Responses kept with their {@code ETag}, revalidated with {@code If-None-Match}.
+	 */
+	@Data
+	public static class Cache {
+		
+		private boolean enabled = true;
+		
+		private int maximumSize = 10_000;
+		
+	}
+	
+	/**
+	 * Through the load balancer, instances are picked from the load they publish in their Eureka metadata.
+	 */
+	@Data
+	public static class LoadAware {
+		
+		private boolean enabled = true;
+		
+		/**
+		 * Load published longer ago than this is ignored; a few replication and registry fetch intervals.
+		 */
+		private Duration maxAge = Duration.ofSeconds(90);
+		
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
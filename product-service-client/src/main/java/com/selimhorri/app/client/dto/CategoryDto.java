@@ -0,0 +1,39 @@
+package com.selimhorri.app.client.dto;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class CategoryDto implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private Integer categoryId;
+	private String categoryTitle;
+	private String imageUrl;
+	
+	@JsonProperty("parentCategory")
+	private CategoryDto parentCategoryDto;
+	
+}
+
+
+
+
+
+
+
+
+
+
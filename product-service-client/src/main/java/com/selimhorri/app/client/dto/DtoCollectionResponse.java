@@ -0,0 +1,31 @@
+package com.selimhorri.app.client.dto;
+
+import java.util.Collection;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DtoCollectionResponse<T> {
+	
+	private Collection<T> collection;
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,44 @@
+package com.selimhorri.app.client.dto;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Product as returned by product-service; unknown properties are ignored so the service can add fields first.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ProductDto implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	private Integer productId;
+	private String productTitle;
+	private String imageUrl;
+	private String sku;
+	private Double priceUnit;
+	private Integer quantity;
+	
+	@JsonProperty("category")
+	private CategoryDto categoryDto;
+	
+}
+
+
+
+
+
+
+
+
+
+
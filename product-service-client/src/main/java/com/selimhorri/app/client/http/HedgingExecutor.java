@@ -0,0 +1,145 @@
+package com.selimhorri.app.client.http;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs an idempotent call and, if it has not answered after {@code delay}, a second identical one; the first to
+ * succeed is returned, and a failure only once both have failed. Through the load balancer the second attempt
+ * usually lands on another replica, which cuts the tail caused by one slow instance (GC pause, cold cache).
+ *
+ * Hedges are limited by a budget of {@code maxPercent} of the calls, so an overloaded service is not sent twice
+ * the traffic: every call deposits {@code maxPercent / 100} of a token, a hedge takes one whole token. When the
+ * {@code attempts} executor refuses work (bounded and saturated) a call fails, and a hedge is skipped.
+ */
+public class HedgingExecutor {
+	
+	/**
+	 * Tokens saved up while the service is fast; bounds the burst of hedges when it turns slow.
+	 */
+	private static final double MAX_TOKENS = 10;
+	
+	private final ExecutorService attempts;
+	private final ScheduledExecutorService scheduler;
+	private final long delayNanos;
+	private final double tokensPerCall;
+	
+	private double tokens;
+	
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder hedges = new LongAdder();
+	private final LongAdder hedgeWins = new LongAdder();
+	
+	public HedgingExecutor(final ExecutorService attempts, final ScheduledExecutorService scheduler,
+			final Duration delay, final int maxPercent) {
+		this.attempts = attempts;
+		this.scheduler = scheduler;
+		this.delayNanos = delay.toNanos();
+		this.tokensPerCall = maxPercent / 100.0;
+	}
+	
+	public <T> T execute(final Supplier<T> call) {
+		this.calls.increment();
+		this.deposit();
+		
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		final AtomicInteger running = new AtomicInteger(1);
+		this.attempt(call, result, running, false);
+		final ScheduledFuture<?> hedge = this.scheduler.schedule(() -> {
+			if (!result.isDone() && this.withdraw()) {
+				running.incrementAndGet();
+				try {
+					this.attempt(call, result, running, true);
+					this.hedges.increment();
+				}
+				catch (RejectedExecutionException e) {
+					this.refund();
+					if (running.decrementAndGet() == 0)
+						result.completeExceptionally(e);
+				}
+			}
+		}, this.delayNanos, TimeUnit.NANOSECONDS);
+		
+		try {
+			return result.get();
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for product-service", e);
+		}
+		finally {
+			hedge.cancel(false);
+		}
+	}
+	
+	private <T> void attempt(final Supplier<T> call, final CompletableFuture<T> result, final AtomicInteger running,
+			final boolean hedge) {
+		this.attempts.execute(() -> {
+			try {
+				if (result.complete(call.get()) && hedge)
+					this.hedgeWins.increment();
+			}
+			catch (RuntimeException e) {
+				if (running.decrementAndGet() == 0)
+					result.completeExceptionally(e);
+			}
+		});
+	}
+	
+	private synchronized void deposit() {
+		this.tokens = Math.min(MAX_TOKENS, this.tokens + this.tokensPerCall);
+	}
+	
+	private synchronized void refund() {
+		this.tokens = Math.min(MAX_TOKENS, this.tokens + 1);
+	}
+	
+	private synchronized boolean withdraw() {
+		if (this.tokens < 1)
+			return false;
+		this.tokens--;
+		return true;
+	}
+	
+	public long getCalls() {
+		return this.calls.sum();
+	}
+	
+	public long getHedges() {
+		return this.hedges.sum();
+	}
+	
+	/**
+	 * Hedges that answered before the first attempt.
+	 */
+	public long getHedgeWins() {
+		return this.hedgeWins.sum();
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
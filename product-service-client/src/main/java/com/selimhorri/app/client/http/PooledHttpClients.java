@@ -0,0 +1,68 @@
+package com.selimhorri.app.client.http;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import com.selimhorri.app.client.ProductServiceClientProperties;
+
+/**
+ * Apache HttpClient with a pool of kept-alive connections, so calls do not pay a TCP (and TLS) handshake each.
+ */
+public final class PooledHttpClients {
+	
+	/**
+	 * A pooled connection idle for longer is checked before being reused; the server may have closed it.
+	 */
+	private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2_000;
+	
+	private PooledHttpClients() {
+		
+	}
+	
+	/**
+	 * @return a configured builder, so callers can still add interceptors before {@code build()}
+	 */
+	public static HttpClientBuilder builder(final ProductServiceClientProperties properties) {
+		final ProductServiceClientProperties.Pool pool = properties.getPool();
+		final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(pool.getMaxTotal());
+		connectionManager.setDefaultMaxPerRoute(pool.getMaxPerRoute());
+		connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+		
+		final long defaultKeepAlive = pool.getKeepAlive().toMillis();
+		return HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setKeepAliveStrategy((response, context) -> {
+					final long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+					return keepAlive > 0 ? keepAlive : defaultKeepAlive;
+				})
+				.evictExpiredConnections()
+				.evictIdleConnections(pool.getIdleTimeout().toMillis(), TimeUnit.MILLISECONDS)
+				.disableCookieManagement()
+				.setUserAgent("product-service-client")
+				.setDefaultRequestConfig(RequestConfig.custom()
+						.setConnectTimeout((int) properties.getConnectTimeout().toMillis())
+						// waiting for a pooled connection counts as connecting
+						.setConnectionRequestTimeout((int) properties.getConnectTimeout().toMillis())
+						.setSocketTimeout((int) properties.getReadTimeout().toMillis())
+						.build());
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,115 @@
+package com.selimhorri.app.client.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Response bodies kept per URL together with their {@code ETag}, so the next GET can be sent with
+ * {@code If-None-Match} and a {@code 304} answered from here. Responses marked {@code no-store} are never kept;
+ * those with a {@code max-age} are served without asking the server until they expire.
+ *
+ * Least recently used entries are dropped past {@code maximumSize}.
+ */
+public class ValidatingResponseCache {
+	
+	private static final Pattern MAX_AGE = Pattern.compile("(?:^|[,\\s])max-age=(\\d+)");
+	
+	private final Map<String, Entry> entries;
+	
+	public ValidatingResponseCache(final int maximumSize) {
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+				return this.size() > maximumSize;
+			}
+			
+		};
+	}
+	
+	public synchronized Entry get(final String url) {
+		return this.entries.get(url);
+	}
+	
+	/**
+	 * Stores a {@code 200} response, or forgets the URL when the response may not be kept.
+	 */
+	public void store(final String url, final String etag, final String cacheControl, final byte[] body) {
+		if (cacheControl != null && (cacheControl.contains("no-store") || cacheControl.contains("private")))
+			this.remove(url);
+		else if (etag != null || maxAgeNanos(cacheControl) > 0)
+			this.put(url, new Entry(etag, body, System.nanoTime() + maxAgeNanos(cacheControl)));
+	}
+	
+	/**
+	 * After a {@code 304}: same body, new freshness lifetime.
+	 */
+	public Entry revalidated(final String url, final Entry entry, final String cacheControl) {
+		final Entry revalidated = new Entry(entry.etag, entry.body, System.nanoTime() + maxAgeNanos(cacheControl));
+		this.put(url, revalidated);
+		return revalidated;
+	}
+	
+	public synchronized void remove(final String url) {
+		this.entries.remove(url);
+	}
+	
+	public synchronized int size() {
+		return this.entries.size();
+	}
+	
+	private synchronized void put(final String url, final Entry entry) {
+		this.entries.put(url, entry);
+	}
+	
+	private static long maxAgeNanos(final String cacheControl) {
+		if (cacheControl == null || cacheControl.contains("no-cache"))
+			return 0;
+		final Matcher matcher = MAX_AGE.matcher(cacheControl);
+		return matcher.find() ? TimeUnit.SECONDS.toNanos(Long.parseLong(matcher.group(1))) : 0;
+	}
+	
+	public static final class Entry {
+		
+		private final String etag;
+		private final byte[] body;
+		private final long freshUntil;
+		
+		private Entry(final String etag, final byte[] body, final long freshUntil) {
+			this.etag = etag;
+			this.body = body;
+			this.freshUntil = freshUntil;
+		}
+		
+		public String getEtag() {
+			return this.etag;
+		}
+		
+		public byte[] getBody() {
+			return this.body;
+		}
+		
+		public boolean isFresh() {
+			return System.nanoTime() - this.freshUntil < 0;
+		}
+		
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
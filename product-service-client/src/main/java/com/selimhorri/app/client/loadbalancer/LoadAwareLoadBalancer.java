@@ -0,0 +1,109 @@
+package com.selimhorri.app.client.loadbalancer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Picks a product-service instance from the load each one publishes in its metadata ({@code InstanceLoad} in the
+ * service): two distinct instances are drawn at random and the one with the lower score wins, where
+ *
+ * <pre>
+ * score = (1 + p99 ms) * (1 + requests in flight) * (1 + pool saturation)
+ * </pre>
+ *
+ * The metadata is tens of seconds old by the time it gets here (replication to Eureka, then the client's registry
+ * fetch), so always sending to the least loaded instance would have every client pile onto it until the next
+ * update; with two random choices the most loaded instance gets no traffic and the rest is still spread.
+ *
+ * An instance without load metadata, or with metadata older than {@code maxAge}, scores the average of the others,
+ * so that it is neither avoided nor flooded; with no metadata at all the choice is simply random.
+ */
+public class LoadAwareLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+	
+	// Claves publicadas por InstanceLoad en product-service
+	static final String IN_FLIGHT = "load-in-flight";
+	static final String P99_MILLIS = "load-p99-ms";
+	static final String POOL_SATURATION = "load-pool-saturation";
+	static final String UPDATED_AT = "load-updated-at";
+	
+	private final ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider;
+	private final long maxAgeMillis;
+	
+	public LoadAwareLoadBalancer(final ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider,
+			final Duration maxAge) {
+		this.serviceInstanceListSupplierProvider = serviceInstanceListSupplierProvider;
+		this.maxAgeMillis = maxAge.toMillis();
+	}
+	
+	@Override
+	@SuppressWarnings("rawtypes")
+	public Mono<Response<ServiceInstance>> choose(final Request request) {
+		final ServiceInstanceListSupplier supplier = this.serviceInstanceListSupplierProvider
+				.getIfAvailable(NoopServiceInstanceListSupplier::new);
+		return supplier.get(request).next().map(this::choose);
+	}
+	
+	Response<ServiceInstance> choose(final List<ServiceInstance> instances) {
+		if (instances.isEmpty())
+			return new EmptyResponse();
+		if (instances.size() == 1)
+			return new DefaultResponse(instances.get(0));
+		
+		final long now = System.currentTimeMillis();
+		final double[] scores = new double[instances.size()];
+		double known = 0;
+		int knownCount = 0;
+		for (int i = 0; i < scores.length; i++) {
+			scores[i] = this.score(instances.get(i).getMetadata(), now);
+			if (!Double.isNaN(scores[i])) {
+				known += scores[i];
+				knownCount++;
+			}
+		}
+		final double unknown = knownCount == 0 ? 0 : known / knownCount;
+		
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final int first = random.nextInt(scores.length);
+		final int second = (first + 1 + random.nextInt(scores.length - 1)) % scores.length;
+		final double firstScore = Double.isNaN(scores[first]) ? unknown : scores[first];
+		final double secondScore = Double.isNaN(scores[second]) ? unknown : scores[second];
+		return new DefaultResponse(instances.get(secondScore < firstScore ? second : first));
+	}
+	
+	/**
+	 * {@code NaN} when the instance publishes no usable load.
+	 */
+	double score(final Map<String, String> metadata, final long now) {
+		if (metadata == null)
+			return Double.NaN;
+		try {
+			final String updatedAt = metadata.get(UPDATED_AT);
+			if (updatedAt == null || now - Long.parseLong(updatedAt) > this.maxAgeMillis)
+				return Double.NaN;
+			final double p99Millis = Double.parseDouble(metadata.getOrDefault(P99_MILLIS, "0"));
+			final double inFlight = Double.parseDouble(metadata.getOrDefault(IN_FLIGHT, "0"));
+			final double poolSaturation = Double.parseDouble(metadata.getOrDefault(POOL_SATURATION, "0"));
+			return (1 + p99Millis) * (1 + inFlight) * (1 + poolSaturation);
+		}
+		catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+	
+	
+	
+}
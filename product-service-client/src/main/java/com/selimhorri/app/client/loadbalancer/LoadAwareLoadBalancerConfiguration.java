@@ -0,0 +1,31 @@
+package com.selimhorri.app.client.loadbalancer;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+import com.selimhorri.app.client.ProductServiceClientProperties;
+
+/**
+ * Load balancer configuration of the product-service id, applied by {@code ProductServiceClientAutoConfiguration}
+ * to the child context Spring Cloud LoadBalancer keeps per service. Deliberately not a {@code @Configuration}: a
+ * consumer scanning {@code com.selimhorri.app} must not pick it up for every service it calls.
+ */
+public class LoadAwareLoadBalancerConfiguration {
+	
+	@Bean
+	public ReactorLoadBalancer<ServiceInstance> loadAwareLoadBalancer(final Environment environment,
+			final LoadBalancerClientFactory loadBalancerClientFactory,
+			final ProductServiceClientProperties properties) {
+		final String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+		return new LoadAwareLoadBalancer(
+				loadBalancerClientFactory.getLazyProvider(serviceId, ServiceInstanceListSupplier.class),
+				properties.getLoadAware().getMaxAge());
+	}
+	
+	
+	
+}
@@ -0,0 +1,144 @@
+package com.selimhorri.app.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.selimhorri.app.ProductServiceApplication;
+import com.selimhorri.app.client.dto.ProductDto;
+import com.selimhorri.app.client.http.PooledHttpClients;
+import com.selimhorri.app.service.ProductService;
+
+/**
+ * The client against the real product-service, started in this JVM on a random port: JSON mapping, batching of
+ * single-id lookups and revalidation of cached responses must all hold against the current service.
+ */
+class ProductServiceClientContractTest {
+	
+	private static ConfigurableApplicationContext service;
+	private static CloseableHttpClient httpClient;
+	private static ProductServiceClient client;
+	
+	private static final List<String> requests = new CopyOnWriteArrayList<>();
+	private static final List<Integer> statuses = new CopyOnWriteArrayList<>();
+	
+	@BeforeAll
+	static void startService() {
+		service = new SpringApplicationBuilder(ProductServiceApplication.class).run(
+				"--server.port=0",
+				"--eureka.client.enabled=false",
+				"--spring.zipkin.enabled=false",
+				"--spring.datasource.url=jdbc:h2:mem:client_contract_test;DB_CLOSE_DELAY=-1",
+				"--product-service.client.enabled=false",
+				"--logging.level.org.hibernate.SQL=WARN",
+				"--logging.level.org.springframework.web=WARN",
+				"--logging.level.org.springframework.data=WARN");
+		
+		final ProductServiceClientProperties properties = new ProductServiceClientProperties();
+		properties.setBaseUrl("http://localhost:" + service.getEnvironment().getProperty("local.server.port")
+				+ "/product-service");
+		properties.setLoadBalanced(false);
+		properties.getBatch().setWindow(Duration.ofMillis(20));
+		final HttpRequestInterceptor recordRequest = (request, context) -> requests.add(
+				request.getRequestLine().getUri() + (request.containsHeader("If-None-Match") ? " (conditional)" : ""));
+		final HttpResponseInterceptor recordStatus = (response, context) -> statuses.add(
+				response.getStatusLine().getStatusCode());
+		httpClient = PooledHttpClients.builder(properties)
+				.addInterceptorFirst(recordRequest)
+				.addInterceptorFirst(recordStatus)
+				.build();
+		client = new ProductServiceClient(properties, httpClient, List.of());
+	}
+	
+	@AfterAll
+	static void stopService() throws Exception {
+		if (client != null)
+			client.close();
+		if (httpClient != null)
+			httpClient.close();
+		if (service != null)
+			service.close();
+	}
+	
+	@BeforeEach
+	void clearRecordedTraffic() {
+		requests.clear();
+		statuses.clear();
+	}
+	
+	@Test
+	void findByIdMapsProductWithItsCategory() {
+		final ProductDto product = client.findById(1).orElseThrow();
+		
+		assertThat(product.getProductTitle()).isEqualTo("asus");
+		assertThat(product.getSku()).isNotBlank();
+		assertThat(product.getCategoryDto().getCategoryId()).isEqualTo(1);
+		assertThat(product.getCategoryDto().getCategoryTitle()).isEqualTo("Computer");
+		assertThat(client.findById(9_999)).isEmpty();
+	}
+	
+	@Test
+	void findAllByIdsKeepsRequestOrderAndSkipsUnknownIds() {
+		assertThat(client.findAllByIds(List.of(3, 9_999, 1, 3)))
+				.extracting(ProductDto::getProductId)
+				.containsExactly(3, 1);
+	}
+	
+	@Test
+	void concurrentLookupsAreBatchedIntoMultiGets() {
+		final List<CompletableFuture<Optional<ProductDto>>> lookups = IntStream.range(0, 40)
+				.mapToObj(i -> client.findByIdAsync(1 + i % 5))
+				.collect(Collectors.toList());
+		
+		final List<Integer> found = lookups.stream()
+				.map(CompletableFuture::join)
+				.map(product -> product.map(ProductDto::getProductId).orElse(-1))
+				.collect(Collectors.toList());
+		
+		assertThat(found).containsExactlyElementsOf(IntStream.range(0, 40)
+				.mapToObj(i -> i % 5 == 4 ? -1 : 1 + i % 5)
+				.collect(Collectors.toList()));
+		assertThat(requests).hasSizeLessThan(5).allMatch(uri -> uri.contains("/api/products?ids="));
+	}
+	
+	@Test
+	void unchangedResponsesAreRevalidatedAndChangesAreSeen() {
+		final List<ProductDto> first = client.findAll();
+		final List<ProductDto> second = client.findAll();
+		
+		assertThat(second).isEqualTo(first);
+		assertThat(requests).hasSize(2);
+		assertThat(requests.get(1)).endsWith("(conditional)");
+		assertThat(statuses).containsExactly(200, 304);
+		
+		final ProductService productService = service.getBean(ProductService.class);
+		final com.selimhorri.app.dto.ProductDto product = productService.findById(2);
+		product.setQuantity(product.getQuantity() + 1);
+		productService.update(product);
+		
+		assertThat(client.findAll())
+				.filteredOn(candidate -> candidate.getProductId() == 2)
+				.extracting(ProductDto::getQuantity)
+				.containsExactly(product.getQuantity());
+		assertThat(statuses).containsExactly(200, 304, 200);
+	}
+	
+	
+	
+}
@@ -0,0 +1,118 @@
+package com.selimhorri.app.client.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Attempts run on pools without queue: with a single thread, a second attempt at the same time is refused.
+ */
+class HedgingExecutorTest {
+	
+	private final ThreadPoolExecutor attempts = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+			new SynchronousQueue<>());
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+	
+	@AfterEach
+	void tearDown() {
+		this.attempts.shutdownNow();
+		this.scheduler.shutdownNow();
+	}
+	
+	@Test
+	void slowCallIsHedgedWhileThePoolHasRoom() {
+		final ThreadPoolExecutor roomy = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS, new SynchronousQueue<>());
+		try {
+			final HedgingExecutor executor = new HedgingExecutor(roomy, this.scheduler, Duration.ofMillis(20), 100);
+			final AtomicInteger attempt = new AtomicInteger();
+			final CountDownLatch hedged = new CountDownLatch(1);
+			
+			final String answer = executor.execute(() -> {
+				if (attempt.incrementAndGet() == 1)
+					await(hedged);
+				else
+					hedged.countDown();
+				return "answer";
+			});
+			
+			assertThat(answer).isEqualTo("answer");
+			assertThat(executor.getHedges()).isEqualTo(1);
+		}
+		finally {
+			roomy.shutdownNow();
+		}
+	}
+	
+	@Test
+	void hedgeIsSkippedWhenThePoolIsSaturated() {
+		final HedgingExecutor executor = new HedgingExecutor(this.attempts, this.scheduler, Duration.ofMillis(20),
+				100);
+		
+		final String answer = executor.execute(() -> {
+			sleep(200);
+			return "answer";
+		});
+		
+		assertThat(answer).isEqualTo("answer");
+		assertThat(executor.getHedges()).isZero();
+	}
+	
+	@Test
+	void callFailsWhenThePoolIsSaturated() {
+		final HedgingExecutor executor = new HedgingExecutor(this.attempts, this.scheduler, Duration.ofSeconds(1),
+				100);
+		final CountDownLatch release = new CountDownLatch(1);
+		this.attempts.execute(() -> await(release));
+		
+		try {
+			assertThatThrownBy(() -> executor.execute(() -> "answer"))
+					.isInstanceOf(RejectedExecutionException.class);
+		}
+		finally {
+			release.countDown();
+		}
+	}
+	
+	private static void await(final CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private static void sleep(final long millis) {
+		try {
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
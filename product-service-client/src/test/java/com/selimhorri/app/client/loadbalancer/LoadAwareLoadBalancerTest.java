@@ -0,0 +1,129 @@
+package com.selimhorri.app.client.loadbalancer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.simple.SimpleDiscoveryClientAutoConfiguration;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.cloud.commons.util.UtilAutoConfiguration;
+import org.springframework.cloud.loadbalancer.config.BlockingLoadBalancerClientAutoConfiguration;
+import org.springframework.cloud.loadbalancer.config.LoadBalancerAutoConfiguration;
+
+import com.selimhorri.app.client.ProductServiceClientAutoConfiguration;
+import com.selimhorri.app.discovery.InstanceLoad;
+
+/**
+ * The balancer as wired by the auto-configuration, with a simple discovery client standing in for Eureka: each
+ * instance of {@code PRODUCT-SERVICE} is declared with the metadata product-service would publish.
+ */
+class LoadAwareLoadBalancerTest {
+	
+	private static final String SERVICE = "spring.cloud.discovery.client.simple.instances[PRODUCT-SERVICE]";
+	private static final int CHOICES = 600;
+	
+	private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+			.withConfiguration(AutoConfigurations.of(
+					UtilAutoConfiguration.class,
+					SimpleDiscoveryClientAutoConfiguration.class,
+					LoadBalancerAutoConfiguration.class,
+					BlockingLoadBalancerClientAutoConfiguration.class,
+					ProductServiceClientAutoConfiguration.class));
+	
+	@Test
+	void metadataKeysMatchTheOnesTheServicePublishes() {
+		assertThat(List.of(LoadAwareLoadBalancer.IN_FLIGHT, LoadAwareLoadBalancer.P99_MILLIS,
+				LoadAwareLoadBalancer.POOL_SATURATION, LoadAwareLoadBalancer.UPDATED_AT))
+				.containsExactly(InstanceLoad.IN_FLIGHT, InstanceLoad.P99_MILLIS, InstanceLoad.POOL_SATURATION,
+						InstanceLoad.UPDATED_AT);
+	}
+	
+	@Test
+	void mostLoadedInstanceIsAvoidedAndTheRestShareTheTraffic() {
+		final long now = System.currentTimeMillis();
+		this.contextRunner
+				.withPropertyValues(instance(0, "busy", "250.0", "30.0", "0.95", now))
+				.withPropertyValues(instance(1, "idle", "20.0", "1.0", "0.10", now))
+				.withPropertyValues(instance(2, "steady", "40.0", "3.0", "0.30", now))
+				.run(context -> {
+					final Map<String, Long> choices = choose(context.getBean(LoadBalancerClient.class));
+					
+					assertThat(choices).doesNotContainKey("busy");
+					assertThat(choices.get("idle")).isGreaterThan(choices.get("steady"));
+					assertThat(choices.get("steady")).isPositive();
+				});
+	}
+	
+	@Test
+	void staleLoadCountsAsAverage() {
+		final long now = System.currentTimeMillis();
+		this.contextRunner
+				.withPropertyValues(instance(0, "stale", "900.0", "80.0", "1.50", now - 3_600_000))
+				.withPropertyValues(instance(1, "idle", "20.0", "1.0", "0.10", now))
+				.withPropertyValues(instance(2, "busy", "250.0", "30.0", "0.95", now))
+				.run(context -> {
+					final Map<String, Long> choices = choose(context.getBean(LoadBalancerClient.class));
+					
+					assertThat(choices).doesNotContainKey("busy");
+					assertThat(choices.get("stale")).isPositive();
+					assertThat(choices.get("idle")).isPositive();
+				});
+	}
+	
+	@Test
+	void instancesWithoutLoadAreSpreadEvenly() {
+		this.contextRunner
+				.withPropertyValues(SERVICE + "[0].uri=http://first:8500")
+				.withPropertyValues(SERVICE + "[1].uri=http://second:8500")
+				.withPropertyValues(SERVICE + "[2].uri=http://third:8500")
+				.run(context -> {
+					final Map<String, Long> choices = choose(context.getBean(LoadBalancerClient.class));
+					
+					assertThat(choices).containsOnlyKeys("first", "second", "third");
+					assertThat(choices.values()).allMatch(count -> count > CHOICES / 5);
+				});
+	}
+	
+	@Test
+	void disabledLeavesTheDefaultBalancer() {
+		final long now = System.currentTimeMillis();
+		this.contextRunner
+				.withPropertyValues("product-service.client.load-aware.enabled=false")
+				.withPropertyValues(instance(0, "busy", "250.0", "30.0", "0.95", now))
+				.withPropertyValues(instance(1, "idle", "20.0", "1.0", "0.10", now))
+				.run(context -> assertThat(choose(context.getBean(LoadBalancerClient.class)))
+						.containsOnlyKeys("busy", "idle"));
+	}
+	
+	private static String[] instance(final int index, final String host, final String p99Millis,
+			final String inFlight, final String poolSaturation, final long updatedAt) {
+		final String prefix = SERVICE + "[" + index + "].";
+		final String metadata = prefix + "metadata.";
+		final List<String> properties = new ArrayList<>();
+		properties.add(prefix + "uri=http://" + host + ":8500");
+		properties.add(metadata + LoadAwareLoadBalancer.P99_MILLIS + "=" + p99Millis);
+		properties.add(metadata + LoadAwareLoadBalancer.IN_FLIGHT + "=" + inFlight);
+		properties.add(metadata + LoadAwareLoadBalancer.POOL_SATURATION + "=" + poolSaturation);
+		properties.add(metadata + LoadAwareLoadBalancer.UPDATED_AT + "=" + updatedAt);
+		return properties.toArray(String[]::new);
+	}
+	
+	private static Map<String, Long> choose(final LoadBalancerClient loadBalancerClient) {
+		return IntStream.range(0, CHOICES)
+				.mapToObj(i -> loadBalancerClient.choose("PRODUCT-SERVICE"))
+				.map(ServiceInstance::getHost)
+				.collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+	}
+	
+	
+	
+}
@@ -0,0 +1,124 @@
+package com.selimhorri.app.domain;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.selimhorri.app.ProductServiceApplication;
+import com.selimhorri.app.repository.CategoryRepository;
+import com.selimhorri.app.repository.ProductRepository;
+
+/**
+ * Products inserted per second, {@value #PRODUCTS_PER_TRANSACTION} per transaction through the repository, with the
+ * ids of {@code id_sequences} ({@code pooled}: JDBC batches of 50) against the previous identity columns
+ * ({@code identity}: one INSERT round trip per product, which disables batching).
+ *
+ * {@code mvn -P benchmark test-compile exec:exec -Dbenchmark=ProductInsertBenchmark}
+ *
+ * By default against an in-memory H2 served over TCP on loopback, so every statement is a real round trip; on the
+ * embedded database of the {@code dev} profile round trips cost nothing and both are alike. For MySQL, run with
+ * {@code -Dbenchmark.datasource.url=jdbc:mysql://...?rewriteBatchedStatements=true -Dspring.profiles.active=stage}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class ProductInsertBenchmark {
+	
+	private static final int PRODUCTS_PER_TRANSACTION = 200;
+	
+	@Param({ "identity", "pooled" })
+	private String ids;
+	
+	private Server database;
+	private ConfigurableApplicationContext context;
+	private TransactionTemplate transactionTemplate;
+	private ProductRepository productRepository;
+	private Category category;
+	private long next;
+	
+	@Setup(Level.Trial)
+	public void start() throws SQLException {
+		String url = System.getProperty("benchmark.datasource.url");
+		if (url == null) {
+			this.database = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+			url = "jdbc:h2:tcp://localhost:" + this.database.getPort() + "/mem:insert_benchmark;DB_CLOSE_DELAY=-1";
+		}
+		final List<String> arguments = new ArrayList<>(List.of(
+				"--spring.datasource.url=" + url,
+				"--server.port=0",
+				"--eureka.client.enabled=false",
+				"--spring.zipkin.enabled=false",
+				"--spring.jpa.show-sql=false",
+				"--app.warmup.enabled=false",
+				"--app.slow-query.enabled=false",
+				"--logging.level.root=WARN",
+				"--logging.level.org.hibernate=WARN",
+				"--logging.level.org.hibernate.SQL=WARN",
+				"--logging.level.org.springframework=WARN",
+				"--logging.level.org.springframework.web=WARN",
+				"--logging.level.org.springframework.data=WARN"));
+		if ("identity".equals(this.ids))
+			arguments.addAll(List.of(
+					"--spring.jpa.mapping-resources=benchmark/identity-ids-orm.xml",
+					"--spring.jpa.properties.hibernate.jdbc.batch_size=0",
+					"--spring.jpa.properties.hibernate.order_inserts=false",
+					"--spring.jpa.properties.hibernate.order_updates=false"));
+		this.context = new SpringApplicationBuilder(ProductServiceApplication.class)
+				.run(arguments.toArray(String[]::new));
+		this.transactionTemplate = new TransactionTemplate(this.context.getBean(PlatformTransactionManager.class));
+		this.productRepository = this.context.getBean(ProductRepository.class);
+		this.category = this.context.getBean(CategoryRepository.class).findById(1).orElseThrow();
+	}
+	
+	@TearDown(Level.Trial)
+	public void stop() {
+		this.context.close();
+		if (this.database != null)
+			this.database.stop();
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(PRODUCTS_PER_TRANSACTION)
+	public List<Product> insert() {
+		final List<Product> products = new ArrayList<>(PRODUCTS_PER_TRANSACTION);
+		for (int i = 0; i < PRODUCTS_PER_TRANSACTION; i++) {
+			final long n = this.next++;
+			products.add(Product.builder()
+					.productTitle("Benchmark " + n)
+					.imageUrl("https://img.example/p/" + n + ".png")
+					.sku("BM-" + this.ids + "-" + n)
+					.priceUnit(9.99)
+					.quantity(10)
+					.category(this.category)
+					.build());
+		}
+		return this.transactionTemplate.execute(status -> this.productRepository.saveAll(products));
+	}
+	
+	
+	
+}
@@ -0,0 +1,132 @@
+package com.selimhorri.app.helper;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.management.ObjectName;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.selimhorri.app.domain.ProductCatalogView;
+import com.selimhorri.app.dto.ProductDto;
+
+/**
+ * Mapping a full listing of read-model rows to DTOs, one {@code CategoryDto} per product ({@code perProduct}, the
+ * mapping before {@link CanonicalProductMapper}) or one per category ({@code canonical}). Every row has its own copy
+ * of the category strings and of the price, as the JDBC driver returns them.
+ *
+ * Time per listing here; allocation per listing with {@code -prof gc} ({@code gc.alloc.rate.norm}). At the end of each
+ * trial the forked JVM prints what one mapped listing keeps alive once its rows are dropped, from two class
+ * histograms of the live heap.
+ *
+ * {@code mvn -P benchmark test-compile exec:exec -Dbenchmark="ProductMappingBenchmark -prof gc"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class ProductMappingBenchmark {
+	
+	private static final List<String> HISTOGRAM_CLASSES = List.of("com.selimhorri.app.dto.ProductDto",
+			"com.selimhorri.app.dto.CategoryDto", "java.lang.String", "[B", "java.lang.Double");
+	
+	@Param("100000")
+	private int products;
+	
+	@Param("1000")
+	private int categories;
+	
+	@Param({ "perProduct", "canonical" })
+	private String mapping;
+	
+	private List<ProductCatalogView> rows;
+	
+	@Setup(Level.Trial)
+	public void readRows() {
+		final Random random = new Random(42);
+		this.rows = new ArrayList<>(this.products);
+		for (int productId = 1; productId <= this.products; productId++) {
+			final int categoryId = 1 + random.nextInt(this.categories);
+			this.rows.add(new ProductCatalogView(productId, "Product " + productId,
+					"https://img.example.com/products/" + productId + ".png", "sku" + productId,
+					Double.valueOf(random.nextInt(200) + 0.99), random.nextInt(100), categoryId,
+					new String("Category " + categoryId),
+					new String("https://img.example.com/categories/" + categoryId + ".png"),
+					"/" + categoryId + "/", false));
+		}
+	}
+	
+	@Benchmark
+	public List<ProductDto> map() {
+		if ("canonical".equals(this.mapping))
+			return this.rows.stream()
+					.map(new CanonicalProductMapper()::map)
+					.collect(Collectors.toUnmodifiableList());
+		return this.rows.stream()
+				.map(ProductMappingHelper::map)
+				.distinct()
+				.collect(Collectors.toUnmodifiableList());
+	}
+	
+	@TearDown(Level.Trial)
+	public void printRetainedHeap() throws Exception {
+		// Como en el servicio: las filas leídas se descartan tras mapearlas
+		this.rows = null;
+		final Map<String, long[]> before = histogram();
+		this.readRows();
+		final List<ProductDto> listing = this.map();
+		this.rows = null;
+		final Map<String, long[]> after = histogram();
+		long totalBytes = 0;
+		final StringBuilder report = new StringBuilder("\nRetained by one listing (" + this.mapping + ", "
+				+ listing.size() + " products):\n");
+		for (final String className : HISTOGRAM_CLASSES) {
+			final long[] was = before.getOrDefault(className, new long[2]);
+			final long[] is = after.getOrDefault(className, new long[2]);
+			totalBytes += is[1] - was[1];
+			report.append(String.format("  %-36s %,12d instances %,14d bytes%n", className, is[0] - was[0],
+					is[1] - was[1]));
+		}
+		report.append(String.format("  %-36s %,12d bytes/product%n", "total", totalBytes / listing.size()));
+		System.out.println(report);
+	}
+	
+	/**
+	 * Live objects only ({@code GC.class_histogram} runs a full GC first): instances and bytes by class name.
+	 */
+	private static Map<String, long[]> histogram() throws Exception {
+		final String histogram = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+				new ObjectName("com.sun.management:type=DiagnosticCommand"), "gcClassHistogram",
+				new Object[] { null }, new String[] { String[].class.getName() });
+		final Map<String, long[]> byClass = new HashMap<>();
+		for (final String line : histogram.split("\n")) {
+			final String[] columns = line.trim().split("\\s+");
+			if (columns.length >= 4 && columns[0].endsWith(":"))
+				byClass.put(columns[3], new long[] { Long.parseLong(columns[1]), Long.parseLong(columns[2]) });
+		}
+		return byClass;
+	}
+	
+	
+	
+}
@@ -0,0 +1,123 @@
+package com.selimhorri.app.index;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Category page queries against a synthetic catalog: three levels of ten categories each (1,110 categories),
+ * products spread over the leaves with prices up to 2,000 and a fifth of them out of stock.
+ *
+ * {@code mvn -P benchmark test-compile exec:exec -Dbenchmark=CatalogIndexBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class CatalogIndexBenchmark {
+	
+	private static final int FANOUT = 10;
+	
+	@Param("1000000")
+	private int products;
+	
+	private CatalogIndex index;
+	private int[] topLevelIds;
+	private int[] leafIds;
+	private int next;
+	
+	@Setup(Level.Trial)
+	public void buildIndex() {
+		final Random random = new Random(42);
+		final CatalogIndex.Builder builder = CatalogIndex.builder();
+		this.topLevelIds = new int[FANOUT];
+		this.leafIds = new int[FANOUT * FANOUT * FANOUT];
+		int categoryId = 1;
+		int leaves = 0;
+		for (int a = 0; a < FANOUT; a++) {
+			final int top = categoryId++;
+			this.topLevelIds[a] = top;
+			builder.category(top, null, "C" + top, "/" + top + "/");
+			for (int b = 0; b < FANOUT; b++) {
+				final int middle = categoryId++;
+				builder.category(middle, top, "C" + middle, "/" + top + "/" + middle + "/");
+				for (int c = 0; c < FANOUT; c++) {
+					final int leaf = categoryId++;
+					builder.category(leaf, middle, "C" + leaf, "/" + top + "/" + middle + "/" + leaf + "/");
+					this.leafIds[leaves++] = leaf;
+				}
+			}
+		}
+		for (int productId = 1; productId <= this.products; productId++)
+			builder.product(productId, this.leafIds[random.nextInt(leaves)], random.nextInt(200_000),
+					random.nextInt(5) == 0 ? 0 : 1 + random.nextInt(100));
+		this.index = builder.build();
+	}
+	
+	/**
+	 * About a thousand products per leaf.
+	 */
+	@Benchmark
+	public CatalogQueryResult leafCategoryInStockByPrice() {
+		return this.index.search(CatalogQuery.builder()
+				.categoryId(this.leafIds[this.next++ % this.leafIds.length])
+				.inStockOnly(true)
+				.maxPriceCents(100_000)
+				.build());
+	}
+	
+	/**
+	 * About a hundred thousand products, facets over ten subcategories.
+	 */
+	@Benchmark
+	public CatalogQueryResult topLevelCategoryByStock() {
+		return this.index.search(CatalogQuery.builder()
+				.categoryId(this.topLevelIds[this.next++ % this.topLevelIds.length])
+				.sort(CatalogQuery.Sort.STOCK_DESC)
+				.build());
+	}
+	
+	@Benchmark
+	public CatalogQueryResult wholeCatalogInStockPriceRange() {
+		return this.index.search(CatalogQuery.builder()
+				.inStockOnly(true)
+				.minPriceCents(5_000)
+				.maxPriceCents(10_000)
+				.sort(CatalogQuery.Sort.PRICE_DESC)
+				.build());
+	}
+	
+	@Benchmark
+	public boolean upsert() {
+		final int productId = 1 + (this.next++ % this.products);
+		return this.index.upsert(productId, this.leafIds[productId % this.leafIds.length], productId % 200_000,
+				productId % 7);
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,109 @@
+package com.selimhorri.app.inventory;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.selimhorri.app.ProductServiceApplication;
+import com.selimhorri.app.dto.ProductStockDto;
+import com.selimhorri.app.repository.ProductStockRepository;
+import com.selimhorri.app.service.ProductStockService;
+
+/**
+ * Decrements per second of one hot product from {@value #THREADS} threads at once, through the service: its stock
+ * in the {@code products} row ({@code row}: every decrement waits for the previous one to commit) or split over
+ * {@value #THREADS} stripes ({@code striped}).
+ *
+ * {@code mvn -P benchmark test-compile exec:exec -Dbenchmark=StockDecrementBenchmark}
+ *
+ * Against an in-memory H2 served over TCP on loopback, so a row lock is held for real round trips; the gap widens
+ * with the network and commit latency of a real database. For MySQL, run with
+ * {@code -Dbenchmark.datasource.url=jdbc:mysql://... -Dspring.profiles.active=stage}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+@Threads(StockDecrementBenchmark.THREADS)
+public class StockDecrementBenchmark {
+	
+	static final int THREADS = 16;
+	
+	private static final int PRODUCT_ID = 1;
+	
+	@Param({ "row", "striped" })
+	private String stock;
+	
+	private Server database;
+	private ConfigurableApplicationContext context;
+	private ProductStockService productStockService;
+	
+	@Setup(Level.Trial)
+	public void start() throws SQLException {
+		String url = System.getProperty("benchmark.datasource.url");
+		if (url == null) {
+			this.database = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+			url = "jdbc:h2:tcp://localhost:" + this.database.getPort()
+					+ "/mem:stock_benchmark;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+		}
+		this.context = new SpringApplicationBuilder(ProductServiceApplication.class).run(
+				"--spring.datasource.url=" + url,
+				"--spring.datasource.hikari.maximum-pool-size=" + (THREADS + 4),
+				"--server.port=0",
+				"--eureka.client.enabled=false",
+				"--spring.zipkin.enabled=false",
+				"--spring.jpa.show-sql=false",
+				"--app.warmup.enabled=false",
+				"--app.slow-query.enabled=false",
+				"--logging.level.root=WARN",
+				"--logging.level.com.selimhorri=WARN",
+				"--logging.level.org.hibernate=WARN",
+				"--logging.level.org.hibernate.SQL=WARN",
+				"--logging.level.org.springframework=WARN",
+				"--logging.level.org.springframework.web=WARN",
+				"--logging.level.org.springframework.data=WARN");
+		this.productStockService = this.context.getBean(ProductStockService.class);
+		
+		// Stock de sobra para toda la medición
+		new TransactionTemplate(this.context.getBean(PlatformTransactionManager.class)).executeWithoutResult(status ->
+				this.context.getBean(ProductStockRepository.class).setQuantity(PRODUCT_ID, Integer.MAX_VALUE / 2));
+		if ("striped".equals(this.stock))
+			this.productStockService.stripe(PRODUCT_ID, THREADS);
+	}
+	
+	@TearDown(Level.Trial)
+	public void stop() {
+		this.context.close();
+		if (this.database != null)
+			this.database.stop();
+	}
+	
+	@Benchmark
+	public ProductStockDto decrement() {
+		return this.productStockService.decrement(PRODUCT_ID, 1);
+	}
+	
+	
+	
+}
@@ -2,14 +2,24 @@ package com.selimhorri.app;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.cloud.netflix.eureka.EnableEurekaClient;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 
 @SpringBootApplication
 @EnableEurekaClient
+@EnableJpaAuditing
 public class ProductServiceApplication {
-
+	
+	/**
+	 * Startup steps kept for the actuator {@code startup} endpoint; enough for every bean of the context.
+	 */
+	private static final int STARTUP_STEPS_CAPACITY = 8192;
+	
 	public static void main(String[] args) {
-		SpringApplication.run(ProductServiceApplication.class, args);
+		final SpringApplication application = new SpringApplication(ProductServiceApplication.class);
+		application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS_CAPACITY));
+		application.run(args);
 	}
 	
 	
@@ -0,0 +1,193 @@
+package com.selimhorri.app.archive;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.selimhorri.app.domain.Category;
+import com.selimhorri.app.domain.ProductCatalogView;
+import com.selimhorri.app.repository.ArchivedProductRepository;
+import com.selimhorri.app.repository.CategoryRepository;
+import com.selimhorri.app.repository.ProductCatalogViewRepository;
+import com.selimhorri.app.repository.ProductRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Moves the products soft-deleted more than {@code retention} ago (in the 'Deleted' category, by {@code updated_at})
+ * from {@code products} and {@code product_catalog_view} to {@code archived_products}, every {@code interval}.
+ *
+ * Each batch of {@code batchSize} is one short transaction: the rows are locked ({@code FOR UPDATE}), copied and
+ * deleted, so a concurrent update or another replica running the same job never sees half a move. Batches are
+ * {@code pause} apart and a run stops after {@code maxPerRun} products, so the job never holds the tables for long.
+ * Nothing is invalidated: soft-deleted products are in no cache, index or snapshot.
+ *
+ * Table sizes are counted before and after each run, logged and exported as {@code catalog.archive.table.rows}.
+ */
+@Slf4j
+public class ProductArchiver implements SmartLifecycle, MeterBinder {
+	
+	private final TransactionTemplate transactionTemplate;
+	private final ProductRepository productRepository;
+	private final ProductCatalogViewRepository productCatalogViewRepository;
+	private final ArchivedProductRepository archivedProductRepository;
+	private final CategoryRepository categoryRepository;
+	private final Duration interval;
+	private final Duration retention;
+	private final int batchSize;
+	private final Duration pause;
+	private final int maxPerRun;
+	
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "product-archiver");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	private final AtomicLong productRows = new AtomicLong(-1);
+	private final AtomicLong archivedRows = new AtomicLong(-1);
+	
+	private volatile Counter archivedCounter;
+	private volatile Timer runTimer;
+	private volatile boolean running;
+	
+	public ProductArchiver(final TransactionTemplate transactionTemplate, final ProductRepository productRepository,
+			final ProductCatalogViewRepository productCatalogViewRepository,
+			final ArchivedProductRepository archivedProductRepository, final CategoryRepository categoryRepository,
+			final Duration interval, final Duration retention, final int batchSize, final Duration pause,
+			final int maxPerRun) {
+		this.transactionTemplate = transactionTemplate;
+		this.productRepository = productRepository;
+		this.productCatalogViewRepository = productCatalogViewRepository;
+		this.archivedProductRepository = archivedProductRepository;
+		this.categoryRepository = categoryRepository;
+		this.interval = interval;
+		this.retention = retention;
+		this.batchSize = batchSize;
+		this.pause = pause;
+		this.maxPerRun = maxPerRun;
+	}
+	
+	/**
+	 * One run: archives up to {@code maxPerRun} products, batch by batch, and returns how many.
+	 */
+	public int archive() {
+		final Category deletedCategory = this.categoryRepository
+				.findByCategoryTitle(ProductCatalogView.DELETED_CATEGORY_TITLE)
+				.orElse(null);
+		if (deletedCategory == null)
+			return 0;
+		
+		final long start = System.nanoTime();
+		final long productsBefore = this.productRepository.count();
+		final long archivedBefore = this.archivedProductRepository.count();
+		final Instant deletedBefore = Instant.now().minus(this.retention);
+		int archived = 0;
+		int batches = 0;
+		while (archived < this.maxPerRun && this.running) {
+			final int limit = Math.min(this.batchSize, this.maxPerRun - archived);
+			final int moved = this.transactionTemplate.execute(status ->
+					this.archiveBatch(deletedCategory.getCategoryId(), deletedBefore, limit));
+			archived += moved;
+			batches++;
+			if (moved < limit || !this.sleep())
+				break;
+		}
+		
+		this.productRows.set(this.productRepository.count());
+		this.archivedRows.set(this.archivedProductRepository.count());
+		if (this.runTimer != null)
+			this.runTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		log.info("*** Archived {} products soft-deleted before {} in {} batches; products {} -> {}, "
+				+ "archived_products {} -> {} *", archived, deletedBefore, batches, productsBefore, this.productRows.get(),
+				archivedBefore, this.archivedRows.get());
+		return archived;
+	}
+	
+	private int archiveBatch(final Integer deletedCategoryId, final Instant deletedBefore, final int limit) {
+		final List<Integer> productIds = this.productRepository.lockSoftDeletedBefore(deletedCategoryId,
+				deletedBefore, limit);
+		if (productIds.isEmpty())
+			return 0;
+		this.archivedProductRepository.insertFromProducts(productIds);
+		this.productCatalogViewRepository.deleteByProductIds(productIds);
+		final int deleted = this.productRepository.deleteSoftDeletedByIds(productIds, deletedCategoryId);
+		if (this.archivedCounter != null)
+			this.archivedCounter.increment(deleted);
+		return productIds.size();
+	}
+	
+	/**
+	 * Throttling between batches; {@code false} once stopping.
+	 */
+	private boolean sleep() {
+		try {
+			Thread.sleep(this.pause.toMillis());
+			return true;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	private void archiveQuietly() {
+		try {
+			this.archive();
+		}
+		catch (RuntimeException e) {
+			log.warn("*** Product archival failed; retrying in {} *", this.interval, e);
+		}
+	}
+	
+	@Override
+	public void start() {
+		this.running = true;
+		this.scheduler.scheduleWithFixedDelay(this::archiveQuietly, this.interval.toMillis(), this.interval.toMillis(),
+				TimeUnit.MILLISECONDS);
+	}
+	
+	@Override
+	public void stop() {
+		this.running = false;
+		this.scheduler.shutdownNow();
+	}
+	
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+	
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		this.archivedCounter = Counter.builder("catalog.archive.products")
+				.description("Soft-deleted products moved to archived_products")
+				.register(registry);
+		this.runTimer = Timer.builder("catalog.archive.run")
+				.description("Archival runs")
+				.register(registry);
+		Gauge.builder("catalog.archive.table.rows", this.productRows, AtomicLong::get)
+				.description("Rows at the end of the last archival run; -1 before the first")
+				.tag("table", "products")
+				.register(registry);
+		Gauge.builder("catalog.archive.table.rows", this.archivedRows, AtomicLong::get)
+				.description("Rows at the end of the last archival run; -1 before the first")
+				.tag("table", "archived_products")
+				.register(registry);
+	}
+	
+	
+	
+}
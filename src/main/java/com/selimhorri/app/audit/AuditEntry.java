@@ -0,0 +1,32 @@
+package com.selimhorri.app.audit;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * One changed field of a product or category, as written to {@code catalog_audit}; values are kept as text.
+ */
+@Value
+@Builder
+public class AuditEntry {
+	
+	String entityType;
+	Integer entityId;
+	String action;
+	String field;
+	String oldValue;
+	String newValue;
+	String actor;
+	long changedAt;
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,428 @@
+package com.selimhorri.app.audit;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Audit trail of catalog writes, kept off their latency: the services describe what changed ({@link #changes}) and
+ * the entries are queued once the transaction commits (rolled back writes leave no trace); a background thread writes
+ * them to {@code catalog_audit} in JDBC batches of {@code batchSize}, one transaction per batch.
+ *
+ * <ul>
+ * <li>{@link Durability#PERIODIC}: the queue is flushed every {@code flushInterval}, or as soon as a batch is full.
+ * The write returns at once; a crash loses the entries of the last interval.</li>
+ * <li>{@link Durability#COMMIT}: the committing thread wakes the writer and waits, up to {@code commitTimeout}, until
+ * its entries are written. Concurrent writes still share batches (group commit).</li>
+ * </ul>
+ *
+ * The queue is lock-free and holds {@code capacity} entries at most. When it is full, or the audit table does not
+ * accept writes, {@link Overflow#BLOCK} makes the committing thread wait for room up to {@code offerTimeout} and then
+ * write its entries itself, so nothing is lost and writers slow down to the pace of the audit table;
+ * {@link Overflow#DROP} drops them and counts them in {@code catalog.audit.entries{outcome=dropped}}.
+ *
+ * A batch that fails is retried on the next rounds, up to {@code MAX_ATTEMPTS} times; then it is written in halves,
+ * down to single entries, so one entry the table rejects does not hold up the others. An entry that still fails is
+ * dead-lettered: logged in full and counted in {@code catalog.audit.entries{outcome=dead-lettered}}.
+ */
+@Slf4j
+public class AuditTrail implements SmartLifecycle, MeterBinder {
+	
+	public enum Durability {
+		PERIODIC, COMMIT
+	}
+	
+	public enum Overflow {
+		BLOCK, DROP
+	}
+	
+	public static final String PRODUCT = "PRODUCT";
+	public static final String CATEGORY = "CATEGORY";
+	
+	private static final String INSERT = "INSERT INTO catalog_audit "
+			+ "(entity_type, entity_id, action, field, old_value, new_value, actor, changed_at) "
+			+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+	
+	private static final int MAX_VALUE_LENGTH = 255;
+	private static final int MAX_ACTOR_LENGTH = 64;
+	private static final int MAX_ATTEMPTS = 3;
+	private static final long STOP_TIMEOUT_MILLIS = Duration.ofSeconds(10).toMillis();
+	
+	private final JdbcTemplate jdbcTemplate;
+	private final TransactionTemplate transactionTemplate;
+	private final Supplier<String> actor;
+	private final boolean enabled;
+	private final Durability durability;
+	private final Overflow overflow;
+	private final int capacity;
+	private final int batchSize;
+	private final long flushIntervalNanos;
+	private final long offerTimeoutNanos;
+	private final long commitTimeoutMillis;
+	
+	private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+	
+	/**
+	 * Entries queued or being written; reserved before queuing, released once written.
+	 */
+	private final AtomicInteger reserved = new AtomicInteger();
+	
+	/**
+	 * A batch whose write failed, retried before anything else, and its failed attempts so far; only touched by the
+	 * writer thread.
+	 */
+	private List<Pending> failed = List.of();
+	private int failedAttempts;
+	
+	private final LongAdder written = new LongAdder();
+	private final LongAdder writtenByCaller = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder deadLettered = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	
+	private volatile Thread writer;
+	private volatile boolean running;
+	
+	public AuditTrail(final JdbcTemplate jdbcTemplate, final TransactionTemplate transactionTemplate,
+			final Supplier<String> actor, final boolean enabled, final Durability durability, final Overflow overflow,
+			final int capacity, final int batchSize, final Duration flushInterval, final Duration offerTimeout,
+			final Duration commitTimeout) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = transactionTemplate;
+		this.actor = actor;
+		this.enabled = enabled;
+		this.durability = durability;
+		this.overflow = overflow;
+		this.capacity = capacity;
+		this.batchSize = batchSize;
+		this.flushIntervalNanos = flushInterval.toNanos();
+		this.offerTimeoutNanos = offerTimeout.toNanos();
+		this.commitTimeoutMillis = commitTimeout.toMillis();
+	}
+	
+	/**
+	 * Entries of one action on one entity, stamped with the current actor and time; nothing is recorded unless some
+	 * field changed.
+	 */
+	public Changes changes(final String entityType, final Integer entityId, final String action) {
+		return new Changes(entityType, entityId, action);
+	}
+	
+	public final class Changes {
+		
+		private final String entityType;
+		private final Integer entityId;
+		private final String action;
+		private final String changedBy = AuditTrail.this.enabled
+				? truncate(AuditTrail.this.actor.get(), MAX_ACTOR_LENGTH) : null;
+		private final long changedAt = System.currentTimeMillis();
+		private final List<AuditEntry> entries = new ArrayList<>();
+		
+		private Changes(final String entityType, final Integer entityId, final String action) {
+			this.entityType = entityType;
+			this.entityId = entityId;
+			this.action = action;
+		}
+		
+		public Changes field(final String field, final Object oldValue, final Object newValue) {
+			if (AuditTrail.this.enabled && !Objects.equals(oldValue, newValue))
+				this.entries.add(AuditEntry.builder()
+						.entityType(this.entityType)
+						.entityId(this.entityId)
+						.action(this.action)
+						.field(field)
+						.oldValue(oldValue == null ? null : truncate(String.valueOf(oldValue), MAX_VALUE_LENGTH))
+						.newValue(newValue == null ? null : truncate(String.valueOf(newValue), MAX_VALUE_LENGTH))
+						.actor(this.changedBy)
+						.changedAt(this.changedAt)
+						.build());
+			return this;
+		}
+		
+		public void record() {
+			AuditTrail.this.record(List.of(this));
+		}
+		
+	}
+	
+	/**
+	 * Queued after the commit of the current transaction, or at once outside of one.
+	 */
+	public void record(final Collection<Changes> changes) {
+		final List<AuditEntry> recorded = changes.stream()
+				.flatMap(change -> change.entries.stream())
+				.collect(Collectors.toUnmodifiableList());
+		if (recorded.isEmpty())
+			return;
+		if (TransactionSynchronizationManager.isSynchronizationActive())
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					AuditTrail.this.enqueue(recorded);
+				}
+			});
+		else
+			this.enqueue(recorded);
+	}
+	
+	/**
+	 * At most {@code maxLength} chars, without splitting a surrogate pair (a lone half is not valid UTF-8 for MySQL).
+	 */
+	static String truncate(final String text, final int maxLength) {
+		if (text == null || text.length() <= maxLength)
+			return text;
+		return text.substring(0, Character.isHighSurrogate(text.charAt(maxLength - 1)) ? maxLength - 1 : maxLength);
+	}
+	
+	/**
+	 * Runs after the commit, where an exception would reach the caller of a write that did succeed: failures are
+	 * logged and counted only. The connection of that write is still held here, so the waits are bounded.
+	 */
+	void enqueue(final List<AuditEntry> entries) {
+		try {
+			if (!this.running || !this.reserve(entries.size())) {
+				if (this.running && this.overflow == Overflow.DROP) {
+					this.dropped.add(entries.size());
+					return;
+				}
+				if (!this.running || !this.awaitRoom(entries.size())) {
+					this.write(entries);
+					this.writtenByCaller.add(entries.size());
+					return;
+				}
+			}
+			
+			final Pending pending = new Pending(entries,
+					this.durability == Durability.COMMIT ? new CompletableFuture<>() : null);
+			this.queue.add(pending);
+			if (pending.written != null || this.reserved.get() >= this.batchSize)
+				LockSupport.unpark(this.writer);
+			if (pending.written != null)
+				pending.written.get(this.commitTimeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException e) {
+			log.warn("*** Audit entries not written within {} ms; left queued *", this.commitTimeoutMillis);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException | RuntimeException e) {
+			this.failures.increment();
+			log.warn("*** Could not write {} audit entries *", entries.size(), e);
+		}
+	}
+	
+	private boolean reserve(final int count) {
+		while (true) {
+			final int current = this.reserved.get();
+			if (current + count > this.capacity)
+				return false;
+			if (this.reserved.compareAndSet(current, current + count))
+				return true;
+		}
+	}
+	
+	private boolean awaitRoom(final int count) {
+		if (count > this.capacity)
+			return false;
+		final long deadline = System.nanoTime() + this.offerTimeoutNanos;
+		do {
+			LockSupport.unpark(this.writer);
+			LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(1));
+			if (this.reserve(count))
+				return true;
+		}
+		while (System.nanoTime() < deadline);
+		return false;
+	}
+	
+	private void write(final List<AuditEntry> entries) {
+		final List<Object[]> rows = entries.stream()
+				.map(entry -> new Object[] { entry.getEntityType(), entry.getEntityId(), entry.getAction(),
+						entry.getField(), entry.getOldValue(), entry.getNewValue(), entry.getActor(),
+						new Timestamp(entry.getChangedAt()) })
+				.collect(Collectors.toList());
+		this.transactionTemplate.executeWithoutResult(status -> this.jdbcTemplate.batchUpdate(INSERT, rows));
+	}
+	
+	private void writeLoop() {
+		while (this.running) {
+			LockSupport.parkNanos(this, this.flushIntervalNanos);
+			this.flush();
+		}
+		// Lo que quede en la cola, antes de cerrar el DataSource
+		this.flush();
+	}
+	
+	/**
+	 * Writes the queue in batches until it is empty, or a batch fails; that one is retried on the next round, or split
+	 * once it has failed {@code MAX_ATTEMPTS} times.
+	 */
+	void flush() {
+		while (true) {
+			List<Pending> batch = this.failed;
+			if (batch.isEmpty()) {
+				batch = new ArrayList<>();
+				int size = 0;
+				for (Pending pending; size < this.batchSize && (pending = this.queue.poll()) != null;) {
+					batch.add(pending);
+					size += pending.entries.size();
+				}
+				if (batch.isEmpty())
+					return;
+			}
+			
+			final List<AuditEntry> entries = batch.stream()
+					.flatMap(pending -> pending.entries.stream())
+					.collect(Collectors.toList());
+			try {
+				this.write(entries);
+				this.written.add(entries.size());
+			}
+			catch (RuntimeException e) {
+				this.failures.increment();
+				if (++this.failedAttempts < MAX_ATTEMPTS) {
+					this.failed = batch;
+					log.warn("*** Could not write {} audit entries (attempt {} of {}); retrying in the next round *",
+							entries.size(), this.failedAttempts, MAX_ATTEMPTS, e);
+					return;
+				}
+				log.warn("*** Could not write {} audit entries after {} attempts; splitting the batch *",
+						entries.size(), MAX_ATTEMPTS, e);
+				this.writeSplitting(entries);
+			}
+			this.failed = List.of();
+			this.failedAttempts = 0;
+			this.reserved.addAndGet(-entries.size());
+			for (final Pending pending : batch)
+				if (pending.written != null)
+					pending.written.complete(null);
+		}
+	}
+	
+	private void writeSplitting(final List<AuditEntry> entries) {
+		final int half = entries.size() / 2;
+		for (final List<AuditEntry> part : List.of(entries.subList(0, half), entries.subList(half, entries.size()))) {
+			if (part.isEmpty())
+				continue;
+			try {
+				this.write(part);
+				this.written.add(part.size());
+			}
+			catch (RuntimeException e) {
+				this.failures.increment();
+				if (part.size() > 1)
+					this.writeSplitting(part);
+				else {
+					this.deadLettered.increment();
+					log.error("*** Audit entry dead-lettered, not written: {} *", part.get(0), e);
+				}
+			}
+		}
+	}
+	
+	@Override
+	public void start() {
+		this.running = true;
+		final Thread thread = new Thread(this::writeLoop, "catalog-audit");
+		thread.setDaemon(true);
+		this.writer = thread;
+		thread.start();
+	}
+	
+	@Override
+	public void stop() {
+		this.running = false;
+		final Thread thread = this.writer;
+		LockSupport.unpark(thread);
+		try {
+			thread.join(STOP_TIMEOUT_MILLIS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (this.reserved.get() > 0)
+			log.warn("*** {} audit entries could not be written before shutdown *", this.reserved.get());
+	}
+	
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+	
+	/**
+	 * Stops after the web server has finished the requests in flight, whose entries are still queued.
+	 */
+	@Override
+	public int getPhase() {
+		return SmartLifecycle.DEFAULT_PHASE - 2048;
+	}
+	
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		Gauge.builder("catalog.audit.queue.size", this.reserved, AtomicInteger::get)
+				.description("Audit entries waiting to be written")
+				.register(registry);
+		FunctionCounter.builder("catalog.audit.entries", this.written, LongAdder::sum)
+				.tag("outcome", "written")
+				.register(registry);
+		FunctionCounter.builder("catalog.audit.entries", this.writtenByCaller, LongAdder::sum)
+				.description("Audit entries written by the committing thread, the queue being full")
+				.tag("outcome", "caller")
+				.register(registry);
+		FunctionCounter.builder("catalog.audit.entries", this.dropped, LongAdder::sum)
+				.tag("outcome", "dropped")
+				.register(registry);
+		FunctionCounter.builder("catalog.audit.entries", this.deadLettered, LongAdder::sum)
+				.description("Audit entries given up on after failing on their own; logged in full")
+				.tag("outcome", "dead-lettered")
+				.register(registry);
+		FunctionCounter.builder("catalog.audit.failures", this.failures, LongAdder::sum)
+				.description("Failed writes of audit batches")
+				.register(registry);
+	}
+	
+	private static final class Pending {
+		
+		private final List<AuditEntry> entries;
+		
+		/**
+		 * Completed once written, with {@link Durability#COMMIT} only.
+		 */
+		private final CompletableFuture<Void> written;
+		
+		private Pending(final List<AuditEntry> entries, final CompletableFuture<Void> written) {
+			this.entries = entries;
+			this.written = written;
+		}
+		
+	}
+	
+	
+	
+}
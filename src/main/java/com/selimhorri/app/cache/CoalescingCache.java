@@ -0,0 +1,422 @@
+package com.selimhorri.app.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.selimhorri.app.timing.RequestTiming;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-process read-through cache with single-flight loading and stale-while-revalidate.
+ *
+ * <ul>
+ * <li>Concurrent misses for one key share a single in-flight load instead of each querying the database.</li>
+ * <li>Entries older than {@code refreshAfter} are still served while one background refresh reloads them.</li>
+ * <li>Entries older than {@code expireAfter} are never served; the next caller loads them (coalesced).</li>
+ * </ul>
+ *
+ * Loader failures are not cached: every waiter of that load receives the same exception. {@link #invalidate} and
+ * {@link #invalidateAll} are reported to the registered {@link InvalidationListener}s once they are committed, so
+ * other replicas can drop their copies; the {@code *Now} variants are local only. Change listeners hear about both
+ * the committed local invalidations and those {@link #applyRemoteInvalidation applied} from other replicas.
+ *
+ * Once full, an entry is evicted per new one from a small random sample. With a {@link #setFrequency frequency}
+ * signal the victim is the least accessed of the sample and a new entry accessed less than it is not kept, so hot
+ * keys stay resident however many cold ones pass through; without one, the oldest of the sample goes.
+ */
+@Slf4j
+public class CoalescingCache<K, V> implements MeterBinder {
+	
+	private static final int EVICTION_SAMPLE = 8;
+	
+	private final String name;
+	private final long refreshAfterNanos;
+	private final long expireAfterNanos;
+	private final int maximumSize;
+	private final Executor refreshExecutor;
+	
+	private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+	private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+	
+	/**
+	 * Bumped by every invalidation; a load that overlaps an invalidation does not store its (possibly stale) value.
+	 */
+	private final AtomicLong invalidations = new AtomicLong();
+	
+	private final List<InvalidationListener<K>> invalidationListeners = new CopyOnWriteArrayList<>();
+	private final List<InvalidationListener<K>> changeListeners = new CopyOnWriteArrayList<>();
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder staleHits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder refreshes = new LongAdder();
+	private final LongAdder refreshFailures = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder rejections = new LongAdder();
+	
+	private volatile ToLongFunction<K> frequency;
+	
+	public CoalescingCache(final String name, final Duration refreshAfter, final Duration expireAfter,
+			final int maximumSize, final Executor refreshExecutor) {
+		if (refreshAfter.compareTo(expireAfter) > 0)
+			throw new IllegalArgumentException("refreshAfter must not exceed expireAfter for cache " + name);
+		this.name = name;
+		this.refreshAfterNanos = refreshAfter.toNanos();
+		this.expireAfterNanos = expireAfter.toNanos();
+		this.maximumSize = maximumSize;
+		this.refreshExecutor = refreshExecutor;
+	}
+	
+	public String getName() {
+		return this.name;
+	}
+	
+	/**
+	 * Access frequency per key (e.g. a decayed count-min estimate) used for admission and eviction once the cache is
+	 * full; {@code null} to evict by age only.
+	 */
+	public void setFrequency(final ToLongFunction<K> frequency) {
+		this.frequency = frequency;
+	}
+	
+	public V get(final K key, final Function<K, V> loader) {
+		final Entry<V> entry = this.entries.get(key);
+		if (entry != null) {
+			final long age = System.nanoTime() - entry.loadedAt;
+			if (age < this.refreshAfterNanos) {
+				this.hits.increment();
+				RequestTiming.recordCacheHits(1);
+				return entry.value;
+			}
+			if (age < this.expireAfterNanos) {
+				this.staleHits.increment();
+				RequestTiming.recordCacheHits(1);
+				this.refreshAsync(key, loader);
+				return entry.value;
+			}
+		}
+		RequestTiming.recordCacheMisses(1);
+		return this.load(key, loader);
+	}
+	
+	/**
+	 * Multi-key lookup: fresh entries are served, all the others (missing or due for refresh) are read with one call
+	 * to the bulk loader. Keys the loader does not return are absent from the result.
+	 */
+	public Map<K, V> getAll(final Collection<K> keys, final Function<Collection<K>, Map<K, V>> loader) {
+		final Map<K, V> found = new LinkedHashMap<>();
+		final List<K> missing = new ArrayList<>();
+		final long now = System.nanoTime();
+		for (final K key : keys) {
+			final Entry<V> entry = this.entries.get(key);
+			if (entry != null && now - entry.loadedAt < this.refreshAfterNanos) {
+				this.hits.increment();
+				found.put(key, entry.value);
+			}
+			else
+				missing.add(key);
+		}
+		RequestTiming.recordCacheHits(found.size());
+		if (!missing.isEmpty()) {
+			this.misses.add(missing.size());
+			RequestTiming.recordCacheMisses(missing.size());
+			final long epoch = this.invalidations.get();
+			loader.apply(missing).forEach((key, value) -> {
+				this.store(key, value, epoch);
+				found.put(key, value);
+			});
+		}
+		return found;
+	}
+	
+	public void put(final K key, final V value) {
+		this.store(key, value, this.invalidations.get());
+	}
+	
+	/**
+	 * Drops the key now and, inside a transaction, once more after it completes, so a reader that repopulated the
+	 * entry from not yet committed state does not keep it. Listeners hear about it after commit.
+	 */
+	public void invalidate(final K key) {
+		this.invalidateNow(key);
+		if (TransactionSynchronizationManager.isSynchronizationActive())
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(final int status) {
+					invalidateNow(key);
+					if (status == STATUS_COMMITTED)
+						notifyListeners(key);
+				}
+			});
+		else
+			this.notifyListeners(key);
+	}
+	
+	public void invalidateAll() {
+		this.invalidateAllNow();
+		if (TransactionSynchronizationManager.isSynchronizationActive())
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(final int status) {
+					invalidateAllNow();
+					if (status == STATUS_COMMITTED)
+						notifyListeners(null);
+				}
+			});
+		else
+			this.notifyListeners(null);
+	}
+	
+	public void invalidateNow(final K key) {
+		this.invalidations.incrementAndGet();
+		this.entries.remove(key);
+		this.inFlight.remove(key);
+	}
+	
+	public void invalidateAllNow() {
+		this.invalidations.incrementAndGet();
+		this.entries.clear();
+		this.inFlight.clear();
+	}
+	
+	/**
+	 * An invalidation committed on another replica: dropped here and reported to the change listeners only.
+	 *
+	 * @param key the invalidated key, or {@code null} for the whole cache
+	 */
+	public void applyRemoteInvalidation(final K key) {
+		if (key == null)
+			this.invalidateAllNow();
+		else
+			this.invalidateNow(key);
+		this.notify(this.changeListeners, key);
+	}
+	
+	public int size() {
+		return this.entries.size();
+	}
+	
+	public void addInvalidationListener(final InvalidationListener<K> listener) {
+		this.invalidationListeners.add(listener);
+	}
+	
+	public void addChangeListener(final InvalidationListener<K> listener) {
+		this.changeListeners.add(listener);
+	}
+	
+	private void notifyListeners(final K key) {
+		this.notify(this.invalidationListeners, key);
+		this.notify(this.changeListeners, key);
+	}
+	
+	private void notify(final List<InvalidationListener<K>> listeners, final K key) {
+		for (final InvalidationListener<K> listener : listeners) {
+			try {
+				listener.invalidated(this.name, key);
+			}
+			catch (RuntimeException e) {
+				log.warn("*** Cache {}; invalidation listener failed for key {} *", this.name, key, e);
+			}
+		}
+	}
+	
+	private V load(final K key, final Function<K, V> loader) {
+		final var created = new CompletableFuture<V>();
+		final CompletableFuture<V> existing = this.inFlight.putIfAbsent(key, created);
+		if (existing != null) {
+			this.coalesced.increment();
+			return join(existing);
+		}
+		this.misses.increment();
+		final long epoch = this.invalidations.get();
+		try {
+			final V value = loader.apply(key);
+			this.store(key, value, epoch);
+			created.complete(value);
+			return value;
+		}
+		catch (RuntimeException e) {
+			created.completeExceptionally(e);
+			throw e;
+		}
+		finally {
+			this.inFlight.remove(key, created);
+		}
+	}
+	
+	private void refreshAsync(final K key, final Function<K, V> loader) {
+		final var created = new CompletableFuture<V>();
+		if (this.inFlight.putIfAbsent(key, created) != null)
+			return;
+		final long epoch = this.invalidations.get();
+		try {
+			this.refreshExecutor.execute(() -> {
+				try {
+					final V value = loader.apply(key);
+					this.store(key, value, epoch);
+					this.refreshes.increment();
+					created.complete(value);
+				}
+				catch (RuntimeException e) {
+					// e.g. deleted meanwhile: stop serving the stale copy
+					this.refreshFailures.increment();
+					this.entries.remove(key);
+					created.completeExceptionally(e);
+					log.debug("*** Cache {}; background refresh of {} failed *", this.name, key, e);
+				}
+				finally {
+					this.inFlight.remove(key, created);
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			this.inFlight.remove(key, created);
+		}
+	}
+	
+	private void store(final K key, final V value, final long epoch) {
+		if (this.invalidations.get() != epoch)
+			return;
+		final boolean added = this.entries.put(key, new Entry<>(value, System.nanoTime())) == null;
+		if (this.entries.size() > this.maximumSize)
+			this.evictOne(added ? key : null);
+	}
+	
+	/**
+	 * Sampled eviction: from a handful of entries starting at a random position, drop the least frequently accessed
+	 * one (the oldest without a frequency signal, or among equals). The entry just added is not sampled; it is dropped
+	 * instead when it is accessed less than that victim.
+	 */
+	private void evictOne(final K added) {
+		final ToLongFunction<K> frequency = this.frequency;
+		// at least two entries are sampled, so there is a candidate besides the one just added
+		final int skip = ThreadLocalRandom.current().nextInt(Math.max(1, Math.min(this.entries.size() - 1, 64)));
+		int seen = 0;
+		K victim = null;
+		long coldest = Long.MAX_VALUE;
+		long oldest = Long.MAX_VALUE;
+		for (final Map.Entry<K, Entry<V>> candidate : this.entries.entrySet()) {
+			if (seen++ < skip || candidate.getKey().equals(added))
+				continue;
+			final long accesses = frequency == null ? 0 : frequency.applyAsLong(candidate.getKey());
+			if (accesses < coldest || accesses == coldest && candidate.getValue().loadedAt < oldest) {
+				coldest = accesses;
+				oldest = candidate.getValue().loadedAt;
+				victim = candidate.getKey();
+			}
+			if (seen >= skip + EVICTION_SAMPLE)
+				break;
+		}
+		if (added != null && frequency != null && victim != null && frequency.applyAsLong(added) < coldest) {
+			if (this.entries.remove(added) != null)
+				this.rejections.increment();
+			return;
+		}
+		if (victim != null && this.entries.remove(victim) != null)
+			this.evictions.increment();
+	}
+	
+	private static <V> V join(final CompletableFuture<V> future) {
+		try {
+			return future.join();
+		}
+		catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw e;
+		}
+	}
+	
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		this.requestCounter(registry, "hit", this.hits);
+		this.requestCounter(registry, "stale", this.staleHits);
+		this.requestCounter(registry, "miss", this.misses);
+		this.requestCounter(registry, "coalesced", this.coalesced);
+		FunctionCounter.builder("catalog.cache.refreshes", this.refreshes, LongAdder::sum)
+				.tag("cache", this.name)
+				.tag("outcome", "success")
+				.register(registry);
+		FunctionCounter.builder("catalog.cache.refreshes", this.refreshFailures, LongAdder::sum)
+				.tag("cache", this.name)
+				.tag("outcome", "failure")
+				.register(registry);
+		FunctionCounter.builder("catalog.cache.evictions", this.evictions, LongAdder::sum)
+				.tag("cache", this.name)
+				.register(registry);
+		FunctionCounter.builder("catalog.cache.rejections", this.rejections, LongAdder::sum)
+				.description("New entries not kept because they were accessed less than the eviction candidate")
+				.tag("cache", this.name)
+				.register(registry);
+		Gauge.builder("catalog.cache.size", this.entries, Map::size)
+				.tag("cache", this.name)
+				.register(registry);
+	}
+	
+	private void requestCounter(final MeterRegistry registry, final String result, final LongAdder adder) {
+		FunctionCounter.builder("catalog.cache.requests", adder, LongAdder::sum)
+				.description("Cache lookups; 'coalesced' joined a load already in flight for the same key")
+				.tag("cache", this.name)
+				.tag("result", result)
+				.register(registry);
+	}
+	
+	@FunctionalInterface
+	public interface InvalidationListener<K> {
+		
+		/**
+		 * @param key the invalidated key, or {@code null} when the whole cache was invalidated
+		 */
+		void invalidated(String cacheName, K key);
+		
+	}
+	
+	private static final class Entry<V> {
+		
+		private final V value;
+		private final long loadedAt;
+		
+		private Entry(final V value, final long loadedAt) {
+			this.value = value;
+			this.loadedAt = loadedAt;
+		}
+		
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,36 @@
+package com.selimhorri.app.cache.invalidation;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * One invalidation travelling between replicas. A {@code null} key stands for the whole cache.
+ */
+@Value
+@Builder
+public class CacheInvalidation {
+	
+	String cacheName;
+	Integer key;
+	
+	/**
+	 * Replica that made the change; it already dropped its own entries and ignores the echo.
+	 */
+	String origin;
+	
+	/**
+	 * Wall clock of the publisher in epoch millis, used for the lag metric.
+	 */
+	long publishedAt;
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,118 @@
+package com.selimhorri.app.cache.invalidation;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.context.SmartLifecycle;
+
+import com.selimhorri.app.cache.CoalescingCache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the near caches of all replicas coherent: committed local invalidations are published through the
+ * {@link InvalidationTransport}, and those of the other replicas are applied locally without being published again.
+ *
+ * Lag (publisher clock to local apply) is recorded per cache as {@code catalog.cache.invalidation.lag}; it includes
+ * the clock skew between the two hosts.
+ */
+@Slf4j
+public class CacheInvalidationBroadcaster implements SmartLifecycle {
+	
+	private final InvalidationTransport transport;
+	private final String origin;
+	private final MeterRegistry meterRegistry;
+	private final Map<String, CoalescingCache<Integer, ?>> caches;
+	
+	private volatile boolean running;
+	
+	public CacheInvalidationBroadcaster(final InvalidationTransport transport, final String origin,
+			final List<CoalescingCache<Integer, ?>> caches, final MeterRegistry meterRegistry) {
+		this.transport = transport;
+		this.origin = origin;
+		this.meterRegistry = meterRegistry;
+		this.caches = caches.stream()
+				.collect(Collectors.toUnmodifiableMap(CoalescingCache::getName, Function.identity()));
+		this.caches.values().forEach(cache -> cache.addInvalidationListener(this::publish));
+	}
+	
+	public String getOrigin() {
+		return this.origin;
+	}
+	
+	private void publish(final String cacheName, final Integer key) {
+		if (!this.running)
+			return;
+		this.transport.publish(CacheInvalidation.builder()
+				.cacheName(cacheName)
+				.key(key)
+				.origin(this.origin)
+				.publishedAt(System.currentTimeMillis())
+				.build());
+		this.counter(cacheName, "published").increment();
+	}
+	
+	private void apply(final CacheInvalidation invalidation) {
+		if (this.origin.equals(invalidation.getOrigin()))
+			return;
+		final CoalescingCache<Integer, ?> cache = this.caches.get(invalidation.getCacheName());
+		if (cache == null) {
+			// e.g. published by a newer version with a cache this one does not have
+			log.debug("*** Ignoring invalidation for unknown cache {} *", invalidation.getCacheName());
+			return;
+		}
+		cache.applyRemoteInvalidation(invalidation.getKey());
+		
+		this.counter(cache.getName(), "received").increment();
+		Timer.builder("catalog.cache.invalidation.lag")
+				.description("Time from a commit on another replica until its invalidation is applied here")
+				.tag("cache", cache.getName())
+				.publishPercentileHistogram()
+				.register(this.meterRegistry)
+				.record(Math.max(0, System.currentTimeMillis() - invalidation.getPublishedAt()), TimeUnit.MILLISECONDS);
+	}
+	
+	private Counter counter(final String cacheName, final String direction) {
+		return Counter.builder("catalog.cache.invalidations")
+				.tag("cache", cacheName)
+				.tag("direction", direction)
+				.register(this.meterRegistry);
+	}
+	
+	@Override
+	public void start() {
+		this.transport.start(this::apply);
+		this.running = true;
+		log.info("*** Cache invalidation broadcaster started; origin={}, caches={} *", this.origin, this.caches.keySet());
+	}
+	
+	@Override
+	public void stop() {
+		this.running = false;
+		this.transport.stop();
+	}
+	
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,33 @@
+package com.selimhorri.app.cache.invalidation;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries cache invalidations between replicas. Delivery is at-least-once and may echo a replica's own
+ * invalidations back to it; the cache TTLs remain the backstop for anything a transport loses.
+ */
+public interface InvalidationTransport {
+	
+	/**
+	 * Must not block the caller on I/O; it runs right after the writing transaction commits.
+	 */
+	void publish(CacheInvalidation invalidation);
+	
+	void start(Consumer<CacheInvalidation> listener);
+	
+	/**
+	 * Flushes pending publications and stops delivering.
+	 */
+	void stop();
+	
+}
+
+
+
+
+
+
+
+
+
+
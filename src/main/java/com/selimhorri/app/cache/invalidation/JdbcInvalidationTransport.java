@@ -0,0 +1,206 @@
+package com.selimhorri.app.cache.invalidation;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Invalidation transport over the {@code cache_invalidations} table: publishers append a row, every replica
+ * polls for rows past the last id it has seen. Needs nothing but the catalog database.
+ *
+ * Identity values are handed out before commit, so a row can become visible after a higher id was already read.
+ * Skipped ids are therefore remembered for a grace period and asked for again on the following polls.
+ */
+@Slf4j
+public class JdbcInvalidationTransport implements InvalidationTransport, MeterBinder {
+	
+	private static final long GAP_GRACE_MILLIS = Duration.ofSeconds(10).toMillis();
+	private static final int MAX_TRACKED_GAPS = 1_000;
+	private static final Duration PURGE_INTERVAL = Duration.ofMinutes(1);
+	
+	private static final RowMapper<Row> ROW_MAPPER = (resultSet, rowNum) -> new Row(resultSet.getLong(1),
+			CacheInvalidation.builder()
+					.cacheName(resultSet.getString(2))
+					.key((Integer) resultSet.getObject(3))
+					.origin(resultSet.getString(4))
+					.publishedAt(resultSet.getLong(5))
+					.build());
+	
+	private static final String SELECT = "SELECT invalidation_id, cache_name, cache_key, origin, published_at "
+			+ "FROM cache_invalidations ";
+	
+	private final JdbcTemplate jdbcTemplate;
+	private final Duration pollInterval;
+	private final Duration retention;
+	private final int batchSize;
+	
+	/**
+	 * Publishing, polling and purging all run on this thread, one at a time.
+	 */
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "cache-invalidation");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	/**
+	 * Skipped ids and the time they were first missed; only touched from {@link #executor}.
+	 */
+	private final Map<Long, Long> gaps = new LinkedHashMap<>();
+	private long lastSeenId;
+	private long lastPurge;
+	
+	private final LongAdder publishFailures = new LongAdder();
+	private final LongAdder pollFailures = new LongAdder();
+	private final LongAdder abandonedGaps = new LongAdder();
+	
+	public JdbcInvalidationTransport(final JdbcTemplate jdbcTemplate, final Duration pollInterval,
+			final Duration retention, final int batchSize) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.pollInterval = pollInterval;
+		this.retention = retention;
+		this.batchSize = batchSize;
+	}
+	
+	@Override
+	public void publish(final CacheInvalidation invalidation) {
+		this.executor.execute(() -> {
+			try {
+				this.jdbcTemplate.update("INSERT INTO cache_invalidations (cache_name, cache_key, origin, published_at) "
+						+ "VALUES (?, ?, ?, ?)", invalidation.getCacheName(), invalidation.getKey(),
+						invalidation.getOrigin(), invalidation.getPublishedAt());
+			}
+			catch (DataAccessException e) {
+				// the other replicas fall back to their TTL for this one
+				this.publishFailures.increment();
+				log.warn("*** Could not publish cache invalidation {} *", invalidation, e);
+			}
+		});
+	}
+	
+	@Override
+	public void start(final Consumer<CacheInvalidation> listener) {
+		// Caches start empty, so older rows are of no interest
+		this.executor.execute(() -> this.lastSeenId = this.jdbcTemplate.queryForObject(
+				"SELECT COALESCE(MAX(invalidation_id), 0) FROM cache_invalidations", Long.class));
+		this.executor.scheduleWithFixedDelay(() -> this.poll(listener), this.pollInterval.toMillis(),
+				this.pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+		log.info("*** Polling cache invalidations every {} *", this.pollInterval);
+	}
+	
+	@Override
+	public void stop() {
+		this.executor.shutdown();
+		try {
+			if (!this.executor.awaitTermination(5, TimeUnit.SECONDS))
+				this.executor.shutdownNow();
+		}
+		catch (InterruptedException e) {
+			this.executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void poll(final Consumer<CacheInvalidation> listener) {
+		try {
+			final long now = System.currentTimeMillis();
+			if (!this.gaps.isEmpty())
+				this.pollGaps(listener, now);
+			
+			List<Row> rows;
+			do {
+				rows = this.jdbcTemplate.query(SELECT + "WHERE invalidation_id > ? ORDER BY invalidation_id LIMIT ?",
+						ROW_MAPPER, this.lastSeenId, this.batchSize);
+				for (final Row row : rows) {
+					for (long missing = this.lastSeenId + 1; missing < row.id
+							&& this.gaps.size() < MAX_TRACKED_GAPS; missing++)
+						this.gaps.put(missing, now);
+					this.lastSeenId = row.id;
+					listener.accept(row.invalidation);
+				}
+			}
+			while (rows.size() == this.batchSize);
+			
+			if (now - this.lastPurge >= PURGE_INTERVAL.toMillis()) {
+				this.lastPurge = now;
+				this.jdbcTemplate.update("DELETE FROM cache_invalidations WHERE published_at < ?",
+						now - this.retention.toMillis());
+			}
+		}
+		catch (RuntimeException e) {
+			// a scheduled task that throws is never run again
+			this.pollFailures.increment();
+			log.warn("*** Polling cache invalidations failed *", e);
+		}
+	}
+	
+	private void pollGaps(final Consumer<CacheInvalidation> listener, final long now) {
+		final String ids = this.gaps.keySet().stream().map(String::valueOf).collect(Collectors.joining(","));
+		for (final Row row : this.jdbcTemplate.query(SELECT + "WHERE invalidation_id IN (" + ids + ")", ROW_MAPPER)) {
+			this.gaps.remove(row.id);
+			listener.accept(row.invalidation);
+		}
+		// rolled back inserts leave gaps for good
+		for (final Iterator<Long> firstMissed = this.gaps.values().iterator(); firstMissed.hasNext();) {
+			if (now - firstMissed.next() > GAP_GRACE_MILLIS) {
+				firstMissed.remove();
+				this.abandonedGaps.increment();
+			}
+		}
+	}
+	
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		FunctionCounter.builder("catalog.cache.invalidation.failures", this.publishFailures, LongAdder::sum)
+				.tag("operation", "publish")
+				.register(registry);
+		FunctionCounter.builder("catalog.cache.invalidation.failures", this.pollFailures, LongAdder::sum)
+				.tag("operation", "poll")
+				.register(registry);
+		FunctionCounter.builder("catalog.cache.invalidation.gaps.abandoned", this.abandonedGaps, LongAdder::sum)
+				.description("Skipped invalidation ids that never showed up, normally rolled back inserts")
+				.register(registry);
+	}
+	
+	private static final class Row {
+		
+		private final long id;
+		private final CacheInvalidation invalidation;
+		
+		private Row(final long id, final CacheInvalidation invalidation) {
+			this.id = id;
+			this.invalidation = invalidation;
+		}
+		
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,33 @@
+package com.selimhorri.app.config.archive;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.selimhorri.app.archive.ProductArchiver;
+import com.selimhorri.app.repository.ArchivedProductRepository;
+import com.selimhorri.app.repository.CategoryRepository;
+import com.selimhorri.app.repository.ProductCatalogViewRepository;
+import com.selimhorri.app.repository.ProductRepository;
+
+@Configuration
+@EnableConfigurationProperties(ArchiveProperties.class)
+@ConditionalOnProperty(name = "app.archive.enabled", havingValue = "true", matchIfMissing = true)
+public class ArchiveConfig {
+	
+	@Bean
+	public ProductArchiver productArchiver(final ArchiveProperties properties,
+			final PlatformTransactionManager transactionManager, final ProductRepository productRepository,
+			final ProductCatalogViewRepository productCatalogViewRepository,
+			final ArchivedProductRepository archivedProductRepository, final CategoryRepository categoryRepository) {
+		return new ProductArchiver(new TransactionTemplate(transactionManager), productRepository,
+				productCatalogViewRepository, archivedProductRepository, categoryRepository, properties.getInterval(),
+				properties.getRetention(), properties.getBatchSize(), properties.getPause(), properties.getMaxPerRun());
+	}
+	
+	
+	
+}
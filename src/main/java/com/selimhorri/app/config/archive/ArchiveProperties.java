@@ -0,0 +1,42 @@
+package com.selimhorri.app.config.archive;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Archival of soft-deleted products, see {@code ProductArchiver}.
+ */
+@ConfigurationProperties(prefix = "app.archive")
+@Data
+public class ArchiveProperties {
+	
+	private boolean enabled = true;
+	
+	private Duration interval = Duration.ofHours(1);
+	
+	/**
+	 * Products soft-deleted longer ago than this are archived; until then they can still be restored with a PUT.
+	 */
+	private Duration retention = Duration.ofDays(30);
+	
+	/**
+	 * Products per transaction.
+	 */
+	private int batchSize = 500;
+	
+	/**
+	 * Between batches, so the job never takes the tables away from the requests.
+	 */
+	private Duration pause = Duration.ofMillis(200);
+	
+	/**
+	 * Products per run at most; the rest waits for the next run.
+	 */
+	private int maxPerRun = 50_000;
+	
+	
+	
+}
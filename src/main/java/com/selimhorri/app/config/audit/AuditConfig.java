@@ -0,0 +1,64 @@
+package com.selimhorri.app.config.audit;
+
+import java.util.function.Supplier;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.selimhorri.app.audit.AuditTrail;
+
+/**
+ * The trail is always declared, since the services record into it; with {@code app.audit.enabled=false} it records
+ * nothing.
+ */
+@Configuration
+@EnableConfigurationProperties(AuditProperties.class)
+public class AuditConfig {
+	
+	@Bean
+	public AuditTrail auditTrail(final AuditProperties properties, final JdbcTemplate jdbcTemplate,
+			final PlatformTransactionManager transactionManager) {
+		// Se escribe desde afterCommit, con la transacción de la petición todavía ligada al hilo
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		return new AuditTrail(jdbcTemplate, transactionTemplate, actor(properties.getActorHeader()),
+				properties.isEnabled(), properties.getDurability(), properties.getOverflow(),
+				properties.getCapacity(), properties.getBatchSize(), properties.getFlushInterval(),
+				properties.getOfferTimeout(), properties.getCommitTimeout());
+	}
+	
+	/**
+	 * The header of the current request; {@code null} outside of one (background jobs).
+	 */
+	private static Supplier<String> actor(final String header) {
+		return () -> {
+			final RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+			if (!(attributes instanceof ServletRequestAttributes))
+				return null;
+			final HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+			return request.getHeader(header);
+		};
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,70 @@
+package com.selimhorri.app.config.audit;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import com.selimhorri.app.audit.AuditTrail;
+
+import lombok.Data;
+
+/**
+ * Audit trail of catalog writes, see {@code AuditTrail}.
+ */
+@ConfigurationProperties(prefix = "app.audit")
+@Data
+public class AuditProperties {
+	
+	private boolean enabled = true;
+	
+	/**
+	 * {@code PERIODIC}: written in the background, up to {@link #flushInterval} late. {@code COMMIT}: the write
+	 * returns once its entries are written.
+	 */
+	private AuditTrail.Durability durability = AuditTrail.Durability.PERIODIC;
+	
+	/**
+	 * With the queue full, {@code BLOCK} makes the writer wait and then write its entries itself; {@code DROP} drops
+	 * them.
+	 */
+	private AuditTrail.Overflow overflow = AuditTrail.Overflow.BLOCK;
+	
+	/**
+	 * Entries queued at most.
+	 */
+	private int capacity = 10_000;
+	
+	/**
+	 * Entries per JDBC batch.
+	 */
+	private int batchSize = 200;
+	
+	private Duration flushInterval = Duration.ofMillis(500);
+	
+	/**
+	 * Longest wait for room in a full queue, with {@code BLOCK}.
+	 */
+	private Duration offerTimeout = Duration.ofMillis(200);
+	
+	/**
+	 * Longest wait for the entries to be written, with {@code COMMIT}; past it they stay queued.
+	 */
+	private Duration commitTimeout = Duration.ofSeconds(1);
+	
+	/**
+	 * Request header naming who makes the change, set by the gateway; entries without it have no actor.
+	 */
+	private String actorHeader = "X-User-Id";
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,72 @@
+package com.selimhorri.app.config.cache;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import com.selimhorri.app.cache.CoalescingCache;
+import com.selimhorri.app.dto.CategoryDto;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.hotkey.HotKeys;
+
+@Configuration
+@EnableConfigurationProperties(CacheProperties.class)
+public class CacheConfig {
+	
+	private final CacheProperties cacheProperties;
+	
+	/**
+	 * Not a bean on purpose: an {@code Executor} bean would switch off Boot's {@code applicationTaskExecutor}.
+	 */
+	private final ThreadPoolTaskExecutor cacheRefreshExecutor = new ThreadPoolTaskExecutor();
+	
+	public CacheConfig(final CacheProperties cacheProperties) {
+		this.cacheProperties = cacheProperties;
+		this.cacheRefreshExecutor.setThreadNamePrefix("cache-refresh-");
+		this.cacheRefreshExecutor.setCorePoolSize(cacheProperties.getRefreshThreads());
+		this.cacheRefreshExecutor.setMaxPoolSize(cacheProperties.getRefreshThreads());
+		this.cacheRefreshExecutor.setQueueCapacity(1_000);
+		this.cacheRefreshExecutor.setDaemon(true);
+		this.cacheRefreshExecutor.initialize();
+	}
+	
+	/**
+	 * Hot products (by {@link HotKeys}) are the last evicted, so flash-sale items stay resident when the cache is full.
+	 */
+	@Bean
+	public CoalescingCache<Integer, ProductDto> productDtoCache(final HotKeys hotKeys) {
+		final CacheProperties.Spec spec = this.cacheProperties.getProducts();
+		final CoalescingCache<Integer, ProductDto> cache = new CoalescingCache<>("products", spec.getRefreshAfter(),
+				spec.getExpireAfter(), spec.getMaximumSize(), this.cacheRefreshExecutor);
+		cache.setFrequency(hotKeys::productFrequency);
+		return cache;
+	}
+	
+	@Bean
+	public CoalescingCache<Integer, CategoryDto> categoryDtoCache() {
+		final CacheProperties.Spec spec = this.cacheProperties.getCategories();
+		return new CoalescingCache<>("categories", spec.getRefreshAfter(), spec.getExpireAfter(),
+				spec.getMaximumSize(), this.cacheRefreshExecutor);
+	}
+	
+	@PreDestroy
+	public void shutdownRefreshExecutor() {
+		this.cacheRefreshExecutor.shutdown();
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
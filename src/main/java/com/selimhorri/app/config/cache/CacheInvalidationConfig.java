@@ -0,0 +1,56 @@
+package com.selimhorri.app.config.cache;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.selimhorri.app.cache.CoalescingCache;
+import com.selimhorri.app.cache.invalidation.CacheInvalidationBroadcaster;
+import com.selimhorri.app.cache.invalidation.InvalidationTransport;
+import com.selimhorri.app.cache.invalidation.JdbcInvalidationTransport;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Configuration
+@ConditionalOnProperty(name = "app.cache.invalidation.enabled", havingValue = "true", matchIfMissing = true)
+public class CacheInvalidationConfig {
+	
+	@Bean
+	@ConditionalOnMissingBean(InvalidationTransport.class)
+	public JdbcInvalidationTransport jdbcInvalidationTransport(final JdbcTemplate jdbcTemplate,
+			final CacheProperties cacheProperties) {
+		final CacheProperties.Invalidation invalidation = cacheProperties.getInvalidation();
+		return new JdbcInvalidationTransport(jdbcTemplate, invalidation.getPollInterval(),
+				invalidation.getRetention(), invalidation.getBatchSize());
+	}
+	
+	@Bean
+	public CacheInvalidationBroadcaster cacheInvalidationBroadcaster(final InvalidationTransport invalidationTransport,
+			final List<CoalescingCache<Integer, ?>> caches,
+			final Environment environment,
+			final MeterRegistry meterRegistry) {
+		// Unique per start, so a restarted replica never mistakes the invalidations of its predecessor for its own
+		final String origin = environment.getProperty("spring.application.name", "product-service")
+				+ "-" + UUID.randomUUID();
+		return new CacheInvalidationBroadcaster(invalidationTransport, origin, caches, meterRegistry);
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
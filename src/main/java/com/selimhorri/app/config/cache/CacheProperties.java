@@ -0,0 +1,75 @@
+package com.selimhorri.app.config.cache;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+@ConfigurationProperties(prefix = "app.cache")
+@Data
+public class CacheProperties {
+	
+	private Spec products = new Spec();
+	private Spec categories = new Spec();
+	
+	/**
+	 * Threads refreshing stale entries in the background, shared by all caches.
+	 */
+	private int refreshThreads = 2;
+	
+	private Invalidation invalidation = new Invalidation();
+	
+	@Data
+	public static class Spec {
+		
+		/**
+		 * Age after which an entry is still served but reloaded in the background.
+		 */
+		private Duration refreshAfter = Duration.ofSeconds(30);
+		
+		/**
+		 * Age after which an entry is no longer served.
+		 */
+		private Duration expireAfter = Duration.ofMinutes(5);
+		
+		private int maximumSize = 10_000;
+		
+	}
+	
+	/**
+	 * Broadcast of invalidations between replicas; the default transport polls the {@code cache_invalidations}
+	 * table. Declaring another {@code InvalidationTransport} bean replaces it.
+	 */
+	@Data
+	public static class Invalidation {
+		
+		private boolean enabled = true;
+		
+		private Duration pollInterval = Duration.ofMillis(500);
+		
+		/**
+		 * Age after which published invalidations are purged from the table.
+		 */
+		private Duration retention = Duration.ofHours(1);
+		
+		/**
+		 * Maximum rows read per poll query.
+		 */
+		private int batchSize = 500;
+		
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
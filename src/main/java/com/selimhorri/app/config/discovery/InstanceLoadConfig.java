@@ -0,0 +1,82 @@
+package com.selimhorri.app.config.discovery;
+
+import java.sql.SQLException;
+import java.util.function.DoubleSupplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.selimhorri.app.discovery.InstanceLoad;
+import com.selimhorri.app.discovery.InstanceLoadFilter;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+@Configuration
+@EnableConfigurationProperties(InstanceLoadProperties.class)
+@ConditionalOnProperty(name = "app.instance-load.enabled", havingValue = "true", matchIfMissing = true)
+public class InstanceLoadConfig {
+	
+	/**
+	 * Without Eureka ({@code eureka.client.enabled=false}) the load is still sampled, just never published.
+	 */
+	@Bean
+	public InstanceLoad instanceLoad(final InstanceLoadProperties properties, final DataSource dataSource,
+			final ObjectProvider<ApplicationInfoManager> applicationInfoManager) {
+		return new InstanceLoad(properties.getSampleInterval(), properties.getPublishInterval(),
+				properties.getSmoothing(), properties.getMinChange(), poolSaturation(dataSource),
+				applicationInfoManager);
+	}
+	
+	/**
+	 * Right after load shedding, so rejected requests count neither as load nor as latency.
+	 */
+	@Bean
+	public FilterRegistrationBean<InstanceLoadFilter> instanceLoadFilter(final InstanceLoad instanceLoad) {
+		final FilterRegistrationBean<InstanceLoadFilter> registration =
+				new FilterRegistrationBean<>(new InstanceLoadFilter(instanceLoad));
+		registration.addUrlPatterns("/api/*");
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 11);
+		return registration;
+	}
+	
+	/**
+	 * Connections in use plus threads waiting for one, over the pool size; 0 when the pool is not Hikari or not
+	 * started yet.
+	 */
+	private static DoubleSupplier poolSaturation(final DataSource dataSource) {
+		return () -> {
+			try {
+				if (!dataSource.isWrapperFor(HikariDataSource.class))
+					return 0;
+				final HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+				final HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+				return pool == null ? 0
+						: (double) (pool.getActiveConnections() + pool.getThreadsAwaitingConnection())
+								/ hikari.getMaximumPoolSize();
+			}
+			catch (SQLException e) {
+				return 0;
+			}
+		};
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,50 @@
+package com.selimhorri.app.config.discovery;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Load published in the Eureka metadata of the instance, see {@code InstanceLoad}.
+ */
+@ConfigurationProperties(prefix = "app.instance-load")
+@Data
+public class InstanceLoadProperties {
+	
+	private boolean enabled = true;
+	
+	/**
+	 * Time between samples folded into the moving averages.
+	 */
+	private Duration sampleInterval = Duration.ofSeconds(1);
+	
+	/**
+	 * Shortest time between metadata updates; Eureka only sends them every
+	 * {@code eureka.client.instance-info-replication-interval-seconds} anyway.
+	 */
+	private Duration publishInterval = Duration.ofSeconds(10);
+	
+	/**
+	 * Weight of a new sample against the moving average, from 0 to 1.
+	 */
+	private double smoothing = 0.3;
+	
+	/**
+	 * Relative change of some value below which the metadata is not published again.
+	 */
+	private double minChange = 0.1;
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,27 @@
+package com.selimhorri.app.config.hotkey;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.selimhorri.app.hotkey.HotKeys;
+import com.selimhorri.app.hotkey.HotKeysEndpoint;
+
+@Configuration
+@EnableConfigurationProperties(HotKeyProperties.class)
+public class HotKeyConfig {
+	
+	@Bean
+	public HotKeys hotKeys(final HotKeyProperties properties) {
+		return new HotKeys(properties.isEnabled(), properties.getWidth(), properties.getDepth(), properties.getTop(),
+				properties.getDecayInterval(), properties.getMetricsTop());
+	}
+	
+	@Bean
+	public HotKeysEndpoint hotKeysEndpoint(final HotKeys hotKeys) {
+		return new HotKeysEndpoint(hotKeys);
+	}
+	
+	
+	
+}
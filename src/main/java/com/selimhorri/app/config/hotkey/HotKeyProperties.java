@@ -0,0 +1,42 @@
+package com.selimhorri.app.config.hotkey;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+@ConfigurationProperties(prefix = "app.hot-keys")
+@Data
+public class HotKeyProperties {
+	
+	/**
+	 * Off: nothing is counted and the product cache evicts by age only.
+	 */
+	private boolean enabled = true;
+	
+	/**
+	 * Counters per sketch row, rounded up to a power of two; well above the number of ids that are hot at once.
+	 */
+	private int width = 8_192;
+	
+	private int depth = 4;
+	
+	/**
+	 * Hot products and categories tracked for {@code /actuator/hotkeys}.
+	 */
+	private int top = 100;
+	
+	/**
+	 * Of those, exported as gauges (one time series per id).
+	 */
+	private int metricsTop = 10;
+	
+	/**
+	 * All frequencies are halved this often.
+	 */
+	private Duration decayInterval = Duration.ofMinutes(1);
+	
+	
+	
+}
@@ -0,0 +1,58 @@
+package com.selimhorri.app.config.index;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.selimhorri.app.cache.CoalescingCache;
+import com.selimhorri.app.dto.CategoryDto;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.index.CatalogIndexMaintainer;
+import com.selimhorri.app.index.CatalogSnapshotStore;
+
+@Configuration
+@EnableConfigurationProperties(CatalogSnapshotProperties.class)
+public class CatalogIndexConfig {
+	
+	@Bean
+	public CatalogIndexMaintainer catalogIndexMaintainer(final JdbcTemplate jdbcTemplate,
+			final CoalescingCache<Integer, ProductDto> productDtoCache,
+			final CoalescingCache<Integer, CategoryDto> categoryDtoCache,
+			final ObjectProvider<CatalogSnapshotStore> catalogSnapshotStore) {
+		return new CatalogIndexMaintainer(jdbcTemplate, productDtoCache, categoryDtoCache,
+				catalogSnapshotStore.getIfAvailable());
+	}
+	
+	@Bean
+	@ConditionalOnProperty(name = "app.catalog.snapshot.enabled", havingValue = "true", matchIfMissing = true)
+	public CatalogSnapshotStore catalogSnapshotStore(final JdbcTemplate jdbcTemplate,
+			final CatalogSnapshotProperties properties, final ObjectProvider<Flyway> flyway) {
+		return new CatalogSnapshotStore(jdbcTemplate, () -> databaseIdentity(jdbcTemplate, flyway.getIfAvailable()),
+				properties.getDirectory(), properties.getInterval(), properties.getCatchUpMargin(),
+				properties.getMaxAge(), properties.getKeep());
+	}
+	
+	/**
+	 * JDBC URL, when the first migration was applied and checksum of the latest one: the same URL in another
+	 * environment, or a database recreated under the same URL (the in-memory one of a build), tells apart.
+	 */
+	private static String databaseIdentity(final JdbcTemplate jdbcTemplate, final Flyway flyway) {
+		final String url = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+				connection.getMetaData().getURL());
+		if (flyway == null)
+			return url;
+		final MigrationInfo[] applied = flyway.info().applied();
+		if (applied.length == 0)
+			return url;
+		return url + " " + applied[0].getInstalledOn().getTime() + " " + applied[applied.length - 1].getChecksum();
+	}
+	
+	
+	
+}
@@ -0,0 +1,44 @@
+package com.selimhorri.app.config.index;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Local catalog snapshot, see {@code CatalogSnapshotStore}.
+ */
+@ConfigurationProperties(prefix = "app.catalog.snapshot")
+@Data
+public class CatalogSnapshotProperties {
+	
+	private boolean enabled = true;
+	
+	/**
+	 * Local directory of the snapshot files; a volume that survives restarts in production.
+	 */
+	private Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "product-service", "snapshot");
+	
+	private Duration interval = Duration.ofMinutes(10);
+	
+	/**
+	 * Changes are caught up from this long before the snapshot watermark, for transactions that committed late.
+	 */
+	private Duration catchUpMargin = Duration.ofMinutes(1);
+	
+	/**
+	 * Older snapshots are not used; the next one reads the whole catalog again.
+	 */
+	private Duration maxAge = Duration.ofHours(24);
+	
+	/**
+	 * Snapshot files kept on disk, at least 2.
+	 */
+	private int keep = 3;
+	
+	
+	
+}
@@ -0,0 +1,40 @@
+package com.selimhorri.app.config.inventory;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.selimhorri.app.cache.CoalescingCache;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.inventory.StripedStock;
+import com.selimhorri.app.repository.ProductCatalogViewRepository;
+import com.selimhorri.app.repository.ProductStockRepository;
+
+@Configuration
+@EnableConfigurationProperties(InventoryProperties.class)
+public class InventoryConfig {
+	
+	@Bean
+	public StripedStock stripedStock(final InventoryProperties properties,
+			final PlatformTransactionManager transactionManager, final ProductStockRepository productStockRepository,
+			final ProductCatalogViewRepository productCatalogViewRepository,
+			final CoalescingCache<Integer, ProductDto> productDtoCache) {
+		return new StripedStock(new TransactionTemplate(transactionManager), productStockRepository,
+				productCatalogViewRepository, productDtoCache, properties.getRebalanceInterval());
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,38 @@
+package com.selimhorri.app.config.inventory;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Striped stock of hot products, see {@code StripedStock}.
+ */
+@ConfigurationProperties(prefix = "app.inventory")
+@Data
+public class InventoryProperties {
+	
+	/**
+	 * Between rebalancing passes; also how long {@code ProductDto.quantity} of a striped product may lag its stripes.
+	 */
+	private Duration rebalanceInterval = Duration.ofSeconds(1);
+	
+	/**
+	 * Stripes of a product at most; each is a row that one decrement at a time can lock.
+	 */
+	private int maxStripes = 64;
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -6,14 +6,21 @@ import org.springframework.context.annotation.Configuration;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 
 @Configuration
 public class MapperConfig {
 	
+	/**
+	 * The DTOs carry {@code @JsonFilter}s for {@code ?fields=}; unless a response sets its own, everything is written.
+	 */
 	@Bean
 	public ObjectMapper objectMapperBean() {
 		return new JsonMapper()
-				.enable(SerializationFeature.INDENT_OUTPUT);
+				.enable(SerializationFeature.INDENT_OUTPUT)
+				.setFilterProvider(new SimpleFilterProvider()
+						.setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
 	}
 	
 	
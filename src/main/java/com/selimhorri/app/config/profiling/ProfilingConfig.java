@@ -0,0 +1,30 @@
+package com.selimhorri.app.config.profiling;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.selimhorri.app.profiling.JfrProfiler;
+import com.selimhorri.app.profiling.ProfilingEndpoint;
+
+@Configuration
+@EnableConfigurationProperties(ProfilingProperties.class)
+@ConditionalOnProperty(name = "app.profiling.enabled", havingValue = "true", matchIfMissing = true)
+public class ProfilingConfig {
+	
+	@Bean
+	public JfrProfiler jfrProfiler(final ProfilingProperties properties) {
+		return new JfrProfiler(properties.getDirectory(), properties.getDefaultDuration(), properties.getMaxDuration(),
+				properties.getMaxConcurrent(), properties.getMaxSize().toBytes(), properties.getKeep(),
+				properties.getFramePrefix(), properties.getTop());
+	}
+	
+	@Bean
+	public ProfilingEndpoint profilingEndpoint(final JfrProfiler jfrProfiler) {
+		return new ProfilingEndpoint(jfrProfiler);
+	}
+	
+	
+	
+}
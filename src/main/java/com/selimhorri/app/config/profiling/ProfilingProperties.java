@@ -0,0 +1,57 @@
+package com.selimhorri.app.config.profiling;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import lombok.Data;
+
+@ConfigurationProperties(prefix = "app.profiling")
+@Data
+public class ProfilingProperties {
+	
+	private boolean enabled = true;
+	
+	/**
+	 * Where recordings are written; local disk of the instance.
+	 */
+	private Path directory = Paths.get(System.getProperty("java.io.tmpdir"), "product-service", "profiling");
+	
+	/**
+	 * When the request gives none.
+	 */
+	private Duration defaultDuration = Duration.ofSeconds(30);
+	
+	private Duration maxDuration = Duration.ofMinutes(5);
+	
+	/**
+	 * Recordings running at the same time; further requests get a 429.
+	 */
+	private int maxConcurrent = 1;
+	
+	/**
+	 * Disk used by one recording; the oldest data is dropped beyond it.
+	 */
+	private DataSize maxSize = DataSize.ofMegabytes(64);
+	
+	/**
+	 * Finished recordings kept, with their files.
+	 */
+	private int keep = 5;
+	
+	/**
+	 * Events are attributed to the first frame of a class starting with this prefix.
+	 */
+	private String framePrefix = "com.selimhorri.app";
+	
+	/**
+	 * Entries per list of the summary.
+	 */
+	private int top = 20;
+	
+	
+	
+}
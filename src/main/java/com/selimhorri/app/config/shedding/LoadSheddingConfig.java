@@ -0,0 +1,112 @@
+package com.selimhorri.app.config.shedding;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selimhorri.app.shedding.AdaptiveConcurrencyLimiter;
+import com.selimhorri.app.shedding.EndpointGroup;
+import com.selimhorri.app.shedding.LoadSheddingFilter;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Configuration
+@EnableConfigurationProperties(LoadSheddingProperties.class)
+@ConditionalOnProperty(name = "app.load-shedding.enabled", havingValue = "true", matchIfMissing = true)
+public class LoadSheddingConfig {
+	
+	@Bean
+	public FilterRegistrationBean<LoadSheddingFilter> loadSheddingFilter(
+			final LoadSheddingProperties loadSheddingProperties,
+			final BulkheadRegistry bulkheadRegistry,
+			final CircuitBreakerRegistry circuitBreakerRegistry,
+			final DataSource dataSource,
+			final ObjectMapper objectMapper,
+			final MeterRegistry meterRegistry) {
+		
+		final IntSupplier poolWaiters = poolWaiters(dataSource);
+		final List<EndpointGroup> groups = loadSheddingProperties.getGroups().entrySet().stream()
+				.map(entry -> {
+					final var group = entry.getValue();
+					final var adaptive = group.getAdaptive();
+					final AdaptiveConcurrencyLimiter limiter = !adaptive.isEnabled() ? null
+							: new AdaptiveConcurrencyLimiter(adaptive.getInitialLimit(), adaptive.getMinLimit(),
+									adaptive.getMaxLimit(), adaptive.getSmoothing(), adaptive.getTolerance(),
+									adaptive.getPoolBackoff(), adaptive.getWindowSize(),
+									adaptive.getWindow().toNanos(), poolWaiters);
+					if (limiter != null) {
+						Gauge.builder("catalog.shedding.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+								.description("Current adaptive concurrency limit")
+								.tag("group", entry.getKey())
+								.register(meterRegistry);
+						Gauge.builder("catalog.shedding.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+								.tag("group", entry.getKey())
+								.register(meterRegistry);
+					}
+					return EndpointGroup.builder()
+							.name(entry.getKey())
+							.methods(group.getMethods().stream().map(String::toUpperCase).collect(Collectors.toSet()))
+							.patterns(group.getPatterns())
+							.limiter(limiter)
+							.bulkhead(StringUtils.hasText(group.getBulkhead())
+									? bulkheadRegistry.bulkhead(group.getBulkhead()) : null)
+							.circuitBreaker(StringUtils.hasText(group.getCircuitBreaker())
+									? circuitBreakerRegistry.circuitBreaker(group.getCircuitBreaker()) : null)
+							.build();
+				})
+				.collect(Collectors.toUnmodifiableList());
+		
+		final var registration = new FilterRegistrationBean<>(new LoadSheddingFilter(groups,
+				loadSheddingProperties.getRetryAfter(), objectMapper, meterRegistry));
+		// right after the tracing filter, so rejected requests are still traced
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+		return registration;
+	}
+	
+	/**
+	 * Threads waiting for a Hikari connection; 0 when the pool is not Hikari or not started yet.
+	 */
+	private static IntSupplier poolWaiters(final DataSource dataSource) {
+		return () -> {
+			try {
+				if (!dataSource.isWrapperFor(HikariDataSource.class))
+					return 0;
+				final HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+				return pool == null ? 0 : pool.getThreadsAwaitingConnection();
+			}
+			catch (SQLException e) {
+				return 0;
+			}
+		};
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
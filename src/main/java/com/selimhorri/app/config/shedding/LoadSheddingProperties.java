@@ -0,0 +1,103 @@
+package com.selimhorri.app.config.shedding;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Endpoint groups matched in declaration order; a request takes the first group whose method and path match.
+ */
+@ConfigurationProperties(prefix = "app.load-shedding")
+@Data
+public class LoadSheddingProperties {
+	
+	private boolean enabled = true;
+	
+	/**
+	 * Value of the {@code Retry-After} header of rejected requests.
+	 */
+	private Duration retryAfter = Duration.ofSeconds(1);
+	
+	private Map<String, Group> groups = new LinkedHashMap<>();
+	
+	@Data
+	public static class Group {
+		
+		/**
+		 * HTTP methods of the group; empty matches any method.
+		 */
+		private List<String> methods = new ArrayList<>();
+		
+		/**
+		 * Ant-style paths within the application, e.g. {@code /api/products/**}.
+		 */
+		private List<String> patterns = new ArrayList<>();
+		
+		/**
+		 * Name of a {@code resilience4j.bulkhead.instances} entry; none when empty.
+		 */
+		private String bulkhead;
+		
+		/**
+		 * Name of a {@code resilience4j.circuitbreaker.instances} entry; none when empty.
+		 */
+		private String circuitBreaker;
+		
+		private Adaptive adaptive = new Adaptive();
+		
+	}
+	
+	@Data
+	public static class Adaptive {
+		
+		private boolean enabled = true;
+		private int initialLimit = 50;
+		private int minLimit = 8;
+		private int maxLimit = 500;
+		
+		/**
+		 * Weight of a new limit estimate against the current limit.
+		 */
+		private double smoothing = 0.2;
+		
+		/**
+		 * Tolerated ratio of recent to baseline latency before the limit shrinks.
+		 */
+		private double tolerance = 1.5;
+		
+		/**
+		 * Minimum relative decrease of the limit while requests wait for a DB connection.
+		 */
+		private double poolBackoff = 0.1;
+		
+		/**
+		 * Latency samples per limit update.
+		 */
+		private int windowSize = 50;
+		
+		/**
+		 * Longest time between limit updates while traffic is too low to fill a window.
+		 */
+		private Duration window = Duration.ofSeconds(1);
+		
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,135 @@
+package com.selimhorri.app.config.slowquery;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.selimhorri.app.slowquery.QueryOriginInterceptor;
+import com.selimhorri.app.slowquery.RepositoryOriginInterceptor;
+import com.selimhorri.app.slowquery.SlowQueryEndpoint;
+import com.selimhorri.app.slowquery.SlowQueryListener;
+import com.selimhorri.app.slowquery.SlowQueryLog;
+import com.selimhorri.app.timing.RequestTiming;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+
+@Configuration
+@EnableConfigurationProperties(SlowQueryProperties.class)
+@ConditionalOnProperty(name = "app.slow-query.enabled", havingValue = "true", matchIfMissing = true)
+public class SlowQueryConfig implements WebMvcConfigurer {
+	
+	/**
+	 * Wraps the pool in a datasource-proxy {@link ProxyDataSource}, which still unwraps to the pool. The listener is
+	 * picked up once created, the statements run before (migrations, Hibernate bootstrap) are not reported: looking it
+	 * up from a statement would create its meter registry, and every binder of it, halfway through the migrations.
+	 * Statements are also timed into the {@link RequestTiming} of sampled requests.
+	 */
+	@Bean
+	public static BeanPostProcessor slowQueryDataSourceProxyPostProcessor() {
+		final AtomicReference<SlowQueryListener> slowQueryListener = new AtomicReference<>();
+		return new BeanPostProcessor() {
+			
+			@Override
+			public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+				if (bean instanceof SlowQueryListener)
+					slowQueryListener.set((SlowQueryListener) bean);
+				if (!(bean instanceof DataSource) || bean instanceof ProxyDataSource)
+					return bean;
+				return ProxyDataSourceBuilder.create((DataSource) bean)
+						.name(beanName)
+						.listener(new QueryExecutionListener() {
+							
+							@Override
+							public void beforeQuery(final ExecutionInfo execInfo, final List<QueryInfo> queryInfoList) {
+								RequestTiming.statementStarted();
+							}
+							
+							@Override
+							public void afterQuery(final ExecutionInfo execInfo, final List<QueryInfo> queryInfoList) {
+								RequestTiming.statementEnded();
+								final SlowQueryListener listener = slowQueryListener.get();
+								if (listener != null)
+									listener.afterQuery(execInfo, queryInfoList);
+							}
+							
+						})
+						.build();
+			}
+			
+		};
+	}
+	
+	/**
+	 * Same extension point as Boot's repository metrics: an advice on every repository proxy.
+	 */
+	@Bean
+	public static BeanPostProcessor repositoryOriginPostProcessor() {
+		return new BeanPostProcessor() {
+			
+			@Override
+			public Object postProcessBeforeInitialization(final Object bean, final String beanName) {
+				if (bean instanceof RepositoryFactoryBeanSupport)
+					((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(factory ->
+							factory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) ->
+									proxyFactory.addAdvice(new RepositoryOriginInterceptor(
+											repositoryInformation.getRepositoryInterface()))));
+				return bean;
+			}
+			
+		};
+	}
+	
+	@Bean
+	public SlowQueryLog slowQueryLog(final SlowQueryProperties slowQueryProperties) {
+		return new SlowQueryLog(slowQueryProperties.getCapacity());
+	}
+	
+	@Bean(destroyMethod = "shutdown")
+	public SlowQueryListener slowQueryListener(final DataSource dataSource, final SlowQueryLog slowQueryLog,
+			final MeterRegistry meterRegistry, final SlowQueryProperties slowQueryProperties) {
+		return new SlowQueryListener(unproxied(dataSource), slowQueryLog, meterRegistry, slowQueryProperties.getThreshold(),
+				slowQueryProperties.getParameters(), slowQueryProperties.getMaxParameterLength(),
+				slowQueryProperties.isExplain(), slowQueryProperties.getPlanTtl());
+	}
+	
+	/**
+	 * EXPLAIN goes around the proxy, so plans are neither timed nor reported; the proxy unwraps to the pool.
+	 */
+	private static DataSource unproxied(final DataSource dataSource) {
+		try {
+			return dataSource instanceof ProxyDataSource ? dataSource.unwrap(DataSource.class) : dataSource;
+		}
+		catch (SQLException e) {
+			return dataSource;
+		}
+	}
+	
+	@Bean
+	public SlowQueryEndpoint slowQueryEndpoint(final SlowQueryLog slowQueryLog) {
+		return new SlowQueryEndpoint(slowQueryLog);
+	}
+	
+	@Override
+	public void addInterceptors(final InterceptorRegistry registry) {
+		registry.addInterceptor(new QueryOriginInterceptor()).addPathPatterns("/api/**");
+	}
+	
+	
+	
+}
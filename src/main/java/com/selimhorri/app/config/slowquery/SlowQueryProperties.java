@@ -0,0 +1,47 @@
+package com.selimhorri.app.config.slowquery;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import com.selimhorri.app.slowquery.SlowQueryListener.ParameterMode;
+
+import lombok.Data;
+
+@ConfigurationProperties(prefix = "app.slow-query")
+@Data
+public class SlowQueryProperties {
+	
+	private boolean enabled = true;
+	
+	/**
+	 * Statements taking at least this long are logged and kept.
+	 */
+	private Duration threshold = Duration.ofMillis(200);
+	
+	/**
+	 * How bind parameters are shown: {@code values} (truncated), {@code types} only, or {@code none}. Values may be
+	 * customer data, so only dev shows them.
+	 */
+	private ParameterMode parameters = ParameterMode.TYPES;
+	
+	private int maxParameterLength = 64;
+	
+	/**
+	 * Run {@code EXPLAIN} for slow {@code SELECT}s.
+	 */
+	private boolean explain = true;
+	
+	/**
+	 * A plan is reused for the same SQL for this long.
+	 */
+	private Duration planTtl = Duration.ofMinutes(5);
+	
+	/**
+	 * Slow queries kept for {@code /actuator/slowqueries}.
+	 */
+	private int capacity = 200;
+	
+	
+	
+}
@@ -0,0 +1,76 @@
+package com.selimhorri.app.config.startup;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.hbm2ddl.SchemaValidator;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.LivenessState;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Replacement for {@code ddl-auto: validate} in the fast-startup profile: captures the Hibernate metadata while
+ * the session factory is built and validates it against the database on a background thread once the
+ * application is ready. A mismatch marks the application as broken so the liveness probe restarts it, which is
+ * what an eager validation failure would have done.
+ */
+@Slf4j
+public class BackgroundSchemaValidator implements Integrator, ApplicationListener<ApplicationReadyEvent> {
+	
+	private volatile Metadata metadata;
+	private volatile SessionFactoryServiceRegistry serviceRegistry;
+	
+	@Override
+	public void integrate(final Metadata metadata, final SessionFactoryImplementor sessionFactory,
+			final SessionFactoryServiceRegistry serviceRegistry) {
+		this.metadata = metadata;
+		this.serviceRegistry = serviceRegistry;
+	}
+	
+	@Override
+	public void disintegrate(final SessionFactoryImplementor sessionFactory,
+			final SessionFactoryServiceRegistry serviceRegistry) {
+		this.metadata = null;
+		this.serviceRegistry = null;
+	}
+	
+	@Override
+	public void onApplicationEvent(final ApplicationReadyEvent event) {
+		final var thread = new Thread(() -> this.validate(event), "schema-validator");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	private void validate(final ApplicationReadyEvent event) {
+		if (this.metadata == null) {
+			log.warn("*** Hibernate metadata not captured; schema validation skipped *");
+			return;
+		}
+		final long start = System.nanoTime();
+		try {
+			new SchemaValidator().validate(this.metadata, this.serviceRegistry);
+			log.info("*** Schema validated in background in {} ms *", (System.nanoTime() - start) / 1_000_000);
+		}
+		catch (RuntimeException e) {
+			log.error("*** Background schema validation failed *", e);
+			AvailabilityChangeEvent.publish(event.getApplicationContext(), LivenessState.BROKEN);
+		}
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
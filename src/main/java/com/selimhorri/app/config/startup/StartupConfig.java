@@ -0,0 +1,68 @@
+package com.selimhorri.app.config.startup;
+
+import java.util.List;
+
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.web.bind.annotation.RestController;
+
+@Configuration
+@EnableConfigurationProperties(WarmupProperties.class)
+public class StartupConfig {
+	
+	/**
+	 * With {@code spring.main.lazy-initialization} only infrastructure is deferred: controllers and services
+	 * stay eager so the first request after readiness does not pay for their creation.
+	 */
+	@Bean
+	public static LazyInitializationExcludeFilter requestPathLazyInitializationExcludeFilter() {
+		return (beanName, beanDefinition, beanType) -> beanType != null
+				&& (AnnotatedElementUtils.hasAnnotation(beanType, RestController.class)
+						|| AnnotatedElementUtils.hasAnnotation(beanType, Service.class));
+	}
+	
+	@Bean
+	@ConditionalOnProperty(name = "app.startup.background-schema-validation", havingValue = "true")
+	public BackgroundSchemaValidator backgroundSchemaValidator() {
+		return new BackgroundSchemaValidator();
+	}
+	
+	@Bean
+	@ConditionalOnProperty(name = "app.startup.background-schema-validation", havingValue = "true")
+	public HibernatePropertiesCustomizer schemaValidatorIntegratorCustomizer(
+			final BackgroundSchemaValidator backgroundSchemaValidator) {
+		return properties -> properties.put("hibernate.integrator_provider",
+				(IntegratorProvider) () -> List.of(backgroundSchemaValidator));
+	}
+	/**
+	 * Training runs (e.g. the AppCDS class list recording in the Dockerfile) stop as soon as the context is ready.
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "app.startup.exit-after-ready", havingValue = "true")
+	public ApplicationListener<ApplicationReadyEvent> trainingRunExitListener() {
+		return event -> System.exit(SpringApplication.exit(event.getApplicationContext()));
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,84 @@
+package com.selimhorri.app.config.startup;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline.TimelineEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep.Tag;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Summarizes the buffered startup timeline once the application is ready: total time as a gauge and the
+ * slowest bean instantiations in the log. The full per-bean timeline is served by the actuator
+ * {@code startup} endpoint.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class StartupTimelineReporter implements ApplicationListener<ApplicationReadyEvent> {
+	
+	private final ApplicationStartup applicationStartup;
+	private final MeterRegistry meterRegistry;
+	
+	@Value("${app.startup.report-slowest-beans:10}")
+	private int slowestBeans;
+	
+	@Override
+	public void onApplicationEvent(final ApplicationReadyEvent event) {
+		if (!(this.applicationStartup instanceof BufferingApplicationStartup))
+			return;
+		
+		final StartupTimeline timeline = ((BufferingApplicationStartup) this.applicationStartup).getBufferedTimeline();
+		final Duration total = timeline.getEvents().stream()
+				.map(TimelineEvent::getEndTime)
+				.max(Comparator.naturalOrder())
+				.map(end -> Duration.between(timeline.getStartTime(), end))
+				.orElse(Duration.ZERO);
+		TimeGauge.builder("application.startup.duration", total, TimeUnit.MILLISECONDS,
+						Duration::toMillis)
+				.description("Time from application start to the last recorded startup step")
+				.register(this.meterRegistry);
+		
+		log.info("*** Startup timeline: {} steps, {} ms; slowest beans: *", timeline.getEvents().size(), total.toMillis());
+		timeline.getEvents().stream()
+				.filter(timelineEvent -> "spring.beans.instantiate".equals(timelineEvent.getStartupStep().getName()))
+				.sorted(Comparator.comparing(TimelineEvent::getDuration).reversed())
+				.limit(this.slowestBeans)
+				.forEach(timelineEvent -> log.info("***   {} ms {} *",
+						timelineEvent.getDuration().toMillis(), beanName(timelineEvent)));
+	}
+	
+	private static String beanName(final TimelineEvent timelineEvent) {
+		return StreamSupport.stream(timelineEvent.getStartupStep().getTags().spliterator(), false)
+				.filter(tag -> "beanName".equals(tag.getKey()))
+				.map(Tag::getValue)
+				.findFirst()
+				.orElse("?");
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,35 @@
+package com.selimhorri.app.config.startup;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Warm-up run by {@link WarmupRunner} before the instance takes traffic.
+ */
+@ConfigurationProperties(prefix = "app.warmup")
+@Data
+public class WarmupProperties {
+	
+	private boolean enabled = true;
+	
+	/**
+	 * Upper bound of the whole warm-up; after it the instance goes in service with whatever got warm.
+	 */
+	private Duration timeout = Duration.ofSeconds(60);
+	
+	/**
+	 * Most recently updated products loaded into the cache.
+	 */
+	private int hotProducts = 1_000;
+	
+	/**
+	 * Rounds of synthetic reads through the HTTP endpoints, to get the request path JIT-compiled.
+	 */
+	private int rounds = 200;
+	
+	
+	
+}
@@ -0,0 +1,289 @@
+package com.selimhorri.app.config.startup;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import com.selimhorri.app.cache.CoalescingCache;
+import com.selimhorri.app.dto.CategoryDto;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.helper.CanonicalProductMapper;
+import com.selimhorri.app.hotkey.HotKeys;
+import com.selimhorri.app.index.CatalogSnapshot;
+import com.selimhorri.app.index.CatalogSnapshot.ProductRow;
+import com.selimhorri.app.index.CatalogSnapshotStore;
+import com.selimhorri.app.service.CategoryService;
+import com.selimhorri.app.service.ProductService;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Warms the instance up before it takes traffic: opens the connection pool, loads the category tree and the most
+ * recently updated products into the caches, and sends rounds of synthetic reads through the HTTP endpoints so
+ * filters, controllers, Jackson and the Hibernate query plans are compiled and primed. With a catalog snapshot the
+ * products are taken from the file, and only those changed since it was written are left to the database; without a
+ * usable snapshot, one is written first (also with the warm-up disabled).
+ *
+ * Runs as an {@link ApplicationRunner}, so the readiness probe keeps failing until it returns (Boot only
+ * publishes {@code ACCEPTING_TRAFFIC} after the runners). Eureka registers the instance with
+ * {@code eureka.instance.initial-status: OUT_OF_SERVICE}; it is set UP here once the warm-up finishes, times
+ * out or fails.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class WarmupRunner implements ApplicationRunner {
+	
+	private static final int MULTI_GET_IDS = 20;
+	private static final int CACHE_LOAD_CHUNK = 500;
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+	
+	private final WarmupProperties warmupProperties;
+	private final ProductService productService;
+	private final CategoryService categoryService;
+	private final JdbcTemplate jdbcTemplate;
+	private final DataSource dataSource;
+	private final RestTemplateBuilder restTemplateBuilder;
+	private final MeterRegistry meterRegistry;
+	private final ApplicationContext applicationContext;
+	private final ObjectProvider<ApplicationInfoManager> applicationInfoManager;
+	private final ObjectProvider<CatalogSnapshotStore> catalogSnapshotStore;
+	private final CoalescingCache<Integer, ProductDto> productDtoCache;
+	private final HotKeys hotKeys;
+	
+	@Value("${server.servlet.context-path:}")
+	private String contextPath;
+	
+	@Override
+	public void run(final ApplicationArguments args) {
+		if (!this.warmupProperties.isEnabled()) {
+			this.writeSnapshotIfMissing();
+			this.setInstanceStatus(InstanceStatus.UP);
+			return;
+		}
+		AvailabilityChangeEvent.publish(this.applicationContext, ReadinessState.REFUSING_TRAFFIC);
+		this.setInstanceStatus(InstanceStatus.OUT_OF_SERVICE);
+		
+		final long start = System.nanoTime();
+		final long deadline = start + this.warmupProperties.getTimeout().toNanos();
+		final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "warmup");
+			thread.setDaemon(true);
+			return thread;
+		});
+		String outcome = "completed";
+		try {
+			final Future<?> warmup = executor.submit(() -> this.warmUp(deadline));
+			warmup.get(this.warmupProperties.getTimeout().toNanos(), TimeUnit.NANOSECONDS);
+		}
+		catch (TimeoutException e) {
+			outcome = "timed_out";
+			log.warn("*** Warm-up timed out after {}; going in service anyway *", this.warmupProperties.getTimeout());
+		}
+		catch (ExecutionException e) {
+			outcome = "failed";
+			log.warn("*** Warm-up failed; going in service anyway *", e.getCause());
+		}
+		catch (InterruptedException e) {
+			outcome = "failed";
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		
+		final Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+		TimeGauge.builder("application.warmup.duration", elapsed, TimeUnit.MILLISECONDS, Duration::toMillis)
+				.description("Time spent warming up before going in service")
+				.tag("outcome", outcome)
+				.register(this.meterRegistry);
+		log.info("*** Warm-up {} in {} ms *", outcome, elapsed.toMillis());
+		// the synthetic reads are not real demand
+		this.hotKeys.reset();
+		this.setInstanceStatus(InstanceStatus.UP);
+	}
+	
+	private void setInstanceStatus(final InstanceStatus status) {
+		this.applicationInfoManager.ifAvailable(manager -> manager.setInstanceStatus(status));
+	}
+	
+	private void warmUp(final long deadline) {
+		this.warmConnectionPool();
+		this.writeSnapshotIfMissing();
+		
+		final List<CategoryDto> categories = this.categoryService.findAll();
+		categories.forEach(category -> this.categoryService.findById(category.getCategoryId()));
+		final CatalogSnapshotStore store = this.catalogSnapshotStore.getIfAvailable();
+		final CatalogSnapshot snapshot = store == null ? null : store.current();
+		final List<Integer> productIds = snapshot != null
+				? this.rehydrateProducts(snapshot, store.changedSince(snapshot), categories)
+				: this.jdbcTemplate.queryForList(
+						"SELECT product_id FROM products WHERE category_id IS NOT NULL ORDER BY updated_at DESC LIMIT ?",
+						Integer.class, this.warmupProperties.getHotProducts());
+		for (int from = 0; from < productIds.size() && System.nanoTime() < deadline; from += CACHE_LOAD_CHUNK)
+			this.productService.findAllByIds(productIds.subList(from, Math.min(from + CACHE_LOAD_CHUNK, productIds.size())));
+		log.info("*** Warm-up: pool open, {} categories and {} products cached *", categories.size(), productIds.size());
+		
+		if (this.applicationContext instanceof WebServerApplicationContext && !productIds.isEmpty() && !categories.isEmpty())
+			this.sendSyntheticReads(((WebServerApplicationContext) this.applicationContext).getWebServer().getPort(),
+					productIds, categories, deadline);
+	}
+	
+	/**
+	 * On the first start, or when the last snapshot is too old, writes one before going in service, so the export
+	 * does not answer 503 until the first scheduled write of the store.
+	 */
+	private void writeSnapshotIfMissing() {
+		final CatalogSnapshotStore store = this.catalogSnapshotStore.getIfAvailable();
+		if (store == null || store.current() != null)
+			return;
+		try {
+			store.write();
+		}
+		catch (IOException | RuntimeException e) {
+			log.warn("*** Warm-up: catalog snapshot not written; the export is unavailable until the next one *", e);
+		}
+	}
+	
+	/**
+	 * Puts the most recently updated products of the snapshot into the cache, except those changed since it was
+	 * written and those of reserved categories, and returns the ids of all the hot ones, most recent first.
+	 */
+	private List<Integer> rehydrateProducts(final CatalogSnapshot snapshot, final Set<Integer> changedIds,
+			final List<CategoryDto> categories) {
+		final Map<Integer, CategoryDto> categoriesById = categories.stream()
+				.collect(Collectors.toMap(CategoryDto::getCategoryId, Function.identity()));
+		final int limit = this.warmupProperties.getHotProducts();
+		final Comparator<ProductRow> byUpdatedAt = Comparator.comparingLong(ProductRow::getUpdatedAt);
+		final PriorityQueue<ProductRow> hottest = new PriorityQueue<>(byUpdatedAt);
+		snapshot.forEachProduct(product -> {
+			if (hottest.size() < limit)
+				hottest.add(product);
+			else if (limit > 0 && product.getUpdatedAt() > hottest.peek().getUpdatedAt()) {
+				hottest.poll();
+				hottest.add(product);
+			}
+		});
+		
+		final List<ProductRow> rows = new ArrayList<>(hottest);
+		rows.sort(byUpdatedAt.reversed());
+		// Una sola CategoryDto por categoría para todos los productos rehidratados
+		final CanonicalProductMapper mapper = new CanonicalProductMapper();
+		for (final ProductRow row : rows) {
+			final CategoryDto category = categoriesById.get(row.getCategoryId());
+			if (category != null && !changedIds.contains(row.getProductId()))
+				this.productDtoCache.put(row.getProductId(), new ProductDto(row.getProductId(), row.getTitle(),
+						row.getImageUrl(), row.getSku(), mapper.price(row.getPriceCents() / 100.0), row.getQuantity(),
+						mapper.category(category.getCategoryId(), category.getCategoryTitle(), category.getImageUrl())));
+		}
+		return rows.stream().map(ProductRow::getProductId).collect(Collectors.toList());
+	}
+	
+	/**
+	 * Holds {@code minimumIdle} connections at once, so the pool opens all of them now and not under the first
+	 * burst of requests.
+	 */
+	private void warmConnectionPool() {
+		final List<Connection> connections = new ArrayList<>();
+		try {
+			final int size = this.dataSource.isWrapperFor(HikariDataSource.class)
+					? this.dataSource.unwrap(HikariDataSource.class).getMinimumIdle() : 1;
+			for (int i = 0; i < size; i++) {
+				final Connection connection = this.dataSource.getConnection();
+				connections.add(connection);
+				connection.isValid(1);
+			}
+		}
+		catch (SQLException e) {
+			log.warn("*** Warm-up: connection pool not fully opened *", e);
+		}
+		finally {
+			for (final Connection connection : connections) {
+				try {
+					connection.close();
+				}
+				catch (SQLException e) {
+					log.debug("*** Warm-up: connection close failed *", e);
+				}
+			}
+		}
+	}
+	
+	private void sendSyntheticReads(final int port, final List<Integer> productIds, final List<CategoryDto> categories,
+			final long deadline) {
+		final RestTemplate restTemplate = this.restTemplateBuilder
+				.rootUri("http://localhost:" + port + this.contextPath)
+				.setConnectTimeout(REQUEST_TIMEOUT)
+				.setReadTimeout(REQUEST_TIMEOUT)
+				.build();
+		int requests = 0;
+		int failures = 0;
+		for (int round = 0; round < this.warmupProperties.getRounds() && System.nanoTime() < deadline
+				&& !Thread.currentThread().isInterrupted(); round++) {
+			final Integer productId = productIds.get(round % productIds.size());
+			final Integer categoryId = categories.get(round % categories.size()).getCategoryId();
+			final String multiGetIds = productIds.stream()
+					.skip(round * MULTI_GET_IDS % productIds.size())
+					.limit(MULTI_GET_IDS)
+					.map(String::valueOf)
+					.collect(Collectors.joining(","));
+			for (final String uri : List.of(
+					"/api/products/" + productId,
+					"/api/products?ids=" + multiGetIds,
+					"/api/products/search?categoryId=" + categoryId + "&inStock=true",
+					"/api/products/subtree/" + categoryId + "/count",
+					"/api/categories",
+					"/api/categories/" + categoryId)) {
+				requests++;
+				try {
+					restTemplate.getForEntity(uri, byte[].class);
+				}
+				catch (RestClientException e) {
+					failures++;
+					log.debug("*** Warm-up: GET {} failed *", uri, e);
+				}
+			}
+		}
+		log.info("*** Warm-up: {} synthetic reads sent, {} failed *", requests, failures);
+	}
+	
+	
+	
+}
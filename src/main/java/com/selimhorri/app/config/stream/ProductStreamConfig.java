@@ -0,0 +1,29 @@
+package com.selimhorri.app.config.stream;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.selimhorri.app.cache.CoalescingCache;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.stream.ProductChangeStream;
+
+@Configuration
+@EnableConfigurationProperties(ProductStreamProperties.class)
+@ConditionalOnProperty(name = "app.product-stream.enabled", havingValue = "true", matchIfMissing = true)
+public class ProductStreamConfig {
+	
+	@Bean
+	public ProductChangeStream productChangeStream(final ProductStreamProperties properties,
+			final JdbcTemplate jdbcTemplate, final CoalescingCache<Integer, ProductDto> productDtoCache) {
+		return new ProductChangeStream(jdbcTemplate, productDtoCache, properties.getInterval(),
+				properties.getTimeout(), properties.getHeartbeat(), properties.getSendTimeout(),
+				properties.getMaxSubscribers(), properties.getMaxProductIds(), properties.getBufferSize(),
+				properties.getSendThreads());
+	}
+	
+	
+	
+}
@@ -0,0 +1,51 @@
+package com.selimhorri.app.config.stream;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+@ConfigurationProperties(prefix = "app.product-stream")
+@Data
+public class ProductStreamProperties {
+	
+	private boolean enabled = true;
+	
+	/**
+	 * Changes are read and pushed this often; several changes of a product within it reach a client as one.
+	 */
+	private Duration interval = Duration.ofSeconds(1);
+	
+	/**
+	 * A stream is closed after this long; clients reconnect.
+	 */
+	private Duration timeout = Duration.ofMinutes(30);
+	
+	/**
+	 * A comment is sent on streams idle for this long.
+	 */
+	private Duration heartbeat = Duration.ofSeconds(20);
+	
+	/**
+	 * A client whose write has been blocked this long is disconnected.
+	 */
+	private Duration sendTimeout = Duration.ofSeconds(10);
+	
+	/**
+	 * Connected streams per instance; further subscriptions get a 503. Below {@code server.tomcat.max-connections}.
+	 */
+	private int maxSubscribers = 5_000;
+	
+	private int maxProductIds = 100;
+	
+	/**
+	 * Distinct products waiting for a client; a client falling further behind is disconnected.
+	 */
+	private int bufferSize = 256;
+	
+	private int sendThreads = 2;
+	
+	
+	
+}
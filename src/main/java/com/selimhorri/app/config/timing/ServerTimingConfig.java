@@ -0,0 +1,51 @@
+package com.selimhorri.app.config.timing;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.cloud.sleuth.Tracer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selimhorri.app.timing.ServerTimingFilter;
+import com.selimhorri.app.timing.TimedJackson2HttpMessageConverter;
+
+/**
+ * DB time comes from the {@code DataSource} proxy of the slow query log; with {@code app.slow-query.enabled=false}
+ * it stays at zero.
+ */
+@Configuration
+@EnableConfigurationProperties(ServerTimingProperties.class)
+@ConditionalOnProperty(name = "app.server-timing.enabled", havingValue = "true")
+public class ServerTimingConfig {
+	
+	/**
+	 * Inside the ETag filter, whose buffer then also holds the body until the header is set.
+	 */
+	@Bean
+	public FilterRegistrationBean<ServerTimingFilter> serverTimingFilter(final ServerTimingProperties properties,
+			final ObjectProvider<Tracer> tracer) {
+		final FilterRegistrationBean<ServerTimingFilter> registration = new FilterRegistrationBean<>(
+				new ServerTimingFilter(properties.getSampleRate(),
+						StringUtils.hasText(properties.getForceHeader()) ? properties.getForceHeader() : null, tracer));
+		registration.addUrlPatterns("/api/*");
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 21);
+		return registration;
+	}
+	
+	/**
+	 * Replaces Boot's JSON converter, with the same {@code ObjectMapper}.
+	 */
+	@Bean
+	public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(final ObjectMapper objectMapper) {
+		return new TimedJackson2HttpMessageConverter(objectMapper);
+	}
+	
+	
+	
+}
@@ -0,0 +1,28 @@
+package com.selimhorri.app.config.timing;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Per-request timing breakdown, see {@code ServerTimingFilter}.
+ */
+@ConfigurationProperties(prefix = "app.server-timing")
+@Data
+public class ServerTimingProperties {
+	
+	private boolean enabled = false;
+	
+	/**
+	 * Fraction of the API requests broken down, from 0 to 1.
+	 */
+	private double sampleRate = 0.01;
+	
+	/**
+	 * A request carrying this header is always broken down, whatever the sample rate; empty to disable.
+	 */
+	private String forceHeader = "X-Server-Timing";
+	
+	
+	
+}
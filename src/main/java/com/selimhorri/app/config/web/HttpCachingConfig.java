@@ -0,0 +1,54 @@
+package com.selimhorri.app.config.web;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import com.selimhorri.app.constant.AppConstant;
+
+@Configuration
+public class HttpCachingConfig {
+	
+	/**
+	 * ETag from the response body on the API reads, so clients holding a copy get a bodiless 304 on
+	 * {@code If-None-Match}. Runs inside load shedding, a rejected request never gets this far.
+	 */
+	@Bean
+	public FilterRegistrationBean<ShallowEtagHeaderFilter> shallowEtagHeaderFilter() {
+		final FilterRegistrationBean<ShallowEtagHeaderFilter> registration =
+				new FilterRegistrationBean<>(new ShallowEtagHeaderFilter() {
+					
+					private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+					
+					@Override
+					protected boolean shouldNotFilter(final HttpServletRequest request) {
+						// Streamed (from a file with its own ETag, or as server-sent events): buffering them to hash
+						// the body would defeat the purpose
+						return AppConstant.STREAMED_PATHS
+								.contains(this.urlPathHelper.getPathWithinApplication(request));
+					}
+					
+				});
+		registration.addUrlPatterns("/api/*");
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+		return registration;
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -1,5 +1,7 @@
 package com.selimhorri.app.constant;
 
+import java.util.Set;
+
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 
@@ -11,6 +13,9 @@ public abstract class AppConstant {
 	public static final String ZONED_DATE_TIME_FORMAT = "dd-MM-yyyy__HH:mm:ss:SSSSSS";
 	public static final String INSTANT_FORMAT = "dd-MM-yyyy__HH:mm:ss:SSSSSS";
 	
+	// Respuestas en streaming (export del snapshot, eventos SSE): ni se almacenan en buffer ni se miden como peticiones
+	public static final Set<String> STREAMED_PATHS = Set.of("/api/products/export", "/api/products/stream");
+	
 	@NoArgsConstructor(access = AccessLevel.PRIVATE)
 	public abstract class DiscoveredDomainsApi {
 		
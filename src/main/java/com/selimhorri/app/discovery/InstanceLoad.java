@@ -0,0 +1,214 @@
+package com.selimhorri.app.discovery;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.DoubleSupplier;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.SmartLifecycle;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Load of this instance, published in its Eureka metadata for the load-aware balancer of
+ * {@code product-service-client}:
+ *
+ * <pre>
+ * load-in-flight: 3.2   load-p99-ms: 41.0   load-pool-saturation: 0.35   load-updated-at: 1760000000000
+ * </pre>
+ *
+ * Every {@code sampleInterval} the requests in flight, the p99 of the requests finished since the previous sample and
+ * the share of pooled connections in use (plus threads waiting for one, so it can exceed 1) are folded into moving
+ * averages ({@code smoothing}: weight of the new sample). Every {@code publishInterval} they are registered as
+ * metadata, if one of them moved by more than {@code minChange} (relative); Eureka sends it with the next instance
+ * info replication, and clients see it with their next registry fetch.
+ */
+@Slf4j
+public class InstanceLoad implements SmartLifecycle {
+	
+	public static final String IN_FLIGHT = "load-in-flight";
+	public static final String P99_MILLIS = "load-p99-ms";
+	public static final String POOL_SATURATION = "load-pool-saturation";
+	public static final String UPDATED_AT = "load-updated-at";
+	
+	/**
+	 * Latencies kept per sample; beyond it the p99 is taken from the latest ones.
+	 */
+	static final int LATENCY_SAMPLES = 4096;
+	
+	private static final long WRITING = -1;
+	
+	private final Duration sampleInterval;
+	private final Duration publishInterval;
+	private final double smoothing;
+	private final double minChange;
+	private final DoubleSupplier poolSaturation;
+	private final ObjectProvider<ApplicationInfoManager> applicationInfoManager;
+	
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_SAMPLES);
+	/**
+	 * Per slot, 1 + the index of the request whose latency it holds, or {@link #WRITING} while it is written: a slot
+	 * is claimed before it is written, so a sample may find it not written yet, and leaves it out.
+	 */
+	private final AtomicLongArray written = new AtomicLongArray(LATENCY_SAMPLES);
+	private final AtomicLong finished = new AtomicLong();
+	
+	private volatile ScheduledExecutorService scheduler;
+	
+	// Solo los toca el hilo del scheduler
+	private long sampledFinished;
+	private long lastPublishedAt;
+	private double smoothedInFlight = Double.NaN;
+	private double smoothedP99Millis = Double.NaN;
+	private double smoothedPoolSaturation = Double.NaN;
+	private double[] published;
+	
+	private volatile boolean running;
+	
+	public InstanceLoad(final Duration sampleInterval, final Duration publishInterval, final double smoothing,
+			final double minChange, final DoubleSupplier poolSaturation,
+			final ObjectProvider<ApplicationInfoManager> applicationInfoManager) {
+		this.sampleInterval = sampleInterval;
+		this.publishInterval = publishInterval;
+		this.smoothing = smoothing;
+		this.minChange = minChange;
+		this.poolSaturation = poolSaturation;
+		this.applicationInfoManager = applicationInfoManager;
+	}
+	
+	public void requestStarted() {
+		this.inFlight.incrementAndGet();
+	}
+	
+	public void requestFinished(final long latencyNanos) {
+		this.inFlight.decrementAndGet();
+		final long index = this.finished.getAndIncrement();
+		final int slot = (int) (index % LATENCY_SAMPLES);
+		this.written.set(slot, WRITING);
+		this.latencies.set(slot, latencyNanos);
+		this.written.set(slot, index + 1);
+	}
+	
+	/**
+	 * The current averages, as published.
+	 */
+	public Map<String, String> metadata() {
+		final Map<String, String> metadata = new LinkedHashMap<>();
+		metadata.put(IN_FLIGHT, format(this.smoothedInFlight));
+		metadata.put(P99_MILLIS, format(this.smoothedP99Millis));
+		metadata.put(POOL_SATURATION, String.format(Locale.ROOT, "%.2f", zeroIfUnknown(this.smoothedPoolSaturation)));
+		metadata.put(UPDATED_AT, String.valueOf(System.currentTimeMillis()));
+		return metadata;
+	}
+	
+	void sample() {
+		final long finishedNow = this.finished.get();
+		final int count = (int) Math.min(LATENCY_SAMPLES, finishedNow - this.sampledFinished);
+		this.sampledFinished = finishedNow;
+		
+		this.smoothedInFlight = this.smooth(this.smoothedInFlight, this.inFlight.get());
+		this.smoothedPoolSaturation = this.smooth(this.smoothedPoolSaturation, this.poolSaturation.getAsDouble());
+		final long[] window = new long[count];
+		int read = 0;
+		for (int i = 0; i < count; i++) {
+			final long index = finishedNow - 1 - i;
+			final int slot = (int) (index % LATENCY_SAMPLES);
+			// Solo si el slot tiene la latencia de esta petición antes y después de leerla
+			if (this.written.get(slot) != index + 1)
+				continue;
+			final long latency = this.latencies.get(slot);
+			if (this.written.get(slot) == index + 1)
+				window[read++] = latency;
+		}
+		// Sin peticiones terminadas (y escritas) no hay p99 nuevo: se mantiene el anterior
+		if (read > 0) {
+			Arrays.sort(window, 0, read);
+			final double p99Millis = window[(int) Math.ceil(read * 0.99) - 1] / 1_000_000.0;
+			this.smoothedP99Millis = this.smooth(this.smoothedP99Millis, p99Millis);
+		}
+	}
+	
+	private double smooth(final double average, final double sample) {
+		return Double.isNaN(average) ? sample : (1 - this.smoothing) * average + this.smoothing * sample;
+	}
+	
+	private void tick() {
+		try {
+			this.sample();
+			final long now = System.nanoTime();
+			if (now - this.lastPublishedAt < this.publishInterval.toNanos())
+				return;
+			this.lastPublishedAt = now;
+			final double[] current = { this.smoothedInFlight, zeroIfUnknown(this.smoothedP99Millis),
+					this.smoothedPoolSaturation };
+			if (this.published != null && !this.changed(this.published, current))
+				return;
+			final ApplicationInfoManager manager = this.applicationInfoManager.getIfAvailable();
+			if (manager == null)
+				return;
+			manager.registerAppMetadata(this.metadata());
+			this.published = current;
+		}
+		catch (RuntimeException e) {
+			log.warn("*** Could not publish the instance load *", e);
+		}
+	}
+	
+	boolean changed(final double[] before, final double[] after) {
+		for (int i = 0; i < before.length; i++)
+			if (Math.abs(after[i] - before[i]) > this.minChange * Math.max(Math.abs(before[i]), 1e-3))
+				return true;
+		return false;
+	}
+	
+	private static double zeroIfUnknown(final double value) {
+		return Double.isNaN(value) ? 0 : value;
+	}
+	
+	private static String format(final double value) {
+		return String.format(Locale.ROOT, "%.1f", zeroIfUnknown(value));
+	}
+	
+	/**
+	 * A new scheduler on every start, so the instance can be stopped and started again.
+	 */
+	@Override
+	public void start() {
+		this.running = true;
+		this.lastPublishedAt = System.nanoTime() - this.publishInterval.toNanos();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "instance-load");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.scheduler.scheduleWithFixedDelay(this::tick, this.sampleInterval.toMillis(),
+				this.sampleInterval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+	
+	@Override
+	public void stop() {
+		this.running = false;
+		if (this.scheduler != null)
+			this.scheduler.shutdownNow();
+	}
+	
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+	
+	
+	
+}
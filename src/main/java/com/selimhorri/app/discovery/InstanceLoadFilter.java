@@ -0,0 +1,47 @@
+package com.selimhorri.app.discovery;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import com.selimhorri.app.constant.AppConstant;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Feeds {@link InstanceLoad} with every API request. Streams and exports last as long as the client reads them, so
+ * they would only blur the p99 and the in-flight count: they are left out.
+ */
+@RequiredArgsConstructor
+public class InstanceLoadFilter extends OncePerRequestFilter {
+	
+	private final InstanceLoad instanceLoad;
+	private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+	
+	@Override
+	protected boolean shouldNotFilter(final HttpServletRequest request) {
+		return AppConstant.STREAMED_PATHS.contains(this.urlPathHelper.getPathWithinApplication(request));
+	}
+	
+	@Override
+	protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+			final FilterChain filterChain) throws ServletException, IOException {
+		final long start = System.nanoTime();
+		this.instanceLoad.requestStarted();
+		try {
+			filterChain.doFilter(request, response);
+		}
+		finally {
+			this.instanceLoad.requestFinished(System.nanoTime() - start);
+		}
+	}
+	
+	
+	
+}
@@ -0,0 +1,73 @@
+package com.selimhorri.app.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Immutable;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A soft-deleted product moved out of {@code products} by {@code ProductArchiver}, with the same id and SKU. Written
+ * and removed only with set-based statements ({@code ArchivedProductRepository}); restoring it moves the row back.
+ */
+@Entity
+@Immutable
+@Table(name = "archived_products")
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public final class ArchivedProduct implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	@Id
+	@Column(name = "product_id", nullable = false, updatable = false)
+	private Integer productId;
+	
+	@Column(name = "product_title")
+	private String productTitle;
+	
+	@Column(name = "image_url")
+	private String imageUrl;
+	
+	private String sku;
+	
+	@Column(name = "price_unit", columnDefinition = "decimal")
+	private Double priceUnit;
+	
+	@Column(name = "quantity")
+	private Integer quantity;
+	
+	@Column(name = "created_at")
+	private Instant createdAt;
+	
+	/**
+	 * Last change in {@code products}, i.e. when it was moved to the 'Deleted' category.
+	 */
+	@Column(name = "deleted_at")
+	private Instant deletedAt;
+	
+	@Column(name = "archived_at", nullable = false)
+	private Instant archivedAt;
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,71 @@
+package com.selimhorri.app.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Immutable;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One changed field of a product or category. Written in JDBC batches by {@code AuditTrail}, only read here; not
+ * tied to {@code products} by a foreign key, so the history outlives archiving.
+ */
+@Entity
+@Immutable
+@Table(name = "catalog_audit")
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public final class CatalogAudit implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	@Id
+	@Column(name = "audit_id", nullable = false, updatable = false)
+	private Long auditId;
+	
+	@Column(name = "entity_type", nullable = false)
+	private String entityType;
+	
+	@Column(name = "entity_id")
+	private Integer entityId;
+	
+	@Column(name = "action", nullable = false)
+	private String action;
+	
+	@Column(name = "field")
+	private String field;
+	
+	@Column(name = "old_value")
+	private String oldValue;
+	
+	@Column(name = "new_value")
+	private String newValue;
+	
+	@Column(name = "actor")
+	private String actor;
+	
+	@Column(name = "changed_at", nullable = false)
+	private Instant changedAt;
+	
+}
+
+
+
+
+
+
+
+
+
+
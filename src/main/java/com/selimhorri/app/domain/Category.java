@@ -15,6 +15,10 @@ import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.TableGenerator;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import lombok.AllArgsConstructor;
@@ -22,20 +26,33 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 @Entity
 @Table(name = "categories")
 @NoArgsConstructor
 @AllArgsConstructor
 @EqualsAndHashCode(callSuper = true, exclude = {"subCategories", "parentCategory", "products"})
+@ToString(callSuper = true, exclude = {"subCategories", "parentCategory", "products"})
 @Data
 @Builder
 public final class Category extends AbstractMappedEntity implements Serializable {
 	
 	private static final long serialVersionUID = 1L;
 	
+	/**
+	 * Taken in blocks of 50 from the {@code categories} row of {@code id_sequences} (pooled-lo), so Hibernate can batch
+	 * the inserts; {@code last_id} is the last id handed out to any instance.
+	 */
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.TABLE, generator = "category_id")
+	@GenericGenerator(name = "category_id", strategy = "org.hibernate.id.enhanced.TableGenerator", parameters = {
+			@Parameter(name = TableGenerator.TABLE_PARAM, value = "id_sequences"),
+			@Parameter(name = TableGenerator.SEGMENT_COLUMN_PARAM, value = "sequence_name"),
+			@Parameter(name = TableGenerator.VALUE_COLUMN_PARAM, value = "last_id"),
+			@Parameter(name = TableGenerator.SEGMENT_VALUE_PARAM, value = "categories"),
+			@Parameter(name = TableGenerator.INCREMENT_PARAM, value = "50"),
+			@Parameter(name = TableGenerator.OPT_PARAM, value = "pooled-lo") })
 	@Column(name = "category_id", unique = true, nullable = false, updatable = false)
 	private Integer categoryId;
 	
@@ -45,6 +62,14 @@ public final class Category extends AbstractMappedEntity implements Serializable
 	@Column(name = "image_url")
 	private String imageUrl;
 	
+	/**
+	 * Ids from the root down to this category, e.g. {@code /1/7/42/}; every category of a subtree shares the
+	 * path of its root as prefix. Maintained by {@code CategoryServiceImpl}.
+	 */
+	@JsonIgnore
+	@Column(name = "category_path")
+	private String categoryPath;
+	
 	@JsonIgnore
 	@OneToMany(mappedBy = "parentCategory", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
 	private Set<Category> subCategories;
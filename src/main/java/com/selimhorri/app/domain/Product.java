@@ -12,25 +12,42 @@ import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.TableGenerator;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 @Entity
 @Table(name = "products")
 @NoArgsConstructor
 @AllArgsConstructor
 @EqualsAndHashCode(callSuper = true, exclude = {"category"})
+@ToString(callSuper = true, exclude = {"category"})
 @Data
 @Builder
 public final class Product extends AbstractMappedEntity implements Serializable {
 	
 	private static final long serialVersionUID = 1L;
 	
+	/**
+	 * Taken in blocks of 50 from the {@code products} row of {@code id_sequences} (pooled-lo), so Hibernate can batch
+	 * the inserts; {@code last_id} is the last id handed out to any instance.
+	 */
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.TABLE, generator = "product_id")
+	@GenericGenerator(name = "product_id", strategy = "org.hibernate.id.enhanced.TableGenerator", parameters = {
+			@Parameter(name = TableGenerator.TABLE_PARAM, value = "id_sequences"),
+			@Parameter(name = TableGenerator.SEGMENT_COLUMN_PARAM, value = "sequence_name"),
+			@Parameter(name = TableGenerator.VALUE_COLUMN_PARAM, value = "last_id"),
+			@Parameter(name = TableGenerator.SEGMENT_VALUE_PARAM, value = "products"),
+			@Parameter(name = TableGenerator.INCREMENT_PARAM, value = "50"),
+			@Parameter(name = TableGenerator.OPT_PARAM, value = "pooled-lo") })
 	@Column(name = "product_id", unique = true, nullable = false, updatable = false)
 	private Integer productId;
 	
@@ -0,0 +1,82 @@
+package com.selimhorri.app.domain;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Immutable;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Read model of a product: its own columns with those of its category flattened onto the row, so every product read
+ * is a single-table query. Never written through the entity; {@code ProductCatalogViewRepository} keeps it in sync
+ * with set-based statements in the same transaction as each write to {@code products} or {@code categories}.
+ * Products without a category have no row.
+ */
+@Entity
+@Immutable
+@Table(name = "product_catalog_view")
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public final class ProductCatalogView implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public static final String DELETED_CATEGORY_TITLE = "Deleted";
+	
+	@Id
+	@Column(name = "product_id", nullable = false, updatable = false)
+	private Integer productId;
+	
+	@Column(name = "product_title")
+	private String productTitle;
+	
+	@Column(name = "image_url")
+	private String imageUrl;
+	
+	private String sku;
+	
+	@Column(name = "price_unit", columnDefinition = "decimal")
+	private Double priceUnit;
+	
+	@Column(name = "quantity")
+	private Integer quantity;
+	
+	@Column(name = "category_id", nullable = false)
+	private Integer categoryId;
+	
+	@Column(name = "category_title")
+	private String categoryTitle;
+	
+	@Column(name = "category_image_url")
+	private String categoryImageUrl;
+	
+	@Column(name = "category_path")
+	private String categoryPath;
+	
+	/**
+	 * In the 'Deleted' category, i.e. soft deleted.
+	 */
+	@Column(name = "deleted", nullable = false)
+	private boolean deleted;
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,31 @@
+package com.selimhorri.app.dto;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * An archived product, from {@code GET /api/products/archive}. Timestamps are ISO-8601 instants.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class ArchivedProductDto implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private Integer productId;
+	private String productTitle;
+	private String imageUrl;
+	private String sku;
+	private Double priceUnit;
+	private Integer quantity;
+	private String createdAt;
+	private String deletedAt;
+	private String archivedAt;
+	
+}
@@ -0,0 +1,40 @@
+package com.selimhorri.app.dto;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A change of a product, from {@code GET /api/products/{productId}/history}. {@code changedAt} is an ISO-8601
+ * instant; a bulk operation has no old value.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class CatalogAuditDto implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private Long auditId;
+	private String action;
+	private String field;
+	private String oldValue;
+	private String newValue;
+	private String actor;
+	private String changedAt;
+	
+}
+
+
+
+
+
+
+
+
+
+
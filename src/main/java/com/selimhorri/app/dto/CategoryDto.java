@@ -3,9 +3,11 @@ package com.selimhorri.app.dto;
 import java.io.Serializable;
 import java.util.Set;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.selimhorri.app.dto.projection.FieldSelection;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -16,6 +18,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @Data
 @Builder
+@JsonFilter(FieldSelection.CATEGORY_FILTER)
 public class CategoryDto implements Serializable {
 	
 	private static final long serialVersionUID = 1L;
@@ -0,0 +1,57 @@
+package com.selimhorri.app.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One set-based change over many products. The products are chosen either by {@code productIds} or by
+ * {@code categoryId} (optionally with its whole subtree); products already soft deleted are never touched.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class ProductBulkOperationDto implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private Operation operation;
+	
+	private List<Integer> productIds;
+	private Integer categoryId;
+	private boolean includeSubcategories;
+	
+	/**
+	 * Percentage for {@code REPRICE_PERCENT} (e.g. -15 for 15% off), amount added to the price for
+	 * {@code REPRICE_ABSOLUTE}.
+	 */
+	private Double value;
+	
+	/**
+	 * Destination of {@code RECATEGORIZE}.
+	 */
+	private Integer targetCategoryId;
+	
+	public enum Operation {
+		REPRICE_PERCENT,
+		REPRICE_ABSOLUTE,
+		RECATEGORIZE,
+		SOFT_DELETE
+	}
+	
+}
+
+
+
+
+
+
+
+
+
+
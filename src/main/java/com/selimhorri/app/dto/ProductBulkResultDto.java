@@ -0,0 +1,31 @@
+package com.selimhorri.app.dto;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class ProductBulkResultDto implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private ProductBulkOperationDto.Operation operation;
+	private int affectedProducts;
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,28 @@
+package com.selimhorri.app.dto;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Payload of the {@code product} events of {@code GET /api/products/stream}: the current price and stock of a product
+ * whose price, stock or category changed. {@code deleted} products have no other values.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class ProductChangeDto implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private Integer productId;
+	private Integer categoryId;
+	private Double priceUnit;
+	private Integer quantity;
+	private boolean deleted;
+	
+}
@@ -2,9 +2,11 @@ package com.selimhorri.app.dto;
 
 import java.io.Serializable;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.selimhorri.app.dto.projection.FieldSelection;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -15,6 +17,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @Data
 @Builder
+@JsonFilter(FieldSelection.PRODUCT_FILTER)
 public class ProductDto implements Serializable {
 	
 	private static final long serialVersionUID = 1L;
@@ -0,0 +1,69 @@
+package com.selimhorri.app.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class ProductSearchResultDto implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * All matching products; {@link #products} are only the first of them.
+	 */
+	private int total;
+	private List<ProductDto> products;
+	private List<CategoryFacet> categories;
+	private List<PriceFacet> prices;
+	private int inStock;
+	
+	@NoArgsConstructor
+	@AllArgsConstructor
+	@Data
+	@Builder
+	public static class CategoryFacet implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private Integer categoryId;
+		private String categoryTitle;
+		private int count;
+		
+	}
+	
+	/**
+	 * Products priced from {@code from} (inclusive) to {@code to} (exclusive, {@code null} for no upper bound).
+	 */
+	@NoArgsConstructor
+	@AllArgsConstructor
+	@Data
+	@Builder
+	public static class PriceFacet implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private Double from;
+		private Double to;
+		private int count;
+		
+	}
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,41 @@
+package com.selimhorri.app.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Current stock of a product, read at once (unlike {@code ProductDto.quantity}, which may lag a striped product by
+ * one rebalancing interval). {@code stripes} holds the quantity of each stripe, only for striped products.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class ProductStockDto implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private Integer productId;
+	private Integer quantity;
+	
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private List<Integer> stripes;
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,148 @@
+package com.selimhorri.app.dto.projection;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+
+import lombok.Getter;
+
+/**
+ * Sparse fieldset parsed from a {@code ?fields=} parameter, e.g. {@code productId,productTitle,category.categoryTitle}.
+ *
+ * The same selection drives the SQL projection (only the selected columns are read) and the Jackson filters of
+ * {@code ProductDto} / {@code CategoryDto} (only the selected properties are written). Names are the JSON ones.
+ */
+@Getter
+public final class FieldSelection {
+	
+	public static final String PRODUCT_FILTER = "productFilter";
+	public static final String CATEGORY_FILTER = "categoryFilter";
+	
+	private static final List<String> PRODUCT_FIELDS = List.of(
+			"productId", "productTitle", "imageUrl", "sku", "priceUnit", "quantity");
+	private static final List<String> CATEGORY_FIELDS = List.of("categoryId", "categoryTitle", "imageUrl");
+	private static final String CATEGORY = "category";
+	private static final String PARENT_CATEGORY = "parentCategory";
+	
+	/**
+	 * Selected product attributes, in declaration order; empty for category selections.
+	 */
+	private final Set<String> productFields;
+	
+	/**
+	 * Selected attributes of the category, the product's category or the category itself.
+	 */
+	private final Set<String> categoryFields;
+	
+	/**
+	 * Category selections only: also the (shallow) parent, with the same {@link #categoryFields}.
+	 */
+	private final boolean parentCategory;
+	
+	private FieldSelection(final Set<String> productFields, final Set<String> categoryFields,
+			final boolean parentCategory) {
+		this.productFields = Collections.unmodifiableSet(productFields);
+		this.categoryFields = Collections.unmodifiableSet(categoryFields);
+		this.parentCategory = parentCategory;
+	}
+	
+	/**
+	 * @return {@code null} when no fields are given, meaning the full representation
+	 * @throws IllegalArgumentException for an unknown field, or a list naming none (e.g. {@code ?fields=,})
+	 */
+	public static FieldSelection ofProducts(final String fields) {
+		if (fields == null || fields.isBlank())
+			return null;
+		final Set<String> requestedProduct = new LinkedHashSet<>();
+		final Set<String> requestedCategory = new LinkedHashSet<>();
+		for (final String field : split(fields)) {
+			if (CATEGORY.equals(field))
+				requestedCategory.addAll(CATEGORY_FIELDS);
+			else if (field.startsWith(CATEGORY + "."))
+				requestedCategory.add(known(field.substring(CATEGORY.length() + 1), CATEGORY_FIELDS, field));
+			else
+				requestedProduct.add(known(field, PRODUCT_FIELDS, field));
+		}
+		return new FieldSelection(inOrder(PRODUCT_FIELDS, requestedProduct),
+				inOrder(CATEGORY_FIELDS, requestedCategory), false);
+	}
+	
+	/**
+	 * @return {@code null} when no fields are given, meaning the full representation
+	 * @throws IllegalArgumentException for an unknown field, or a list naming none (e.g. {@code ?fields=,})
+	 */
+	public static FieldSelection ofCategories(final String fields) {
+		if (fields == null || fields.isBlank())
+			return null;
+		final Set<String> requested = new LinkedHashSet<>();
+		boolean parentCategory = false;
+		for (final String field : split(fields)) {
+			if (PARENT_CATEGORY.equals(field))
+				parentCategory = true;
+			else
+				requested.add(known(field, CATEGORY_FIELDS, field));
+		}
+		return new FieldSelection(Set.of(), inOrder(CATEGORY_FIELDS, requested), parentCategory);
+	}
+	
+	public boolean includesCategory() {
+		return !this.categoryFields.isEmpty();
+	}
+	
+	public FilterProvider toFilterProvider() {
+		final Set<String> productProperties = new LinkedHashSet<>(this.productFields);
+		if (this.includesCategory())
+			productProperties.add(CATEGORY);
+		final Set<String> categoryProperties = new LinkedHashSet<>(this.categoryFields);
+		if (this.parentCategory)
+			categoryProperties.add(PARENT_CATEGORY);
+		return new SimpleFilterProvider()
+				.addFilter(PRODUCT_FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(productProperties))
+				.addFilter(CATEGORY_FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(categoryProperties));
+	}
+	
+	/**
+	 * Empty names between commas are skipped, but some name must be left: a selection of nothing is no projection.
+	 */
+	private static List<String> split(final String fields) {
+		final List<String> names = Arrays.stream(fields.split(","))
+				.map(String::trim)
+				.filter(name -> !name.isEmpty())
+				.collect(Collectors.toList());
+		if (names.isEmpty())
+			throw new IllegalArgumentException("No field selected in '" + fields + "'");
+		return names;
+	}
+	
+	private static String known(final String name, final List<String> allowed, final String field) {
+		if (!allowed.contains(name))
+			throw new IllegalArgumentException("Unknown field '" + field + "'");
+		return name;
+	}
+	
+	private static Set<String> inOrder(final List<String> declared, final Set<String> requested) {
+		final Set<String> ordered = new LinkedHashSet<>();
+		declared.stream().filter(requested::contains).forEach(ordered::add);
+		return ordered;
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
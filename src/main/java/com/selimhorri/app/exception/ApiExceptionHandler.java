@@ -15,6 +15,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 
 import com.selimhorri.app.exception.payload.ExceptionMsg;
 import com.selimhorri.app.exception.wrapper.CategoryNotFoundException;
+import com.selimhorri.app.exception.wrapper.InsufficientStockException;
 import com.selimhorri.app.exception.wrapper.ProductNotFoundException;
 
 import lombok.RequiredArgsConstructor;
@@ -82,4 +83,22 @@ public class ApiExceptionHandler {
 				badRequest);
 	}
 
+	@ExceptionHandler(value = {
+			InsufficientStockException.class
+	})
+	public <T extends RuntimeException> ResponseEntity<ExceptionMsg> handleConflictException(final T e) {
+
+		log.info("**ApiExceptionHandler controller, handle conflict*\n");
+		final var conflict = HttpStatus.CONFLICT;
+
+		return new ResponseEntity<>(
+				ExceptionMsg.builder()
+						.msg("#### " + e.getMessage() + "! ####")
+						.httpStatus(conflict)
+						.timestamp(ZonedDateTime
+								.now(ZoneId.systemDefault()))
+						.build(),
+				conflict);
+	}
+
 }
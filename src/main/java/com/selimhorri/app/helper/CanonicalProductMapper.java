@@ -0,0 +1,87 @@
+package com.selimhorri.app.helper;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.persistence.Tuple;
+
+import com.selimhorri.app.domain.ProductCatalogView;
+import com.selimhorri.app.dto.CategoryDto;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.timing.RequestTiming;
+
+/**
+ * Maps the products of one response, or of one snapshot, sharing a single {@link CategoryDto} per category and a
+ * single instance of each repeated category string and price, instead of a copy of each per product. A listing of N
+ * products in C categories then holds C category DTOs, not N, and the strings the driver read once per row become
+ * garbage right away. DTOs are built through their constructors, without builders.
+ *
+ * Not thread-safe: one per response, dropped with it. The shared DTOs must not be modified.
+ */
+public final class CanonicalProductMapper {
+	
+	private final Map<Integer, CategoryDto> categoriesById = new HashMap<>();
+	
+	/**
+	 * Projections may leave the category id out, so by all three selected values.
+	 */
+	private final Map<Object, CategoryDto> categoriesByValues = new HashMap<>();
+	
+	private final Map<Double, Double> prices = new HashMap<>();
+	
+	public ProductDto map(final ProductCatalogView product) {
+		final long startedAt = RequestTiming.mappingStarted();
+		try {
+			return new ProductDto(product.getProductId(), product.getProductTitle(), product.getImageUrl(),
+					product.getSku(), this.price(product.getPriceUnit()), product.getQuantity(),
+					this.category(product.getCategoryId(), product.getCategoryTitle(), product.getCategoryImageUrl()));
+		}
+		finally {
+			RequestTiming.mappingEnded(startedAt);
+		}
+	}
+	
+	/**
+	 * Same as {@link ProductMappingHelper#map(Tuple)}.
+	 */
+	public ProductDto map(final Tuple tuple) {
+		final long startedAt = RequestTiming.mappingStarted();
+		try {
+			final ProductDto productDto = ProductMappingHelper.map(tuple);
+			final CategoryDto categoryDto = productDto.getCategoryDto();
+			if (categoryDto != null)
+				productDto.setCategoryDto(this.categoriesByValues.computeIfAbsent(Arrays.asList(
+						categoryDto.getCategoryId(), categoryDto.getCategoryTitle(), categoryDto.getImageUrl()),
+						ignored -> categoryDto));
+			if (productDto.getPriceUnit() != null)
+				productDto.setPriceUnit(this.price(productDto.getPriceUnit()));
+			return productDto;
+		}
+		finally {
+			RequestTiming.mappingEnded(startedAt);
+		}
+	}
+	
+	/**
+	 * The shared shallow DTO of a category: id, title and image only, the values of its first product.
+	 */
+	public CategoryDto category(final Integer categoryId, final String categoryTitle, final String imageUrl) {
+		final CategoryDto shared = this.categoriesById.get(categoryId);
+		if (shared != null)
+			return shared;
+		final CategoryDto categoryDto = new CategoryDto(categoryId, categoryTitle, imageUrl, null, null, null);
+		this.categoriesById.put(categoryId, categoryDto);
+		return categoryDto;
+	}
+	
+	public Double price(final Double price) {
+		if (price == null)
+			return null;
+		final Double shared = this.prices.putIfAbsent(price, price);
+		return shared == null ? price : shared;
+	}
+	
+	
+	
+}
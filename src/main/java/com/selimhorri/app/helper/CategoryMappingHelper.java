@@ -2,28 +2,81 @@ package com.selimhorri.app.helper;
 
 import java.util.Optional;
 
+import javax.persistence.Tuple;
+import javax.persistence.TupleElement;
+
 import com.selimhorri.app.domain.Category;
 import com.selimhorri.app.dto.CategoryDto;
+import com.selimhorri.app.repository.CategoryRepositoryCustom;
+import com.selimhorri.app.timing.RequestTiming;
 
 public interface CategoryMappingHelper {
 	
 	public static CategoryDto map(final Category category) {
-
-		return CategoryDto.builder()
-				.categoryId(category.getCategoryId())
-				.categoryTitle(category.getCategoryTitle())
-				.imageUrl(category.getImageUrl())
-				.build();
+		final long startedAt = RequestTiming.mappingStarted();
+		try {
+			return CategoryDto.builder()
+					.categoryId(category.getCategoryId())
+					.categoryTitle(category.getCategoryTitle())
+					.imageUrl(category.getImageUrl())
+					.parentCategoryDto(Optional.ofNullable(category.getParentCategory())
+							.map(parentCategory -> CategoryDto.builder()
+									.categoryId(parentCategory.getCategoryId())
+									.categoryTitle(parentCategory.getCategoryTitle())
+									.imageUrl(parentCategory.getImageUrl())
+									.build())
+							.orElse(null))
+					.build();
+		}
+		finally {
+			RequestTiming.mappingEnded(startedAt);
+		}
+	}
+	
+	/**
+	 * Partial DTO from a {@link CategoryRepositoryCustom} projection; unselected attributes stay {@code null}.
+	 */
+	public static CategoryDto map(final Tuple tuple) {
+		final long startedAt = RequestTiming.mappingStarted();
+		try {
+			final CategoryDto categoryDto = new CategoryDto();
+			final CategoryDto parentCategoryDto = new CategoryDto();
+			for (final TupleElement<?> element : tuple.getElements()) {
+				final Object value = tuple.get(element);
+				final boolean parent = element.getAlias().startsWith(CategoryRepositoryCustom.PARENT_ALIAS_PREFIX);
+				final CategoryDto target = parent ? parentCategoryDto : categoryDto;
+				// a root category has no parent id; the projection always reads it
+				if (parent && value != null && element.getAlias().endsWith("categoryId"))
+					categoryDto.setParentCategoryDto(parentCategoryDto);
+				switch (parent ? element.getAlias().substring(CategoryRepositoryCustom.PARENT_ALIAS_PREFIX.length())
+						: element.getAlias()) {
+					case "categoryId": target.setCategoryId((Integer) value); break;
+					case "categoryTitle": target.setCategoryTitle((String) value); break;
+					case "imageUrl": target.setImageUrl((String) value); break;
+					default:
+						throw new IllegalStateException("Unexpected projection alias " + element.getAlias());
+				}
+			}
+			return categoryDto;
+		}
+		finally {
+			RequestTiming.mappingEnded(startedAt);
+		}
 	}
 	
 	public static Category map(final CategoryDto categoryDto) {
-		
-		return Category.builder()
-				.categoryId(categoryDto.getCategoryId())
-				.categoryTitle(categoryDto.getCategoryTitle())
-				.imageUrl(categoryDto.getImageUrl())
-
-				.build();
+		final long startedAt = RequestTiming.mappingStarted();
+		try {
+			return Category.builder()
+					.categoryId(categoryDto.getCategoryId())
+					.categoryTitle(categoryDto.getCategoryTitle())
+					.imageUrl(categoryDto.getImageUrl())
+					
+					.build();
+		}
+		finally {
+			RequestTiming.mappingEnded(startedAt);
+		}
 	}
 	
 	
@@ -1,44 +1,167 @@
 package com.selimhorri.app.helper;
 
+import javax.persistence.Tuple;
+import javax.persistence.TupleElement;
+
+import com.selimhorri.app.domain.ArchivedProduct;
+import com.selimhorri.app.domain.CatalogAudit;
 import com.selimhorri.app.domain.Category;
 import com.selimhorri.app.domain.Product;
+import com.selimhorri.app.domain.ProductCatalogView;
+import com.selimhorri.app.dto.ArchivedProductDto;
+import com.selimhorri.app.dto.CatalogAuditDto;
 import com.selimhorri.app.dto.CategoryDto;
 import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.repository.ProductCatalogViewRepositoryCustom;
+import com.selimhorri.app.timing.RequestTiming;
 
 public interface ProductMappingHelper {
 	
 	public static ProductDto map(final Product product) {
-		return ProductDto.builder()
-				.productId(product.getProductId())
-				.productTitle(product.getProductTitle())
-				.imageUrl(product.getImageUrl())
-				.sku(product.getSku())
-				.priceUnit(product.getPriceUnit())
-				.quantity(product.getQuantity())
-				.categoryDto(
-						CategoryDto.builder()
-							.categoryId(product.getCategory().getCategoryId())
-							.categoryTitle(product.getCategory().getCategoryTitle())
-							.imageUrl(product.getCategory().getImageUrl())
-							.build())
-				.build();
+		final long startedAt = RequestTiming.mappingStarted();
+		try {
+			return ProductDto.builder()
+					.productId(product.getProductId())
+					.productTitle(product.getProductTitle())
+					.imageUrl(product.getImageUrl())
+					.sku(product.getSku())
+					.priceUnit(product.getPriceUnit())
+					.quantity(product.getQuantity())
+					.categoryDto(
+							CategoryDto.builder()
+								.categoryId(product.getCategory().getCategoryId())
+								.categoryTitle(product.getCategory().getCategoryTitle())
+								.imageUrl(product.getCategory().getImageUrl())
+								.build())
+					.build();
+		}
+		finally {
+			RequestTiming.mappingEnded(startedAt);
+		}
+	}
+	
+	public static ProductDto map(final ProductCatalogView product) {
+		final long startedAt = RequestTiming.mappingStarted();
+		try {
+			return ProductDto.builder()
+					.productId(product.getProductId())
+					.productTitle(product.getProductTitle())
+					.imageUrl(product.getImageUrl())
+					.sku(product.getSku())
+					.priceUnit(product.getPriceUnit())
+					.quantity(product.getQuantity())
+					.categoryDto(
+							CategoryDto.builder()
+								.categoryId(product.getCategoryId())
+								.categoryTitle(product.getCategoryTitle())
+								.imageUrl(product.getCategoryImageUrl())
+								.build())
+					.build();
+		}
+		finally {
+			RequestTiming.mappingEnded(startedAt);
+		}
+	}
+	
+	/**
+	 * Partial DTO from a {@link ProductCatalogViewRepositoryCustom} projection; unselected attributes stay {@code null}.
+	 */
+	public static ProductDto map(final Tuple tuple) {
+		final long startedAt = RequestTiming.mappingStarted();
+		try {
+			final ProductDto productDto = new ProductDto();
+			final CategoryDto categoryDto = new CategoryDto();
+			for (final TupleElement<?> element : tuple.getElements()) {
+				final Object value = tuple.get(element);
+				switch (element.getAlias()) {
+					case "productId": productDto.setProductId((Integer) value); break;
+					case "productTitle": productDto.setProductTitle((String) value); break;
+					case "imageUrl": productDto.setImageUrl((String) value); break;
+					case "sku": productDto.setSku((String) value); break;
+					case "priceUnit": productDto.setPriceUnit((Double) value); break;
+					case "quantity": productDto.setQuantity((Integer) value); break;
+					case ProductCatalogViewRepositoryCustom.CATEGORY_ALIAS_PREFIX + "categoryId":
+						productDto.setCategoryDto(categoryDto);
+						categoryDto.setCategoryId((Integer) value);
+						break;
+					case ProductCatalogViewRepositoryCustom.CATEGORY_ALIAS_PREFIX + "categoryTitle":
+						productDto.setCategoryDto(categoryDto);
+						categoryDto.setCategoryTitle((String) value);
+						break;
+					case ProductCatalogViewRepositoryCustom.CATEGORY_ALIAS_PREFIX + "imageUrl":
+						productDto.setCategoryDto(categoryDto);
+						categoryDto.setImageUrl((String) value);
+						break;
+					default:
+						throw new IllegalStateException("Unexpected projection alias " + element.getAlias());
+				}
+			}
+			return productDto;
+		}
+		finally {
+			RequestTiming.mappingEnded(startedAt);
+		}
+	}
+	
+	public static ArchivedProductDto map(final ArchivedProduct archivedProduct) {
+		final long startedAt = RequestTiming.mappingStarted();
+		try {
+			return ArchivedProductDto.builder()
+					.productId(archivedProduct.getProductId())
+					.productTitle(archivedProduct.getProductTitle())
+					.imageUrl(archivedProduct.getImageUrl())
+					.sku(archivedProduct.getSku())
+					.priceUnit(archivedProduct.getPriceUnit())
+					.quantity(archivedProduct.getQuantity())
+					.createdAt(archivedProduct.getCreatedAt() == null ? null : archivedProduct.getCreatedAt().toString())
+					.deletedAt(archivedProduct.getDeletedAt() == null ? null : archivedProduct.getDeletedAt().toString())
+					.archivedAt(archivedProduct.getArchivedAt().toString())
+					.build();
+		}
+		finally {
+			RequestTiming.mappingEnded(startedAt);
+		}
+	}
+	
+	public static CatalogAuditDto map(final CatalogAudit catalogAudit) {
+		final long startedAt = RequestTiming.mappingStarted();
+		try {
+			return CatalogAuditDto.builder()
+					.auditId(catalogAudit.getAuditId())
+					.action(catalogAudit.getAction())
+					.field(catalogAudit.getField())
+					.oldValue(catalogAudit.getOldValue())
+					.newValue(catalogAudit.getNewValue())
+					.actor(catalogAudit.getActor())
+					.changedAt(catalogAudit.getChangedAt().toString())
+					.build();
+		}
+		finally {
+			RequestTiming.mappingEnded(startedAt);
+		}
 	}
 	
 	public static Product map(final ProductDto productDto) {
-		return Product.builder()
-				.productId(productDto.getProductId())
-				.productTitle(productDto.getProductTitle())
-				.imageUrl(productDto.getImageUrl())
-				.sku(productDto.getSku())
-				.priceUnit(productDto.getPriceUnit())
-				.quantity(productDto.getQuantity())
-				.category(
-						Category.builder()
-							.categoryId(productDto.getCategoryDto().getCategoryId())
-							.categoryTitle(productDto.getCategoryDto().getCategoryTitle())
-							.imageUrl(productDto.getCategoryDto().getImageUrl())
-							.build())
-				.build();
+		final long startedAt = RequestTiming.mappingStarted();
+		try {
+			return Product.builder()
+					.productId(productDto.getProductId())
+					.productTitle(productDto.getProductTitle())
+					.imageUrl(productDto.getImageUrl())
+					.sku(productDto.getSku())
+					.priceUnit(productDto.getPriceUnit())
+					.quantity(productDto.getQuantity())
+					.category(
+							Category.builder()
+								.categoryId(productDto.getCategoryDto().getCategoryId())
+								.categoryTitle(productDto.getCategoryDto().getCategoryTitle())
+								.imageUrl(productDto.getCategoryDto().getImageUrl())
+								.build())
+					.build();
+		}
+		finally {
+			RequestTiming.mappingEnded(startedAt);
+		}
 	}
 	
 	
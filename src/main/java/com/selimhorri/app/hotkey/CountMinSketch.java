@@ -0,0 +1,103 @@
+package com.selimhorri.app.hotkey;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Lock-free count-min sketch of access frequencies: {@code depth} rows of {@code width} counters, one counter per row
+ * incremented per access, the estimate is the smallest of them. Estimates never undercount; they overcount by the
+ * collisions, which stay small while the width is well above the number of distinct hot keys.
+ *
+ * {@link #decay()} halves every counter, so old popularity fades and a new flash sale overtakes yesterday's
+ * bestseller within a few periods. Counters are updated with CAS, never under a lock, so no access is lost: one racing
+ * with a decay lands either before the halving of its counter, and is halved with it, or after. An estimate read
+ * during a decay may mix halved and not yet halved rows.
+ */
+public final class CountMinSketch {
+	
+	private static final long[] SEEDS = {
+			0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+			0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL, 0xBF58476D1CE4E5B9L };
+	
+	private final int depth;
+	private final int width;
+	private final int mask;
+	private final AtomicIntegerArray counters;
+	
+	/**
+	 * @param width counters per row, rounded up to a power of two
+	 * @param depth rows, at most 8
+	 */
+	public CountMinSketch(final int width, final int depth) {
+		if (depth < 1 || depth > SEEDS.length)
+			throw new IllegalArgumentException("depth must be between 1 and " + SEEDS.length);
+		if (width < 1 || width > 1 << 24)
+			throw new IllegalArgumentException("width must be between 1 and " + (1 << 24));
+		this.depth = depth;
+		this.width = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+		this.mask = this.width - 1;
+		this.counters = new AtomicIntegerArray(this.depth * this.width);
+	}
+	
+	/**
+	 * Counts one access and returns the new estimate.
+	 */
+	public long increment(final long key) {
+		int estimate = Integer.MAX_VALUE;
+		for (int row = 0; row < this.depth; row++) {
+			final int slot = this.slot(key, row);
+			int count;
+			do {
+				count = this.counters.get(slot);
+				if (count == Integer.MAX_VALUE)
+					break;
+			}
+			while (!this.counters.compareAndSet(slot, count, count + 1));
+			estimate = Math.min(estimate, count == Integer.MAX_VALUE ? count : count + 1);
+		}
+		return estimate;
+	}
+	
+	public long estimate(final long key) {
+		int estimate = Integer.MAX_VALUE;
+		for (int row = 0; row < this.depth; row++)
+			estimate = Math.min(estimate, this.counters.get(this.slot(key, row)));
+		return estimate;
+	}
+	
+	/**
+	 * Halves every counter.
+	 */
+	public void decay() {
+		for (int slot = 0; slot < this.counters.length(); slot++) {
+			int count;
+			do {
+				count = this.counters.get(slot);
+			}
+			while (count != 0 && !this.counters.compareAndSet(slot, count, count >>> 1));
+		}
+	}
+	
+	public void clear() {
+		for (int slot = 0; slot < this.counters.length(); slot++)
+			this.counters.set(slot, 0);
+	}
+	
+	public int getWidth() {
+		return this.width;
+	}
+	
+	public int getDepth() {
+		return this.depth;
+	}
+	
+	private int slot(final long key, final int row) {
+		long hash = (key + 1) * SEEDS[row];
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		return row * this.width + ((int) hash & this.mask);
+	}
+	
+	
+	
+}
@@ -0,0 +1,18 @@
+package com.selimhorri.app.hotkey;
+
+import java.io.Serializable;
+
+import lombok.Value;
+
+/**
+ * A product or category id with its estimated, decayed access count.
+ */
+@Value
+public class HotKey implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	int id;
+	long frequency;
+	
+}
@@ -0,0 +1,95 @@
+package com.selimhorri.app.hotkey;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Access frequencies of one kind of id in a {@link CountMinSketch}, plus the candidates for its top N.
+ *
+ * An id joins the candidates once its estimate passes the coldest candidate kept at the last trim; when they grow to
+ * twice the capacity they are ranked again by their current estimate and cut back. Recording is a handful of CAS on
+ * the sketch and, for ids that are not yet candidates, one set lookup; ranking happens only on trims and reads.
+ */
+public class HotKeyTracker {
+	
+	private final CountMinSketch sketch;
+	private final int capacity;
+	
+	private final Set<Integer> candidates = ConcurrentHashMap.newKeySet();
+	private final AtomicBoolean trimming = new AtomicBoolean();
+	
+	/**
+	 * Estimate of the coldest candidate kept by the last trim; 0 until the candidates first fill up.
+	 */
+	private volatile long floor;
+	
+	public HotKeyTracker(final int width, final int depth, final int capacity) {
+		this.sketch = new CountMinSketch(width, depth);
+		this.capacity = capacity;
+	}
+	
+	public void record(final int id) {
+		final long estimate = this.sketch.increment(id);
+		if (estimate > this.floor && this.candidates.add(id) && this.candidates.size() > 2 * this.capacity)
+			this.trim();
+	}
+	
+	public long frequency(final int id) {
+		return this.sketch.estimate(id);
+	}
+	
+	/**
+	 * The hottest ids first, at most {@code limit} and never more than the capacity; ids not seen since they
+	 * decayed to 0 are left out.
+	 */
+	public List<HotKey> top(final int limit) {
+		return this.ranked().stream()
+				.limit(Math.min(limit, this.capacity))
+				.collect(Collectors.toList());
+	}
+	
+	/**
+	 * Halves all frequencies and re-ranks the candidates with the halved estimates.
+	 */
+	public void decay() {
+		this.sketch.decay();
+		this.trim();
+	}
+	
+	public void clear() {
+		this.sketch.clear();
+		this.candidates.clear();
+		this.floor = 0;
+	}
+	
+	private void trim() {
+		if (!this.trimming.compareAndSet(false, true))
+			return;
+		try {
+			final List<HotKey> ranked = this.ranked();
+			final List<HotKey> kept = ranked.subList(0, Math.min(this.capacity, ranked.size()));
+			final Set<Integer> keptIds = kept.stream().map(HotKey::getId).collect(Collectors.toSet());
+			this.candidates.retainAll(keptIds);
+			this.floor = kept.size() < this.capacity ? 0 : kept.get(kept.size() - 1).getFrequency();
+		}
+		finally {
+			this.trimming.set(false);
+		}
+	}
+	
+	private List<HotKey> ranked() {
+		return this.candidates.stream()
+				.map(id -> new HotKey(id, this.sketch.estimate(id)))
+				.filter(hotKey -> hotKey.getFrequency() > 0)
+				.sorted(Comparator.comparingLong(HotKey::getFrequency).reversed()
+						.thenComparingInt(HotKey::getId))
+				.collect(Collectors.toList());
+	}
+	
+	
+	
+}
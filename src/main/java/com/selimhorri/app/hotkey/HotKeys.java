@@ -0,0 +1,152 @@
+package com.selimhorri.app.hotkey;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.springframework.context.SmartLifecycle;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hot products and categories, from the product lookups by id and SKU. A product access also counts for its
+ * category, so a category is as hot as the products read in it.
+ *
+ * Frequencies are halved every {@code decayInterval}. The current top products and categories are published as
+ * {@code catalog.hot.products} / {@code catalog.hot.categories} gauges, one per id and refreshed every few seconds,
+ * and in full through {@code /actuator/hotkeys}. {@link #productFrequency} is the admission signal of the product
+ * cache.
+ */
+@Slf4j
+public class HotKeys implements SmartLifecycle, MeterBinder {
+	
+	private static final long PUBLISH_INTERVAL_SECONDS = 10;
+	
+	private final boolean enabled;
+	private final HotKeyTracker products;
+	private final HotKeyTracker categories;
+	private final Duration decayInterval;
+	private final int metricsTop;
+	
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "hot-keys");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	private volatile MultiGauge productGauges;
+	private volatile MultiGauge categoryGauges;
+	private volatile boolean running;
+	
+	public HotKeys(final boolean enabled, final int width, final int depth, final int top, final Duration decayInterval,
+			final int metricsTop) {
+		this.enabled = enabled;
+		this.products = new HotKeyTracker(width, depth, top);
+		this.categories = new HotKeyTracker(width, depth, top);
+		this.decayInterval = decayInterval;
+		this.metricsTop = metricsTop;
+	}
+	
+	public void recordProduct(final Integer productId, final Integer categoryId) {
+		if (!this.enabled || productId == null)
+			return;
+		this.products.record(productId);
+		if (categoryId != null)
+			this.categories.record(categoryId);
+	}
+	
+	/**
+	 * Decayed access count of the product; 0 when tracking is off.
+	 */
+	public long productFrequency(final Integer productId) {
+		return this.enabled && productId != null ? this.products.frequency(productId) : 0;
+	}
+	
+	public List<HotKey> hotProducts(final int limit) {
+		return this.products.top(limit);
+	}
+	
+	public List<HotKey> hotCategories(final int limit) {
+		return this.categories.top(limit);
+	}
+	
+	/**
+	 * Forgets all frequencies, e.g. those of the synthetic warm-up reads.
+	 */
+	public void reset() {
+		this.products.clear();
+		this.categories.clear();
+		this.publish();
+	}
+	
+	@Override
+	public void start() {
+		if (this.enabled) {
+			this.scheduler.scheduleWithFixedDelay(this::decay, this.decayInterval.toMillis(),
+					this.decayInterval.toMillis(), TimeUnit.MILLISECONDS);
+			this.scheduler.scheduleWithFixedDelay(this::publish, PUBLISH_INTERVAL_SECONDS, PUBLISH_INTERVAL_SECONDS,
+					TimeUnit.SECONDS);
+		}
+		this.running = true;
+	}
+	
+	@Override
+	public void stop() {
+		this.running = false;
+		this.scheduler.shutdownNow();
+	}
+	
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+	
+	private void decay() {
+		try {
+			this.products.decay();
+			this.categories.decay();
+			this.publish();
+		}
+		catch (RuntimeException e) {
+			log.warn("*** Hot keys decay failed *", e);
+		}
+	}
+	
+	/**
+	 * Replaces the rows, so ids that dropped out of the top stop being exported; the values are read live.
+	 */
+	private void publish() {
+		this.publish(this.productGauges, this.products, "product");
+		this.publish(this.categoryGauges, this.categories, "category");
+	}
+	
+	private void publish(final MultiGauge gauges, final HotKeyTracker tracker, final String tag) {
+		if (gauges == null)
+			return;
+		gauges.register(tracker.top(this.metricsTop)
+				.stream()
+				.map(hotKey -> MultiGauge.Row.of(Tags.of(tag, String.valueOf(hotKey.getId())), tracker,
+						hotKeyTracker -> hotKeyTracker.frequency(hotKey.getId())))
+				.collect(Collectors.toList()), true);
+	}
+	
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		this.productGauges = MultiGauge.builder("catalog.hot.products")
+				.description("Decayed access count of the hottest products")
+				.register(registry);
+		this.categoryGauges = MultiGauge.builder("catalog.hot.categories")
+				.description("Decayed access count of the categories of the hottest products")
+				.register(registry);
+	}
+	
+	
+	
+}
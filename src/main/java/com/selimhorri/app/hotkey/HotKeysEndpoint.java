@@ -0,0 +1,35 @@
+package com.selimhorri.app.hotkey;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * {@code GET /actuator/hotkeys?limit=}: the hottest products and categories, hottest first.
+ */
+@Endpoint(id = "hotkeys")
+@RequiredArgsConstructor
+public class HotKeysEndpoint {
+	
+	private static final int DEFAULT_LIMIT = 20;
+	
+	private final HotKeys hotKeys;
+	
+	@ReadOperation
+	public Map<String, List<HotKey>> hotKeys(@Nullable final Integer limit) {
+		final int top = limit == null ? DEFAULT_LIMIT : limit;
+		final Map<String, List<HotKey>> hot = new LinkedHashMap<>();
+		hot.put("products", this.hotKeys.hotProducts(top));
+		hot.put("categories", this.hotKeys.hotCategories(top));
+		return hot;
+	}
+	
+	
+	
+}
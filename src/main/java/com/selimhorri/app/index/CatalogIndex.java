@@ -0,0 +1,530 @@
+package com.selimhorri.app.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Read-optimized, in-memory copy of the catalog for filtered, sorted and faceted product lists.
+ *
+ * Products are stored column by column in primitive arrays (id, price in cents, quantity, category ordinal), one
+ * row per product. Categories get their ordinal in materialized path order, so a category and its whole subtree
+ * are the contiguous ordinals {@code [ordinal, subtreeEnd[ordinal])}. Per category ordinal a posting list holds its
+ * rows; queries on a category only visit the rows of that subtree, queries on the whole catalog combine the
+ * {@code live} and {@code inStock} bitsets word by word and only visit the rows whose bits survive.
+ *
+ * A query allocates only its result: the per-category counters and the top-K heap are per thread scratch. Rows can be upserted and removed one by one; a category change needs a new index (see
+ * {@link CatalogIndexMaintainer}). Reads and writes are guarded by a read/write lock.
+ */
+public final class CatalogIndex {
+	
+	/**
+	 * Upper bounds (exclusive) of the price buckets; the last bucket is open ended.
+	 */
+	public static final long[] PRICE_BUCKET_BOUNDS_CENTS = { 1_000, 5_000, 10_000, 50_000, 100_000 };
+	
+	public static final int MAX_LIMIT = 100;
+	
+	private static final int[] NO_ROWS = new int[0];
+	
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+	
+	// Categories, by ordinal; fixed for the life of the index
+	private final int[] categoryIds;
+	private final String[] categoryTitles;
+	private final int[] subtreeEnd;
+	private final int[][] childOrdinals;
+	private final int[] rootOrdinals;
+	private final Map<Integer, Integer> ordinalByCategoryId;
+	
+	// Products, by row
+	private int[] productIds;
+	private long[] priceCents;
+	private int[] quantities;
+	private int[] categoryOrdinals;
+	/**
+	 * Bitsets over the rows, 64 per word; plain arrays so that queries can walk them a word at a time.
+	 */
+	private long[] live;
+	private long[] inStock;
+	private int rowCount;
+	private int liveCount;
+	private int[] freeRows = new int[16];
+	private int freeCount;
+	
+	/**
+	 * Row of each product id, {@code -1} when absent; ids are auto-increment values, so dense.
+	 */
+	private int[] rowByProductId;
+	
+	private final int[][] postings;
+	private final int[] postingSizes;
+	
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	private CatalogIndex(final List<CategoryRow> categories, final int capacity) {
+		final int count = categories.size();
+		this.categoryIds = new int[count];
+		this.categoryTitles = new String[count];
+		this.subtreeEnd = new int[count];
+		this.ordinalByCategoryId = new HashMap<>(count * 2);
+		for (int ordinal = 0; ordinal < count; ordinal++) {
+			final CategoryRow category = categories.get(ordinal);
+			this.categoryIds[ordinal] = category.categoryId;
+			this.categoryTitles[ordinal] = category.title;
+			this.ordinalByCategoryId.put(category.categoryId, ordinal);
+		}
+		
+		// In path order a subtree ends at the first path without its prefix
+		final List<List<Integer>> children = new ArrayList<>(count);
+		final List<Integer> roots = new ArrayList<>();
+		final int[] open = new int[count];
+		int depth = 0;
+		for (int ordinal = 0; ordinal < count; ordinal++) {
+			children.add(new ArrayList<>());
+			final String path = categories.get(ordinal).path;
+			while (depth > 0 && !path.startsWith(categories.get(open[depth - 1]).path))
+				this.subtreeEnd[open[--depth]] = ordinal;
+			open[depth++] = ordinal;
+			final Integer parent = categories.get(ordinal).parentId == null
+					? null
+					: this.ordinalByCategoryId.get(categories.get(ordinal).parentId);
+			if (parent == null)
+				roots.add(ordinal);
+			else
+				children.get(parent).add(ordinal);
+		}
+		while (depth > 0)
+			this.subtreeEnd[open[--depth]] = count;
+		this.childOrdinals = new int[count][];
+		for (int ordinal = 0; ordinal < count; ordinal++)
+			this.childOrdinals[ordinal] = children.get(ordinal).stream().mapToInt(Integer::intValue).toArray();
+		this.rootOrdinals = roots.stream().mapToInt(Integer::intValue).toArray();
+		
+		final int rows = Math.max(16, capacity);
+		this.productIds = new int[rows];
+		this.live = new long[(rows + 63) >>> 6];
+		this.inStock = new long[(rows + 63) >>> 6];
+		this.priceCents = new long[rows];
+		this.quantities = new int[rows];
+		this.categoryOrdinals = new int[rows];
+		this.rowByProductId = new int[16];
+		Arrays.fill(this.rowByProductId, -1);
+		this.postings = new int[count][];
+		Arrays.fill(this.postings, NO_ROWS);
+		this.postingSizes = new int[count];
+	}
+	
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * Adds or replaces the product.
+	 *
+	 * @return {@code false} when the category is unknown to this index; nothing is changed then
+	 */
+	public boolean upsert(final int productId, final int categoryId, final long priceCents, final int quantity) {
+		final Integer ordinal = this.ordinalByCategoryId.get(categoryId);
+		if (ordinal == null)
+			return false;
+		this.lock.writeLock().lock();
+		try {
+			int row = productId < this.rowByProductId.length ? this.rowByProductId[productId] : -1;
+			if (row < 0) {
+				row = this.allocateRow();
+				this.ensureProductIdCapacity(productId);
+				this.rowByProductId[productId] = row;
+				this.productIds[row] = productId;
+				setBit(this.live, row, true);
+				this.liveCount++;
+			}
+			else if (this.categoryOrdinals[row] != ordinal)
+				this.removePosting(this.categoryOrdinals[row], row);
+			else {
+				this.setValues(row, priceCents, quantity);
+				return true;
+			}
+			this.categoryOrdinals[row] = ordinal;
+			this.addPosting(ordinal, row);
+			this.setValues(row, priceCents, quantity);
+			return true;
+		}
+		finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+	
+	public void remove(final int productId) {
+		this.lock.writeLock().lock();
+		try {
+			if (productId >= this.rowByProductId.length || this.rowByProductId[productId] < 0)
+				return;
+			final int row = this.rowByProductId[productId];
+			this.rowByProductId[productId] = -1;
+			this.removePosting(this.categoryOrdinals[row], row);
+			setBit(this.live, row, false);
+			setBit(this.inStock, row, false);
+			this.liveCount--;
+			if (this.freeCount == this.freeRows.length)
+				this.freeRows = Arrays.copyOf(this.freeRows, this.freeCount * 2);
+			this.freeRows[this.freeCount++] = row;
+		}
+		finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+	
+	public boolean containsCategory(final int categoryId) {
+		return this.ordinalByCategoryId.containsKey(categoryId);
+	}
+	
+	public int size() {
+		this.lock.readLock().lock();
+		try {
+			return this.liveCount;
+		}
+		finally {
+			this.lock.readLock().unlock();
+		}
+	}
+	
+	public int categoryCount() {
+		return this.categoryIds.length;
+	}
+	
+	/**
+	 * @throws IllegalArgumentException for an unknown category or a limit out of {@code 1..}{@value #MAX_LIMIT}
+	 */
+	public CatalogQueryResult search(final CatalogQuery query) {
+		if (query.getLimit() < 1 || query.getLimit() > MAX_LIMIT)
+			throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+		final Integer root = query.getCategoryId() == null ? null : this.ordinalByCategoryId.get(query.getCategoryId());
+		if (query.getCategoryId() != null && root == null)
+			throw new IllegalArgumentException("Unknown category " + query.getCategoryId());
+		
+		final Scratch scratch = SCRATCH.get();
+		scratch.reset(this.categoryIds.length, query.getLimit(), query.getSort());
+		final long minPrice = query.getMinPriceCents();
+		final long maxPrice = query.getMaxPriceCents();
+		final boolean inStockOnly = query.isInStockOnly();
+		this.lock.readLock().lock();
+		try {
+			if (root == null) {
+				// Whole catalog: narrow down with word-wide bitset operations first
+				final int words = (this.rowCount + 63) >>> 6;
+				for (int word = 0; word < words; word++) {
+					long bits = inStockOnly ? this.live[word] & this.inStock[word] : this.live[word];
+					while (bits != 0) {
+						final int row = (word << 6) + Long.numberOfTrailingZeros(bits);
+						final long price = this.priceCents[row];
+						if (price >= minPrice && price <= maxPrice)
+							this.collect(row, price, scratch);
+						bits &= bits - 1;
+					}
+				}
+			}
+			else {
+				for (int ordinal = root; ordinal < this.subtreeEnd[root]; ordinal++) {
+					final int[] rows = this.postings[ordinal];
+					for (int i = 0, size = this.postingSizes[ordinal]; i < size; i++) {
+						final int row = rows[i];
+						final long price = this.priceCents[row];
+						if (price >= minPrice && price <= maxPrice && (!inStockOnly || this.quantities[row] > 0))
+							this.collect(row, price, scratch);
+					}
+				}
+			}
+			return this.result(root, scratch);
+		}
+		finally {
+			this.lock.readLock().unlock();
+		}
+	}
+	
+	private void collect(final int row, final long price, final Scratch scratch) {
+		scratch.total++;
+		scratch.categoryCounts[this.categoryOrdinals[row]]++;
+		scratch.priceBuckets[bucketOf(price)]++;
+		if (this.quantities[row] > 0)
+			scratch.inStock++;
+		this.offer(row, scratch);
+	}
+	
+	/**
+	 * Bounded heap with the worst kept row on top.
+	 */
+	private void offer(final int row, final Scratch scratch) {
+		final int[] heap = scratch.heap;
+		if (scratch.heapSize < scratch.limit) {
+			int child = scratch.heapSize++;
+			heap[child] = row;
+			while (child > 0) {
+				final int parent = (child - 1) >>> 1;
+				if (!this.better(heap[parent], heap[child], scratch.sort))
+					break;
+				swap(heap, parent, child);
+				child = parent;
+			}
+		}
+		else if (this.better(row, heap[0], scratch.sort)) {
+			heap[0] = row;
+			int parent = 0;
+			while (true) {
+				final int left = 2 * parent + 1;
+				if (left >= scratch.heapSize)
+					break;
+				final int right = left + 1;
+				final int worse = right < scratch.heapSize && this.better(heap[left], heap[right], scratch.sort)
+						? right
+						: left;
+				if (!this.better(heap[parent], heap[worse], scratch.sort))
+					break;
+				swap(heap, parent, worse);
+				parent = worse;
+			}
+		}
+	}
+	
+	private boolean better(final int a, final int b, final CatalogQuery.Sort sort) {
+		final int byKey;
+		switch (sort) {
+		case PRICE_DESC:
+			byKey = Long.compare(this.priceCents[b], this.priceCents[a]);
+			break;
+		case STOCK_DESC:
+			byKey = Integer.compare(this.quantities[b], this.quantities[a]);
+			break;
+		default:
+			byKey = Long.compare(this.priceCents[a], this.priceCents[b]);
+		}
+		return byKey != 0 ? byKey < 0 : this.productIds[a] < this.productIds[b];
+	}
+	
+	private CatalogQueryResult result(final Integer root, final Scratch scratch) {
+		// Heap to best-first order; at most MAX_LIMIT rows, insertion sort does
+		final int[] heap = scratch.heap;
+		for (int i = 1; i < scratch.heapSize; i++) {
+			final int row = heap[i];
+			int j = i - 1;
+			while (j >= 0 && this.better(row, heap[j], scratch.sort)) {
+				heap[j + 1] = heap[j];
+				j--;
+			}
+			heap[j + 1] = row;
+		}
+		final int[] topProductIds = new int[scratch.heapSize];
+		for (int i = 0; i < scratch.heapSize; i++)
+			topProductIds[i] = this.productIds[heap[i]];
+		
+		final int[] facetOrdinals = root == null ? this.rootOrdinals : this.childOrdinals[root];
+		int facets = 0;
+		final int[] facetCounts = new int[facetOrdinals.length];
+		for (int i = 0; i < facetOrdinals.length; i++) {
+			for (int ordinal = facetOrdinals[i]; ordinal < this.subtreeEnd[facetOrdinals[i]]; ordinal++)
+				facetCounts[i] += scratch.categoryCounts[ordinal];
+			if (facetCounts[i] > 0)
+				facets++;
+		}
+		final int[] categoryFacetIds = new int[facets];
+		final String[] categoryFacetTitles = new String[facets];
+		final int[] categoryFacetCounts = new int[facets];
+		for (int i = 0, f = 0; i < facetOrdinals.length; i++) {
+			if (facetCounts[i] == 0)
+				continue;
+			categoryFacetIds[f] = this.categoryIds[facetOrdinals[i]];
+			categoryFacetTitles[f] = this.categoryTitles[facetOrdinals[i]];
+			categoryFacetCounts[f++] = facetCounts[i];
+		}
+		
+		return new CatalogQueryResult(scratch.total, topProductIds, categoryFacetIds, categoryFacetTitles,
+				categoryFacetCounts, scratch.priceBuckets.clone(), scratch.inStock);
+	}
+	
+	/**
+	 * Sum of comparisons rather than a search: prices are random, so branches would mostly be mispredicted.
+	 */
+	private static int bucketOf(final long priceCents) {
+		int bucket = 0;
+		for (final long bound : PRICE_BUCKET_BOUNDS_CENTS)
+			bucket += priceCents >= bound ? 1 : 0;
+		return bucket;
+	}
+	
+	private static void setBit(final long[] words, final int bit, final boolean value) {
+		if (value)
+			words[bit >>> 6] |= 1L << bit;
+		else
+			words[bit >>> 6] &= ~(1L << bit);
+	}
+	
+	private static void swap(final int[] array, final int i, final int j) {
+		final int tmp = array[i];
+		array[i] = array[j];
+		array[j] = tmp;
+	}
+	
+	private void setValues(final int row, final long priceCents, final int quantity) {
+		this.priceCents[row] = priceCents;
+		this.quantities[row] = quantity;
+		setBit(this.inStock, row, quantity > 0);
+	}
+	
+	private int allocateRow() {
+		if (this.freeCount > 0)
+			return this.freeRows[--this.freeCount];
+		if (this.rowCount == this.productIds.length) {
+			final int capacity = this.rowCount * 2;
+			this.productIds = Arrays.copyOf(this.productIds, capacity);
+			this.priceCents = Arrays.copyOf(this.priceCents, capacity);
+			this.quantities = Arrays.copyOf(this.quantities, capacity);
+			this.categoryOrdinals = Arrays.copyOf(this.categoryOrdinals, capacity);
+			this.live = Arrays.copyOf(this.live, (capacity + 63) >>> 6);
+			this.inStock = Arrays.copyOf(this.inStock, (capacity + 63) >>> 6);
+		}
+		return this.rowCount++;
+	}
+	
+	private void ensureProductIdCapacity(final int productId) {
+		if (productId < this.rowByProductId.length)
+			return;
+		final int previous = this.rowByProductId.length;
+		this.rowByProductId = Arrays.copyOf(this.rowByProductId, Math.max(productId + 1, previous * 2));
+		Arrays.fill(this.rowByProductId, previous, this.rowByProductId.length, -1);
+	}
+	
+	private void addPosting(final int ordinal, final int row) {
+		final int size = this.postingSizes[ordinal];
+		if (size == this.postings[ordinal].length)
+			this.postings[ordinal] = Arrays.copyOf(this.postings[ordinal], Math.max(4, size * 2));
+		this.postings[ordinal][size] = row;
+		this.postingSizes[ordinal] = size + 1;
+	}
+	
+	private void removePosting(final int ordinal, final int row) {
+		final int[] rows = this.postings[ordinal];
+		final int last = --this.postingSizes[ordinal];
+		for (int i = 0; i <= last; i++) {
+			if (rows[i] == row) {
+				rows[i] = rows[last];
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Collects categories and products in any order; products of unknown categories are skipped.
+	 */
+	public static final class Builder {
+		
+		private final List<CategoryRow> categories = new ArrayList<>();
+		private int[] productIds = new int[1_024];
+		private int[] categoryIds = new int[1_024];
+		private long[] priceCents = new long[1_024];
+		private int[] quantities = new int[1_024];
+		private int products;
+		
+		private Builder() {
+			
+		}
+		
+		public Builder category(final int categoryId, final Integer parentCategoryId, final String title,
+				final String path) {
+			this.categories.add(new CategoryRow(categoryId, parentCategoryId, title,
+					path != null ? path : "/" + categoryId + "/"));
+			return this;
+		}
+		
+		public Builder product(final int productId, final int categoryId, final long priceCents, final int quantity) {
+			if (this.products == this.productIds.length) {
+				final int capacity = this.products * 2;
+				this.productIds = Arrays.copyOf(this.productIds, capacity);
+				this.categoryIds = Arrays.copyOf(this.categoryIds, capacity);
+				this.priceCents = Arrays.copyOf(this.priceCents, capacity);
+				this.quantities = Arrays.copyOf(this.quantities, capacity);
+			}
+			this.productIds[this.products] = productId;
+			this.categoryIds[this.products] = categoryId;
+			this.priceCents[this.products] = priceCents;
+			this.quantities[this.products] = quantity;
+			this.products++;
+			return this;
+		}
+		
+		/**
+		 * Rows are laid out in category ordinal order (counting sort), so the rows of any subtree are one contiguous,
+		 * sequentially read block until products start moving.
+		 */
+		public CatalogIndex build() {
+			this.categories.sort(Comparator.comparing(category -> category.path));
+			final CatalogIndex index = new CatalogIndex(this.categories, this.products);
+			final int[] ordinals = new int[this.products];
+			final int[] start = new int[index.categoryIds.length + 1];
+			for (int i = 0; i < this.products; i++) {
+				final Integer ordinal = index.ordinalByCategoryId.get(this.categoryIds[i]);
+				ordinals[i] = ordinal == null ? -1 : ordinal;
+				if (ordinal != null)
+					start[ordinal + 1]++;
+			}
+			for (int ordinal = 0; ordinal < index.categoryIds.length; ordinal++)
+				start[ordinal + 1] += start[ordinal];
+			final int[] order = new int[start[index.categoryIds.length]];
+			for (int i = 0; i < this.products; i++)
+				if (ordinals[i] >= 0)
+					order[start[ordinals[i]]++] = i;
+			for (final int i : order)
+				index.upsert(this.productIds[i], this.categoryIds[i], this.priceCents[i], this.quantities[i]);
+			return index;
+		}
+		
+	}
+	
+	private static final class CategoryRow {
+		
+		private final int categoryId;
+		private final Integer parentId;
+		private final String title;
+		private final String path;
+		
+		private CategoryRow(final int categoryId, final Integer parentId, final String title, final String path) {
+			this.categoryId = categoryId;
+			this.parentId = parentId;
+			this.title = title;
+			this.path = path;
+		}
+		
+	}
+	
+	private static final class Scratch {
+		
+		private int[] categoryCounts = new int[0];
+		private final int[] priceBuckets = new int[PRICE_BUCKET_BOUNDS_CENTS.length + 1];
+		private final int[] heap = new int[MAX_LIMIT];
+		private int heapSize;
+		private int limit;
+		private CatalogQuery.Sort sort;
+		private int total;
+		private int inStock;
+		
+		private void reset(final int categories, final int limit, final CatalogQuery.Sort sort) {
+			if (this.categoryCounts.length < categories)
+				this.categoryCounts = new int[categories];
+			else
+				Arrays.fill(this.categoryCounts, 0, categories, 0);
+			Arrays.fill(this.priceBuckets, 0);
+			this.heapSize = 0;
+			this.limit = limit;
+			this.sort = sort;
+			this.total = 0;
+			this.inStock = 0;
+		}
+		
+	}
+	
+	
+	
+}
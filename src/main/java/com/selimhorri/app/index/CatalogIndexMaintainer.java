@@ -0,0 +1,273 @@
+package com.selimhorri.app.index;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.selimhorri.app.cache.CoalescingCache;
+import com.selimhorri.app.domain.ProductCatalogView;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Builds the {@link CatalogIndex} from the database on start and keeps it up to date.
+ *
+ * Every committed change to the product cache, local or from another replica, re-reads the affected products
+ * and upserts them; whole-cache invalidations and any category change rebuild the index in the background and swap
+ * it in. All updates run on one thread, in order, so a product changed during a rebuild is re-read after it.
+ *
+ * With a {@link CatalogSnapshotStore}, builds read the products from the latest snapshot and only re-read from
+ * the database those changed since it was taken.
+ */
+@Slf4j
+public class CatalogIndexMaintainer implements SmartLifecycle, MeterBinder {
+	
+	private static final int REFRESH_CHUNK = 500;
+	private static final int FETCH_SIZE = 10_000;
+	
+	private static final long RETRY_DELAY_MILLIS = 5_000;
+	
+	private final JdbcTemplate jdbcTemplate;
+	private final CoalescingCache<Integer, ?> productCache;
+	private final CoalescingCache<Integer, ?> categoryCache;
+	private final CatalogSnapshotStore snapshotStore;
+	
+	private final ScheduledExecutorService updater = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "catalog-index");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	/**
+	 * Guarded by {@code this}.
+	 */
+	private Set<Integer> dirtyProductIds = new LinkedHashSet<>();
+	private boolean rebuildRequested;
+	private boolean drainScheduled;
+	
+	private volatile CatalogIndex index;
+	private volatile boolean running;
+	
+	private volatile Timer rebuildTimer;
+	private final LongAdder updates = new LongAdder();
+	
+	public CatalogIndexMaintainer(final JdbcTemplate jdbcTemplate, final CoalescingCache<Integer, ?> productCache,
+			final CoalescingCache<Integer, ?> categoryCache, final CatalogSnapshotStore snapshotStore) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.productCache = productCache;
+		this.categoryCache = categoryCache;
+		this.snapshotStore = snapshotStore;
+	}
+	
+	public CatalogIndex getIndex() {
+		return this.index;
+	}
+	
+	@Override
+	public void start() {
+		this.productCache.addChangeListener((cacheName, productId) -> {
+			if (productId == null)
+				this.requestRebuild();
+			else
+				this.markDirty(productId);
+		});
+		this.categoryCache.addChangeListener((cacheName, categoryId) -> this.requestRebuild());
+		// Before the web server opens, so no search ever sees an empty index
+		this.index = this.build();
+		this.running = true;
+		// changes committed while it was built
+		this.scheduleDrain(0);
+	}
+	
+	@Override
+	public void stop() {
+		this.running = false;
+		this.updater.shutdownNow();
+	}
+	
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+	
+	@Override
+	public int getPhase() {
+		return 0;
+	}
+	
+	private void markDirty(final Integer productId) {
+		synchronized (this) {
+			this.dirtyProductIds.add(productId);
+		}
+		this.scheduleDrain(0);
+	}
+	
+	private void requestRebuild() {
+		synchronized (this) {
+			this.rebuildRequested = true;
+		}
+		this.scheduleDrain(0);
+	}
+	
+	private void scheduleDrain(final long delayMillis) {
+		synchronized (this) {
+			if (this.drainScheduled || !this.running)
+				return;
+			this.drainScheduled = true;
+		}
+		this.updater.schedule(this::drain, delayMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	private void drain() {
+		final boolean rebuild;
+		final Set<Integer> dirty;
+		synchronized (this) {
+			rebuild = this.rebuildRequested;
+			this.rebuildRequested = false;
+			dirty = this.dirtyProductIds;
+			this.dirtyProductIds = new LinkedHashSet<>();
+			this.drainScheduled = false;
+		}
+		try {
+			if (rebuild)
+				// the rebuild reads the current rows of the products marked before it as well
+				this.index = this.build();
+			else if (!dirty.isEmpty() && !this.refresh(this.index, dirty))
+				// a product moved to a category created after the index was built
+				this.index = this.build();
+		}
+		catch (RuntimeException e) {
+			// stale until a rebuild catches up, retried after a pause
+			log.warn("*** Catalog index update failed; rebuild={}, products={}; retrying in {}ms *", rebuild,
+					dirty.size(), RETRY_DELAY_MILLIS, e);
+			synchronized (this) {
+				this.rebuildRequested = true;
+			}
+			this.scheduleDrain(RETRY_DELAY_MILLIS);
+		}
+	}
+	
+	private CatalogIndex build() {
+		final long start = System.nanoTime();
+		final Set<Integer> deletedCategoryIds = new HashSet<>();
+		final CatalogSnapshot snapshot = this.snapshotStore == null ? null : this.snapshotStore.current();
+		CatalogIndex built = null;
+		if (snapshot != null) {
+			final CatalogIndex.Builder builder = this.builderWithCategories(deletedCategoryIds);
+			snapshot.forEachProduct(product -> {
+				if (!deletedCategoryIds.contains(product.getCategoryId()))
+					builder.product(product.getProductId(), product.getCategoryId(), product.getPriceCents(),
+							product.getQuantity());
+			});
+			built = builder.build();
+			if (!this.refresh(built, this.snapshotStore.changedSince(snapshot))) {
+				log.info("*** Catalog snapshot refers to unknown categories; reading all products *");
+				built = null;
+			}
+		}
+		if (built == null) {
+			final CatalogIndex.Builder builder = this.builderWithCategories(deletedCategoryIds);
+			this.jdbcTemplate.query(connection -> {
+				final var statement = connection.prepareStatement(
+						"SELECT product_id, category_id, price_unit, quantity FROM products WHERE category_id IS NOT NULL");
+				statement.setFetchSize(FETCH_SIZE);
+				return statement;
+			}, resultSet -> {
+				final int categoryId = resultSet.getInt(2);
+				if (!deletedCategoryIds.contains(categoryId))
+					builder.product(resultSet.getInt(1), categoryId, priceCents(resultSet), resultSet.getInt(4));
+			});
+			built = builder.build();
+		}
+		
+		final long elapsed = System.nanoTime() - start;
+		if (this.rebuildTimer != null)
+			this.rebuildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+		log.info("*** Catalog index built from {}; products={}, categories={}, took={}ms *",
+				snapshot != null ? snapshot.getFile().getFileName() : "database", built.size(), built.categoryCount(),
+				TimeUnit.NANOSECONDS.toMillis(elapsed));
+		return built;
+	}
+	
+	private CatalogIndex.Builder builderWithCategories(final Set<Integer> deletedCategoryIds) {
+		final CatalogIndex.Builder builder = CatalogIndex.builder();
+		this.jdbcTemplate.query("SELECT category_id, parent_category_id, category_title, category_path FROM categories",
+				resultSet -> {
+					final int categoryId = resultSet.getInt(1);
+					final String title = resultSet.getString(3);
+					if (ProductCatalogView.DELETED_CATEGORY_TITLE.equals(title))
+						deletedCategoryIds.add(categoryId);
+					builder.category(categoryId, (Integer) resultSet.getObject(2), title, resultSet.getString(4));
+				});
+		return builder;
+	}
+	
+	/**
+	 * Re-reads the products and upserts or removes them; {@code false} when one of them is in a category the index
+	 * does not know, so a rebuild is needed.
+	 */
+	private boolean refresh(final CatalogIndex target, final Set<Integer> productIds) {
+		final List<Integer> ids = new ArrayList<>(productIds);
+		for (int from = 0; from < ids.size(); from += REFRESH_CHUNK) {
+			final List<Integer> chunk = ids.subList(from, Math.min(from + REFRESH_CHUNK, ids.size()));
+			final Set<Integer> found = new HashSet<>();
+			final boolean[] unknownCategory = { false };
+			this.jdbcTemplate.query("SELECT p.product_id, p.category_id, p.price_unit, p.quantity, c.category_title "
+					+ "FROM products p JOIN categories c ON c.category_id = p.category_id "
+					+ "WHERE p.product_id IN (" + chunk.stream().map(String::valueOf).collect(Collectors.joining(",")) + ")",
+					resultSet -> {
+						final String title = resultSet.getString(5);
+						if (ProductCatalogView.DELETED_CATEGORY_TITLE.equals(title))
+							return;
+						found.add(resultSet.getInt(1));
+						if (!target.upsert(resultSet.getInt(1), resultSet.getInt(2), priceCents(resultSet),
+								resultSet.getInt(4)))
+							unknownCategory[0] = true;
+					});
+			chunk.stream().filter(id -> !found.contains(id)).forEach(target::remove);
+			if (unknownCategory[0])
+				return false;
+		}
+		this.updates.add(productIds.size());
+		return true;
+	}
+	
+	private static long priceCents(final ResultSet resultSet) throws SQLException {
+		final BigDecimal price = resultSet.getBigDecimal(3);
+		return price == null ? 0 : price.movePointRight(2).longValue();
+	}
+	
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		Gauge.builder("catalog.index.products", this, maintainer -> maintainer.index == null ? 0 : maintainer.index.size())
+				.description("Products in the in-memory catalog index")
+				.register(registry);
+		this.rebuildTimer = Timer.builder("catalog.index.rebuild")
+				.description("Full rebuilds of the catalog index from the database")
+				.register(registry);
+		FunctionCounter.builder("catalog.index.updates", this.updates, LongAdder::sum)
+				.description("Products upserted or removed one by one")
+				.register(registry);
+	}
+	
+	
+	
+}
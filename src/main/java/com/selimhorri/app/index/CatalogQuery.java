@@ -0,0 +1,48 @@
+package com.selimhorri.app.index;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Filter, sort and page size of a {@link CatalogIndex#search} call. Prices are in cents.
+ */
+@Value
+@Builder
+public class CatalogQuery {
+	
+	/**
+	 * Products of this category and all its subcategories; {@code null} for the whole catalog.
+	 */
+	Integer categoryId;
+	
+	@Builder.Default
+	long minPriceCents = 0;
+	
+	@Builder.Default
+	long maxPriceCents = Long.MAX_VALUE;
+	
+	boolean inStockOnly;
+	
+	@Builder.Default
+	Sort sort = Sort.PRICE_ASC;
+	
+	@Builder.Default
+	int limit = 20;
+	
+	public enum Sort {
+		
+		PRICE_ASC, PRICE_DESC, STOCK_DESC
+		
+	}
+	
+}
+
+
+
+
+
+
+
+
+
+
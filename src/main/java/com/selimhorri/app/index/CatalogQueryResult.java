@@ -0,0 +1,45 @@
+package com.selimhorri.app.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Top products of a {@link CatalogQuery} and the facet counts over all its matches.
+ */
+@Getter
+@AllArgsConstructor
+public class CatalogQueryResult {
+	
+	private final int total;
+	
+	/**
+	 * Best first, at most {@code limit}.
+	 */
+	private final int[] productIds;
+	
+	/**
+	 * Direct subcategories of the queried category (top-level ones without category), with the matches in their
+	 * whole subtree; parallel arrays, only categories with matches.
+	 */
+	private final int[] categoryFacetIds;
+	private final String[] categoryFacetTitles;
+	private final int[] categoryFacetCounts;
+	
+	/**
+	 * One count per bucket of {@link CatalogIndex#PRICE_BUCKET_BOUNDS_CENTS}.
+	 */
+	private final int[] priceBucketCounts;
+	
+	private final int inStockCount;
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,311 @@
+package com.selimhorri.app.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import lombok.Value;
+
+/**
+ * Versioned binary file with the product/category read model, written periodically by
+ * {@link CatalogSnapshotStore} and read back through a memory mapping on start.
+ *
+ * <pre>
+ * header     int magic "PCS1", int format, long version, long watermark, long fullVersion, long database,
+ *            int categories, int products
+ * category   int id, int parentId (0: none), str title, str imageUrl, str path
+ * product    int id, int categoryId, long priceCents, int quantity, long updatedAt, str title, str imageUrl, str sku
+ * str        int length in bytes (-1: null), UTF-8 bytes
+ * </pre>
+ *
+ * Big endian, products in ascending id order. {@code version} is the write time and {@code watermark} the database
+ * time up to which changes are included, both epoch millis; {@code fullVersion} is the version of the full snapshot
+ * this one was merged from (its own for a full one) and {@code database} a fingerprint of the database it was read
+ * from. {@code updatedAt} is 0 when the row has none. The same bytes are served as the catalog export.
+ */
+public final class CatalogSnapshot {
+	
+	public static final String MEDIA_TYPE = "application/vnd.product-catalog-snapshot.v2";
+	
+	private static final int MAGIC = 0x50435331;
+	private static final int FORMAT = 2;
+	private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 8 + 8 + 4 + 4;
+	
+	private final Path file;
+	private final long version;
+	private final long watermark;
+	private final long fullVersion;
+	private final long database;
+	private final int categoryCount;
+	private final int productCount;
+	private final MappedByteBuffer buffer;
+	
+	private CatalogSnapshot(final Path file, final MappedByteBuffer buffer) throws IOException {
+		this.file = file;
+		this.buffer = buffer;
+		if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT)
+			throw new IOException("Not a catalog snapshot of format " + FORMAT + ": " + file);
+		this.version = buffer.getLong(8);
+		this.watermark = buffer.getLong(16);
+		this.fullVersion = buffer.getLong(24);
+		this.database = buffer.getLong(32);
+		this.categoryCount = buffer.getInt(40);
+		this.productCount = buffer.getInt(44);
+	}
+	
+	/**
+	 * Maps the file read-only; the mapping stays valid after the file is replaced or deleted.
+	 */
+	public static CatalogSnapshot open(final Path file) throws IOException {
+		try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("Catalog snapshot larger than 2 GB: " + file);
+			return new CatalogSnapshot(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+	
+	public Path getFile() {
+		return this.file;
+	}
+	
+	public long getVersion() {
+		return this.version;
+	}
+	
+	public long getWatermark() {
+		return this.watermark;
+	}
+	
+	public long getFullVersion() {
+		return this.fullVersion;
+	}
+	
+	public long getDatabase() {
+		return this.database;
+	}
+	
+	public int getCategoryCount() {
+		return this.categoryCount;
+	}
+	
+	public int getProductCount() {
+		return this.productCount;
+	}
+	
+	public long getSize() {
+		return this.buffer.capacity();
+	}
+	
+	public void forEachCategory(final Consumer<CategoryRow> action) {
+		final ByteBuffer in = this.buffer.duplicate().position(HEADER_BYTES);
+		for (int i = 0; i < this.categoryCount; i++)
+			action.accept(readCategory(in));
+	}
+	
+	/**
+	 * In ascending product id order.
+	 */
+	public void forEachProduct(final Consumer<ProductRow> action) {
+		this.products().forEachRemaining(action);
+	}
+	
+	/**
+	 * In ascending product id order.
+	 */
+	public Iterator<ProductRow> products() {
+		final ByteBuffer in = this.buffer.duplicate().position(HEADER_BYTES);
+		for (int i = 0; i < this.categoryCount; i++)
+			readCategory(in);
+		return new Iterator<>() {
+			
+			private int read;
+			
+			@Override
+			public boolean hasNext() {
+				return this.read < CatalogSnapshot.this.productCount;
+			}
+			
+			@Override
+			public ProductRow next() {
+				if (!this.hasNext())
+					throw new NoSuchElementException();
+				this.read++;
+				return readProduct(in);
+			}
+			
+		};
+	}
+	
+	private static CategoryRow readCategory(final ByteBuffer in) {
+		final int categoryId = in.getInt();
+		final int parentId = in.getInt();
+		return new CategoryRow(categoryId, parentId == 0 ? null : parentId, readString(in), readString(in),
+				readString(in));
+	}
+	
+	private static ProductRow readProduct(final ByteBuffer in) {
+		final int productId = in.getInt();
+		final int categoryId = in.getInt();
+		final long priceCents = in.getLong();
+		final int quantity = in.getInt();
+		final long updatedAt = in.getLong();
+		return new ProductRow(productId, categoryId, priceCents, quantity, updatedAt, readString(in), readString(in),
+				readString(in));
+	}
+	
+	private static String readString(final ByteBuffer in) {
+		final int length = in.getInt();
+		if (length < 0)
+			return null;
+		final byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * @param fullVersion {@code version} for a full snapshot, else the {@code fullVersion} of the one merged into
+	 */
+	public static Writer writer(final Path file, final long version, final long watermark, final long fullVersion,
+			final long database) throws IOException {
+		return new Writer(file, version, watermark, fullVersion, database);
+	}
+	
+	/**
+	 * Writes all categories first, then the products in ascending id order, into a temporary file that
+	 * {@link #commit()} moves into place atomically; readers never see a partial snapshot.
+	 */
+	public static final class Writer implements AutoCloseable {
+		
+		private final Path file;
+		private final Path temporary;
+		private final long version;
+		private final long watermark;
+		private final long fullVersion;
+		private final long database;
+		private final FileChannel channel;
+		private final DataOutputStream out;
+		private int categories;
+		private int products;
+		private int lastProductId = Integer.MIN_VALUE;
+		private boolean committed;
+		
+		private Writer(final Path file, final long version, final long watermark, final long fullVersion,
+				final long database) throws IOException {
+			this.file = file;
+			this.temporary = file.resolveSibling(file.getFileName() + ".tmp");
+			this.version = version;
+			this.watermark = watermark;
+			this.fullVersion = fullVersion;
+			this.database = database;
+			this.channel = FileChannel.open(this.temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(this.channel), 1 << 16));
+			this.out.write(new byte[HEADER_BYTES]);
+		}
+		
+		public void category(final CategoryRow category) throws IOException {
+			if (this.products > 0)
+				throw new IllegalStateException("Categories must be written before products");
+			this.out.writeInt(category.getCategoryId());
+			this.out.writeInt(category.getParentId() == null ? 0 : category.getParentId());
+			this.writeString(category.getTitle());
+			this.writeString(category.getImageUrl());
+			this.writeString(category.getPath());
+			this.categories++;
+		}
+		
+		public void product(final ProductRow product) throws IOException {
+			if (product.getProductId() <= this.lastProductId)
+				throw new IllegalStateException("Products must be written in ascending id order");
+			this.lastProductId = product.getProductId();
+			this.out.writeInt(product.getProductId());
+			this.out.writeInt(product.getCategoryId());
+			this.out.writeLong(product.getPriceCents());
+			this.out.writeInt(product.getQuantity());
+			this.out.writeLong(product.getUpdatedAt());
+			this.writeString(product.getTitle());
+			this.writeString(product.getImageUrl());
+			this.writeString(product.getSku());
+			this.products++;
+		}
+		
+		private void writeString(final String value) throws IOException {
+			if (value == null) {
+				this.out.writeInt(-1);
+				return;
+			}
+			final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			this.out.writeInt(bytes.length);
+			this.out.write(bytes);
+		}
+		
+		public void commit() throws IOException {
+			this.out.flush();
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+					.putInt(MAGIC)
+					.putInt(FORMAT)
+					.putLong(this.version)
+					.putLong(this.watermark)
+					.putLong(this.fullVersion)
+					.putLong(this.database)
+					.putInt(this.categories)
+					.putInt(this.products)
+					.flip();
+			while (header.hasRemaining())
+				this.channel.write(header, header.position());
+			this.channel.force(true);
+			this.out.close();
+			Files.move(this.temporary, this.file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			this.committed = true;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			if (this.committed)
+				return;
+			this.out.close();
+			Files.deleteIfExists(this.temporary);
+		}
+		
+	}
+	
+	@Value
+	public static class CategoryRow {
+		
+		int categoryId;
+		Integer parentId;
+		String title;
+		String imageUrl;
+		String path;
+		
+	}
+	
+	@Value
+	public static class ProductRow {
+		
+		int productId;
+		int categoryId;
+		long priceCents;
+		int quantity;
+		long updatedAt;
+		String title;
+		String imageUrl;
+		String sku;
+		
+	}
+	
+	
+	
+}
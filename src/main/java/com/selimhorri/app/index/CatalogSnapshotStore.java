@@ -0,0 +1,360 @@
+package com.selimhorri.app.index;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.selimhorri.app.domain.ProductCatalogView;
+import com.selimhorri.app.index.CatalogSnapshot.CategoryRow;
+import com.selimhorri.app.index.CatalogSnapshot.ProductRow;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps a recent {@link CatalogSnapshot} on local disk, so a restart reads the catalog from the file and only asks
+ * the database for what changed since ({@code updated_at}).
+ *
+ * Only the first snapshot reads the whole products table; every later one merges the rows changed since the
+ * previous watermark into the previous file. Changes are looked up from {@code watermark - catchUpMargin}, so rows
+ * of transactions that committed after the watermark was taken are not lost. A snapshot older than
+ * {@code maxAge} is ignored and the next one is read in full again, which also picks up rows written without
+ * {@code updated_at}; so is the next one once the full snapshot the merges started from is older than
+ * {@code maxAge}. Files are named by version; the last few are kept, so an export in progress never loses its
+ * file.
+ *
+ * Every snapshot carries a fingerprint of the database identity it was read from, and one of another database (a
+ * build or test run, another environment sharing the directory) is never opened.
+ */
+@Slf4j
+public class CatalogSnapshotStore implements SmartLifecycle, MeterBinder {
+	
+	private static final String FILE_PREFIX = "catalog-";
+	private static final String FILE_SUFFIX = ".snapshot";
+	private static final int FETCH_SIZE = 10_000;
+	
+	private static final String PRODUCT_COLUMNS =
+			"product_id, category_id, price_unit, quantity, updated_at, product_title, image_url, sku";
+	
+	private final JdbcTemplate jdbcTemplate;
+	private final Supplier<String> databaseIdentity;
+	private final Path directory;
+	private final Duration interval;
+	private final Duration catchUpMargin;
+	private final Duration maxAge;
+	private final int keep;
+	
+	private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "catalog-snapshot");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	private volatile CatalogSnapshot current;
+	private volatile long database;
+	private volatile boolean running;
+	
+	private volatile Timer writeTimer;
+	
+	/**
+	 * @param databaseIdentity tells this database from any other; read on start, once the schema is migrated
+	 */
+	public CatalogSnapshotStore(final JdbcTemplate jdbcTemplate, final Supplier<String> databaseIdentity,
+			final Path directory, final Duration interval, final Duration catchUpMargin, final Duration maxAge,
+			final int keep) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.databaseIdentity = databaseIdentity;
+		this.directory = directory;
+		this.interval = interval;
+		this.catchUpMargin = catchUpMargin;
+		this.maxAge = maxAge;
+		this.keep = Math.max(2, keep);
+	}
+	
+	/**
+	 * The latest snapshot, or {@code null} when there is none yet or it is older than {@code maxAge}.
+	 */
+	public CatalogSnapshot current() {
+		final CatalogSnapshot snapshot = this.current;
+		if (snapshot == null || System.currentTimeMillis() - snapshot.getVersion() > this.maxAge.toMillis())
+			return null;
+		return snapshot;
+	}
+	
+	/**
+	 * Ids of the products changed since the snapshot was taken, including those moved to the Deleted category.
+	 */
+	public Set<Integer> changedSince(final CatalogSnapshot snapshot) {
+		return new HashSet<>(this.jdbcTemplate.queryForList(
+				"SELECT product_id FROM products WHERE updated_at >= ?", Integer.class, this.catchUpFrom(snapshot)));
+	}
+	
+	private Timestamp catchUpFrom(final CatalogSnapshot snapshot) {
+		return new Timestamp(snapshot.getWatermark() - this.catchUpMargin.toMillis());
+	}
+	
+	@Override
+	public void start() {
+		try {
+			this.database = fingerprint(this.databaseIdentity.get());
+			Files.createDirectories(this.directory);
+			this.current = this.openLatest();
+		}
+		catch (IOException | RuntimeException e) {
+			log.warn("*** Catalog snapshot directory {} not usable; starting without snapshot *", this.directory, e);
+		}
+		// Without a usable snapshot the first one is written soon (usually already by the warm-up)
+		final long firstDelay = this.current() == null ? Math.min(this.interval.toMillis(), 60_000)
+				: this.interval.toMillis();
+		this.writer.scheduleWithFixedDelay(this::writeQuietly, firstDelay, this.interval.toMillis(),
+				TimeUnit.MILLISECONDS);
+		this.running = true;
+	}
+	
+	@Override
+	public void stop() {
+		this.running = false;
+		this.writer.shutdownNow();
+	}
+	
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+	
+	/**
+	 * Before the {@link CatalogIndexMaintainer}, which builds the index from the snapshot.
+	 */
+	@Override
+	public int getPhase() {
+		return -1;
+	}
+	
+	private CatalogSnapshot openLatest() throws IOException {
+		for (final Path file : this.snapshotFiles()) {
+			try {
+				final CatalogSnapshot snapshot = CatalogSnapshot.open(file);
+				if (snapshot.getDatabase() != this.database) {
+					log.warn("*** Catalog snapshot {} was read from another database; ignored *", file.getFileName());
+					continue;
+				}
+				log.info("*** Catalog snapshot {} opened; products={}, watermark={} *", file.getFileName(),
+						snapshot.getProductCount(), snapshot.getWatermark());
+				return snapshot;
+			}
+			catch (IOException | RuntimeException e) {
+				log.warn("*** Catalog snapshot {} unreadable; trying an older one *", file.getFileName(), e);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Newest first.
+	 */
+	private List<Path> snapshotFiles() throws IOException {
+		try (final Stream<Path> files = Files.list(this.directory)) {
+			return files.filter(file -> file.getFileName().toString().startsWith(FILE_PREFIX)
+							&& file.getFileName().toString().endsWith(FILE_SUFFIX))
+					.sorted((a, b) -> Long.compare(versionOf(b), versionOf(a)))
+					.collect(Collectors.toList());
+		}
+	}
+	
+	private static long versionOf(final Path file) {
+		final String name = file.getFileName().toString();
+		try {
+			return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+		}
+		catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * 64 bits of the MD5 of the identity; 0 is left for "unknown", which no snapshot is opened with.
+	 */
+	static long fingerprint(final String databaseIdentity) {
+		final long fingerprint = UUID.nameUUIDFromBytes(databaseIdentity.getBytes(StandardCharsets.UTF_8))
+				.getMostSignificantBits();
+		return fingerprint == 0 ? 1 : fingerprint;
+	}
+	
+	private void writeQuietly() {
+		try {
+			this.write();
+		}
+		catch (RuntimeException | IOException e) {
+			log.warn("*** Catalog snapshot not written; keeping the previous one *", e);
+		}
+	}
+	
+	/**
+	 * Writes a new snapshot now: merged into the current one, or read in full without one or once the merges have
+	 * gone on for {@code maxAge}. The scheduled writes and the one of the warm-up (on start without a snapshot) take
+	 * turns.
+	 */
+	public synchronized CatalogSnapshot write() throws IOException {
+		final long start = System.nanoTime();
+		final long watermark = this.jdbcTemplate.queryForObject("SELECT CURRENT_TIMESTAMP", Timestamp.class).getTime();
+		final long version = Math.max(System.currentTimeMillis(),
+				this.current == null ? 0 : this.current.getVersion() + 1);
+		final CatalogSnapshot current = this.current();
+		final CatalogSnapshot base = current == null
+				|| System.currentTimeMillis() - current.getFullVersion() > this.maxAge.toMillis() ? null : current;
+		
+		final List<CategoryRow> categories = new ArrayList<>();
+		final Set<Integer> deletedCategoryIds = new HashSet<>();
+		this.jdbcTemplate.query(
+				"SELECT category_id, parent_category_id, category_title, image_url, category_path FROM categories "
+						+ "ORDER BY category_id",
+				resultSet -> {
+					final CategoryRow category = new CategoryRow(resultSet.getInt(1), (Integer) resultSet.getObject(2),
+							resultSet.getString(3), resultSet.getString(4), resultSet.getString(5));
+					if (ProductCatalogView.DELETED_CATEGORY_TITLE.equals(category.getTitle()))
+						deletedCategoryIds.add(category.getCategoryId());
+					categories.add(category);
+				});
+		
+		final Path file = this.directory.resolve(FILE_PREFIX + version + FILE_SUFFIX);
+		try (final CatalogSnapshot.Writer out = CatalogSnapshot.writer(file, version, watermark,
+				base == null ? version : base.getFullVersion(), this.database)) {
+			for (final CategoryRow category : categories)
+				out.category(category);
+			if (base == null)
+				this.copyAllProducts(out, deletedCategoryIds);
+			else
+				this.mergeChangedProducts(base, out, deletedCategoryIds);
+			out.commit();
+		}
+		
+		final CatalogSnapshot written = CatalogSnapshot.open(file);
+		this.current = written;
+		this.deleteOldFiles();
+		
+		final long elapsed = System.nanoTime() - start;
+		if (this.writeTimer != null)
+			this.writeTimer.record(elapsed, TimeUnit.NANOSECONDS);
+		log.info("*** Catalog snapshot {} written ({}); products={}, bytes={}, took={}ms *", file.getFileName(),
+				base == null ? "full" : "incremental", written.getProductCount(), written.getSize(),
+				TimeUnit.NANOSECONDS.toMillis(elapsed));
+		return written;
+	}
+	
+	private void copyAllProducts(final CatalogSnapshot.Writer out, final Set<Integer> deletedCategoryIds) {
+		this.jdbcTemplate.query(connection -> {
+			final var statement = connection.prepareStatement("SELECT " + PRODUCT_COLUMNS
+					+ " FROM products WHERE category_id IS NOT NULL ORDER BY product_id");
+			statement.setFetchSize(FETCH_SIZE);
+			return statement;
+		}, resultSet -> {
+			final ProductRow product = productRow(resultSet);
+			if (!deletedCategoryIds.contains(product.getCategoryId()))
+				writeProduct(out, product);
+		});
+	}
+	
+	/**
+	 * Merges the previous snapshot and the changed rows, both in id order, into the new file; a changed row without
+	 * category or in the Deleted category drops the product.
+	 */
+	private void mergeChangedProducts(final CatalogSnapshot base, final CatalogSnapshot.Writer out,
+			final Set<Integer> deletedCategoryIds) throws IOException {
+		final TreeMap<Integer, ProductRow> changed = new TreeMap<>();
+		this.jdbcTemplate.query("SELECT " + PRODUCT_COLUMNS + " FROM products WHERE updated_at >= ?",
+				resultSet -> {
+					final ProductRow product = productRow(resultSet);
+					changed.put(product.getProductId(), resultSet.getObject(2) == null
+							|| deletedCategoryIds.contains(product.getCategoryId()) ? null : product);
+				}, this.catchUpFrom(base));
+		
+		final Iterator<ProductRow> previous = base.products();
+		final Iterator<Map.Entry<Integer, ProductRow>> updates = changed.entrySet().iterator();
+		ProductRow product = previous.hasNext() ? previous.next() : null;
+		Map.Entry<Integer, ProductRow> update = updates.hasNext() ? updates.next() : null;
+		while (product != null || update != null) {
+			if (update == null || (product != null && product.getProductId() < update.getKey())) {
+				if (!deletedCategoryIds.contains(product.getCategoryId()))
+					out.product(product);
+				product = previous.hasNext() ? previous.next() : null;
+				continue;
+			}
+			if (update.getValue() != null)
+				out.product(update.getValue());
+			if (product != null && product.getProductId() == update.getKey())
+				product = previous.hasNext() ? previous.next() : null;
+			update = updates.hasNext() ? updates.next() : null;
+		}
+	}
+	
+	private static void writeProduct(final CatalogSnapshot.Writer out, final ProductRow product) {
+		try {
+			out.product(product);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private static ProductRow productRow(final ResultSet resultSet) throws SQLException {
+		final BigDecimal price = resultSet.getBigDecimal(3);
+		final Timestamp updatedAt = resultSet.getTimestamp(5);
+		return new ProductRow(resultSet.getInt(1), resultSet.getInt(2),
+				price == null ? 0 : price.movePointRight(2).longValue(), resultSet.getInt(4),
+				updatedAt == null ? 0 : updatedAt.getTime(), resultSet.getString(6), resultSet.getString(7),
+				resultSet.getString(8));
+	}
+	
+	private void deleteOldFiles() {
+		try {
+			final List<Path> files = this.snapshotFiles();
+			for (final Path file : files.subList(Math.min(this.keep, files.size()), files.size()))
+				Files.deleteIfExists(file);
+		}
+		catch (IOException e) {
+			log.warn("*** Old catalog snapshots not deleted *", e);
+		}
+	}
+	
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		this.writeTimer = Timer.builder("catalog.snapshot.write")
+				.description("Catalog snapshots written to local disk")
+				.register(registry);
+		Gauge.builder("catalog.snapshot.age", this, store -> store.current == null ? Double.NaN
+						: (System.currentTimeMillis() - store.current.getVersion()) / 1000.0)
+				.description("Seconds since the current catalog snapshot was written")
+				.baseUnit("seconds")
+				.register(registry);
+	}
+	
+	
+	
+}
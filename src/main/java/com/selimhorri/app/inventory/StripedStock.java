@@ -0,0 +1,212 @@
+package com.selimhorri.app.inventory;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.selimhorri.app.cache.CoalescingCache;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.repository.ProductCatalogViewRepository;
+import com.selimhorri.app.repository.ProductStockRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The striped products (stock split over rows of {@code product_stock_stripes}) and their upkeep, every
+ * {@code interval}:
+ *
+ * <ul>
+ * <li>The stripe counts are reloaded, so products striped on another replica are known here within one interval.</li>
+ * <li>Stripes are rebalanced when one of them is under half its fair share, so decrements keep finding stock at the
+ * first try.</li>
+ * <li>The total is copied to {@code products.quantity} and the read model, and the product evicted, so
+ * {@code ProductDto.quantity} lags the stripes by one interval at most.</li>
+ * <li>Products soft deleted meanwhile are folded back into {@code products.quantity} and lose their stripes.</li>
+ * </ul>
+ *
+ * Rebalancing locks all stripes of the product, in stripe order, for one short transaction.
+ */
+@Slf4j
+public class StripedStock implements SmartLifecycle, MeterBinder {
+	
+	private final TransactionTemplate transactionTemplate;
+	private final ProductStockRepository productStockRepository;
+	private final ProductCatalogViewRepository productCatalogViewRepository;
+	private final CoalescingCache<Integer, ProductDto> productDtoCache;
+	private final Duration interval;
+	
+	private final Map<Integer, Integer> stripesByProduct = new ConcurrentHashMap<>();
+	
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "striped-stock");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	private volatile Counter rebalanceCounter;
+	private volatile boolean running;
+	
+	public StripedStock(final TransactionTemplate transactionTemplate,
+			final ProductStockRepository productStockRepository,
+			final ProductCatalogViewRepository productCatalogViewRepository,
+			final CoalescingCache<Integer, ProductDto> productDtoCache, final Duration interval) {
+		this.transactionTemplate = transactionTemplate;
+		this.productStockRepository = productStockRepository;
+		this.productCatalogViewRepository = productCatalogViewRepository;
+		this.productDtoCache = productDtoCache;
+		this.interval = interval;
+	}
+	
+	/**
+	 * Number of stripes of the product as last seen here, {@code null} if not striped.
+	 */
+	public Integer stripes(final Integer productId) {
+		return this.stripesByProduct.get(productId);
+	}
+	
+	public void striped(final Integer productId, final int stripes) {
+		this.stripesByProduct.put(productId, stripes);
+	}
+	
+	public void unstriped(final Integer productId) {
+		this.stripesByProduct.remove(productId);
+	}
+	
+	/**
+	 * Copies a stock total to {@code products.quantity} and the read model; to be called in the transaction that read
+	 * it. Returns whether it changed.
+	 */
+	public boolean publishTotal(final Integer productId, final int total) {
+		if (this.productStockRepository.setQuantity(productId, total) == 0)
+			return false;
+		this.productCatalogViewRepository.refresh(List.of(productId));
+		this.productDtoCache.invalidate(productId);
+		return true;
+	}
+	
+	/**
+	 * One pass over all striped products.
+	 */
+	public void maintain() {
+		final Map<Integer, Integer> stripeCounts = new HashMap<>();
+		for (final Object[] row : this.productStockRepository.countStripesByProduct())
+			stripeCounts.put(((Number) row[0]).intValue(), ((Number) row[1]).intValue());
+		this.stripesByProduct.keySet().retainAll(stripeCounts.keySet());
+		this.stripesByProduct.putAll(stripeCounts);
+		if (stripeCounts.isEmpty())
+			return;
+		
+		for (final Integer productId : this.productStockRepository.findSoftDeletedStripedProductIds()) {
+			this.transactionTemplate.executeWithoutResult(status -> {
+				final int total = sum(this.productStockRepository.lockStripes(productId));
+				this.productStockRepository.deleteStripes(productId);
+				this.publishTotal(productId, total);
+			});
+			this.stripesByProduct.remove(productId);
+			stripeCounts.remove(productId);
+			log.info("*** Unstriped soft-deleted product {} *", productId);
+		}
+		
+		for (final Integer productId : stripeCounts.keySet()) {
+			final List<Integer> stripes = this.productStockRepository.findStripes(productId);
+			if (stripes.isEmpty())
+				continue;
+			if (skewed(stripes))
+				this.transactionTemplate.executeWithoutResult(status -> this.rebalance(productId));
+			else
+				this.transactionTemplate.executeWithoutResult(status -> this.publishTotal(productId, sum(stripes)));
+		}
+	}
+	
+	private void rebalance(final Integer productId) {
+		final List<Integer> stripes = this.productStockRepository.lockStripes(productId);
+		final int total = sum(stripes);
+		for (int stripe = 0; stripe < stripes.size(); stripe++) {
+			final int share = share(total, stripes.size(), stripe);
+			if (stripes.get(stripe) != share)
+				this.productStockRepository.setStripe(productId, stripe, share);
+		}
+		this.publishTotal(productId, total);
+		if (this.rebalanceCounter != null)
+			this.rebalanceCounter.increment();
+	}
+	
+	/**
+	 * Stripe {@code stripe} of {@code total} split evenly over {@code stripes}; the first ones take the remainder.
+	 */
+	public static int share(final int total, final int stripes, final int stripe) {
+		return total / stripes + (stripe < total % stripes ? 1 : 0);
+	}
+	
+	public static int sum(final List<Integer> stripes) {
+		int total = 0;
+		for (final Integer quantity : stripes)
+			total += quantity;
+		return total;
+	}
+	
+	/**
+	 * Some stripe under half its fair share, while there is still at least one unit per stripe to spread.
+	 */
+	static boolean skewed(final List<Integer> stripes) {
+		final int total = sum(stripes);
+		if (total < stripes.size())
+			return false;
+		for (final Integer quantity : stripes)
+			if (quantity * 2L * stripes.size() < total)
+				return true;
+		return false;
+	}
+	
+	private void maintainQuietly() {
+		try {
+			this.maintain();
+		}
+		catch (RuntimeException e) {
+			log.warn("*** Striped stock maintenance failed; retrying in {} *", this.interval, e);
+		}
+	}
+	
+	@Override
+	public void start() {
+		this.running = true;
+		this.scheduler.scheduleWithFixedDelay(this::maintainQuietly, 0, this.interval.toMillis(),
+				TimeUnit.MILLISECONDS);
+	}
+	
+	@Override
+	public void stop() {
+		this.running = false;
+		this.scheduler.shutdownNow();
+	}
+	
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+	
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		this.rebalanceCounter = Counter.builder("catalog.stock.rebalances")
+				.description("Stripe rebalances of striped products")
+				.register(registry);
+		Gauge.builder("catalog.stock.striped.products", this.stripesByProduct, Map::size)
+				.description("Products whose stock is striped")
+				.register(registry);
+	}
+	
+	
+	
+}
@@ -0,0 +1,264 @@
+package com.selimhorri.app.profiling;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.DisposableBean;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Time-boxed Java Flight Recorder sessions, started on demand through {@link ProfilingEndpoint}.
+ *
+ * Overhead is bounded by the JDK profile ({@code default} is meant for production, {@code profile} samples more), by
+ * {@code maxDuration} and {@code maxSize} per recording and by {@code maxConcurrent} recordings at a time. On JDKs
+ * without the throttled {@code jdk.ObjectAllocationSample} event the TLAB allocation events are switched on, which
+ * fire once per TLAB rather than per object. When a recording ends it is written to {@code directory} and summarized
+ * there ({@link ProfilingSummarizer}); the last {@code keep} recordings are retained.
+ */
+@Slf4j
+public class JfrProfiler implements DisposableBean {
+	
+	private static final String FILE_SUFFIX = ".jfr";
+	private static final String ALLOCATION_SAMPLE = "jdk.ObjectAllocationSample";
+	private static final String[] TLAB_EVENTS = { "jdk.ObjectAllocationInNewTLAB", "jdk.ObjectAllocationOutsideTLAB" };
+	
+	private final Path directory;
+	private final Duration defaultDuration;
+	private final Duration maxDuration;
+	private final long maxSizeBytes;
+	private final int keep;
+	private final String framePrefix;
+	private final int top;
+	
+	private final Semaphore slots;
+	private final AtomicLong ids = new AtomicLong();
+	private final Map<Long, Recording> running = new ConcurrentHashMap<>();
+	
+	/**
+	 * Guarded by itself; in start order.
+	 */
+	private final Map<Long, ProfilingRecording> recordings = new LinkedHashMap<>();
+	
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "profiling");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	public JfrProfiler(final Path directory, final Duration defaultDuration, final Duration maxDuration,
+			final int maxConcurrent, final long maxSizeBytes, final int keep, final String framePrefix, final int top) {
+		this.directory = directory;
+		this.defaultDuration = defaultDuration;
+		this.maxDuration = maxDuration;
+		this.maxSizeBytes = maxSizeBytes;
+		this.keep = Math.max(1, keep);
+		this.framePrefix = framePrefix;
+		this.top = top;
+		this.slots = new Semaphore(Math.max(1, maxConcurrent));
+	}
+	
+	/**
+	 * @return {@code null} when {@code maxConcurrent} recordings are already running
+	 * @throws IllegalArgumentException for an unknown profile or a duration out of {@code (0, maxDuration]}
+	 */
+	public ProfilingRecording tryStart(final Duration requestedDuration, final String requestedProfile) {
+		final Duration duration = requestedDuration == null ? this.defaultDuration : requestedDuration;
+		final String profile = requestedProfile == null ? "default" : requestedProfile;
+		if (duration.isNegative() || duration.isZero() || duration.compareTo(this.maxDuration) > 0)
+			throw new IllegalArgumentException("duration must be positive and at most " + this.maxDuration);
+		final Configuration configuration = configuration(profile);
+		if (!this.slots.tryAcquire())
+			return null;
+		
+		final long id = this.ids.incrementAndGet();
+		final Instant startedAt = Instant.now();
+		try {
+			Files.createDirectories(this.directory);
+			final Recording recording = new Recording(configuration);
+			recording.setName("product-service-" + id);
+			recording.setToDisk(true);
+			recording.setMaxSize(this.maxSizeBytes);
+			recording.setDestination(this.file(id));
+			if (!hasEventType(ALLOCATION_SAMPLE))
+				for (final String tlabEvent : TLAB_EVENTS)
+					recording.enable(tlabEvent).withStackTrace();
+			recording.start();
+			this.running.put(id, recording);
+		}
+		catch (IOException e) {
+			this.slots.release();
+			throw new UncheckedIOException(e);
+		}
+		catch (RuntimeException e) {
+			this.slots.release();
+			throw e;
+		}
+		
+		final ProfilingRecording started = ProfilingRecording.builder()
+				.id(id)
+				.profile(profile)
+				.state(ProfilingRecording.State.RUNNING)
+				.startedAt(startedAt.toString())
+				.endsAt(startedAt.plus(duration).toString())
+				.durationSeconds(duration.toSeconds())
+				.build();
+		this.put(started);
+		this.scheduler.schedule(() -> this.finish(id), duration.toMillis(), TimeUnit.MILLISECONDS);
+		log.info("*** Flight recording {} started; profile={}, duration={} *", id, profile, duration);
+		return started;
+	}
+	
+	public List<ProfilingRecording> recordings() {
+		synchronized (this.recordings) {
+			return new ArrayList<>(this.recordings.values());
+		}
+	}
+	
+	public ProfilingRecording recording(final long id) {
+		synchronized (this.recordings) {
+			return this.recordings.get(id);
+		}
+	}
+	
+	/**
+	 * The recording file, or {@code null} while it is running or when it is unknown.
+	 */
+	public Path recordingFile(final long id) {
+		final ProfilingRecording recording = this.recording(id);
+		return recording == null || recording.getState() != ProfilingRecording.State.FINISHED ? null : this.file(id);
+	}
+	
+	/**
+	 * Stops a running recording without summarizing it, or deletes a finished one.
+	 */
+	public boolean delete(final long id) {
+		final Recording recording = this.running.remove(id);
+		if (recording != null) {
+			recording.close();
+			this.slots.release();
+		}
+		final ProfilingRecording removed;
+		synchronized (this.recordings) {
+			removed = this.recordings.remove(id);
+		}
+		this.deleteFile(id);
+		return removed != null;
+	}
+	
+	private void finish(final long id) {
+		final Recording recording = this.running.remove(id);
+		if (recording == null)
+			return;
+		ProfilingRecording finished = this.recording(id);
+		try {
+			recording.stop();
+			recording.close();
+			final Path file = this.file(id);
+			final long start = System.nanoTime();
+			final ProfilingSummary summary = ProfilingSummarizer.summarize(file, this.framePrefix, this.top);
+			finished = finished.toBuilder()
+					.state(ProfilingRecording.State.FINISHED)
+					.recording("/actuator/profiling/" + id + "/recording" + FILE_SUFFIX)
+					.sizeBytes(Files.size(file))
+					.summary(summary)
+					.build();
+			log.info("*** Flight recording {} finished; size={} bytes, events={}, summarized in {} ms *", id,
+					finished.getSizeBytes(), summary.getEvents(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		}
+		catch (IOException | RuntimeException e) {
+			log.warn("*** Flight recording {} failed *", id, e);
+			recording.close();
+			finished = finished.toBuilder()
+					.state(ProfilingRecording.State.FAILED)
+					.error(e.toString())
+					.build();
+		}
+		finally {
+			this.slots.release();
+		}
+		this.put(finished);
+		this.prune();
+	}
+	
+	private void put(final ProfilingRecording recording) {
+		synchronized (this.recordings) {
+			this.recordings.put(recording.getId(), recording);
+		}
+	}
+	
+	/**
+	 * Drops the oldest ended recordings beyond {@code keep}, with their files.
+	 */
+	private void prune() {
+		final List<Long> expired;
+		synchronized (this.recordings) {
+			final List<Long> ended = this.recordings.values().stream()
+					.filter(recording -> recording.getState() != ProfilingRecording.State.RUNNING)
+					.map(ProfilingRecording::getId)
+					.collect(Collectors.toList());
+			expired = ended.subList(0, Math.max(0, ended.size() - this.keep));
+			expired.forEach(this.recordings::remove);
+		}
+		expired.forEach(this::deleteFile);
+	}
+	
+	private void deleteFile(final long id) {
+		try {
+			Files.deleteIfExists(this.file(id));
+		}
+		catch (IOException e) {
+			log.warn("*** Could not delete flight recording {} *", this.file(id), e);
+		}
+	}
+	
+	private Path file(final long id) {
+		return this.directory.resolve("recording-" + id + FILE_SUFFIX);
+	}
+	
+	private static Configuration configuration(final String profile) {
+		try {
+			return Configuration.getConfiguration(profile);
+		}
+		catch (IOException | ParseException e) {
+			throw new IllegalArgumentException("Unknown profile '" + profile + "'; one of " + Configuration
+					.getConfigurations().stream().map(Configuration::getName).collect(Collectors.toList()));
+		}
+	}
+	
+	private static boolean hasEventType(final String name) {
+		return FlightRecorder.getFlightRecorder().getEventTypes().stream()
+				.map(EventType::getName)
+				.anyMatch(name::equals);
+	}
+	
+	@Override
+	public void destroy() {
+		this.scheduler.shutdownNow();
+		this.running.values().forEach(Recording::close);
+		this.running.clear();
+	}
+	
+	
+	
+}
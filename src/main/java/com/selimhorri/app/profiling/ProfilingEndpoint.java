@@ -0,0 +1,81 @@
+package com.selimhorri.app.profiling;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * On-demand flight recordings:
+ *
+ * <ul>
+ * <li>{@code POST /actuator/profiling {"duration": "30s", "profile": "default"}} starts one; 429 when the
+ * maximum are already running.</li>
+ * <li>{@code GET /actuator/profiling} lists them; {@code GET /actuator/profiling/{id}} is one with its summary once
+ * finished.</li>
+ * <li>{@code GET /actuator/profiling/{id}/recording.jfr} downloads the recording.</li>
+ * <li>{@code DELETE /actuator/profiling/{id}} stops or deletes it.</li>
+ * </ul>
+ */
+@Endpoint(id = "profiling")
+@RequiredArgsConstructor
+public class ProfilingEndpoint {
+	
+	private static final String RECORDING_FILE = "recording.jfr";
+	
+	private final JfrProfiler profiler;
+	
+	@WriteOperation
+	public WebEndpointResponse<ProfilingRecording> start(@Nullable final Duration duration,
+			@Nullable final String profile) {
+		final ProfilingRecording started;
+		try {
+			started = this.profiler.tryStart(duration, profile);
+		}
+		catch (IllegalArgumentException e) {
+			throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+		}
+		return started == null ? new WebEndpointResponse<>(WebEndpointResponse.STATUS_TOO_MANY_REQUESTS)
+				: new WebEndpointResponse<>(started);
+	}
+	
+	@ReadOperation
+	public List<ProfilingRecording> recordings() {
+		return this.profiler.recordings();
+	}
+	
+	@ReadOperation
+	public WebEndpointResponse<ProfilingRecording> recording(@Selector final long id) {
+		final ProfilingRecording recording = this.profiler.recording(id);
+		return recording == null ? new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND)
+				: new WebEndpointResponse<>(recording);
+	}
+	
+	@ReadOperation(produces = "application/octet-stream")
+	public WebEndpointResponse<Resource> recordingFile(@Selector final long id, @Selector final String file) {
+		final Path path = RECORDING_FILE.equals(file) ? this.profiler.recordingFile(id) : null;
+		return path == null ? new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND)
+				: new WebEndpointResponse<>(new FileSystemResource(path));
+	}
+	
+	@DeleteOperation
+	public WebEndpointResponse<Void> delete(@Selector final long id) {
+		return new WebEndpointResponse<>(this.profiler.delete(id) ? WebEndpointResponse.STATUS_NO_CONTENT
+				: WebEndpointResponse.STATUS_NOT_FOUND);
+	}
+	
+	
+	
+}
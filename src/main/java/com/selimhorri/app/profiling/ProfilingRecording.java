@@ -0,0 +1,36 @@
+package com.selimhorri.app.profiling;
+
+import java.io.Serializable;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * State of one recording; the summary is there once it has finished.
+ */
+@Value
+@Builder(toBuilder = true)
+public class ProfilingRecording implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public enum State {
+		RUNNING, FINISHED, FAILED
+	}
+	
+	long id;
+	String profile;
+	State state;
+	String startedAt;
+	String endsAt;
+	long durationSeconds;
+	
+	/**
+	 * {@code /actuator/profiling/{id}/recording.jfr} once finished, for JDK Mission Control or {@code jfr print}.
+	 */
+	String recording;
+	long sizeBytes;
+	String error;
+	ProfilingSummary summary;
+	
+}
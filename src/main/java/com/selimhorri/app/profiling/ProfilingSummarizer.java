@@ -0,0 +1,165 @@
+package com.selimhorri.app.profiling;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Reads a finished recording once, event by event, into a {@link ProfilingSummary}.
+ *
+ * Allocations come from {@code jdk.ObjectAllocationSample} on JDKs that have it (throttled, weighted) and from the
+ * TLAB events otherwise, never both.
+ */
+final class ProfilingSummarizer {
+	
+	private static final String EXECUTION_SAMPLE = "jdk.ExecutionSample";
+	private static final String ALLOCATION_SAMPLE = "jdk.ObjectAllocationSample";
+	private static final String ALLOCATION_IN_NEW_TLAB = "jdk.ObjectAllocationInNewTLAB";
+	private static final String ALLOCATION_OUTSIDE_TLAB = "jdk.ObjectAllocationOutsideTLAB";
+	private static final String MONITOR_ENTER = "jdk.JavaMonitorEnter";
+	private static final String THREAD_PARK = "jdk.ThreadPark";
+	
+	private static final String OTHER = "(outside application code)";
+	private static final Pattern CGLIB_SUFFIX = Pattern.compile("\\$\\$.*$");
+	
+	private final String framePrefix;
+	private final int top;
+	
+	private long events;
+	private long executionSamples;
+	private final Map<String, long[]> hotMethods = new HashMap<>();
+	private final Map<String, long[]> sampledAllocations = new HashMap<>();
+	private final Map<String, long[]> tlabAllocations = new HashMap<>();
+	private final Map<String, long[]> contention = new HashMap<>();
+	
+	private ProfilingSummarizer(final String framePrefix, final int top) {
+		this.framePrefix = framePrefix;
+		this.top = top;
+	}
+	
+	static ProfilingSummary summarize(final Path file, final String framePrefix, final int top) throws IOException {
+		final ProfilingSummarizer summarizer = new ProfilingSummarizer(framePrefix, top);
+		try (final RecordingFile recordingFile = new RecordingFile(file)) {
+			while (recordingFile.hasMoreEvents())
+				summarizer.accept(recordingFile.readEvent());
+		}
+		return summarizer.summary();
+	}
+	
+	private void accept(final RecordedEvent event) {
+		this.events++;
+		switch (event.getEventType().getName()) {
+			case EXECUTION_SAMPLE:
+				this.executionSamples++;
+				add(this.hotMethods, this.frame(event, false), 0);
+				break;
+			case ALLOCATION_SAMPLE:
+				add(this.sampledAllocations, this.frame(event, true) + '\t' + className(event, "objectClass"),
+						event.getLong("weight"));
+				break;
+			case ALLOCATION_IN_NEW_TLAB:
+				add(this.tlabAllocations, this.frame(event, true) + '\t' + className(event, "objectClass"),
+						event.getLong("tlabSize"));
+				break;
+			case ALLOCATION_OUTSIDE_TLAB:
+				add(this.tlabAllocations, this.frame(event, true) + '\t' + className(event, "objectClass"),
+						event.getLong("allocationSize"));
+				break;
+			case MONITOR_ENTER:
+				add(this.contention, this.frame(event, false) + '\t' + className(event, "monitorClass"),
+						event.getDuration().toNanos());
+				break;
+			case THREAD_PARK:
+				add(this.contention, this.frame(event, false) + '\t' + className(event, "parkedClass"),
+						event.getDuration().toNanos());
+				break;
+			default:
+				break;
+		}
+	}
+	
+	private ProfilingSummary summary() {
+		final Map<String, long[]> allocations = this.sampledAllocations.isEmpty() ? this.tlabAllocations
+				: this.sampledAllocations;
+		return ProfilingSummary.builder()
+				.events(this.events)
+				.executionSamples(this.executionSamples)
+				.hotMethods(this.ranked(this.hotMethods, Comparator.comparingLong(entry -> entry.getValue()[0]))
+						.stream()
+						.map(entry -> new ProfilingSummary.HotMethod(entry.getKey(), entry.getValue()[0],
+								Math.round(entry.getValue()[0] * 1000.0 / Math.max(1, this.executionSamples)) / 10.0))
+						.collect(Collectors.toList()))
+				.allocationSites(this.ranked(allocations, Comparator.comparingLong(entry -> entry.getValue()[1]))
+						.stream()
+						.map(entry -> {
+							final String[] key = entry.getKey().split("\t", 2);
+							return new ProfilingSummary.AllocationSite(key[0], key[1], entry.getValue()[0],
+									entry.getValue()[1]);
+						})
+						.collect(Collectors.toList()))
+				.lockContention(this.ranked(this.contention, Comparator.comparingLong(entry -> entry.getValue()[1]))
+						.stream()
+						.map(entry -> {
+							final String[] key = entry.getKey().split("\t", 2);
+							return new ProfilingSummary.Contention(key[0], key[1], entry.getValue()[0],
+									entry.getValue()[1] / 1_000_000);
+						})
+						.collect(Collectors.toList()))
+				.build();
+	}
+	
+	private List<Map.Entry<String, long[]>> ranked(final Map<String, long[]> totals,
+			final Comparator<Map.Entry<String, long[]>> order) {
+		return totals.entrySet().stream()
+				.sorted(order.reversed())
+				.limit(this.top)
+				.collect(Collectors.toList());
+	}
+	
+	/**
+	 * The first application frame from the top of the stack: {@code Type#method}, with the line for allocations. Spring
+	 * proxies count as the class they proxy.
+	 */
+	private String frame(final RecordedEvent event, final boolean withLine) {
+		final RecordedStackTrace stackTrace = event.getStackTrace();
+		if (stackTrace == null)
+			return OTHER;
+		for (final RecordedFrame frame : stackTrace.getFrames()) {
+			if (!frame.isJavaFrame() || frame.getMethod() == null)
+				continue;
+			final String type = CGLIB_SUFFIX.matcher(frame.getMethod().getType().getName()).replaceFirst("");
+			if (type.startsWith(this.framePrefix))
+				return type + '#' + frame.getMethod().getName()
+						+ (withLine && frame.getLineNumber() > 0 ? ":" + frame.getLineNumber() : "");
+		}
+		return OTHER;
+	}
+	
+	private static String className(final RecordedEvent event, final String field) {
+		final RecordedClass recordedClass = event.hasField(field) ? event.getClass(field) : null;
+		return recordedClass == null ? "?" : recordedClass.getName();
+	}
+	
+	/**
+	 * {@code [events, total]}
+	 */
+	private static void add(final Map<String, long[]> totals, final String key, final long value) {
+		final long[] total = totals.computeIfAbsent(key, ignored -> new long[2]);
+		total[0]++;
+		total[1] += value;
+	}
+	
+	
+	
+}
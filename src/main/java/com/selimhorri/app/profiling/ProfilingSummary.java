@@ -0,0 +1,75 @@
+package com.selimhorri.app.profiling;
+
+import java.io.Serializable;
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * What a recording says about the application's own code: every event is attributed to the first frame of its stack
+ * that belongs to the application ({@code app.profiling.frame-prefix}), so time and allocations in the JDK or
+ * libraries show up at the application call site that caused them. Events without such a frame are only counted.
+ */
+@Value
+@Builder
+public class ProfilingSummary implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	long events;
+	long executionSamples;
+	
+	/**
+	 * Execution samples, by application frame; {@code percent} of all samples.
+	 */
+	List<HotMethod> hotMethods;
+	
+	/**
+	 * Sampled allocations, by application frame and allocated class; {@code bytes} as weighted by JFR.
+	 */
+	List<AllocationSite> allocationSites;
+	
+	/**
+	 * Contended monitor enters and parks above the profile threshold, by application frame and monitor class.
+	 */
+	List<Contention> lockContention;
+	
+	@Value
+	public static class HotMethod implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		String frame;
+		long samples;
+		double percent;
+		
+	}
+	
+	@Value
+	public static class AllocationSite implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		String frame;
+		String objectClass;
+		long samples;
+		long bytes;
+		
+	}
+	
+	@Value
+	public static class Contention implements Serializable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		String frame;
+		String monitorClass;
+		long events;
+		long totalMillis;
+		
+	}
+	
+	
+	
+}
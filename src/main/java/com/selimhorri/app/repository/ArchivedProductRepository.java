@@ -0,0 +1,48 @@
+package com.selimhorri.app.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.selimhorri.app.domain.ArchivedProduct;
+
+/**
+ * Soft-deleted products moved out of {@code products}. Rows move between both tables with the same id, always in the
+ * same transaction as the matching delete on the other side.
+ */
+public interface ArchivedProductRepository extends JpaRepository<ArchivedProduct, Integer> {
+
+    boolean existsBySku(String sku);
+
+    @Query("SELECT a FROM ArchivedProduct a WHERE a.productId > :afterProductId ORDER BY a.productId")
+    List<ArchivedProduct> findPage(@Param("afterProductId") Integer afterProductId, Pageable pageable);
+
+    @Modifying
+    @Query(value = "INSERT INTO archived_products (product_id, product_title, image_url, sku, price_unit, quantity, "
+            + "created_at, deleted_at, archived_at) "
+            + "SELECT product_id, product_title, image_url, sku, price_unit, quantity, created_at, "
+            + "COALESCE(updated_at, created_at), CURRENT_TIMESTAMP FROM products WHERE product_id IN (:productIds)",
+            nativeQuery = true)
+    int insertFromProducts(@Param("productIds") Collection<Integer> productIds);
+
+    /**
+     * Back into {@code products} with the same id, in the given category; {@code updated_at} is now, so the catalog
+     * snapshot picks it up.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO products (product_id, category_id, product_title, image_url, sku, price_unit, "
+            + "quantity, created_at, updated_at) "
+            + "SELECT product_id, :categoryId, product_title, image_url, sku, price_unit, quantity, created_at, "
+            + "CURRENT_TIMESTAMP FROM archived_products WHERE product_id = :productId", nativeQuery = true)
+    int insertIntoProducts(@Param("productId") Integer productId, @Param("categoryId") Integer categoryId);
+
+    @Modifying
+    @Query("DELETE FROM ArchivedProduct a WHERE a.productId = :productId")
+    int deleteByProductId(@Param("productId") Integer productId);
+
+}
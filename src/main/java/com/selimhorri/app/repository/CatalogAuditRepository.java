@@ -0,0 +1,25 @@
+package com.selimhorri.app.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.selimhorri.app.domain.CatalogAudit;
+
+/**
+ * Reads of the audit trail; the rows are inserted by {@code AuditTrail} with plain JDBC.
+ */
+public interface CatalogAuditRepository extends JpaRepository<CatalogAudit, Long> {
+
+    /**
+     * Newest first, before the audit id {@code beforeAuditId}.
+     */
+    @Query("SELECT a FROM CatalogAudit a WHERE a.entityType = :entityType AND a.entityId = :entityId "
+            + "AND a.auditId < :beforeAuditId ORDER BY a.auditId DESC")
+    List<CatalogAudit> findHistory(@Param("entityType") String entityType, @Param("entityId") Integer entityId,
+            @Param("beforeAuditId") Long beforeAuditId, Pageable pageable);
+
+}
@@ -4,12 +4,13 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import com.selimhorri.app.domain.Category;
 
-public interface CategoryRepository extends JpaRepository<Category, Integer> {
+public interface CategoryRepository extends JpaRepository<Category, Integer>, CategoryRepositoryCustom {
 
     Optional<Category> findByCategoryTitle(String string);
 
@@ -25,4 +26,17 @@ public interface CategoryRepository extends JpaRepository<Category, Integer> {
     @Query("SELECT c FROM Category c WHERE c.categoryId = :id AND LOWER(c.categoryTitle) NOT IN ('deleted', 'no category')")
     Optional<Category> findNonReservedById(@Param("id") Integer id);
 
+    @Modifying
+    // SUBSTRING con longitud: la forma de dos argumentos hace que Hibernate avise (HHH000174) en cada arranque
+    @Query("UPDATE Category c SET c.categoryPath = CONCAT(:newPrefix, "
+            + "SUBSTRING(c.categoryPath, :oldPrefixLength + 1, LENGTH(c.categoryPath) - :oldPrefixLength)) "
+            + "WHERE c.categoryPath LIKE CONCAT(:oldPrefix, '%')")
+    int rewriteCategoryPaths(@Param("oldPrefix") String oldPrefix, @Param("oldPrefixLength") int oldPrefixLength,
+            @Param("newPrefix") String newPrefix);
+
+    @Modifying
+    @Query("UPDATE Category c SET c.parentCategory = :newParent WHERE c.parentCategory.categoryId = :oldParentId")
+    int updateParentForSubCategories(@Param("oldParentId") Integer oldParentId,
+            @Param("newParent") Category newParent);
+
 }
@@ -0,0 +1,19 @@
+package com.selimhorri.app.repository;
+
+import java.util.List;
+
+import javax.persistence.Tuple;
+
+import com.selimhorri.app.dto.projection.FieldSelection;
+
+/**
+ * Projections that read only the columns of a {@link FieldSelection}. Attributes are aliased with their own name,
+ * those of the parent with {@link #PARENT_ALIAS_PREFIX} in front.
+ */
+public interface CategoryRepositoryCustom {
+
+    String PARENT_ALIAS_PREFIX = "parent_";
+
+    List<Tuple> findAllNonReserved(FieldSelection selection);
+
+}
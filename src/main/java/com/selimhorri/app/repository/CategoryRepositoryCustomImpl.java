@@ -0,0 +1,51 @@
+package com.selimhorri.app.repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+
+import com.selimhorri.app.domain.Category;
+import com.selimhorri.app.dto.projection.FieldSelection;
+
+public class CategoryRepositoryCustomImpl implements CategoryRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Same rows as {@link CategoryRepository#findAllNonReserved()}; the parent is only joined when selected.
+     */
+    @Override
+    public List<Tuple> findAllNonReserved(final FieldSelection selection) {
+        final CriteriaBuilder criteriaBuilder = this.entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        final Root<Category> category = query.from(Category.class);
+
+        final List<Selection<?>> selections = new ArrayList<>();
+        selection.getCategoryFields().forEach(field -> selections.add(category.get(field).alias(field)));
+        if (selection.isParentCategory()) {
+            // the parent id is always read, it tells a root category from a parent with null columns
+            final Join<Category, Category> parent = category.join("parentCategory", JoinType.LEFT);
+            final Set<String> parentFields = new LinkedHashSet<>(selection.getCategoryFields());
+            parentFields.add("categoryId");
+            parentFields.forEach(field -> selections.add(parent.get(field).alias(PARENT_ALIAS_PREFIX + field)));
+        }
+
+        return this.entityManager.createQuery(query
+                .multiselect(selections)
+                .where(criteriaBuilder.lower(category.get("categoryTitle")).in("deleted", "no category").not()))
+                .getResultList();
+    }
+
+}
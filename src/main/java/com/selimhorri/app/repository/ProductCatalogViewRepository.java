@@ -0,0 +1,129 @@
+package com.selimhorri.app.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.selimhorri.app.domain.Category;
+import com.selimhorri.app.domain.ProductCatalogView;
+
+/**
+ * Every product read, from the single {@code product_catalog_view} table, and the statements that keep it in sync.
+ * Each write to {@code products} or {@code categories} is followed, in the same transaction, by the statement here
+ * with the same effect on the view.
+ */
+public interface ProductCatalogViewRepository
+        extends JpaRepository<ProductCatalogView, Integer>, ProductCatalogViewRepositoryCustom {
+
+    String INSERT_FROM_PRODUCTS = "INSERT INTO product_catalog_view (product_id, product_title, image_url, sku, "
+            + "price_unit, quantity, category_id, category_title, category_image_url, category_path, deleted) "
+            + "SELECT p.product_id, p.product_title, p.image_url, p.sku, p.price_unit, p.quantity, c.category_id, "
+            + "c.category_title, c.image_url, c.category_path, "
+            + "CASE WHEN c.category_title = '" + ProductCatalogView.DELETED_CATEGORY_TITLE + "' "
+            + "THEN TRUE ELSE FALSE END "
+            + "FROM products p JOIN categories c ON c.category_id = p.category_id ";
+
+    @Query("SELECT v FROM ProductCatalogView v WHERE v.deleted = false")
+    List<ProductCatalogView> findAllWithoutDeleted();
+
+    @Query("SELECT v FROM ProductCatalogView v WHERE v.productId = :productId AND v.deleted = false")
+    Optional<ProductCatalogView> findByIdWithoutDeleted(@Param("productId") Integer productId);
+
+    @Query("SELECT v.productId FROM ProductCatalogView v WHERE v.sku = :sku AND v.deleted = false")
+    Optional<Integer> findProductIdBySkuWithoutDeleted(@Param("sku") String sku);
+
+    @Query("SELECT v FROM ProductCatalogView v WHERE v.productId IN :productIds AND v.deleted = false")
+    List<ProductCatalogView> findAllByIdWithoutDeleted(@Param("productIds") Collection<Integer> productIds);
+
+    @Query("SELECT v FROM ProductCatalogView v WHERE v.categoryPath LIKE CONCAT(:categoryPath, '%')")
+    List<ProductCatalogView> findAllInCategorySubtree(@Param("categoryPath") String categoryPath);
+
+    @Query("SELECT COUNT(v) FROM ProductCatalogView v WHERE v.categoryPath LIKE CONCAT(:categoryPath, '%')")
+    long countInCategorySubtree(@Param("categoryPath") String categoryPath);
+
+    // Sincronización. Nativas: la entidad es inmutable y el INSERT ... SELECT no existe en JPQL
+
+    @Modifying
+    @Query(value = "DELETE FROM product_catalog_view WHERE product_id IN (:productIds)", nativeQuery = true)
+    int deleteByProductIds(@Param("productIds") Collection<Integer> productIds);
+
+    @Modifying
+    @Query(value = INSERT_FROM_PRODUCTS + "WHERE p.product_id IN (:productIds)", nativeQuery = true)
+    int insertFromProducts(@Param("productIds") Collection<Integer> productIds);
+
+    /**
+     * Re-reads the rows of these products from {@code products} and {@code categories}, after any write to them;
+     * pending entity changes must be flushed first. One statement each, so at most a chunk of ids.
+     */
+    default void refresh(final Collection<Integer> productIds) {
+        if (productIds.isEmpty())
+            return;
+        this.deleteByProductIds(productIds);
+        this.insertFromProducts(productIds);
+    }
+
+    /**
+     * Mirror of {@code ProductRepository#repriceByCategoryPath}: copies the new prices instead of recomputing them.
+     */
+    @Modifying
+    @Query(value = "UPDATE product_catalog_view SET price_unit = "
+            + "(SELECT p.price_unit FROM products p WHERE p.product_id = product_catalog_view.product_id) "
+            + "WHERE category_path LIKE :categoryPathPattern AND deleted = FALSE", nativeQuery = true)
+    int refreshPricesByCategoryPath(@Param("categoryPathPattern") String categoryPathPattern);
+
+    @Modifying
+    @Query(value = "UPDATE product_catalog_view SET category_id = :categoryId, category_title = :categoryTitle, "
+            + "category_image_url = :categoryImageUrl, category_path = :categoryPath, deleted = :deleted "
+            + "WHERE category_path LIKE :categoryPathPattern AND deleted = FALSE", nativeQuery = true)
+    int recategorizeByCategoryPath(@Param("categoryPathPattern") String categoryPathPattern,
+            @Param("categoryId") Integer categoryId, @Param("categoryTitle") String categoryTitle,
+            @Param("categoryImageUrl") String categoryImageUrl, @Param("categoryPath") String categoryPath,
+            @Param("deleted") boolean deleted);
+
+    /**
+     * Mirror of {@code ProductRepository#recategorizeByCategoryPath}.
+     */
+    default int recategorizeByCategoryPath(final String categoryPathPattern, final Category target) {
+        return this.recategorizeByCategoryPath(categoryPathPattern, target.getCategoryId(), target.getCategoryTitle(),
+                target.getImageUrl(), target.getCategoryPath(), isDeleted(target));
+    }
+
+    @Modifying
+    @Query(value = "UPDATE product_catalog_view SET category_id = :categoryId, category_title = :categoryTitle, "
+            + "category_image_url = :categoryImageUrl, category_path = :categoryPath, deleted = :deleted "
+            + "WHERE category_id = :oldCategoryId", nativeQuery = true)
+    int updateCategoryForProducts(@Param("oldCategoryId") Integer oldCategoryId,
+            @Param("categoryId") Integer categoryId, @Param("categoryTitle") String categoryTitle,
+            @Param("categoryImageUrl") String categoryImageUrl, @Param("categoryPath") String categoryPath,
+            @Param("deleted") boolean deleted);
+
+    /**
+     * Mirror of {@code ProductRepository#updateCategoryForProducts}; also refreshes the columns of a category
+     * that was renamed or moved, with {@code oldCategoryId} its own id.
+     */
+    default int updateCategoryForProducts(final Integer oldCategoryId, final Category newCategory) {
+        return this.updateCategoryForProducts(oldCategoryId, newCategory.getCategoryId(),
+                newCategory.getCategoryTitle(), newCategory.getImageUrl(), newCategory.getCategoryPath(),
+                isDeleted(newCategory));
+    }
+
+    /**
+     * Mirror of {@code CategoryRepository#rewriteCategoryPaths}.
+     */
+    @Modifying
+    @Query(value = "UPDATE product_catalog_view "
+            + "SET category_path = CONCAT(:newPrefix, SUBSTRING(category_path, :oldPrefixLength + 1)) "
+            + "WHERE category_path LIKE CONCAT(:oldPrefix, '%')", nativeQuery = true)
+    int rewriteCategoryPaths(@Param("oldPrefix") String oldPrefix, @Param("oldPrefixLength") int oldPrefixLength,
+            @Param("newPrefix") String newPrefix);
+
+    private static boolean isDeleted(final Category category) {
+        return ProductCatalogView.DELETED_CATEGORY_TITLE.equals(category.getCategoryTitle());
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.selimhorri.app.repository;
+
+import java.util.List;
+
+import javax.persistence.Tuple;
+
+import com.selimhorri.app.dto.projection.FieldSelection;
+
+/**
+ * Projections that read only the columns of a {@link FieldSelection}. Product attributes are aliased with their own
+ * name, those of the category with {@link #CATEGORY_ALIAS_PREFIX} in front.
+ */
+public interface ProductCatalogViewRepositoryCustom {
+
+    String CATEGORY_ALIAS_PREFIX = "category_";
+
+    List<Tuple> findAllWithoutDeleted(FieldSelection selection);
+
+    List<Tuple> findAllInCategorySubtree(String categoryPath, FieldSelection selection);
+
+    /**
+     * Keyset page of the products of one category (not of its subtree): up to {@code limit} products with an id
+     * greater than {@code afterProductId}, in ascending id order, with their own attributes only.
+     */
+    List<Tuple> findPageInCategory(Integer categoryId, Integer afterProductId, int limit);
+
+}
@@ -0,0 +1,92 @@
+package com.selimhorri.app.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+
+import com.selimhorri.app.domain.ProductCatalogView;
+import com.selimhorri.app.dto.projection.FieldSelection;
+
+public class ProductCatalogViewRepositoryCustomImpl implements ProductCatalogViewRepositoryCustom {
+
+    private static final List<String> PAGE_FIELDS = List.of(
+            "productId", "productTitle", "imageUrl", "sku", "priceUnit", "quantity");
+
+    /**
+     * {@code FieldSelection} names of the category attributes, by view attribute.
+     */
+    private static final Map<String, String> CATEGORY_ATTRIBUTES = Map.of(
+            "categoryId", "categoryId",
+            "categoryTitle", "categoryTitle",
+            "imageUrl", "categoryImageUrl");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Tuple> findAllWithoutDeleted(final FieldSelection selection) {
+        return this.select(selection, (criteriaBuilder, product) ->
+                criteriaBuilder.isFalse(product.get("deleted")));
+    }
+
+    @Override
+    public List<Tuple> findAllInCategorySubtree(final String categoryPath, final FieldSelection selection) {
+        return this.select(selection, (criteriaBuilder, product) ->
+                criteriaBuilder.like(product.get("categoryPath"), categoryPath + "%"));
+    }
+
+    /**
+     * The {@code (category_id, product_id)} index serves both the filter and the order, so the page stops after
+     * {@code limit} index entries.
+     */
+    @Override
+    public List<Tuple> findPageInCategory(final Integer categoryId, final Integer afterProductId, final int limit) {
+        final CriteriaBuilder criteriaBuilder = this.entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        final Root<ProductCatalogView> product = query.from(ProductCatalogView.class);
+        final Path<Integer> productId = product.get("productId");
+
+        final List<Selection<?>> selections = new ArrayList<>();
+        PAGE_FIELDS.forEach(field -> selections.add(product.get(field).alias(field)));
+
+        return this.entityManager.createQuery(query
+                .multiselect(selections)
+                .where(criteriaBuilder.equal(product.get("categoryId"), categoryId),
+                        criteriaBuilder.greaterThan(productId, afterProductId))
+                .orderBy(criteriaBuilder.asc(productId)))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * The category attributes are columns of the same row, so only the selected columns are read, without a join.
+     */
+    private List<Tuple> select(final FieldSelection selection,
+            final BiFunction<CriteriaBuilder, Root<ProductCatalogView>, Predicate> filter) {
+        final CriteriaBuilder criteriaBuilder = this.entityManager.getCriteriaBuilder();
+        final CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        final Root<ProductCatalogView> product = query.from(ProductCatalogView.class);
+
+        final List<Selection<?>> selections = new ArrayList<>();
+        selection.getProductFields().forEach(field -> selections.add(product.get(field).alias(field)));
+        selection.getCategoryFields().forEach(field -> selections.add(
+                product.get(CATEGORY_ATTRIBUTES.get(field)).alias(CATEGORY_ALIAS_PREFIX + field)));
+
+        return this.entityManager.createQuery(query
+                .multiselect(selections)
+                .where(filter.apply(criteriaBuilder, product)))
+                .getResultList();
+    }
+
+}
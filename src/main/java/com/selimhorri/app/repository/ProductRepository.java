@@ -1,5 +1,7 @@
 package com.selimhorri.app.repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,22 +13,94 @@ import org.springframework.data.repository.query.Param;
 import com.selimhorri.app.domain.Category;
 import com.selimhorri.app.domain.Product;
 
+/**
+ * Writes, and the reads they need; the product reads served to clients come from {@link ProductCatalogViewRepository}.
+ */
 public interface ProductRepository extends JpaRepository<Product, Integer> {
 
-    @Query("SELECT p FROM Product p WHERE p.category.categoryTitle <> 'Deleted'")
-    List<Product> findAllWithoutDeleted();
-
     @Query("SELECT p FROM Product p WHERE p.id = :productId AND p.category.categoryTitle <> 'Deleted'")
     Optional<Product> findByIdWithoutDeleted(Integer productId);
 
     @Modifying
-    @Query("UPDATE Product p SET p.category = :newCategory WHERE p.category.categoryId = :oldCategoryId")
+    @Query("UPDATE Product p SET p.category = :newCategory, p.updatedAt = CURRENT_TIMESTAMP "
+            + "WHERE p.category.categoryId = :oldCategoryId")
     void updateCategoryForProducts(@Param("oldCategoryId") Integer oldCategoryId,
             @Param("newCategory") Category newCategory);
 
+    // Operaciones masivas: una sentencia por lote de ids o por filtro de categoría, nunca sobre 'Deleted'
+
+    @Modifying
+    @Query("UPDATE Product p SET p.priceUnit = ROUND(p.priceUnit * :factor + :delta, 2), p.updatedAt = CURRENT_TIMESTAMP "
+            + "WHERE p.productId IN :productIds AND p.category.categoryId <> :deletedCategoryId")
+    int repriceByIds(@Param("productIds") Collection<Integer> productIds, @Param("factor") double factor,
+            @Param("delta") double delta, @Param("deletedCategoryId") Integer deletedCategoryId);
+
+    @Modifying
+    @Query("UPDATE Product p SET p.priceUnit = ROUND(p.priceUnit * :factor + :delta, 2), p.updatedAt = CURRENT_TIMESTAMP "
+            + "WHERE p.category.categoryId IN "
+            + "(SELECT c.categoryId FROM Category c WHERE c.categoryPath LIKE :categoryPathPattern) "
+            + "AND p.category.categoryId <> :deletedCategoryId")
+    int repriceByCategoryPath(@Param("categoryPathPattern") String categoryPathPattern, @Param("factor") double factor,
+            @Param("delta") double delta, @Param("deletedCategoryId") Integer deletedCategoryId);
+
+    @Query("SELECT COUNT(p) FROM Product p WHERE p.productId IN :productIds AND p.category.categoryId <> :deletedCategoryId "
+            + "AND (p.priceUnit * :factor + :delta < 0 OR p.priceUnit * :factor + :delta > :maxPrice)")
+    long countOutOfRangeRepricesByIds(@Param("productIds") Collection<Integer> productIds,
+            @Param("factor") double factor, @Param("delta") double delta, @Param("maxPrice") double maxPrice,
+            @Param("deletedCategoryId") Integer deletedCategoryId);
+
+    @Query("SELECT COUNT(p) FROM Product p WHERE p.category.categoryId IN "
+            + "(SELECT c.categoryId FROM Category c WHERE c.categoryPath LIKE :categoryPathPattern) "
+            + "AND p.category.categoryId <> :deletedCategoryId "
+            + "AND (p.priceUnit * :factor + :delta < 0 OR p.priceUnit * :factor + :delta > :maxPrice)")
+    long countOutOfRangeRepricesByCategoryPath(@Param("categoryPathPattern") String categoryPathPattern,
+            @Param("factor") double factor, @Param("delta") double delta, @Param("maxPrice") double maxPrice,
+            @Param("deletedCategoryId") Integer deletedCategoryId);
+
+    @Modifying
+    @Query("UPDATE Product p SET p.category = :target, p.updatedAt = CURRENT_TIMESTAMP "
+            + "WHERE p.productId IN :productIds AND p.category.categoryId <> :deletedCategoryId")
+    int recategorizeByIds(@Param("productIds") Collection<Integer> productIds, @Param("target") Category target,
+            @Param("deletedCategoryId") Integer deletedCategoryId);
+
+    @Modifying
+    @Query("UPDATE Product p SET p.category = :target, p.updatedAt = CURRENT_TIMESTAMP WHERE p.category.categoryId IN "
+            + "(SELECT c.categoryId FROM Category c WHERE c.categoryPath LIKE :categoryPathPattern) "
+            + "AND p.category.categoryId <> :deletedCategoryId")
+    int recategorizeByCategoryPath(@Param("categoryPathPattern") String categoryPathPattern,
+            @Param("target") Category target, @Param("deletedCategoryId") Integer deletedCategoryId);
+
+    // Productos que cambiará una operación masiva, bloqueados hasta su UPDATE: son justo los que se auditan,
+    // con su precio y categoría anteriores (product_id, price_unit, category_id)
+
+    @Query(value = "SELECT product_id, price_unit, category_id FROM products WHERE product_id IN (:productIds) "
+            + "AND category_id <> :deletedCategoryId FOR UPDATE", nativeQuery = true)
+    List<Object[]> lockBulkTargetsByIds(@Param("productIds") Collection<Integer> productIds,
+            @Param("deletedCategoryId") Integer deletedCategoryId);
+
+    @Query(value = "SELECT product_id, price_unit, category_id FROM products WHERE category_id IN "
+            + "(SELECT category_id FROM categories WHERE category_path LIKE :categoryPathPattern) "
+            + "AND category_id <> :deletedCategoryId FOR UPDATE", nativeQuery = true)
+    List<Object[]> lockBulkTargetsByCategoryPath(@Param("categoryPathPattern") String categoryPathPattern,
+            @Param("deletedCategoryId") Integer deletedCategoryId);
+
+    // Archivado (ProductArchiver): el lote se bloquea hasta que se copia y se borra
+
+    @Query(value = "SELECT product_id FROM products WHERE category_id = :deletedCategoryId "
+            + "AND COALESCE(updated_at, created_at) < :deletedBefore ORDER BY product_id LIMIT :limit FOR UPDATE",
+            nativeQuery = true)
+    List<Integer> lockSoftDeletedBefore(@Param("deletedCategoryId") Integer deletedCategoryId,
+            @Param("deletedBefore") Instant deletedBefore, @Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM Product p WHERE p.productId IN :productIds AND p.category.categoryId = :deletedCategoryId")
+    int deleteSoftDeletedByIds(@Param("productIds") Collection<Integer> productIds,
+            @Param("deletedCategoryId") Integer deletedCategoryId);
+
     // Otra opción (más eficiente para muchos productos):
     @Modifying
-    @Query("UPDATE Product p SET p.category.categoryId = :newCategoryId WHERE p.category.categoryId = :oldCategoryId")
+    @Query("UPDATE Product p SET p.category.categoryId = :newCategoryId, p.updatedAt = CURRENT_TIMESTAMP "
+            + "WHERE p.category.categoryId = :oldCategoryId")
     void updateCategoryIdForProducts(@Param("oldCategoryId") Integer oldCategoryId,
             @Param("newCategoryId") Integer newCategoryId);
 }
\ No newline at end of file
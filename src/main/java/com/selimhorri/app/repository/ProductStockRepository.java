@@ -0,0 +1,96 @@
+package com.selimhorri.app.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+
+import com.selimhorri.app.domain.Product;
+
+/**
+ * Stock of the products, as {@code products.quantity} or, for striped products, as the sum of their rows in
+ * {@code product_stock_stripes}; a striped product's {@code quantity} is only a copy kept by
+ * {@code StripedStock}. Every decrement is one conditional UPDATE: it never takes stock that is not there, nor stock
+ * of a soft-deleted product.
+ */
+public interface ProductStockRepository extends Repository<Product, Integer> {
+
+    @Query(value = "SELECT quantity FROM products WHERE product_id = :productId", nativeQuery = true)
+    Optional<Integer> findQuantity(@Param("productId") Integer productId);
+
+    @Query(value = "SELECT quantity FROM products WHERE product_id = :productId FOR UPDATE", nativeQuery = true)
+    Optional<Integer> lockQuantity(@Param("productId") Integer productId);
+
+    /**
+     * Only for products that are neither striped nor soft deleted; 0 rows when the stock is short.
+     */
+    @Modifying
+    @Query(value = "UPDATE products SET quantity = quantity - :quantity, updated_at = CURRENT_TIMESTAMP "
+            + "WHERE product_id = :productId AND quantity >= :quantity "
+            + "AND category_id NOT IN (SELECT category_id FROM categories WHERE category_title = 'Deleted') "
+            + "AND NOT EXISTS (SELECT 1 FROM product_stock_stripes s WHERE s.product_id = :productId)",
+            nativeQuery = true)
+    int decrement(@Param("productId") Integer productId, @Param("quantity") int quantity);
+
+    @Modifying
+    @Query(value = "UPDATE products SET quantity = :quantity, updated_at = CURRENT_TIMESTAMP "
+            + "WHERE product_id = :productId AND (quantity IS NULL OR quantity <> :quantity)", nativeQuery = true)
+    int setQuantity(@Param("productId") Integer productId, @Param("quantity") int quantity);
+
+    // Franjas: una fila por franja, numeradas desde 0
+
+    @Query(value = "SELECT quantity FROM product_stock_stripes WHERE product_id = :productId ORDER BY stripe",
+            nativeQuery = true)
+    List<Integer> findStripes(@Param("productId") Integer productId);
+
+    /**
+     * Always in stripe order, so two transactions locking the stripes of one product cannot deadlock.
+     */
+    @Query(value = "SELECT quantity FROM product_stock_stripes WHERE product_id = :productId ORDER BY stripe "
+            + "FOR UPDATE", nativeQuery = true)
+    List<Integer> lockStripes(@Param("productId") Integer productId);
+
+    /**
+     * Product id and number of stripes of every striped product.
+     */
+    @Query(value = "SELECT product_id, COUNT(*) FROM product_stock_stripes GROUP BY product_id", nativeQuery = true)
+    List<Object[]> countStripesByProduct();
+
+    @Query(value = "SELECT DISTINCT s.product_id FROM product_stock_stripes s "
+            + "JOIN products p ON p.product_id = s.product_id "
+            + "JOIN categories c ON c.category_id = p.category_id WHERE c.category_title = 'Deleted'",
+            nativeQuery = true)
+    List<Integer> findSoftDeletedStripedProductIds();
+
+    /**
+     * 0 rows when the stripe is short or the product soft deleted.
+     */
+    @Modifying
+    @Query(value = "UPDATE product_stock_stripes SET quantity = quantity - :quantity "
+            + "WHERE product_id = :productId AND stripe = :stripe AND quantity >= :quantity "
+            + "AND EXISTS (SELECT 1 FROM products p WHERE p.product_id = :productId "
+            + "AND p.category_id NOT IN (SELECT category_id FROM categories WHERE category_title = 'Deleted'))",
+            nativeQuery = true)
+    int decrementStripe(@Param("productId") Integer productId, @Param("stripe") int stripe,
+            @Param("quantity") int quantity);
+
+    @Modifying
+    @Query(value = "UPDATE product_stock_stripes SET quantity = :quantity "
+            + "WHERE product_id = :productId AND stripe = :stripe", nativeQuery = true)
+    int setStripe(@Param("productId") Integer productId, @Param("stripe") int stripe,
+            @Param("quantity") int quantity);
+
+    @Modifying
+    @Query(value = "INSERT INTO product_stock_stripes (product_id, stripe, quantity) "
+            + "VALUES (:productId, :stripe, :quantity)", nativeQuery = true)
+    int insertStripe(@Param("productId") Integer productId, @Param("stripe") int stripe,
+            @Param("quantity") int quantity);
+
+    @Modifying
+    @Query(value = "DELETE FROM product_stock_stripes WHERE product_id = :productId", nativeQuery = true)
+    int deleteStripes(@Param("productId") Integer productId);
+
+}
@@ -4,6 +4,7 @@ import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -12,9 +13,13 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import com.selimhorri.app.dto.CategoryDto;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.dto.projection.FieldSelection;
 import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
 import com.selimhorri.app.service.CategoryService;
 
@@ -30,20 +35,53 @@ public class CategoryResource {
 	private final CategoryService categoryService;
 	
 	@GetMapping
-	public ResponseEntity<DtoCollectionResponse<CategoryDto>> findAll() {
+	public ResponseEntity<DtoCollectionResponse<CategoryDto>> findAll(
+			@RequestParam(name = "fields", required = false) final String fields) {
 		log.info("*** CategoryDto List, controller; fetch all categories *");
-		return ResponseEntity.ok(new DtoCollectionResponse<>(this.categoryService.findAll()));
+		return ResponseEntity.ok(new DtoCollectionResponse<>(
+				this.categoryService.findAll(FieldSelection.ofCategories(fields))));
 	}
 	
 	@GetMapping("/{categoryId}")
 	public ResponseEntity<CategoryDto> findById(
 			@PathVariable("categoryId") 
 			@NotBlank(message = "Input must not be blank") 
-			@Valid final String categoryId) {
+			@Valid final String categoryId,
+			@RequestParam(name = "fields", required = false) final String fields) {
 		log.info("*** CategoryDto, resource; fetch category by id *");
+		// Served whole from the cache; the fields only trim the response (FieldSelectionResponseAdvice)
 		return ResponseEntity.ok(this.categoryService.findById(Integer.parseInt(categoryId)));
 	}
 	
+	/**
+	 * The category with one page of its products, after the product id {@code after}. A full page carries a
+	 * {@code Link: rel="next"} to the following one; the last page may come back empty.
+	 */
+	@GetMapping("/{categoryId}/products")
+	public ResponseEntity<CategoryDto> findProductPage(
+			@PathVariable("categoryId") 
+			@NotBlank(message = "Input must not be blank") 
+			@Valid final String categoryId,
+			@RequestParam(name = "after", defaultValue = "0") final int after,
+			@RequestParam(name = "limit", defaultValue = "20") final int limit) {
+		log.info("*** CategoryDto, resource; fetch product page of category *");
+		final CategoryDto categoryDto = this.categoryService.findProductPage(Integer.parseInt(categoryId), after, limit);
+		if (categoryDto.getProductDtos().size() < limit)
+			return ResponseEntity.ok(categoryDto);
+		
+		final int lastProductId = categoryDto.getProductDtos().stream()
+				.mapToInt(ProductDto::getProductId)
+				.reduce((first, second) -> second)
+				.getAsInt();
+		final String next = ServletUriComponentsBuilder.fromCurrentRequest()
+				.replaceQueryParam("after", lastProductId)
+				.replaceQueryParam("limit", limit)
+				.toUriString();
+		return ResponseEntity.ok()
+				.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+				.body(categoryDto);
+	}
+	
 	@PostMapping
 	public ResponseEntity<CategoryDto> save(
 			@RequestBody 
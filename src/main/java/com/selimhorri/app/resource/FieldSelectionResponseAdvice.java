@@ -0,0 +1,50 @@
+package com.selimhorri.app.resource;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+
+import com.selimhorri.app.dto.projection.FieldSelection;
+
+/**
+ * Applies {@code ?fields=} to the serialized response of the product and category endpoints, so properties that
+ * were not selected (and not read from the database) are left out rather than written as {@code null}.
+ */
+@RestControllerAdvice(assignableTypes = { ProductResource.class, CategoryResource.class })
+public class FieldSelectionResponseAdvice extends AbstractMappingJacksonResponseBodyAdvice {
+	
+	private static final String FIELDS_PARAMETER = "fields";
+	
+	@Override
+	protected void beforeBodyWriteInternal(final MappingJacksonValue bodyContainer, final MediaType contentType,
+			final MethodParameter returnType, final ServerHttpRequest request, final ServerHttpResponse response) {
+		
+		final HttpServletRequest servletRequest = ((ServletServerHttpRequest) request).getServletRequest();
+		final String fields = servletRequest.getParameter(FIELDS_PARAMETER);
+		final FieldSelection selection = CategoryResource.class.equals(returnType.getContainingClass())
+				? FieldSelection.ofCategories(fields)
+				: FieldSelection.ofProducts(fields);
+		if (selection != null)
+			bodyContainer.setFilters(selection.toFilterProvider());
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -1,9 +1,23 @@
 package com.selimhorri.app.resource;
 
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -12,11 +26,27 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import com.selimhorri.app.dto.ArchivedProductDto;
+import com.selimhorri.app.dto.CatalogAuditDto;
+import com.selimhorri.app.dto.ProductBulkOperationDto;
+import com.selimhorri.app.dto.ProductBulkResultDto;
+import com.selimhorri.app.dto.ProductChangeDto;
 import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.dto.ProductSearchResultDto;
+import com.selimhorri.app.dto.ProductStockDto;
+import com.selimhorri.app.dto.projection.FieldSelection;
 import com.selimhorri.app.dto.response.collection.DtoCollectionResponse;
+import com.selimhorri.app.index.CatalogQuery;
+import com.selimhorri.app.index.CatalogSnapshot;
+import com.selimhorri.app.index.CatalogSnapshotStore;
 import com.selimhorri.app.service.ProductService;
+import com.selimhorri.app.service.ProductStockService;
+import com.selimhorri.app.stream.ProductChangeStream;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,22 +58,145 @@ import lombok.extern.slf4j.Slf4j;
 public class ProductResource {
 	
 	private final ProductService productService;
+	private final ProductStockService productStockService;
+	private final ObjectProvider<CatalogSnapshotStore> catalogSnapshotStore;
+	private final ObjectProvider<ProductChangeStream> productChangeStream;
 	
+	/**
+	 * With {@code ids} it is a multi-get (e.g. {@code ?ids=1,2,3}) that skips unknown ids instead of failing.
+	 */
 	@GetMapping
-	public ResponseEntity<DtoCollectionResponse<ProductDto>> findAll() {
+	public ResponseEntity<DtoCollectionResponse<ProductDto>> findAll(
+			@RequestParam(name = "ids", required = false) final List<Integer> ids,
+			@RequestParam(name = "fields", required = false) final String fields) {
 		log.info("*** ProductDto List, controller; fetch all categories *");
-		return ResponseEntity.ok(new DtoCollectionResponse<>(this.productService.findAll()));
+		if (ids != null)
+			return ResponseEntity.ok(new DtoCollectionResponse<>(this.productService.findAllByIds(ids)));
+		return ResponseEntity.ok(new DtoCollectionResponse<>(
+				this.productService.findAll(FieldSelection.ofProducts(fields))));
+	}
+	
+	@GetMapping("/sku/{sku}")
+	public ResponseEntity<ProductDto> findBySku(
+			@PathVariable("sku") 
+			@NotBlank(message = "Input must not be blank!") 
+			@Valid final String sku) {
+		log.info("*** ProductDto, resource; fetch product by sku *");
+		return ResponseEntity.ok(this.productService.findBySku(sku));
 	}
 	
 	@GetMapping("/{productId}")
 	public ResponseEntity<ProductDto> findById(
 			@PathVariable("productId") 
 			@NotBlank(message = "Input must not be blank!") 
-			@Valid final String productId) {
+			@Valid final String productId,
+			@RequestParam(name = "fields", required = false) final String fields) {
 		log.info("*** ProductDto, resource; fetch product by id *");
+		// Served whole from the cache; the fields only trim the response (FieldSelectionResponseAdvice)
 		return ResponseEntity.ok(this.productService.findById(Integer.parseInt(productId)));
 	}
 	
+	@GetMapping("/subtree/{categoryId}")
+	public ResponseEntity<DtoCollectionResponse<ProductDto>> findAllByCategorySubtree(
+			@PathVariable("categoryId") 
+			@NotBlank(message = "Input must not be blank!") 
+			@Valid final String categoryId,
+			@RequestParam(name = "fields", required = false) final String fields) {
+		log.info("*** ProductDto List, resource; fetch all products of a category and its subcategories *");
+		return ResponseEntity.ok(new DtoCollectionResponse<>(this.productService.findAllByCategorySubtree(
+				Integer.parseInt(categoryId), FieldSelection.ofProducts(fields))));
+	}
+	
+	@GetMapping("/subtree/{categoryId}/count")
+	public ResponseEntity<Long> countByCategorySubtree(
+			@PathVariable("categoryId") 
+			@NotBlank(message = "Input must not be blank!") 
+			@Valid final String categoryId) {
+		log.info("*** Long, resource; count products of a category and its subcategories *");
+		return ResponseEntity.ok(this.productService.countByCategorySubtree(Integer.parseInt(categoryId)));
+	}
+	
+	/**
+	 * Category page: products of the subtree, filtered and sorted, with facet counts. Prices as in the products.
+	 */
+	@GetMapping("/search")
+	public ResponseEntity<ProductSearchResultDto> search(
+			@RequestParam(name = "categoryId", required = false) final Integer categoryId,
+			@RequestParam(name = "minPrice", required = false) final Double minPrice,
+			@RequestParam(name = "maxPrice", required = false) final Double maxPrice,
+			@RequestParam(name = "inStock", defaultValue = "false") final boolean inStock,
+			@RequestParam(name = "sort", defaultValue = "price_asc") final String sort,
+			@RequestParam(name = "limit", defaultValue = "20") final int limit) {
+		log.info("*** ProductSearchResultDto, resource; search products *");
+		return ResponseEntity.ok(this.productService.search(CatalogQuery.builder()
+				.categoryId(categoryId)
+				.minPriceCents(minPrice == null ? 0 : Math.round(minPrice * 100))
+				.maxPriceCents(maxPrice == null ? Long.MAX_VALUE : Math.round(maxPrice * 100))
+				.inStockOnly(inStock)
+				.sort(CatalogQuery.Sort.valueOf(sort.trim().toUpperCase(Locale.ROOT)))
+				.limit(limit)
+				.build()));
+	}
+	
+	/**
+	 * Server-sent {@code product} events ({@link ProductChangeDto}) with the price and stock changes of the given
+	 * products and/or of the products of one category (not its subcategories), instead of polling them. Only changes
+	 * are sent, at most one per product per {@code app.product-stream.interval}.
+	 */
+	@GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public ResponseEntity<SseEmitter> stream(
+			@RequestParam(name = "ids", required = false) final List<Integer> ids,
+			@RequestParam(name = "categoryId", required = false) final Integer categoryId) {
+		log.info("*** SseEmitter, resource; subscribe to product changes *");
+		final ProductChangeStream stream = this.productChangeStream.getIfAvailable();
+		final SseEmitter emitter = stream == null ? null : stream.subscribe(ids, categoryId);
+		if (emitter == null)
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+					.header(HttpHeaders.RETRY_AFTER, "10")
+					.build();
+		return ResponseEntity.ok(emitter);
+	}
+	
+	/**
+	 * Whole catalog in the {@link CatalogSnapshot} format, sent straight from the latest snapshot file: Tomcat's
+	 * sendfile when the connector supports it, {@link FileChannel#transferTo} otherwise. Never serialized per request;
+	 * excluded from the ETag filter ({@code HttpCachingConfig}), the snapshot version is its ETag.
+	 */
+	@GetMapping("/export")
+	public void export(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+		log.info("*** Void, resource; export catalog snapshot *");
+		final CatalogSnapshotStore store = this.catalogSnapshotStore.getIfAvailable();
+		final CatalogSnapshot snapshot = store == null ? null : store.current();
+		if (snapshot == null) {
+			response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+			response.setHeader(HttpHeaders.RETRY_AFTER, "60");
+			return;
+		}
+		
+		final String etag = "\"" + snapshot.getVersion() + "\"";
+		response.setHeader(HttpHeaders.ETAG, etag);
+		if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+			response.setStatus(HttpStatus.NOT_MODIFIED.value());
+			return;
+		}
+		response.setContentType(CatalogSnapshot.MEDIA_TYPE);
+		response.setContentLengthLong(snapshot.getSize());
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+				"attachment; filename=\"" + snapshot.getFile().getFileName() + "\"");
+		
+		if (Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+			request.setAttribute("org.apache.tomcat.sendfile.filename", snapshot.getFile().toAbsolutePath().toString());
+			request.setAttribute("org.apache.tomcat.sendfile.start", 0L);
+			request.setAttribute("org.apache.tomcat.sendfile.end", snapshot.getSize());
+			return;
+		}
+		try (final FileChannel file = FileChannel.open(snapshot.getFile(), StandardOpenOption.READ)) {
+			final WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+			for (long position = 0; position < snapshot.getSize(); )
+				position += file.transferTo(position, snapshot.getSize() - position, out);
+		}
+	}
+	
 	@PostMapping
 	public ResponseEntity<ProductDto> save(
 			@RequestBody 
@@ -74,6 +227,126 @@ public class ProductResource {
 		return ResponseEntity.ok(this.productService.update(Integer.parseInt(productId), productDto));
 	}
 	
+	@PostMapping("/bulk")
+	public ResponseEntity<ProductBulkResultDto> bulkUpdate(
+			@RequestBody 
+			@NotNull(message = "Input must not be NULL!") 
+			@Valid final ProductBulkOperationDto productBulkOperationDto) {
+		log.info("*** ProductBulkResultDto, resource; bulk update products *");
+		return ResponseEntity.ok(this.productService.bulkUpdate(productBulkOperationDto));
+	}
+	
+	/**
+	 * Current stock, with the stripes of a striped product.
+	 */
+	@GetMapping("/{productId}/stock")
+	public ResponseEntity<ProductStockDto> findStock(
+			@PathVariable("productId")
+			@NotBlank(message = "Input must not be blank!")
+			@Valid final String productId) {
+		log.info("*** ProductStockDto, resource; fetch stock *");
+		return ResponseEntity.ok(this.productStockService.findById(Integer.parseInt(productId)));
+	}
+	
+	/**
+	 * Takes {@code quantity} units or nothing: 409 when there are not enough in stock.
+	 */
+	@PostMapping("/{productId}/stock/decrement")
+	public ResponseEntity<ProductStockDto> decrementStock(
+			@PathVariable("productId")
+			@NotBlank(message = "Input must not be blank!")
+			@Valid final String productId,
+			@RequestParam(name = "quantity", defaultValue = "1") final int quantity) {
+		log.info("*** ProductStockDto, resource; decrement stock *");
+		return ResponseEntity.ok(this.productStockService.decrement(Integer.parseInt(productId), quantity));
+	}
+	
+	@PutMapping("/{productId}/stock/stripes")
+	public ResponseEntity<ProductStockDto> stripeStock(
+			@PathVariable("productId")
+			@NotBlank(message = "Input must not be blank!")
+			@Valid final String productId,
+			@RequestParam(name = "count") final int count) {
+		log.info("*** ProductStockDto, resource; stripe stock *");
+		return ResponseEntity.ok(this.productStockService.stripe(Integer.parseInt(productId), count));
+	}
+	
+	@DeleteMapping("/{productId}/stock/stripes")
+	public ResponseEntity<ProductStockDto> unstripeStock(
+			@PathVariable("productId")
+			@NotBlank(message = "Input must not be blank!")
+			@Valid final String productId) {
+		log.info("*** ProductStockDto, resource; unstripe stock *");
+		return ResponseEntity.ok(this.productStockService.unstripe(Integer.parseInt(productId)));
+	}
+	
+	/**
+	 * Archived products, one page after the product id {@code after}. A full page carries a {@code Link: rel="next"}
+	 * to the following one.
+	 */
+	@GetMapping("/archive")
+	public ResponseEntity<DtoCollectionResponse<ArchivedProductDto>> findArchivedPage(
+			@RequestParam(name = "after", defaultValue = "0") final int after,
+			@RequestParam(name = "limit", defaultValue = "20") final int limit) {
+		log.info("*** ArchivedProductDto List, resource; fetch page of archived products *");
+		final List<ArchivedProductDto> archivedProductDtos = this.productService.findArchivedPage(after, limit);
+		if (archivedProductDtos.size() < limit)
+			return ResponseEntity.ok(new DtoCollectionResponse<>(archivedProductDtos));
+		
+		final String next = ServletUriComponentsBuilder.fromCurrentRequest()
+				.replaceQueryParam("after", archivedProductDtos.get(archivedProductDtos.size() - 1).getProductId())
+				.replaceQueryParam("limit", limit)
+				.toUriString();
+		return ResponseEntity.ok()
+				.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+				.body(new DtoCollectionResponse<>(archivedProductDtos));
+	}
+	
+	@GetMapping("/archive/{productId}")
+	public ResponseEntity<ArchivedProductDto> findArchivedById(
+			@PathVariable("productId")
+			@NotBlank(message = "Input must not be blank!")
+			@Valid final String productId) {
+		log.info("*** ArchivedProductDto, resource; fetch archived product by id *");
+		return ResponseEntity.ok(this.productService.findArchivedById(Integer.parseInt(productId)));
+	}
+	
+	@PostMapping("/archive/{productId}/restore")
+	public ResponseEntity<ProductDto> restore(
+			@PathVariable("productId")
+			@NotBlank(message = "Input must not be blank!")
+			@Valid final String productId,
+			@RequestParam(name = "categoryId") final Integer categoryId) {
+		log.info("*** ProductDto, resource; restore archived product *");
+		return ResponseEntity.ok(this.productService.restore(Integer.parseInt(productId), categoryId));
+	}
+	
+	/**
+	 * Changes of the product, newest first, one page before the audit id {@code before}. A full page carries a
+	 * {@code Link: rel="next"} to the following one.
+	 */
+	@GetMapping("/{productId}/history")
+	public ResponseEntity<DtoCollectionResponse<CatalogAuditDto>> findHistory(
+			@PathVariable("productId")
+			@NotBlank(message = "Input must not be blank!")
+			@Valid final String productId,
+			@RequestParam(name = "before", required = false) final Long before,
+			@RequestParam(name = "limit", defaultValue = "20") final int limit) {
+		log.info("*** CatalogAuditDto List, resource; fetch product history *");
+		final List<CatalogAuditDto> catalogAuditDtos =
+				this.productService.findHistory(Integer.parseInt(productId), before, limit);
+		if (catalogAuditDtos.size() < limit)
+			return ResponseEntity.ok(new DtoCollectionResponse<>(catalogAuditDtos));
+		
+		final String next = ServletUriComponentsBuilder.fromCurrentRequest()
+				.replaceQueryParam("before", catalogAuditDtos.get(catalogAuditDtos.size() - 1).getAuditId())
+				.replaceQueryParam("limit", limit)
+				.toUriString();
+		return ResponseEntity.ok()
+				.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+				.body(new DtoCollectionResponse<>(catalogAuditDtos));
+	}
+	
 	@DeleteMapping("/{productId}")
 	public ResponseEntity<Boolean> deleteById(@PathVariable("productId") final String productId) {
 		log.info("*** Boolean, resource; delete product by id *");
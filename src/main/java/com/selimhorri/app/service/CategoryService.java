@@ -3,11 +3,14 @@ package com.selimhorri.app.service;
 import java.util.List;
 
 import com.selimhorri.app.dto.CategoryDto;
+import com.selimhorri.app.dto.projection.FieldSelection;
 
 public interface CategoryService {
 	
 	List<CategoryDto> findAll();
+	List<CategoryDto> findAll(final FieldSelection selection);
 	CategoryDto findById(final Integer categoryId);
+	CategoryDto findProductPage(final Integer categoryId, final Integer afterProductId, final int limit);
 	CategoryDto save(final CategoryDto categoryDto);
 	CategoryDto update(final CategoryDto categoryDto);
 	CategoryDto update(final Integer categoryId, final CategoryDto categoryDto);
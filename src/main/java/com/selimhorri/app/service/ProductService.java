@@ -1,16 +1,36 @@
 package com.selimhorri.app.service;
 
+import java.util.Collection;
 import java.util.List;
 
+import com.selimhorri.app.dto.ArchivedProductDto;
+import com.selimhorri.app.dto.CatalogAuditDto;
+import com.selimhorri.app.dto.ProductBulkOperationDto;
+import com.selimhorri.app.dto.ProductBulkResultDto;
 import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.dto.ProductSearchResultDto;
+import com.selimhorri.app.dto.projection.FieldSelection;
+import com.selimhorri.app.index.CatalogQuery;
 
 public interface ProductService {
 	
 	List<ProductDto> findAll();
+	List<ProductDto> findAll(final FieldSelection selection);
 	ProductDto findById(final Integer productId);
+	ProductDto findBySku(final String sku);
+	List<ProductDto> findAllByIds(final Collection<Integer> productIds);
 	ProductDto save(final ProductDto productDto);
 	ProductDto update(final ProductDto productDto);
 	ProductDto update(final Integer productId, final ProductDto productDto);
 	void deleteById(final Integer productId);
+	List<ProductDto> findAllByCategorySubtree(final Integer categoryId);
+	List<ProductDto> findAllByCategorySubtree(final Integer categoryId, final FieldSelection selection);
+	long countByCategorySubtree(final Integer categoryId);
+	ProductBulkResultDto bulkUpdate(final ProductBulkOperationDto productBulkOperationDto);
+	ProductSearchResultDto search(final CatalogQuery query);
+	List<ArchivedProductDto> findArchivedPage(final Integer afterProductId, final int limit);
+	ArchivedProductDto findArchivedById(final Integer productId);
+	ProductDto restore(final Integer productId, final Integer categoryId);
+	List<CatalogAuditDto> findHistory(final Integer productId, final Long beforeAuditId, final int limit);
 	
 }
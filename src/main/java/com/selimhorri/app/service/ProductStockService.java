@@ -0,0 +1,13 @@
+package com.selimhorri.app.service;
+
+import com.selimhorri.app.dto.ProductStockDto;
+
+public interface ProductStockService {
+	
+	ProductStockDto findById(final Integer productId);
+	ProductStockDto decrement(final Integer productId, final int quantity);
+	ProductStockDto stripe(final Integer productId, final int stripes);
+	ProductStockDto unstripe(final Integer productId);
+	void reset(final Integer productId, final Integer quantity);
+	
+}
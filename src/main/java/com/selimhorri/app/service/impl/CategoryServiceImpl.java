@@ -1,17 +1,26 @@
 package com.selimhorri.app.service.impl;
 
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import javax.transaction.Transactional;
+import javax.transaction.Transactional.TxType;
 
 import org.springframework.stereotype.Service;
 
+import com.selimhorri.app.audit.AuditTrail;
+import com.selimhorri.app.cache.CoalescingCache;
 import com.selimhorri.app.domain.Category;
 import com.selimhorri.app.dto.CategoryDto;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.dto.projection.FieldSelection;
 import com.selimhorri.app.exception.wrapper.CategoryNotFoundException;
 import com.selimhorri.app.helper.CategoryMappingHelper;
+import com.selimhorri.app.helper.ProductMappingHelper;
 import com.selimhorri.app.repository.CategoryRepository;
+import com.selimhorri.app.repository.ProductCatalogViewRepository;
 import com.selimhorri.app.repository.ProductRepository;
 import com.selimhorri.app.service.CategoryService;
 
@@ -24,8 +33,14 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 public class CategoryServiceImpl implements CategoryService {
 
+	public static final int PRODUCT_PAGE_MAX_LIMIT = 100;
+
 	private final CategoryRepository categoryRepository;
 	private final ProductRepository productRepository;
+	private final ProductCatalogViewRepository productCatalogViewRepository;
+	private final CoalescingCache<Integer, CategoryDto> categoryDtoCache;
+	private final CoalescingCache<Integer, ProductDto> productDtoCache;
+	private final AuditTrail auditTrail;
 
 	@Override
 	public List<CategoryDto> findAll() {
@@ -35,8 +50,57 @@ public class CategoryServiceImpl implements CategoryService {
 				.collect(Collectors.toUnmodifiableList());
 	}
 
+	/**
+	 * Reads only the selected columns; without a selection, same as {@link #findAll()}.
+	 */
+	@Override
+	public List<CategoryDto> findAll(final FieldSelection selection) {
+		if (selection == null)
+			return this.findAll();
+		return this.categoryRepository.findAllNonReserved(selection)
+				.stream()
+				.map(CategoryMappingHelper::map)
+				.collect(Collectors.toUnmodifiableList());
+	}
+
+	/**
+	 * Served from the coalescing cache, outside a transaction like {@code ProductServiceImpl#findById}.
+	 */
 	@Override
+	@Transactional(TxType.SUPPORTS)
 	public CategoryDto findById(final Integer categoryId) {
+		return this.categoryDtoCache.get(categoryId, this::loadById);
+	}
+
+	/**
+	 * The category (from the cache) with one keyset page of its own products in {@code productDtos}, in ascending id
+	 * order; the next page starts after the last id. Never touches the lazy {@code Category.products}.
+	 *
+	 * @throws IllegalArgumentException for a limit out of {@code 1..}{@value #PRODUCT_PAGE_MAX_LIMIT}
+	 */
+	@Override
+	@Transactional(TxType.SUPPORTS)
+	public CategoryDto findProductPage(final Integer categoryId, final Integer afterProductId, final int limit) {
+		log.info("*** CategoryDto, service; fetch product page of category *");
+		if (limit < 1 || limit > PRODUCT_PAGE_MAX_LIMIT)
+			throw new IllegalArgumentException("limit must be between 1 and " + PRODUCT_PAGE_MAX_LIMIT);
+
+		final CategoryDto cached = this.findById(categoryId);
+		final Set<ProductDto> productDtos = new LinkedHashSet<>();
+		this.productCatalogViewRepository.findPageInCategory(categoryId, afterProductId == null ? 0 : afterProductId, limit)
+				.forEach(tuple -> productDtos.add(ProductMappingHelper.map(tuple)));
+
+		// Copia: el DTO de la caché es compartido
+		return CategoryDto.builder()
+				.categoryId(cached.getCategoryId())
+				.categoryTitle(cached.getCategoryTitle())
+				.imageUrl(cached.getImageUrl())
+				.parentCategoryDto(cached.getParentCategoryDto())
+				.productDtos(productDtos)
+				.build();
+	}
+
+	private CategoryDto loadById(final Integer categoryId) {
 		return this.categoryRepository.findNonReservedById(categoryId)
 				.map(CategoryMappingHelper::map)
 				.orElseThrow(() -> new CategoryNotFoundException(
@@ -59,14 +123,23 @@ public class CategoryServiceImpl implements CategoryService {
 			throw new IllegalArgumentException("A category with this name already exists");
 		}
 
+		// Del padre solo se toma el ID, y debe existir
+		final Category parentCategory = this.findParentCategory(categoryDto);
+
 		// Resetear relaciones e ID para asegurar que es una nueva categoría
 		categoryDto.setParentCategoryDto(null);
 		categoryDto.setSubCategoriesDtos(null);
 		categoryDto.setCategoryId(null);
 
+		final Category category = CategoryMappingHelper.map(categoryDto);
+		category.setParentCategory(parentCategory);
+		final Category savedCategory = this.categoryRepository.save(category);
+		savedCategory.setCategoryPath(pathOf(parentCategory) + savedCategory.getCategoryId() + "/");
+		this.categoryDtoCache.invalidate(savedCategory.getCategoryId());
+		this.auditCategory("CREATE", null, null, savedCategory);
+
 		// Guardar y mapear a DTO
-		return CategoryMappingHelper.map(
-				this.categoryRepository.save(CategoryMappingHelper.map(categoryDto)));
+		return CategoryMappingHelper.map(savedCategory);
 	}
 
 	@Override
@@ -99,12 +172,17 @@ public class CategoryServiceImpl implements CategoryService {
 		}
 
 		// Actualizar campos
+		final String previousTitle = existingCategory.getCategoryTitle();
+		final Integer previousParentId = idOf(existingCategory.getParentCategory());
 		existingCategory.setCategoryTitle(normalizedTitle);
 
-		// Resetear relaciones (si es necesario)
-		existingCategory.setParentCategory(null);
+		// Reubicar bajo el padre indicado (o en la raíz) junto con sus subcategorías
+		this.moveCategory(existingCategory, this.findParentCategory(categoryDto));
 		existingCategory.setSubCategories(null);
 
+		this.productCatalogViewRepository.updateCategoryForProducts(existingCategory.getCategoryId(), existingCategory);
+		this.invalidateCaches();
+		this.auditCategory("UPDATE", previousTitle, previousParentId, existingCategory);
 		return CategoryMappingHelper.map(this.categoryRepository.save(existingCategory));
 	}
 
@@ -137,12 +215,17 @@ public class CategoryServiceImpl implements CategoryService {
 		}
 
 		// Actualizar campos
+		final String previousTitle = existingCategory.getCategoryTitle();
+		final Integer previousParentId = idOf(existingCategory.getParentCategory());
 		existingCategory.setCategoryTitle(normalizedTitle);
 
-		// Resetear relaciones (si es necesario)
-		existingCategory.setParentCategory(null);
+		// Reubicar bajo el padre indicado (o en la raíz) junto con sus subcategorías
+		this.moveCategory(existingCategory, this.findParentCategory(categoryDto));
 		existingCategory.setSubCategories(null);
 
+		this.productCatalogViewRepository.updateCategoryForProducts(categoryId, existingCategory);
+		this.invalidateCaches();
+		this.auditCategory("UPDATE", previousTitle, previousParentId, existingCategory);
 		// No necesitamos mapear el DTO a entidad porque trabajamos con la existente
 		return CategoryMappingHelper.map(this.categoryRepository.save(existingCategory));
 	}
@@ -171,9 +254,77 @@ public class CategoryServiceImpl implements CategoryService {
 
 		// 4. Migrar todos los productos a "No Category"
 		this.productRepository.updateCategoryForProducts(categoryId, noCategory);
+		this.productCatalogViewRepository.updateCategoryForProducts(categoryId, noCategory);
+
+		// 5. Subir las subcategorías al padre de la categoría eliminada
+		this.categoryRepository.updateParentForSubCategories(categoryId, category.getParentCategory());
+		if (category.getCategoryPath() != null) {
+			this.categoryRepository.rewriteCategoryPaths(category.getCategoryPath(),
+					category.getCategoryPath().length(), pathOf(category.getParentCategory()));
+			this.productCatalogViewRepository.rewriteCategoryPaths(category.getCategoryPath(),
+					category.getCategoryPath().length(), pathOf(category.getParentCategory()));
+		}
 
-		// 5. Eliminar la categoría
+		// 6. Eliminar la categoría; sus productos pasan a 'No Category' sin entrada propia
 		this.categoryRepository.delete(category);
+		this.auditTrail.changes(AuditTrail.CATEGORY, categoryId, "DELETE")
+				.field("categoryTitle", category.getCategoryTitle(), null)
+				.record();
+		this.invalidateCaches();
+	}
+
+	private Category findParentCategory(final CategoryDto categoryDto) {
+		if (categoryDto.getParentCategoryDto() == null || categoryDto.getParentCategoryDto().getCategoryId() == null)
+			return null;
+		final Integer parentId = categoryDto.getParentCategoryDto().getCategoryId();
+		return this.categoryRepository.findNonReservedById(parentId)
+				.orElseThrow(() -> new CategoryNotFoundException("Parent category not found with ID: " + parentId));
+	}
+
+	/**
+	 * Sets the new parent and rewrites the materialized path of the category and of its whole subtree with one
+	 * set-based statement.
+	 */
+	private void moveCategory(final Category category, final Category newParent) {
+		final String oldPath = category.getCategoryPath();
+		if (newParent != null && oldPath != null && newParent.getCategoryPath().startsWith(oldPath)) {
+			throw new IllegalArgumentException("A category cannot be moved under itself or one of its subcategories");
+		}
+
+		final String newPath = pathOf(newParent) + category.getCategoryId() + "/";
+		category.setParentCategory(newParent);
+		if (!newPath.equals(oldPath)) {
+			if (oldPath != null) {
+				this.categoryRepository.rewriteCategoryPaths(oldPath, oldPath.length(), newPath);
+				this.productCatalogViewRepository.rewriteCategoryPaths(oldPath, oldPath.length(), newPath);
+			}
+			category.setCategoryPath(newPath);
+		}
+	}
+
+	private static String pathOf(final Category category) {
+		return category == null ? "/" : category.getCategoryPath();
+	}
+
+	private static Integer idOf(final Category category) {
+		return category == null ? null : category.getCategoryId();
+	}
+
+	private void auditCategory(final String action, final String previousTitle, final Integer previousParentId,
+			final Category category) {
+		this.auditTrail.changes(AuditTrail.CATEGORY, category.getCategoryId(), action)
+				.field("categoryTitle", previousTitle, category.getCategoryTitle())
+				.field("parentCategoryId", previousParentId, idOf(category.getParentCategory()))
+				.record();
+	}
+
+	/**
+	 * Category DTOs embed their parent and product DTOs their category, so a renamed, moved or deleted category
+	 * drops both caches whole.
+	 */
+	private void invalidateCaches() {
+		this.categoryDtoCache.invalidateAll();
+		this.productDtoCache.invalidateAll();
 	}
 
 }
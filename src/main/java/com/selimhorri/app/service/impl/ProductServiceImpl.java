@@ -1,21 +1,56 @@
 package com.selimhorri.app.service.impl;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import javax.transaction.Transactional;
+import javax.transaction.Transactional.TxType;
 
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import com.selimhorri.app.audit.AuditTrail;
+import com.selimhorri.app.cache.CoalescingCache;
+import com.selimhorri.app.domain.ArchivedProduct;
 import com.selimhorri.app.domain.Category;
 import com.selimhorri.app.domain.Product;
+import com.selimhorri.app.dto.ArchivedProductDto;
+import com.selimhorri.app.dto.CatalogAuditDto;
+import com.selimhorri.app.dto.ProductBulkOperationDto;
+import com.selimhorri.app.dto.ProductBulkResultDto;
 import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.dto.ProductSearchResultDto;
+import com.selimhorri.app.dto.projection.FieldSelection;
 import com.selimhorri.app.exception.wrapper.CategoryNotFoundException;
 import com.selimhorri.app.exception.wrapper.ProductNotFoundException;
+import com.selimhorri.app.helper.CanonicalProductMapper;
 import com.selimhorri.app.helper.ProductMappingHelper;
+import com.selimhorri.app.hotkey.HotKeys;
+import com.selimhorri.app.index.CatalogIndex;
+import com.selimhorri.app.index.CatalogIndexMaintainer;
+import com.selimhorri.app.index.CatalogQuery;
+import com.selimhorri.app.index.CatalogQueryResult;
+import com.selimhorri.app.repository.ArchivedProductRepository;
+import com.selimhorri.app.repository.CatalogAuditRepository;
 import com.selimhorri.app.repository.CategoryRepository;
+import com.selimhorri.app.repository.ProductCatalogViewRepository;
 import com.selimhorri.app.repository.ProductRepository;
 import com.selimhorri.app.service.ProductService;
+import com.selimhorri.app.service.ProductStockService;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -26,23 +61,150 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 public class ProductServiceImpl implements ProductService {
 
+	/**
+	 * Ids per UPDATE, well below the IN list limits of the drivers.
+	 */
+	private static final int BULK_ID_CHUNK = 1_000;
+	private static final int BULK_MAX_IDS = 10_000;
+
+	/**
+	 * Up to this many ids are evicted (and broadcast) one by one; beyond it the whole product cache is dropped.
+	 */
+	private static final int BULK_PER_KEY_INVALIDATION_LIMIT = 100;
+
+	/**
+	 * {@code price_unit} is DECIMAL(7,2).
+	 */
+	private static final double MAX_PRICE = 99_999.99;
+
+	private static final int MULTI_GET_MAX_IDS = 500;
+
+	/**
+	 * Unique index on {@code products.sku} (V18), as named in the constraint violations of H2 and MySQL.
+	 */
+	private static final String SKU_INDEX = "uk_products_sku";
+
+	public static final int ARCHIVE_PAGE_MAX_LIMIT = 100;
+	public static final int HISTORY_PAGE_MAX_LIMIT = 100;
+
 	private final ProductRepository productRepository;
+	private final ProductCatalogViewRepository productCatalogViewRepository;
 	private final CategoryRepository categoryRepository;
+	private final ArchivedProductRepository archivedProductRepository;
+	private final CoalescingCache<Integer, ProductDto> productDtoCache;
+	private final CatalogIndexMaintainer catalogIndexMaintainer;
+	private final HotKeys hotKeys;
+	private final ProductStockService productStockService;
+	private final CatalogAuditRepository catalogAuditRepository;
+	private final AuditTrail auditTrail;
 
 	@Override
 	public List<ProductDto> findAll() {
 		log.info("*** ProductDto List, service; fetch all products *");
-		return this.productRepository.findAllWithoutDeleted()
+		return this.productCatalogViewRepository.findAllWithoutDeleted()
 				.stream()
-				.map(ProductMappingHelper::map)
-				.distinct()
+				.map(new CanonicalProductMapper()::map)
 				.collect(Collectors.toUnmodifiableList());
 	}
 
+	/**
+	 * Reads only the selected columns; without a selection, same as {@link #findAll()}.
+	 */
 	@Override
+	public List<ProductDto> findAll(final FieldSelection selection) {
+		if (selection == null)
+			return this.findAll();
+		log.info("*** ProductDto List, service; fetch all products, fields {} *", selection.getProductFields());
+		return this.productCatalogViewRepository.findAllWithoutDeleted(selection)
+				.stream()
+				.map(new CanonicalProductMapper()::map)
+				.collect(Collectors.toUnmodifiableList());
+	}
+
+	/**
+	 * Served from the coalescing cache; no transaction is opened here so callers waiting on a load already in
+	 * flight for the same id do not each hold a pooled connection.
+	 */
+	@Override
+	@Transactional(TxType.SUPPORTS)
 	public ProductDto findById(final Integer productId) {
 		log.info("*** ProductDto, service; fetch product by id *");
-		return this.productRepository.findByIdWithoutDeleted(productId)
+		final ProductDto productDto = this.productDtoCache.get(productId, this::loadById);
+		this.hotKeys.recordProduct(productId,
+				productDto.getCategoryDto() == null ? null : productDto.getCategoryDto().getCategoryId());
+		return productDto;
+	}
+
+	/**
+	 * The SKU is resolved to the id with one indexed query; the product itself comes from the cache, as by id.
+	 */
+	@Override
+	@Transactional(TxType.SUPPORTS)
+	public ProductDto findBySku(final String sku) {
+		log.info("*** ProductDto, service; fetch product by sku *");
+		return this.findById(this.productCatalogViewRepository.findProductIdBySkuWithoutDeleted(sku)
+				.orElseThrow(() -> new ProductNotFoundException(String.format("Product with sku: %s not found", sku))));
+	}
+
+	/**
+	 * Multi-get for clients that batch their lookups: cached products are served from the near cache, the rest are
+	 * read with one query. Unknown or deleted ids are left out; the order of the request is kept.
+	 */
+	@Override
+	@Transactional(TxType.SUPPORTS)
+	public List<ProductDto> findAllByIds(final Collection<Integer> productIds) {
+		log.info("*** ProductDto List, service; fetch products by ids *");
+		final Collection<Integer> distinctIds = new LinkedHashSet<>(productIds);
+		if (distinctIds.size() > MULTI_GET_MAX_IDS) {
+			throw new IllegalArgumentException("Como máximo " + MULTI_GET_MAX_IDS + " ids por consulta");
+		}
+		final Map<Integer, ProductDto> found = this.productDtoCache.getAll(distinctIds, missing ->
+				this.productCatalogViewRepository.findAllByIdWithoutDeleted(missing)
+						.stream()
+						.map(new CanonicalProductMapper()::map)
+						.collect(Collectors.toMap(ProductDto::getProductId, Function.identity())));
+		return distinctIds.stream()
+				.map(found::get)
+				.filter(Objects::nonNull)
+				.collect(Collectors.toUnmodifiableList());
+	}
+
+	/**
+	 * Filter, facets and top-K come from the in-memory catalog index; only the returned page of products is read,
+	 * through the near cache. The index follows the database within milliseconds of a commit.
+	 */
+	@Override
+	@Transactional(TxType.SUPPORTS)
+	public ProductSearchResultDto search(final CatalogQuery query) {
+		log.info("*** ProductSearchResultDto, service; search products *");
+		final CatalogIndex index = this.catalogIndexMaintainer.getIndex();
+		if (query.getCategoryId() != null && !index.containsCategory(query.getCategoryId())) {
+			throw new CategoryNotFoundException("Category not found with ID: " + query.getCategoryId());
+		}
+		final CatalogQueryResult result = index.search(query);
+
+		final List<ProductSearchResultDto.CategoryFacet> categories = new ArrayList<>();
+		for (int i = 0; i < result.getCategoryFacetIds().length; i++)
+			categories.add(new ProductSearchResultDto.CategoryFacet(result.getCategoryFacetIds()[i],
+					result.getCategoryFacetTitles()[i], result.getCategoryFacetCounts()[i]));
+		final List<ProductSearchResultDto.PriceFacet> prices = new ArrayList<>();
+		final long[] bounds = CatalogIndex.PRICE_BUCKET_BOUNDS_CENTS;
+		for (int i = 0; i < result.getPriceBucketCounts().length; i++)
+			prices.add(new ProductSearchResultDto.PriceFacet(i == 0 ? 0.0 : bounds[i - 1] / 100.0,
+					i < bounds.length ? bounds[i] / 100.0 : null, result.getPriceBucketCounts()[i]));
+
+		return ProductSearchResultDto.builder()
+				.total(result.getTotal())
+				.products(this.findAllByIds(Arrays.stream(result.getProductIds()).boxed()
+						.collect(Collectors.toList())))
+				.categories(categories)
+				.prices(prices)
+				.inStock(result.getInStockCount())
+				.build();
+	}
+
+	private ProductDto loadById(final Integer productId) {
+		return this.productCatalogViewRepository.findByIdWithoutDeleted(productId)
 				.map(ProductMappingHelper::map)
 				.orElseThrow(
 						() -> new ProductNotFoundException(String.format("Product with id: %d not found", productId)));
@@ -82,22 +244,41 @@ public class ProductServiceImpl implements ProductService {
 		categoryRepository.findById(categoryId)
 				.orElseThrow(() -> new CategoryNotFoundException("Categoría no encontrada con ID: " + categoryId));
 
+		this.checkSkuNotArchived(productDto.getSku());
+
 		productDto.setProductId(null);
-		return ProductMappingHelper.map(this.productRepository
-				.save(ProductMappingHelper.map(productDto)));
+		final Product savedProduct = this.checkingSku(productDto.getSku(),
+				() -> this.productRepository.saveAndFlush(ProductMappingHelper.map(productDto)));
+		this.productCatalogViewRepository.refresh(List.of(savedProduct.getProductId()));
+		// Nothing cached yet, but the listeners (catalog index, other replicas) learn about the new product
+		this.productDtoCache.invalidate(savedProduct.getProductId());
+		final ProductDto savedProductDto = ProductMappingHelper.map(savedProduct);
+		this.auditProduct("CREATE", new ProductDto(), savedProductDto);
+		return savedProductDto;
 	}
 
 	@Override
 	public ProductDto update(final ProductDto productDto) {
 		log.info("*** ProductDto, service; update product *");
 
-		// Validar que el producto exista
-		if (productDto.getProductId() == null || !productRepository.existsById(productDto.getProductId())) {
+		// Validar que el producto exista; se copia antes de guardar, que lo sobrescribe
+		final ProductDto before = productDto.getProductId() == null ? null
+				: this.productRepository.findById(productDto.getProductId()).map(ProductMappingHelper::map)
+						.orElse(null);
+		if (before == null) {
 			throw new ProductNotFoundException("Producto no encontrado con ID: " + productDto.getProductId());
 		}
 
-		return ProductMappingHelper.map(this.productRepository
-				.save(ProductMappingHelper.map(productDto)));
+		this.checkSkuNotArchived(productDto.getSku());
+
+		final Product savedProduct = this.checkingSku(productDto.getSku(),
+				() -> this.productRepository.saveAndFlush(ProductMappingHelper.map(productDto)));
+		this.productStockService.reset(savedProduct.getProductId(), savedProduct.getQuantity());
+		this.productCatalogViewRepository.refresh(List.of(savedProduct.getProductId()));
+		this.productDtoCache.invalidate(productDto.getProductId());
+		final ProductDto savedProductDto = ProductMappingHelper.map(savedProduct);
+		this.auditProduct("UPDATE", before, savedProductDto);
+		return savedProductDto;
 	}
 
 	@Override
@@ -108,11 +289,21 @@ public class ProductServiceImpl implements ProductService {
 		Product existingProduct = productRepository.findById(productId)
 				.orElseThrow(() -> new ProductNotFoundException("Producto no encontrado con ID: " + productId));
 
+		this.checkSkuNotArchived(productDto.getSku());
+		final ProductDto before = ProductMappingHelper.map(existingProduct);
+
 		// Actualizar los campos del producto existente con los del DTO
 		Product updatedProduct = ProductMappingHelper.map(productDto);
 		updatedProduct.setProductId(existingProduct.getProductId()); // Asegurar que se mantiene el mismo ID
 
-		return ProductMappingHelper.map(this.productRepository.save(updatedProduct));
+		final Product savedProduct = this.checkingSku(updatedProduct.getSku(),
+				() -> this.productRepository.saveAndFlush(updatedProduct));
+		this.productStockService.reset(productId, savedProduct.getQuantity());
+		this.productCatalogViewRepository.refresh(List.of(productId));
+		this.productDtoCache.invalidate(productId);
+		final ProductDto savedProductDto = ProductMappingHelper.map(savedProduct);
+		this.auditProduct("UPDATE", before, savedProductDto);
+		return savedProductDto;
 	}
 
 	@Override
@@ -128,7 +319,317 @@ public class ProductServiceImpl implements ProductService {
 				.orElseThrow(() -> new RuntimeException("Category 'Deleted' not found in database"));
 
 		// 3. Actualizar la categoría del producto a "Deleted" (soft delete)
+		final Integer previousCategoryId = product.getCategory().getCategoryId();
 		product.setCategory(deletedCategory);
-		this.productRepository.save(product);
+		this.productRepository.saveAndFlush(product);
+		this.productCatalogViewRepository.refresh(List.of(productId));
+		this.productDtoCache.invalidate(productId);
+		this.auditTrail.changes(AuditTrail.PRODUCT, productId, "DELETE")
+				.field("categoryId", previousCategoryId, deletedCategory.getCategoryId())
+				.record();
+	}
+
+	@Override
+	public List<ProductDto> findAllByCategorySubtree(final Integer categoryId) {
+		log.info("*** ProductDto List, service; fetch all products of a category subtree *");
+		return this.productCatalogViewRepository.findAllInCategorySubtree(this.findCategoryPath(categoryId))
+				.stream()
+				.map(new CanonicalProductMapper()::map)
+				.collect(Collectors.toUnmodifiableList());
+	}
+
+	@Override
+	public List<ProductDto> findAllByCategorySubtree(final Integer categoryId, final FieldSelection selection) {
+		if (selection == null)
+			return this.findAllByCategorySubtree(categoryId);
+		log.info("*** ProductDto List, service; fetch all products of a category subtree, fields {} *",
+				selection.getProductFields());
+		return this.productCatalogViewRepository
+				.findAllInCategorySubtree(this.findCategoryPath(categoryId), selection)
+				.stream()
+				.map(new CanonicalProductMapper()::map)
+				.collect(Collectors.toUnmodifiableList());
+	}
+
+	@Override
+	public long countByCategorySubtree(final Integer categoryId) {
+		log.info("*** Long, service; count products of a category subtree *");
+		return this.productCatalogViewRepository.countInCategorySubtree(this.findCategoryPath(categoryId));
+	}
+
+	/**
+	 * Products archived by {@code ProductArchiver}, in ascending id order after {@code afterProductId}.
+	 *
+	 * @throws IllegalArgumentException for a limit out of {@code 1..}{@value #ARCHIVE_PAGE_MAX_LIMIT}
+	 */
+	@Override
+	public List<ArchivedProductDto> findArchivedPage(final Integer afterProductId, final int limit) {
+		log.info("*** ArchivedProductDto List, service; fetch page of archived products *");
+		if (limit < 1 || limit > ARCHIVE_PAGE_MAX_LIMIT)
+			throw new IllegalArgumentException("limit must be between 1 and " + ARCHIVE_PAGE_MAX_LIMIT);
+		return this.archivedProductRepository.findPage(afterProductId == null ? 0 : afterProductId,
+				PageRequest.of(0, limit))
+				.stream()
+				.map(ProductMappingHelper::map)
+				.collect(Collectors.toUnmodifiableList());
+	}
+
+	@Override
+	public ArchivedProductDto findArchivedById(final Integer productId) {
+		log.info("*** ArchivedProductDto, service; fetch archived product by id *");
+		return this.archivedProductRepository.findById(productId)
+				.map(ProductMappingHelper::map)
+				.orElseThrow(() -> new ProductNotFoundException(
+						String.format("Archived product with id: %d not found", productId)));
+	}
+
+	/**
+	 * Changes of the product, newest first, before the audit id {@code beforeAuditId}; also of a deleted or archived
+	 * product. Entries are written in the background, so the latest write may show up a moment later.
+	 *
+	 * @throws IllegalArgumentException for a limit out of {@code 1..}{@value #HISTORY_PAGE_MAX_LIMIT}
+	 */
+	@Override
+	public List<CatalogAuditDto> findHistory(final Integer productId, final Long beforeAuditId, final int limit) {
+		log.info("*** CatalogAuditDto List, service; fetch product history *");
+		if (limit < 1 || limit > HISTORY_PAGE_MAX_LIMIT)
+			throw new IllegalArgumentException("limit must be between 1 and " + HISTORY_PAGE_MAX_LIMIT);
+		return this.catalogAuditRepository.findHistory(AuditTrail.PRODUCT, productId,
+				beforeAuditId == null ? Long.MAX_VALUE : beforeAuditId, PageRequest.of(0, limit))
+				.stream()
+				.map(ProductMappingHelper::map)
+				.collect(Collectors.toUnmodifiableList());
+	}
+
+	/**
+	 * Moves an archived product back to {@code products}, with its id and SKU, into a category that is not reserved.
+	 * Its SKU cannot have been reused meanwhile (see {@link #checkSkuNotArchived}), unless written with SQL by hand;
+	 * then the unique SKU index refuses it.
+	 */
+	@Override
+	public ProductDto restore(final Integer productId, final Integer categoryId) {
+		log.info("*** ProductDto, service; restore archived product *");
+		final ArchivedProduct archivedProduct = this.archivedProductRepository.findById(productId)
+				.orElseThrow(() -> new ProductNotFoundException(
+						String.format("Archived product with id: %d not found", productId)));
+		final Category category = this.findTargetCategory(categoryId);
+		this.checkingSku(archivedProduct.getSku(),
+				() -> this.archivedProductRepository.insertIntoProducts(productId, category.getCategoryId()));
+		this.archivedProductRepository.deleteByProductId(productId);
+		this.productCatalogViewRepository.refresh(List.of(productId));
+		// Nothing cached, but the catalog index, the stream and the other replicas learn about it
+		this.productDtoCache.invalidate(productId);
+		this.auditTrail.changes(AuditTrail.PRODUCT, productId, "RESTORE")
+				.field("categoryId", null, category.getCategoryId())
+				.record();
+		return this.productCatalogViewRepository.findByIdWithoutDeleted(productId)
+				.map(ProductMappingHelper::map)
+				.orElseThrow(() -> new ProductNotFoundException(
+						String.format("Product with id: %d not found", productId)));
+	}
+
+	/**
+	 * Runs the operation as one UPDATE per chunk of ids, or a single UPDATE for a category filter, instead of loading
+	 * and saving every product. Repricing is refused as a whole if any price would leave the column's range.
+	 */
+	@Override
+	public ProductBulkResultDto bulkUpdate(final ProductBulkOperationDto bulk) {
+		log.info("*** ProductBulkResultDto, service; bulk {} *", bulk.getOperation());
+
+		if (bulk.getOperation() == null) {
+			throw new IllegalArgumentException("La operación es requerida");
+		}
+		final boolean byIds = bulk.getProductIds() != null && !bulk.getProductIds().isEmpty();
+		if (byIds == (bulk.getCategoryId() != null)) {
+			throw new IllegalArgumentException("Indique productIds o categoryId, pero no ambos");
+		}
+
+		final Category deletedCategory = this.categoryRepository.findByCategoryTitle("Deleted")
+				.orElseThrow(() -> new IllegalStateException("Category 'Deleted' not found in database"));
+		final Integer deletedCategoryId = deletedCategory.getCategoryId();
+
+		final List<Integer> productIds = byIds ? bulk.getProductIds().stream().distinct().collect(Collectors.toList())
+				: null;
+		if (byIds && productIds.size() > BULK_MAX_IDS) {
+			throw new IllegalArgumentException("Como máximo " + BULK_MAX_IDS + " productos por operación");
+		}
+		final String categoryPathPattern = byIds ? null
+				: this.findBulkCategoryPath(bulk.getCategoryId(), deletedCategoryId)
+						+ (bulk.isIncludeSubcategories() ? "%" : "");
+		final List<Object[]> targets = byIds
+				? collectByChunk(productIds, chunk -> this.productRepository.lockBulkTargetsByIds(chunk,
+						deletedCategoryId))
+				: this.productRepository.lockBulkTargetsByCategoryPath(categoryPathPattern, deletedCategoryId);
+
+		final int affected;
+		switch (bulk.getOperation()) {
+			case REPRICE_PERCENT:
+			case REPRICE_ABSOLUTE: {
+				if (bulk.getValue() == null) {
+					throw new IllegalArgumentException("El valor del cambio de precio es requerido");
+				}
+				final boolean percent = bulk.getOperation() == ProductBulkOperationDto.Operation.REPRICE_PERCENT;
+				final double factor = percent ? 1 + bulk.getValue() / 100 : 1;
+				final double delta = percent ? 0 : bulk.getValue();
+				final long outOfRange = byIds
+						? sumByChunk(productIds, chunk -> (int) this.productRepository
+								.countOutOfRangeRepricesByIds(chunk, factor, delta, MAX_PRICE, deletedCategoryId))
+						: this.productRepository.countOutOfRangeRepricesByCategoryPath(categoryPathPattern, factor,
+								delta, MAX_PRICE, deletedCategoryId);
+				if (outOfRange > 0) {
+					throw new IllegalArgumentException(String.format(
+							"%d productos quedarían con un precio fuera del rango 0 - %.2f", outOfRange, MAX_PRICE));
+				}
+				affected = byIds
+						? sumByChunk(productIds, chunk -> this.refreshing(chunk, this.productRepository
+								.repriceByIds(chunk, factor, delta, deletedCategoryId)))
+						: this.productRepository.repriceByCategoryPath(categoryPathPattern, factor, delta,
+								deletedCategoryId);
+				if (!byIds)
+					this.productCatalogViewRepository.refreshPricesByCategoryPath(categoryPathPattern);
+				this.auditBulk(bulk, targets, "priceUnit",
+						target -> target[1] == null ? null : ((Number) target[1]).doubleValue(),
+						price -> price == null ? null : BigDecimal.valueOf(price * factor + delta)
+								.setScale(2, RoundingMode.HALF_UP)
+								.doubleValue());
+				break;
+			}
+			case RECATEGORIZE:
+			case SOFT_DELETE: {
+				final Category target = bulk.getOperation() == ProductBulkOperationDto.Operation.SOFT_DELETE
+						? deletedCategory
+						: this.findTargetCategory(bulk.getTargetCategoryId());
+				affected = byIds
+						? sumByChunk(productIds, chunk -> this.refreshing(chunk, this.productRepository
+								.recategorizeByIds(chunk, target, deletedCategoryId)))
+						: this.productRepository.recategorizeByCategoryPath(categoryPathPattern, target,
+								deletedCategoryId);
+				if (!byIds)
+					this.productCatalogViewRepository.recategorizeByCategoryPath(categoryPathPattern, target);
+				this.auditBulk(bulk, targets, "categoryId", row -> ((Number) row[2]).intValue(),
+						categoryId -> target.getCategoryId());
+				break;
+			}
+			default:
+				throw new IllegalArgumentException("Operación no soportada: " + bulk.getOperation());
+		}
+
+		if (byIds && productIds.size() <= BULK_PER_KEY_INVALIDATION_LIMIT)
+			productIds.forEach(this.productDtoCache::invalidate);
+		else
+			this.productDtoCache.invalidateAll();
+
+		return ProductBulkResultDto.builder()
+				.operation(bulk.getOperation())
+				.affectedProducts(affected)
+				.build();
+	}
+
+	/**
+	 * One entry per product the UPDATE changed, whether selected by id or by category: their rows were locked before
+	 * it, so they are exactly the ones it matched, with the values they had. The new value is worked out the way the
+	 * UPDATE does ({@code ROUND(price * factor + delta, 2)}), instead of reading the rows again.
+	 */
+	private <V> void auditBulk(final ProductBulkOperationDto bulk, final List<Object[]> targets, final String field,
+			final Function<Object[], V> oldValue, final UnaryOperator<V> newValue) {
+		final String action = "BULK_" + bulk.getOperation().name();
+		this.auditTrail.record(targets.stream()
+				.map(target -> {
+					final V before = oldValue.apply(target);
+					return this.auditTrail.changes(AuditTrail.PRODUCT, ((Number) target[0]).intValue(), action)
+							.field(field, before, newValue.apply(before));
+				})
+				.collect(Collectors.toList()));
+	}
+
+	private void auditProduct(final String action, final ProductDto before, final ProductDto after) {
+		this.auditTrail.changes(AuditTrail.PRODUCT, after.getProductId(), action)
+				.field("productTitle", before.getProductTitle(), after.getProductTitle())
+				.field("imageUrl", before.getImageUrl(), after.getImageUrl())
+				.field("sku", before.getSku(), after.getSku())
+				.field("priceUnit", before.getPriceUnit(), after.getPriceUnit())
+				.field("quantity", before.getQuantity(), after.getQuantity())
+				.field("categoryId", categoryIdOf(before), categoryIdOf(after))
+				.record();
+	}
+
+	private static Integer categoryIdOf(final ProductDto productDto) {
+		return productDto.getCategoryDto() == null ? null : productDto.getCategoryDto().getCategoryId();
+	}
+
+	private static int sumByChunk(final List<Integer> productIds, final ToIntFunction<List<Integer>> statement) {
+		int total = 0;
+		for (int from = 0; from < productIds.size(); from += BULK_ID_CHUNK)
+			total += statement.applyAsInt(productIds.subList(from, Math.min(productIds.size(), from + BULK_ID_CHUNK)));
+		return total;
+	}
+
+	private static <T> List<T> collectByChunk(final List<Integer> productIds,
+			final Function<List<Integer>, List<T>> query) {
+		final List<T> collected = new ArrayList<>();
+		for (int from = 0; from < productIds.size(); from += BULK_ID_CHUNK)
+			collected.addAll(query.apply(productIds.subList(from, Math.min(productIds.size(), from + BULK_ID_CHUNK))));
+		return collected;
+	}
+
+	/**
+	 * Re-reads the view rows of a chunk just updated; returns the count of the update.
+	 */
+	private int refreshing(final List<Integer> chunk, final int updated) {
+		this.productCatalogViewRepository.refresh(chunk);
+		return updated;
+	}
+
+	/**
+	 * Unlike {@link #findCategoryPath}, 'No category' may be used as a filter; 'Deleted' may not.
+	 */
+	private String findBulkCategoryPath(final Integer categoryId, final Integer deletedCategoryId) {
+		return this.categoryRepository.findById(categoryId)
+				.filter(category -> !category.getCategoryId().equals(deletedCategoryId))
+				.map(Category::getCategoryPath)
+				.orElseThrow(() -> new CategoryNotFoundException("Categoría no encontrada con ID: " + categoryId));
+	}
+
+	private Category findTargetCategory(final Integer targetCategoryId) {
+		if (targetCategoryId == null) {
+			throw new IllegalArgumentException("La categoría destino es requerida");
+		}
+		return this.categoryRepository.findNonReservedById(targetCategoryId)
+				.orElseThrow(() -> new CategoryNotFoundException(
+						"Categoría destino no encontrada o reservada con ID: " + targetCategoryId));
+	}
+
+	/**
+	 * A SKU belongs to one product, live, soft-deleted or archived, so archived products can always be restored.
+	 * Among the rows of {@code products} the unique index {@value #SKU_INDEX} keeps it (see {@link #checkingSku});
+	 * archived ones are only checked here.
+	 */
+	private void checkSkuNotArchived(final String sku) {
+		if (sku != null && this.archivedProductRepository.existsBySku(sku)) {
+			throw new IllegalArgumentException("El SKU " + sku + " ya está en uso");
+		}
+	}
+
+	/**
+	 * Runs a write to {@code products}, refusing a SKU taken by another row as {@link #checkSkuNotArchived} does.
+	 */
+	private <T> T checkingSku(final String sku, final Supplier<T> write) {
+		try {
+			return write.get();
+		}
+		catch (DataIntegrityViolationException e) {
+			final String cause = String.valueOf(e.getMostSpecificCause().getMessage()).toLowerCase(Locale.ROOT);
+			if (sku != null && cause.contains(SKU_INDEX)) {
+				throw new IllegalArgumentException("El SKU " + sku + " ya está en uso", e);
+			}
+			throw e;
+		}
+	}
+
+	private String findCategoryPath(final Integer categoryId) {
+		return this.categoryRepository.findNonReservedById(categoryId)
+				.map(Category::getCategoryPath)
+				.orElseThrow(() -> new CategoryNotFoundException(
+						String.format("Category with id: %d not found or is reserved", categoryId)));
 	}
 }
@@ -0,0 +1,201 @@
+package com.selimhorri.app.service.impl;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.transaction.Transactional;
+import javax.transaction.Transactional.TxType;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.selimhorri.app.cache.CoalescingCache;
+import com.selimhorri.app.config.inventory.InventoryProperties;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.dto.ProductStockDto;
+import com.selimhorri.app.exception.wrapper.InsufficientStockException;
+import com.selimhorri.app.exception.wrapper.ProductNotFoundException;
+import com.selimhorri.app.inventory.StripedStock;
+import com.selimhorri.app.repository.ProductCatalogViewRepository;
+import com.selimhorri.app.repository.ProductRepository;
+import com.selimhorri.app.repository.ProductStockRepository;
+import com.selimhorri.app.service.ProductStockService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stock decrements. A product's stock is one row of {@code products}, so all its decrements queue on that row's lock;
+ * for the few products sold at flash-sale rates it can be striped: split over {@code stripes} rows that decrements
+ * pick at random, so that many of them commit at the same time. See {@link StripedStock} for the rebalancing and the
+ * total kept in {@code products}.
+ */
+@Service
+@Transactional
+@Slf4j
+public class ProductStockServiceImpl implements ProductStockService {
+
+	private final ProductStockRepository productStockRepository;
+	private final ProductRepository productRepository;
+	private final ProductCatalogViewRepository productCatalogViewRepository;
+	private final CoalescingCache<Integer, ProductDto> productDtoCache;
+	private final StripedStock stripedStock;
+	private final TransactionTemplate transactionTemplate;
+	private final int maxStripes;
+
+	public ProductStockServiceImpl(final ProductStockRepository productStockRepository,
+			final ProductRepository productRepository, final ProductCatalogViewRepository productCatalogViewRepository,
+			final CoalescingCache<Integer, ProductDto> productDtoCache, final StripedStock stripedStock,
+			final PlatformTransactionManager transactionManager, final InventoryProperties inventoryProperties) {
+		this.productStockRepository = productStockRepository;
+		this.productRepository = productRepository;
+		this.productCatalogViewRepository = productCatalogViewRepository;
+		this.productDtoCache = productDtoCache;
+		this.stripedStock = stripedStock;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.maxStripes = inventoryProperties.getMaxStripes();
+	}
+
+	@Override
+	public ProductStockDto findById(final Integer productId) {
+		log.info("*** ProductStockDto, service; fetch stock by product id *");
+		this.findProduct(productId);
+		return this.currentStock(productId);
+	}
+
+	/**
+	 * Each UPDATE commits on its own, so a decrement holds one row lock at a time and only for that statement.
+	 *
+	 * @throws InsufficientStockException if the product has less than {@code quantity} in stock
+	 */
+	@Override
+	@Transactional(TxType.SUPPORTS)
+	public ProductStockDto decrement(final Integer productId, final int quantity) {
+		log.info("*** ProductStockDto, service; decrement stock *");
+		if (quantity < 1) {
+			throw new IllegalArgumentException("La cantidad debe ser positiva");
+		}
+
+		Integer stripes = this.stripedStock.stripes(productId);
+		if (stripes == null) {
+			final boolean decremented = this.transactionTemplate.execute(status -> {
+				if (this.productStockRepository.decrement(productId, quantity) == 0)
+					return false;
+				this.productCatalogViewRepository.refresh(List.of(productId));
+				this.productDtoCache.invalidate(productId);
+				return true;
+			});
+			if (decremented)
+				return this.currentStock(productId);
+
+			// Sin stock, inexistente o repartido en franjas desde otra réplica
+			final List<Integer> current = this.productStockRepository.findStripes(productId);
+			if (current.isEmpty()) {
+				this.findProduct(productId);
+				throw new InsufficientStockException(String.format(
+						"Product with id: %d has less than %d in stock", productId, quantity));
+			}
+			stripes = current.size();
+			this.stripedStock.striped(productId, stripes);
+		}
+
+		final int start = ThreadLocalRandom.current().nextInt(stripes);
+		for (int i = 0; i < stripes; i++) {
+			final int stripe = (start + i) % stripes;
+			if (this.transactionTemplate.execute(status ->
+					this.productStockRepository.decrementStripe(productId, stripe, quantity)) > 0)
+				return this.currentStock(productId);
+		}
+
+		// Ninguna franja tiene bastante por sí sola (o el producto se ha borrado): se toma de varias, con todas bloqueadas
+		this.findProduct(productId);
+		final boolean stillStriped = this.transactionTemplate.execute(status -> {
+			final List<Integer> locked = this.productStockRepository.lockStripes(productId);
+			if (locked.isEmpty())
+				return false;
+			if (StripedStock.sum(locked) < quantity) {
+				throw new InsufficientStockException(String.format(
+						"Product with id: %d has less than %d in stock", productId, quantity));
+			}
+			int remaining = quantity;
+			for (int stripe = 0; stripe < locked.size() && remaining > 0; stripe++) {
+				final int taken = Math.min(locked.get(stripe), remaining);
+				if (taken > 0)
+					this.productStockRepository.setStripe(productId, stripe, locked.get(stripe) - taken);
+				remaining -= taken;
+			}
+			return true;
+		});
+		if (stillStriped)
+			return this.currentStock(productId);
+		this.stripedStock.unstriped(productId);
+		return this.decrement(productId, quantity);
+	}
+
+	/**
+	 * Splits the stock of the product evenly over {@code stripes} rows; a striped product is split again.
+	 */
+	@Override
+	public ProductStockDto stripe(final Integer productId, final int stripes) {
+		log.info("*** ProductStockDto, service; stripe stock *");
+		if (stripes < 2 || stripes > this.maxStripes) {
+			throw new IllegalArgumentException("El número de franjas debe estar entre 2 y " + this.maxStripes);
+		}
+		this.findProduct(productId);
+
+		final Integer quantity = this.productStockRepository.lockQuantity(productId).orElse(null);
+		final List<Integer> current = this.productStockRepository.lockStripes(productId);
+		final int total = current.isEmpty() ? (quantity == null ? 0 : quantity) : StripedStock.sum(current);
+		this.productStockRepository.deleteStripes(productId);
+		for (int stripe = 0; stripe < stripes; stripe++)
+			this.productStockRepository.insertStripe(productId, stripe, StripedStock.share(total, stripes, stripe));
+		this.stripedStock.publishTotal(productId, total);
+		this.stripedStock.striped(productId, stripes);
+		return this.currentStock(productId);
+	}
+
+	/**
+	 * Back to a single row: the stripes are added up into {@code products.quantity}.
+	 */
+	@Override
+	public ProductStockDto unstripe(final Integer productId) {
+		log.info("*** ProductStockDto, service; unstripe stock *");
+		this.findProduct(productId);
+
+		this.productStockRepository.lockQuantity(productId);
+		final List<Integer> current = this.productStockRepository.lockStripes(productId);
+		if (!current.isEmpty()) {
+			this.productStockRepository.deleteStripes(productId);
+			this.stripedStock.publishTotal(productId, StripedStock.sum(current));
+		}
+		this.stripedStock.unstriped(productId);
+		return this.currentStock(productId);
+	}
+
+	/**
+	 * A quantity written to {@code products} by a full update; a striped product has it split over its stripes, or
+	 * the next rebalancing pass would overwrite it with their old total.
+	 */
+	@Override
+	public void reset(final Integer productId, final Integer quantity) {
+		final List<Integer> current = this.productStockRepository.lockStripes(productId);
+		if (current.isEmpty())
+			return;
+		final int total = quantity == null ? 0 : quantity;
+		for (int stripe = 0; stripe < current.size(); stripe++)
+			this.productStockRepository.setStripe(productId, stripe, StripedStock.share(total, current.size(), stripe));
+	}
+
+	private void findProduct(final Integer productId) {
+		this.productRepository.findByIdWithoutDeleted(productId)
+				.orElseThrow(() -> new ProductNotFoundException(
+						String.format("Product with id: %d not found", productId)));
+	}
+
+	private ProductStockDto currentStock(final Integer productId) {
+		final List<Integer> stripes = this.productStockRepository.findStripes(productId);
+		if (!stripes.isEmpty())
+			return new ProductStockDto(productId, StripedStock.sum(stripes), stripes);
+		return new ProductStockDto(productId, this.productStockRepository.findQuantity(productId).orElse(null), null);
+	}
+}
@@ -0,0 +1,123 @@
+package com.selimhorri.app.shedding;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * Gradient-style concurrency limit: the allowed number of in-flight requests follows the ratio between the
+ * baseline and the recent latency, and backs off while requests wait for a pooled DB connection. As in Vegas,
+ * the baseline is the best window seen so far, slowly drifting up so it can follow a permanent change.
+ *
+ * <pre>
+ * gradient = clamp(tolerance * baselineRtt / recentRtt, 0.5, 1.0)
+ * target   = limit * gradient + sqrt(limit)        (sqrt(limit): headroom to probe for more capacity)
+ * target   = min(target, limit * (1 - poolBackoff)) while threads await a connection
+ * limit    = (1 - smoothing) * limit + smoothing * target, clamped to [minLimit, maxLimit]
+ * </pre>
+ *
+ * The limit is recomputed once per window ({@code windowSize} samples or {@code windowNanos}, whichever comes
+ * first); acquiring a permit is lock-free.
+ */
+public class AdaptiveConcurrencyLimiter {
+	
+	private static final double BASELINE_DRIFT = 1.01;
+	
+	private final int minLimit;
+	private final int maxLimit;
+	private final double smoothing;
+	private final double tolerance;
+	private final double poolBackoff;
+	private final int windowSize;
+	private final long windowNanos;
+	private final IntSupplier poolWaiters;
+	
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private volatile double limit;
+	
+	private final Object windowLock = new Object();
+	private long windowStart = System.nanoTime();
+	private long windowRttSum;
+	private int windowSamples;
+	private double baselineRtt;
+	
+	public AdaptiveConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit,
+			final double smoothing, final double tolerance, final double poolBackoff, final int windowSize,
+			final long windowNanos, final IntSupplier poolWaiters) {
+		this.limit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.smoothing = smoothing;
+		this.tolerance = tolerance;
+		this.poolBackoff = poolBackoff;
+		this.windowSize = windowSize;
+		this.windowNanos = windowNanos;
+		this.poolWaiters = poolWaiters;
+	}
+	
+	public boolean tryAcquire() {
+		for (;;) {
+			final int current = this.inFlight.get();
+			if (current >= (int) this.limit)
+				return false;
+			if (this.inFlight.compareAndSet(current, current + 1))
+				return true;
+		}
+	}
+	
+	/**
+	 * Releases a permit taken by {@link #tryAcquire()} and feeds the request latency into the limit.
+	 */
+	public void release(final long rttNanos) {
+		this.inFlight.decrementAndGet();
+		synchronized (this.windowLock) {
+			this.windowRttSum += rttNanos;
+			final long now = System.nanoTime();
+			if (++this.windowSamples < this.windowSize && now - this.windowStart < this.windowNanos)
+				return;
+			this.windowStart = now;
+			final double recentRtt = (double) this.windowRttSum / this.windowSamples;
+			this.windowRttSum = 0;
+			this.windowSamples = 0;
+			this.baselineRtt = this.baselineRtt == 0 ? recentRtt : Math.min(recentRtt, this.baselineRtt * BASELINE_DRIFT);
+			this.update(recentRtt);
+		}
+	}
+	
+	/**
+	 * Releases a permit of a request that never reached the application, without sampling its latency.
+	 */
+	public void releaseWithoutSample() {
+		this.inFlight.decrementAndGet();
+	}
+	
+	private void update(final double recentRtt) {
+		final double current = this.limit;
+		final double gradient = Math.max(0.5, Math.min(1.0, this.tolerance * this.baselineRtt / recentRtt));
+		double target = current * gradient + Math.sqrt(current);
+		if (this.poolWaiters.getAsInt() > 0)
+			target = Math.min(target, current * (1 - this.poolBackoff));
+		final double next = (1 - this.smoothing) * current + this.smoothing * target;
+		this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, next));
+	}
+	
+	public int getLimit() {
+		return (int) this.limit;
+	}
+	
+	public int getInFlight() {
+		return this.inFlight.get();
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
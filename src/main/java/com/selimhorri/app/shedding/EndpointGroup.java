@@ -0,0 +1,46 @@
+package com.selimhorri.app.shedding;
+
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.util.AntPathMatcher;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * A set of endpoints sharing one concurrency limit, bulkhead and circuit breaker; any of them may be absent.
+ */
+@Getter
+@Builder
+public class EndpointGroup {
+	
+	private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+	
+	private final String name;
+	private final Set<String> methods;
+	private final List<String> patterns;
+	private final AdaptiveConcurrencyLimiter limiter;
+	private final Bulkhead bulkhead;
+	private final CircuitBreaker circuitBreaker;
+	
+	public boolean matches(final String method, final String path) {
+		return (this.methods.isEmpty() || this.methods.contains(method))
+				&& this.patterns.stream().anyMatch(pattern -> PATH_MATCHER.match(pattern, path));
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,159 @@
+package com.selimhorri.app.shedding;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selimhorri.app.exception.payload.ExceptionMsg;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Admission control in front of the controllers. A request of a matched {@link EndpointGroup} needs, in this
+ * order, a closed circuit breaker, a permit of the adaptive limit and a bulkhead slot; otherwise it is answered
+ * right away with 503 and {@code Retry-After} instead of queueing behind the saturated ones. Responses of 500 and
+ * above count as failures of the circuit breaker, except a 503 with {@code Retry-After} the endpoint chose to send.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class LoadSheddingFilter extends OncePerRequestFilter {
+	
+	private final List<EndpointGroup> groups;
+	private final Duration retryAfter;
+	private final ObjectMapper objectMapper;
+	private final MeterRegistry meterRegistry;
+	private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+	
+	@Override
+	protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+			final FilterChain filterChain) throws ServletException, IOException {
+		
+		final EndpointGroup group = this.match(request);
+		if (group == null) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+		
+		if (group.getCircuitBreaker() != null && !group.getCircuitBreaker().tryAcquirePermission()) {
+			this.reject(group, "circuit-open", response);
+			return;
+		}
+		if (group.getLimiter() != null && !group.getLimiter().tryAcquire()) {
+			this.releaseCircuitBreaker(group);
+			this.reject(group, "limit", response);
+			return;
+		}
+		if (group.getBulkhead() != null && !group.getBulkhead().tryAcquirePermission()) {
+			if (group.getLimiter() != null)
+				group.getLimiter().releaseWithoutSample();
+			this.releaseCircuitBreaker(group);
+			this.reject(group, "bulkhead", response);
+			return;
+		}
+		
+		final long start = System.nanoTime();
+		Throwable failure = null;
+		try {
+			filterChain.doFilter(request, response);
+		}
+		catch (IOException | ServletException | RuntimeException e) {
+			failure = e;
+			throw e;
+		}
+		finally {
+			final long elapsed = System.nanoTime() - start;
+			if (group.getBulkhead() != null)
+				group.getBulkhead().onComplete();
+			if (group.getLimiter() != null)
+				group.getLimiter().release(elapsed);
+			if (group.getCircuitBreaker() != null) {
+				if (failure == null && declined(response))
+					// e.g. no export snapshot yet, too many stream subscribers: the service is fine, not a failure
+					group.getCircuitBreaker().releasePermission();
+				else if (failure == null && response.getStatus() < 500)
+					group.getCircuitBreaker().onSuccess(elapsed, TimeUnit.NANOSECONDS);
+				else
+					group.getCircuitBreaker().onError(elapsed, TimeUnit.NANOSECONDS, failure != null ? failure
+							: new IllegalStateException("HTTP " + response.getStatus()));
+			}
+		}
+	}
+	
+	private EndpointGroup match(final HttpServletRequest request) {
+		final String path = this.urlPathHelper.getPathWithinApplication(request);
+		final String method = request.getMethod();
+		for (final EndpointGroup group : this.groups)
+			if (group.matches(method, path))
+				return group;
+		return null;
+	}
+	
+	/**
+	 * A 503 with {@code Retry-After} set by the endpoint itself: it declined the request on purpose.
+	 */
+	private static boolean declined(final HttpServletResponse response) {
+		return response.getStatus() == HttpStatus.SERVICE_UNAVAILABLE.value()
+				&& response.getHeader(HttpHeaders.RETRY_AFTER) != null;
+	}
+	
+	private void releaseCircuitBreaker(final EndpointGroup group) {
+		if (group.getCircuitBreaker() != null)
+			group.getCircuitBreaker().releasePermission();
+	}
+	
+	private void reject(final EndpointGroup group, final String reason, final HttpServletResponse response)
+			throws IOException {
+		
+		log.debug("*** LoadSheddingFilter; request of group {} rejected: {} *", group.getName(), reason);
+		Counter.builder("catalog.shedding.rejected")
+				.description("Requests answered with 503 by admission control")
+				.tag("group", group.getName())
+				.tag("reason", reason)
+				.register(this.meterRegistry)
+				.increment();
+		
+		final var serviceUnavailable = HttpStatus.SERVICE_UNAVAILABLE;
+		response.setStatus(serviceUnavailable.value());
+		response.setHeader(HttpHeaders.RETRY_AFTER,
+				String.valueOf(Math.max(1, (this.retryAfter.toMillis() + 999) / 1000)));
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		this.objectMapper.writeValue(response.getOutputStream(),
+				ExceptionMsg.builder()
+						.msg("#### Service overloaded (" + reason + "), retry later! ####")
+						.httpStatus(serviceUnavailable)
+						.timestamp(ZonedDateTime
+								.now(ZoneId.systemDefault()))
+						.build());
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
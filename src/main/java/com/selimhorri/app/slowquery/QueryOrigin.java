@@ -0,0 +1,50 @@
+package com.selimhorri.app.slowquery;
+
+/**
+ * Where the statements of the current thread come from: the endpoint being served and the repository method being
+ * executed. Set by {@link QueryOriginInterceptor} and {@link RepositoryOriginInterceptor}; {@code null} outside of
+ * them, e.g. on the cache refresh and catalog index threads.
+ */
+public final class QueryOrigin {
+	
+	private static final ThreadLocal<String> ENDPOINT = new ThreadLocal<>();
+	private static final ThreadLocal<String> REPOSITORY_METHOD = new ThreadLocal<>();
+	
+	private QueryOrigin() {
+		
+	}
+	
+	public static String endpoint() {
+		return ENDPOINT.get();
+	}
+	
+	public static String repositoryMethod() {
+		return REPOSITORY_METHOD.get();
+	}
+	
+	static void setEndpoint(final String endpoint) {
+		if (endpoint == null)
+			ENDPOINT.remove();
+		else
+			ENDPOINT.set(endpoint);
+	}
+	
+	/**
+	 * Returns the enclosing repository method, to be restored by {@link #exitRepository(String)}.
+	 */
+	static String enterRepository(final String repositoryMethod) {
+		final String enclosing = REPOSITORY_METHOD.get();
+		REPOSITORY_METHOD.set(repositoryMethod);
+		return enclosing;
+	}
+	
+	static void exitRepository(final String enclosing) {
+		if (enclosing == null)
+			REPOSITORY_METHOD.remove();
+		else
+			REPOSITORY_METHOD.set(enclosing);
+	}
+	
+	
+	
+}
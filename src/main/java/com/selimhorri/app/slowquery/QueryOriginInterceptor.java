@@ -0,0 +1,45 @@
+package com.selimhorri.app.slowquery;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Tags the statements of a request with its endpoint, e.g. {@code GET /api/products/{productId}
+ * ProductResource#findById}; the mapped pattern, not the path, so ids do not multiply the distinct values.
+ */
+public class QueryOriginInterceptor implements AsyncHandlerInterceptor {
+	
+	@Override
+	public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response,
+			final Object handler) {
+		if (handler instanceof HandlerMethod) {
+			final HandlerMethod handlerMethod = (HandlerMethod) handler;
+			QueryOrigin.setEndpoint(request.getMethod() + " "
+					+ request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE) + " "
+					+ handlerMethod.getBeanType().getSimpleName() + "#" + handlerMethod.getMethod().getName());
+		}
+		return true;
+	}
+	
+	@Override
+	public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response,
+			final Object handler, final Exception ex) {
+		QueryOrigin.setEndpoint(null);
+	}
+	
+	/**
+	 * An async request (e.g. the product stream) leaves the thread here, without {@link #afterCompletion}.
+	 */
+	@Override
+	public void afterConcurrentHandlingStarted(final HttpServletRequest request, final HttpServletResponse response,
+			final Object handler) {
+		QueryOrigin.setEndpoint(null);
+	}
+	
+	
+	
+}
@@ -0,0 +1,31 @@
+package com.selimhorri.app.slowquery;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * Advice added to every Spring Data repository proxy: tags the statements run inside a repository method with
+ * {@code ProductCatalogViewRepository#findAllInCategorySubtree} and the like.
+ */
+public class RepositoryOriginInterceptor implements MethodInterceptor {
+	
+	private final String repositoryName;
+	
+	public RepositoryOriginInterceptor(final Class<?> repositoryInterface) {
+		this.repositoryName = repositoryInterface.getSimpleName();
+	}
+	
+	@Override
+	public Object invoke(final MethodInvocation invocation) throws Throwable {
+		final String enclosing = QueryOrigin.enterRepository(this.repositoryName + "#" + invocation.getMethod().getName());
+		try {
+			return invocation.proceed();
+		}
+		finally {
+			QueryOrigin.exitRepository(enclosing);
+		}
+	}
+	
+	
+	
+}
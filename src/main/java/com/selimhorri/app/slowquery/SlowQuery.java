@@ -0,0 +1,39 @@
+package com.selimhorri.app.slowquery;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder(toBuilder = true)
+public class SlowQuery {
+	
+	/**
+	 * ISO-8601 instant; the application's {@code ObjectMapper} has no java.time support.
+	 */
+	String timestamp;
+	long elapsedMillis;
+	String sql;
+	
+	/**
+	 * One list per execution of a batch; values, types or nothing depending on {@code app.slow-query.parameters}.
+	 */
+	List<List<String>> parameters;
+	
+	int batchSize;
+	boolean success;
+	
+	/**
+	 * {@code null} outside of a request or a repository method.
+	 */
+	String endpoint;
+	String repositoryMethod;
+	String thread;
+	
+	/**
+	 * Output of {@code EXPLAIN}, only for {@code SELECT}s; {@code null} when it was not run or failed.
+	 */
+	String plan;
+	
+}
@@ -0,0 +1,32 @@
+package com.selimhorri.app.slowquery;
+
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * {@code GET /actuator/slowqueries}: the recent slow queries, newest first; {@code DELETE} empties the list.
+ */
+@Endpoint(id = "slowqueries")
+@RequiredArgsConstructor
+public class SlowQueryEndpoint {
+	
+	private final SlowQueryLog slowQueryLog;
+	
+	@ReadOperation
+	public List<SlowQuery> slowQueries() {
+		return this.slowQueryLog.recent();
+	}
+	
+	@DeleteOperation
+	public void clear() {
+		this.slowQueryLog.clear();
+	}
+	
+	
+	
+}
@@ -0,0 +1,238 @@
+package com.selimhorri.app.slowquery;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+/**
+ * Times every statement run through the proxied {@code DataSource}, per repository method, and reports the ones
+ * slower than the threshold with their origin ({@link QueryOrigin}) and bind parameters.
+ *
+ * The statement and its origin are captured on the calling thread; the {@code EXPLAIN}, the log line and the ring
+ * buffer entry are done on one background thread with a short queue, so a burst of slow queries never waits for
+ * plans (the excess is logged without one). Plans are explained on a connection of the unproxied pool, outside the
+ * caller's transaction, and cached per SQL for {@code planTtl}.
+ */
+@Slf4j
+public class SlowQueryListener implements QueryExecutionListener {
+	
+	public enum ParameterMode {
+		VALUES, TYPES, NONE
+	}
+	
+	private static final Pattern LEADING_COMMENTS = Pattern.compile("^\\s*(/\\*.*?\\*/\\s*)*", Pattern.DOTALL);
+	private static final int PLAN_CACHE_SIZE = 256;
+	private static final String NO_REPOSITORY = "none";
+	
+	private final DataSource targetDataSource;
+	private final SlowQueryLog slowQueryLog;
+	private final MeterRegistry meterRegistry;
+	private final long thresholdMillis;
+	private final ParameterMode parameterMode;
+	private final int maxParameterLength;
+	private final boolean explain;
+	private final long planTtlNanos;
+	
+	private final ThreadPoolExecutor reporter = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(64), runnable -> {
+				final Thread thread = new Thread(runnable, "slow-query-reporter");
+				thread.setDaemon(true);
+				return thread;
+			});
+	
+	private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+	private final Counter slowStatements;
+	
+	/**
+	 * Guarded by itself; LRU by SQL.
+	 */
+	private final Map<String, CachedPlan> plans = Collections.synchronizedMap(
+			new LinkedHashMap<String, CachedPlan>(PLAN_CACHE_SIZE, 0.75f, true) {
+				
+				private static final long serialVersionUID = 1L;
+				
+				@Override
+				protected boolean removeEldestEntry(final Map.Entry<String, CachedPlan> eldest) {
+					return this.size() > PLAN_CACHE_SIZE;
+				}
+				
+			});
+	
+	public SlowQueryListener(final DataSource targetDataSource, final SlowQueryLog slowQueryLog,
+			final MeterRegistry meterRegistry, final Duration threshold, final ParameterMode parameterMode,
+			final int maxParameterLength, final boolean explain, final Duration planTtl) {
+		this.targetDataSource = targetDataSource;
+		this.slowQueryLog = slowQueryLog;
+		this.meterRegistry = meterRegistry;
+		this.thresholdMillis = threshold.toMillis();
+		this.parameterMode = parameterMode;
+		this.maxParameterLength = maxParameterLength;
+		this.explain = explain;
+		this.planTtlNanos = planTtl.toNanos();
+		this.slowStatements = Counter.builder("catalog.db.slow.statements")
+				.description("Statements slower than app.slow-query.threshold")
+				.register(meterRegistry);
+	}
+	
+	@Override
+	public void beforeQuery(final ExecutionInfo execInfo, final List<QueryInfo> queryInfoList) {
+		
+	}
+	
+	@Override
+	public void afterQuery(final ExecutionInfo execInfo, final List<QueryInfo> queryInfoList) {
+		final String repositoryMethod = QueryOrigin.repositoryMethod();
+		this.timers.computeIfAbsent(repositoryMethod == null ? NO_REPOSITORY : repositoryMethod,
+				repository -> Timer.builder("catalog.db.statement")
+						.description("Statements run through the DataSource, by repository method")
+						.tag("repository", repository)
+						.register(this.meterRegistry))
+				.record(execInfo.getElapsedTime(), TimeUnit.MILLISECONDS);
+		if (execInfo.getElapsedTime() < this.thresholdMillis)
+			return;
+		
+		this.slowStatements.increment();
+		final SlowQuery slowQuery = SlowQuery.builder()
+				.timestamp(Instant.now().toString())
+				.elapsedMillis(execInfo.getElapsedTime())
+				.sql(queryInfoList.stream().map(QueryInfo::getQuery).collect(Collectors.joining(";\n")))
+				.parameters(queryInfoList.stream()
+						.flatMap(queryInfo -> queryInfo.getParametersList().stream())
+						.map(this::describe)
+						.collect(Collectors.toList()))
+				.batchSize(execInfo.isBatch() ? execInfo.getBatchSize() : 1)
+				.success(execInfo.isSuccess())
+				.endpoint(QueryOrigin.endpoint())
+				.repositoryMethod(repositoryMethod)
+				.thread(Thread.currentThread().getName())
+				.build();
+		// Plans are replayed with the same values, whatever is shown
+		final List<ParameterSetOperation> firstParameters = queryInfoList.size() == 1
+				&& !queryInfoList.get(0).getParametersList().isEmpty()
+				? new ArrayList<>(queryInfoList.get(0).getParametersList().get(0)) : List.of();
+		final boolean explainable = this.explain && queryInfoList.size() == 1 && !execInfo.isBatch()
+				&& isSelect(queryInfoList.get(0).getQuery());
+		try {
+			this.reporter.execute(() -> this.report(slowQuery, explainable ? firstParameters : null));
+		}
+		catch (RejectedExecutionException e) {
+			this.report(slowQuery, null);
+		}
+	}
+	
+	private void report(final SlowQuery captured, final List<ParameterSetOperation> explainParameters) {
+		final SlowQuery slowQuery = explainParameters == null ? captured
+				: captured.toBuilder().plan(this.plan(captured.getSql(), explainParameters)).build();
+		this.slowQueryLog.add(slowQuery);
+		log.warn("*** Slow query: {} ms, endpoint={}, repository={}, thread={}, batch={}, success={}\n{}\n"
+				+ "parameters={}\nplan={} *", slowQuery.getElapsedMillis(), slowQuery.getEndpoint(),
+				slowQuery.getRepositoryMethod(), slowQuery.getThread(), slowQuery.getBatchSize(), slowQuery.isSuccess(),
+				slowQuery.getSql(), slowQuery.getParameters(), slowQuery.getPlan());
+	}
+	
+	private String plan(final String sql, final List<ParameterSetOperation> parameters) {
+		final CachedPlan cached = this.plans.get(sql);
+		if (cached != null && System.nanoTime() - cached.explainedAt < this.planTtlNanos)
+			return cached.plan;
+		
+		try (final Connection connection = this.targetDataSource.getConnection();
+				final PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+			for (final ParameterSetOperation parameter : parameters) {
+				final Object[] args = parameter.getArgs();
+				if (!(args[0] instanceof Integer))
+					continue;
+				if (ParameterSetOperation.isSetNullParameterOperation(parameter))
+					statement.setNull((Integer) args[0], (Integer) args[1]);
+				else
+					statement.setObject((Integer) args[0], args[1]);
+			}
+			final StringBuilder plan = new StringBuilder();
+			try (final ResultSet resultSet = statement.executeQuery()) {
+				final ResultSetMetaData metaData = resultSet.getMetaData();
+				while (resultSet.next()) {
+					if (plan.length() > 0)
+						plan.append('\n');
+					for (int column = 1; column <= metaData.getColumnCount(); column++) {
+						if (metaData.getColumnCount() > 1)
+							plan.append(column > 1 ? ", " : "").append(metaData.getColumnLabel(column)).append('=');
+						plan.append(resultSet.getString(column));
+					}
+				}
+			}
+			this.plans.put(sql, new CachedPlan(plan.toString(), System.nanoTime()));
+			return plan.toString();
+		}
+		catch (SQLException | RuntimeException e) {
+			log.debug("*** EXPLAIN failed for {} *", sql, e);
+			return null;
+		}
+	}
+	
+	private List<String> describe(final List<ParameterSetOperation> parameters) {
+		if (this.parameterMode == ParameterMode.NONE)
+			return List.of();
+		return parameters.stream()
+				.map(parameter -> {
+					final Object[] args = parameter.getArgs();
+					if (ParameterSetOperation.isSetNullParameterOperation(parameter) || args.length < 2 || args[1] == null)
+						return "null";
+					if (this.parameterMode == ParameterMode.TYPES)
+						return args[1].getClass().getSimpleName();
+					final String value = String.valueOf(args[1]);
+					return value.length() <= this.maxParameterLength ? value
+							: value.substring(0, this.maxParameterLength) + "...(" + value.length() + " chars)";
+				})
+				.collect(Collectors.toList());
+	}
+	
+	private static boolean isSelect(final String sql) {
+		final String statement = LEADING_COMMENTS.matcher(sql).replaceFirst("");
+		return statement.regionMatches(true, 0, "select", 0, 6);
+	}
+	
+	public void shutdown() {
+		this.reporter.shutdownNow();
+	}
+	
+	private static final class CachedPlan {
+		
+		private final String plan;
+		private final long explainedAt;
+		
+		private CachedPlan(final String plan, final long explainedAt) {
+			this.plan = plan;
+			this.explainedAt = explainedAt;
+		}
+		
+	}
+	
+	
+	
+}
@@ -0,0 +1,45 @@
+package com.selimhorri.app.slowquery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ring buffer of the most recent slow queries; the oldest is overwritten once full.
+ */
+public class SlowQueryLog {
+	
+	private final AtomicReferenceArray<SlowQuery> ring;
+	private final AtomicLong written = new AtomicLong();
+	
+	public SlowQueryLog(final int capacity) {
+		this.ring = new AtomicReferenceArray<>(Math.max(1, capacity));
+	}
+	
+	public void add(final SlowQuery slowQuery) {
+		this.ring.set((int) (this.written.getAndIncrement() % this.ring.length()), slowQuery);
+	}
+	
+	/**
+	 * Newest first.
+	 */
+	public List<SlowQuery> recent() {
+		final long end = this.written.get();
+		final List<SlowQuery> recent = new ArrayList<>();
+		for (long i = end - 1; i >= Math.max(0, end - this.ring.length()); i--) {
+			final SlowQuery slowQuery = this.ring.get((int) (i % this.ring.length()));
+			if (slowQuery != null)
+				recent.add(slowQuery);
+		}
+		return recent;
+	}
+	
+	public void clear() {
+		for (int i = 0; i < this.ring.length(); i++)
+			this.ring.set(i, null);
+	}
+	
+	
+	
+}
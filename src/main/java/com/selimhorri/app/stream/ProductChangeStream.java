@@ -0,0 +1,375 @@
+package com.selimhorri.app.stream;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.selimhorri.app.cache.CoalescingCache;
+import com.selimhorri.app.dto.ProductChangeDto;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pushes price and stock changes to SSE subscribers of product ids or of a category.
+ *
+ * Changes are taken from the committed invalidations of the product cache, so every write path of
+ * {@code ProductServiceImpl} (and of the other replicas) is covered and nothing uncommitted is ever pushed. Every
+ * {@code interval} the products changed since the last round are re-read from {@code product_catalog_view} in one
+ * query per chunk, compared with what was last seen, and the changes of price, stock or category are queued to the
+ * subscribers that follow them; a subscriber gets at most the latest value per product per round.
+ *
+ * Connections are async requests ({@link SseEmitter}), so an idle subscriber holds a socket but no Tomcat thread.
+ * Writes are done by a few sender threads, one send in progress per subscriber; a subscriber whose buffer exceeds
+ * {@code bufferSize} products or whose send is stuck for {@code sendTimeout} is disconnected (EventSource clients
+ * reconnect by themselves). Idle streams get a comment every {@code heartbeat}, which also detects gone clients.
+ */
+@Slf4j
+public class ProductChangeStream implements SmartLifecycle, MeterBinder {
+	
+	private static final int READ_CHUNK = 500;
+	private static final int LAST_SEEN_LIMIT = 100_000;
+	private static final String EVENT_NAME = "product";
+	private static final String SELECT_PRODUCTS = "SELECT product_id, category_id, price_unit, quantity, deleted "
+			+ "FROM product_catalog_view WHERE ";
+	
+	private final JdbcTemplate jdbcTemplate;
+	private final CoalescingCache<Integer, ?> productCache;
+	private final Duration interval;
+	private final Duration timeout;
+	private final long heartbeatNanos;
+	private final long sendTimeoutNanos;
+	private final int maxSubscribers;
+	private final int maxProductIds;
+	private final int bufferSize;
+	
+	private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "product-stream");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final ThreadPoolExecutor sender;
+	
+	private final Map<Long, ProductChangeSubscription> subscriptions = new ConcurrentHashMap<>();
+	private final AtomicLong subscriptionIds = new AtomicLong();
+	private final AtomicLong eventIds = new AtomicLong();
+	
+	/**
+	 * Guarded by {@code this}.
+	 */
+	private Set<Integer> changedProductIds = new LinkedHashSet<>();
+	private boolean allChanged;
+	
+	/**
+	 * Flusher thread only.
+	 */
+	private final Map<Integer, ProductState> lastSeen = new HashMap<>();
+	
+	private final LongAdder events = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	
+	private volatile boolean running;
+	
+	public ProductChangeStream(final JdbcTemplate jdbcTemplate, final CoalescingCache<Integer, ?> productCache,
+			final Duration interval, final Duration timeout, final Duration heartbeat, final Duration sendTimeout,
+			final int maxSubscribers, final int maxProductIds, final int bufferSize, final int sendThreads) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.productCache = productCache;
+		this.interval = interval;
+		this.timeout = timeout;
+		this.heartbeatNanos = heartbeat.toNanos();
+		this.sendTimeoutNanos = sendTimeout.toNanos();
+		this.maxSubscribers = maxSubscribers;
+		this.maxProductIds = maxProductIds;
+		this.bufferSize = bufferSize;
+		final AtomicInteger senderThreads = new AtomicInteger();
+		this.sender = new ThreadPoolExecutor(sendThreads, sendThreads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(Math.max(1, maxSubscribers)), runnable -> {
+					final Thread thread = new Thread(runnable, "product-stream-send-" + senderThreads.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+	
+	/**
+	 * @return the emitter of the new subscription, or {@code null} when {@code maxSubscribers} are connected
+	 * @throws IllegalArgumentException without product ids nor category, or with more than {@code maxProductIds}
+	 */
+	public SseEmitter subscribe(final Collection<Integer> productIds, final Integer categoryId) {
+		final Set<Integer> followed = productIds == null ? Set.of() : Set.copyOf(productIds);
+		if (followed.isEmpty() && categoryId == null)
+			throw new IllegalArgumentException("Se requieren ids de producto o una categoría");
+		if (followed.size() > this.maxProductIds)
+			throw new IllegalArgumentException("Como máximo " + this.maxProductIds + " ids por suscripción");
+		if (this.subscriptions.size() >= this.maxSubscribers)
+			return null;
+		
+		final SseEmitter emitter = new SseEmitter(this.timeout.toMillis());
+		final ProductChangeSubscription subscription = new ProductChangeSubscription(
+				this.subscriptionIds.incrementAndGet(), emitter, followed, categoryId);
+		emitter.onCompletion(() -> this.remove(subscription));
+		emitter.onTimeout(() -> this.remove(subscription));
+		emitter.onError(e -> this.remove(subscription));
+		this.subscriptions.put(subscription.getId(), subscription);
+		try {
+			// buffered until the response is set up; commits the headers right away
+			emitter.send(SseEmitter.event().comment("subscribed"));
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return emitter;
+	}
+	
+	public int subscriberCount() {
+		return this.subscriptions.size();
+	}
+	
+	@Override
+	public void start() {
+		this.productCache.addChangeListener((cacheName, productId) -> this.markChanged(productId));
+		this.flusher.scheduleWithFixedDelay(this::flush, this.interval.toMillis(), this.interval.toMillis(),
+				TimeUnit.MILLISECONDS);
+		this.running = true;
+	}
+	
+	@Override
+	public void stop() {
+		this.running = false;
+		this.flusher.shutdownNow();
+		this.sender.shutdownNow();
+		this.subscriptions.values().forEach(subscription -> subscription.getEmitter().complete());
+		this.subscriptions.clear();
+	}
+	
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+	
+	private void markChanged(final Integer productId) {
+		if (this.subscriptions.isEmpty())
+			return;
+		synchronized (this) {
+			if (productId == null)
+				this.allChanged = true;
+			else
+				this.changedProductIds.add(productId);
+		}
+	}
+	
+	private void flush() {
+		try {
+			final Set<Integer> changed;
+			final boolean all;
+			synchronized (this) {
+				changed = this.changedProductIds;
+				all = this.allChanged;
+				this.changedProductIds = new LinkedHashSet<>();
+				this.allChanged = false;
+			}
+			if (this.subscriptions.isEmpty())
+				this.lastSeen.clear();
+			else if (all || !changed.isEmpty())
+				this.distribute(this.read(changed, all));
+			
+			final long now = System.nanoTime();
+			for (final ProductChangeSubscription subscription : this.subscriptions.values()) {
+				if (subscription.isClosed()) {
+					this.drop(subscription);
+					continue;
+				}
+				final List<ProductChangeDto> changes = subscription.takeForSend(now, this.sendTimeoutNanos,
+						this.heartbeatNanos);
+				if (changes == null)
+					continue;
+				try {
+					this.sender.execute(() -> this.send(subscription, changes));
+				}
+				catch (RejectedExecutionException e) {
+					subscription.requeue(changes);
+				}
+			}
+		}
+		catch (RuntimeException e) {
+			log.warn("*** Product stream round failed *", e);
+		}
+	}
+	
+	/**
+	 * Current state of the changed products that someone may follow; after a whole-cache invalidation, of all the
+	 * products followed by id or category.
+	 */
+	private List<ProductState> read(final Set<Integer> changed, final boolean all) {
+		final Set<Integer> followedIds = new HashSet<>();
+		final Set<Integer> followedCategories = new HashSet<>();
+		for (final ProductChangeSubscription subscription : this.subscriptions.values()) {
+			followedIds.addAll(subscription.getProductIds());
+			if (subscription.followsCategory())
+				followedCategories.add(subscription.getCategoryId());
+		}
+		final Set<Integer> ids = new LinkedHashSet<>(all ? followedIds : changed);
+		// the category of a changed product is only known once read
+		if (!all && followedCategories.isEmpty())
+			ids.retainAll(followedIds);
+		
+		final List<ProductState> states = new ArrayList<>();
+		final List<Integer> idList = new ArrayList<>(ids);
+		for (int from = 0; from < idList.size(); from += READ_CHUNK) {
+			final List<Integer> chunk = idList.subList(from, Math.min(from + READ_CHUNK, idList.size()));
+			final Set<Integer> found = new HashSet<>();
+			this.query("product_id IN (" + joined(chunk) + ")", state -> {
+				found.add(state.getProductId());
+				states.add(state);
+			});
+			chunk.stream()
+					.filter(productId -> !found.contains(productId))
+					.forEach(productId -> states.add(new ProductState(productId, null, null, null, true)));
+		}
+		if (all && !followedCategories.isEmpty())
+			this.query("category_id IN (" + joined(followedCategories) + ")", states::add);
+		return states;
+	}
+	
+	private void query(final String condition, final Consumer<ProductState> action) {
+		this.jdbcTemplate.query(SELECT_PRODUCTS + condition, resultSet -> {
+			final int productId = resultSet.getInt(1);
+			if (resultSet.getBoolean(5)) {
+				action.accept(new ProductState(productId, null, null, null, true));
+				return;
+			}
+			final BigDecimal price = resultSet.getBigDecimal(3);
+			action.accept(new ProductState(productId, (Integer) resultSet.getObject(2),
+					price == null ? null : price.doubleValue(), (Integer) resultSet.getObject(4), false));
+		});
+	}
+	
+	/**
+	 * Queues the states that differ from the last seen ones to their followers, also to those of the category the
+	 * product just left.
+	 */
+	private void distribute(final List<ProductState> states) {
+		if (this.lastSeen.size() > LAST_SEEN_LIMIT)
+			this.lastSeen.clear();
+		for (final ProductState state : states) {
+			final ProductState previous = this.lastSeen.put(state.getProductId(), state);
+			if (state.equals(previous))
+				continue;
+			final ProductChangeDto change = ProductChangeDto.builder()
+					.productId(state.getProductId())
+					.categoryId(state.getCategoryId())
+					.priceUnit(state.getPriceUnit())
+					.quantity(state.getQuantity())
+					.deleted(state.isDeleted())
+					.build();
+			for (final ProductChangeSubscription subscription : this.subscriptions.values()) {
+				if (!subscription.follows(state.getProductId(), state.getCategoryId())
+						&& (previous == null || !subscription.follows(state.getProductId(), previous.getCategoryId())))
+					continue;
+				if (!subscription.offer(change, this.bufferSize)) {
+					log.info("*** Product stream subscriber {} does not keep up; disconnected *", subscription.getId());
+					subscription.close();
+				}
+			}
+		}
+	}
+	
+	private void send(final ProductChangeSubscription subscription, final List<ProductChangeDto> changes) {
+		try {
+			if (changes.isEmpty())
+				subscription.getEmitter().send(SseEmitter.event().comment("keep-alive"));
+			for (final ProductChangeDto change : changes) {
+				subscription.getEmitter().send(SseEmitter.event()
+						.id(String.valueOf(this.eventIds.incrementAndGet()))
+						.name(EVENT_NAME)
+						.data(change, MediaType.APPLICATION_JSON));
+				this.events.increment();
+			}
+		}
+		catch (IOException | IllegalStateException e) {
+			// gone or already completed
+			subscription.close();
+		}
+		finally {
+			subscription.sent(System.nanoTime());
+		}
+	}
+	
+	/**
+	 * A send stuck on a slow client holds the emitter's lock; that connection is left to fail on its own write
+	 * timeout instead of blocking this thread.
+	 */
+	private void drop(final ProductChangeSubscription subscription) {
+		if (this.subscriptions.remove(subscription.getId()) == null)
+			return;
+		this.dropped.increment();
+		if (!subscription.isSending())
+			subscription.getEmitter().complete();
+	}
+	
+	private void remove(final ProductChangeSubscription subscription) {
+		subscription.close();
+		this.subscriptions.remove(subscription.getId());
+	}
+	
+	private static String joined(final Collection<Integer> ids) {
+		return ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+	}
+	
+	@Override
+	public void bindTo(final MeterRegistry registry) {
+		Gauge.builder("catalog.stream.subscribers", this.subscriptions, Map::size)
+				.description("Connected SSE subscribers of product changes")
+				.register(registry);
+		FunctionCounter.builder("catalog.stream.events", this.events, LongAdder::sum)
+				.description("Product change events sent")
+				.register(registry);
+		FunctionCounter.builder("catalog.stream.dropped", this.dropped, LongAdder::sum)
+				.description("Subscribers disconnected for not keeping up or gone")
+				.register(registry);
+	}
+	
+	@Value
+	private static class ProductState {
+		
+		int productId;
+		Integer categoryId;
+		Double priceUnit;
+		Integer quantity;
+		boolean deleted;
+		
+	}
+	
+	
+	
+}
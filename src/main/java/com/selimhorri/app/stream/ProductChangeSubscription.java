@@ -0,0 +1,121 @@
+package com.selimhorri.app.stream;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.selimhorri.app.dto.ProductChangeDto;
+
+/**
+ * One SSE client: the product ids and category it follows and the changes not sent yet, latest per product.
+ */
+final class ProductChangeSubscription {
+	
+	private final long id;
+	private final SseEmitter emitter;
+	private final Set<Integer> productIds;
+	private final Integer categoryId;
+	
+	/**
+	 * Guarded by {@code this}; coalesced by product id.
+	 */
+	private Map<Integer, ProductChangeDto> pending = new LinkedHashMap<>();
+	private boolean sending;
+	private long sendingSince;
+	private long lastSentAt = System.nanoTime();
+	private volatile boolean closed;
+	
+	ProductChangeSubscription(final long id, final SseEmitter emitter, final Set<Integer> productIds,
+			final Integer categoryId) {
+		this.id = id;
+		this.emitter = emitter;
+		this.productIds = productIds;
+		this.categoryId = categoryId;
+	}
+	
+	long getId() {
+		return this.id;
+	}
+	
+	SseEmitter getEmitter() {
+		return this.emitter;
+	}
+	
+	boolean follows(final Integer productId, final Integer productCategoryId) {
+		return this.productIds.contains(productId)
+				|| this.categoryId != null && this.categoryId.equals(productCategoryId);
+	}
+	
+	boolean followsCategory() {
+		return this.categoryId != null;
+	}
+	
+	Set<Integer> getProductIds() {
+		return this.productIds;
+	}
+	
+	Integer getCategoryId() {
+		return this.categoryId;
+	}
+	
+	/**
+	 * @return {@code false} when the buffer is full, i.e. the client does not keep up
+	 */
+	synchronized boolean offer(final ProductChangeDto change, final int bufferSize) {
+		this.pending.put(change.getProductId(), change);
+		return this.pending.size() <= bufferSize;
+	}
+	
+	/**
+	 * Takes the pending changes for one send, or {@code null} when there are none or a send is still in progress.
+	 * A send left in progress past {@code stuckAfterNanos} marks the subscription closed.
+	 */
+	synchronized List<ProductChangeDto> takeForSend(final long now, final long stuckAfterNanos,
+			final long heartbeatNanos) {
+		if (this.sending) {
+			if (now - this.sendingSince > stuckAfterNanos)
+				this.closed = true;
+			return null;
+		}
+		if (this.pending.isEmpty() && now - this.lastSentAt < heartbeatNanos)
+			return null;
+		final List<ProductChangeDto> changes = new ArrayList<>(this.pending.values());
+		this.pending = new LinkedHashMap<>();
+		this.sending = true;
+		this.sendingSince = now;
+		return changes;
+	}
+	
+	/**
+	 * Gives back changes that could not be handed to a sender; newer pending values win.
+	 */
+	synchronized void requeue(final List<ProductChangeDto> changes) {
+		final Map<Integer, ProductChangeDto> merged = new LinkedHashMap<>();
+		changes.forEach(change -> merged.put(change.getProductId(), change));
+		merged.putAll(this.pending);
+		this.pending = merged;
+		this.sending = false;
+	}
+	
+	synchronized void sent(final long now) {
+		this.sending = false;
+		this.lastSentAt = now;
+	}
+	
+	synchronized boolean isSending() {
+		return this.sending;
+	}
+	
+	boolean isClosed() {
+		return this.closed;
+	}
+	
+	void close() {
+		this.closed = true;
+	}
+	
+}
@@ -0,0 +1,118 @@
+package com.selimhorri.app.timing;
+
+/**
+ * Where one sampled request spent its time: statements run through the proxied {@code DataSource}, mapping between
+ * entities and DTOs, Jackson serialization, and its lookups in the coalescing caches. Set on the request thread by
+ * {@link ServerTimingFilter}; elsewhere (unsampled requests, background threads) every {@code record} call is a
+ * single thread-local read.
+ *
+ * Work done for the request on other threads, e.g. a cache refresh, is not counted.
+ */
+public final class RequestTiming {
+	
+	private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+	
+	private int statements;
+	private long statementNanos;
+	private long statementStartedAt;
+	
+	private int mappingDepth;
+	private long mappingNanos;
+	
+	private long serializationNanos;
+	
+	private int cacheHits;
+	private int cacheMisses;
+	
+	private RequestTiming() {
+		
+	}
+	
+	static RequestTiming begin() {
+		final RequestTiming timing = new RequestTiming();
+		CURRENT.set(timing);
+		return timing;
+	}
+	
+	static void end() {
+		CURRENT.remove();
+	}
+	
+	public static void statementStarted() {
+		final RequestTiming timing = CURRENT.get();
+		if (timing != null)
+			timing.statementStartedAt = System.nanoTime();
+	}
+	
+	public static void statementEnded() {
+		final RequestTiming timing = CURRENT.get();
+		if (timing != null && timing.statementStartedAt != 0) {
+			timing.statements++;
+			timing.statementNanos += System.nanoTime() - timing.statementStartedAt;
+			timing.statementStartedAt = 0;
+		}
+	}
+	
+	/**
+	 * At the start of a mapping method; its result goes to {@link #mappingEnded}. Nested mappings count once.
+	 */
+	public static long mappingStarted() {
+		final RequestTiming timing = CURRENT.get();
+		return timing == null || timing.mappingDepth++ > 0 ? 0 : System.nanoTime();
+	}
+	
+	public static void mappingEnded(final long startedAt) {
+		final RequestTiming timing = CURRENT.get();
+		if (timing != null && --timing.mappingDepth == 0)
+			timing.mappingNanos += System.nanoTime() - startedAt;
+	}
+	
+	public static boolean isActive() {
+		return CURRENT.get() != null;
+	}
+	
+	public static void recordSerialization(final long nanos) {
+		final RequestTiming timing = CURRENT.get();
+		if (timing != null)
+			timing.serializationNanos += nanos;
+	}
+	
+	public static void recordCacheHits(final int hits) {
+		final RequestTiming timing = CURRENT.get();
+		if (timing != null)
+			timing.cacheHits += hits;
+	}
+	
+	public static void recordCacheMisses(final int misses) {
+		final RequestTiming timing = CURRENT.get();
+		if (timing != null)
+			timing.cacheMisses += misses;
+	}
+	
+	int getStatements() {
+		return this.statements;
+	}
+	
+	long getStatementNanos() {
+		return this.statementNanos;
+	}
+	
+	long getMappingNanos() {
+		return this.mappingNanos;
+	}
+	
+	long getSerializationNanos() {
+		return this.serializationNanos;
+	}
+	
+	int getCacheHits() {
+		return this.cacheHits;
+	}
+	
+	int getCacheMisses() {
+		return this.cacheMisses;
+	}
+	
+	
+	
+}
@@ -0,0 +1,119 @@
+package com.selimhorri.app.timing;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.sleuth.Span;
+import org.springframework.cloud.sleuth.Tracer;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.UrlPathHelper;
+import org.springframework.web.util.WebUtils;
+
+import com.selimhorri.app.constant.AppConstant;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Breaks a sampled request down in a {@code Server-Timing} header (shown by browser dev tools next to the network
+ * timings) and in tags of its Sleuth span:
+ *
+ * <pre>
+ * Server-Timing: db;dur=4.1;desc="3 statements", map;dur=0.8, ser;dur=1.2, cache;desc="hits=2 misses=1", app;dur=7.9
+ * </pre>
+ *
+ * A request is sampled with probability {@code sampleRate}, or always when it carries {@code forceHeader} (to
+ * reproduce a slow call on demand). The header has to be set after serialization, so a sampled response is buffered
+ * unless an outer filter (the ETag one) already buffers it. Streamed responses are never sampled.
+ */
+@RequiredArgsConstructor
+public class ServerTimingFilter extends OncePerRequestFilter {
+	
+	public static final String SERVER_TIMING = "Server-Timing";
+	
+	private final double sampleRate;
+	private final String forceHeader;
+	private final ObjectProvider<Tracer> tracer;
+	private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+	
+	@Override
+	protected boolean shouldNotFilter(final HttpServletRequest request) {
+		return AppConstant.STREAMED_PATHS.contains(this.urlPathHelper.getPathWithinApplication(request));
+	}
+	
+	@Override
+	protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+			final FilterChain filterChain) throws ServletException, IOException {
+		if (!this.sampled(request)) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+		
+		final ContentCachingResponseWrapper buffer =
+				WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class) == null
+						? new ContentCachingResponseWrapper(response) : null;
+		final RequestTiming timing = RequestTiming.begin();
+		final long start = System.nanoTime();
+		try {
+			filterChain.doFilter(request, buffer == null ? response : buffer);
+		}
+		finally {
+			final long totalNanos = System.nanoTime() - start;
+			RequestTiming.end();
+			if (!response.isCommitted())
+				response.addHeader(SERVER_TIMING, header(timing, totalNanos));
+			this.tag(timing, totalNanos);
+			if (buffer != null)
+				buffer.copyBodyToResponse();
+		}
+	}
+	
+	private boolean sampled(final HttpServletRequest request) {
+		return this.forceHeader != null && request.getHeader(this.forceHeader) != null
+				|| this.sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < this.sampleRate;
+	}
+	
+	static String header(final RequestTiming timing, final long totalNanos) {
+		return String.format(Locale.ROOT,
+				"db;dur=%.1f;desc=\"%d statements\", map;dur=%.1f, ser;dur=%.1f, cache;desc=\"hits=%d misses=%d\", "
+						+ "app;dur=%.1f",
+				millis(timing.getStatementNanos()), timing.getStatements(), millis(timing.getMappingNanos()),
+				millis(timing.getSerializationNanos()), timing.getCacheHits(), timing.getCacheMisses(),
+				millis(totalNanos));
+	}
+	
+	/**
+	 * On the server span of the request, still open around this filter.
+	 */
+	private void tag(final RequestTiming timing, final long totalNanos) {
+		final Tracer tracer = this.tracer.getIfAvailable();
+		final Span span = tracer == null ? null : tracer.currentSpan();
+		if (span == null)
+			return;
+		span.tag("timing.db.statements", String.valueOf(timing.getStatements()));
+		span.tag("timing.db.ms", format(timing.getStatementNanos()));
+		span.tag("timing.mapping.ms", format(timing.getMappingNanos()));
+		span.tag("timing.serialization.ms", format(timing.getSerializationNanos()));
+		span.tag("timing.cache.hits", String.valueOf(timing.getCacheHits()));
+		span.tag("timing.cache.misses", String.valueOf(timing.getCacheMisses()));
+		span.tag("timing.app.ms", format(totalNanos));
+	}
+	
+	private static double millis(final long nanos) {
+		return nanos / 1_000_000.0;
+	}
+	
+	private static String format(final long nanos) {
+		return String.format(Locale.ROOT, "%.1f", millis(nanos));
+	}
+	
+	
+	
+}
@@ -0,0 +1,39 @@
+package com.selimhorri.app.timing;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The JSON converter, timing each write into the {@link RequestTiming} of sampled requests.
+ */
+public class TimedJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
+	
+	public TimedJackson2HttpMessageConverter(final ObjectMapper objectMapper) {
+		super(objectMapper);
+	}
+	
+	@Override
+	protected void writeInternal(final Object object, final Type type, final HttpOutputMessage outputMessage)
+			throws IOException, HttpMessageNotWritableException {
+		if (!RequestTiming.isActive()) {
+			super.writeInternal(object, type, outputMessage);
+			return;
+		}
+		final long start = System.nanoTime();
+		try {
+			super.writeInternal(object, type, outputMessage);
+		}
+		finally {
+			RequestTiming.recordSerialization(System.nanoTime() - start);
+		}
+	}
+	
+	
+	
+}
@@ -0,0 +1,54 @@
+package db.migration;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+/**
+ * Fills {@code categories.category_path} ("/root/.../id/") from {@code parent_category_id}. Done in Java because
+ * neither a self-referencing UPDATE nor a recursive CTE is portable between MySQL 5.7 and H2.
+ */
+public class V8__backfill_categories_category_path extends BaseJavaMigration {
+	
+	@Override
+	public void migrate(final Context context) throws Exception {
+		final Map<Integer, Integer> parents = new HashMap<>();
+		try (Statement statement = context.getConnection().createStatement();
+				ResultSet resultSet = statement.executeQuery("SELECT category_id, parent_category_id FROM categories")) {
+			while (resultSet.next())
+				parents.put(resultSet.getInt(1), (Integer) resultSet.getObject(2));
+		}
+		
+		final Map<Integer, String> paths = new HashMap<>();
+		try (PreparedStatement update = context.getConnection()
+				.prepareStatement("UPDATE categories SET category_path = ? WHERE category_id = ?")) {
+			for (final Integer categoryId : parents.keySet()) {
+				update.setString(1, path(categoryId, parents, paths, parents.size()));
+				update.setInt(2, categoryId);
+				update.addBatch();
+			}
+			update.executeBatch();
+		}
+	}
+	
+	private static String path(final Integer categoryId, final Map<Integer, Integer> parents,
+			final Map<Integer, String> paths, final int remainingDepth) {
+		final String known = paths.get(categoryId);
+		if (known != null)
+			return known;
+		final Integer parentId = parents.get(categoryId);
+		// a dangling parent or a cycle makes the category a root
+		final String path = (parentId == null || !parents.containsKey(parentId) || remainingDepth == 0 ? "/"
+				: path(parentId, parents, paths, remainingDepth - 1)) + categoryId + "/";
+		paths.put(categoryId, path);
+		return path;
+	}
+	
+	
+	
+}
@@ -0,0 +1 @@
+CREATE INDEX idx_products_sku ON products (sku);
@@ -0,0 +1,6 @@
+CREATE TABLE id_sequences (
+  sequence_name VARCHAR(64) NOT NULL PRIMARY KEY,
+  last_id BIGINT NOT NULL
+);
+INSERT INTO id_sequences (sequence_name, last_id) SELECT 'products', COALESCE(MAX(product_id), 0) FROM products;
+INSERT INTO id_sequences (sequence_name, last_id) SELECT 'categories', COALESCE(MAX(category_id), 0) FROM categories;
@@ -0,0 +1,23 @@
+CREATE TABLE product_catalog_view (
+  product_id INT NOT NULL PRIMARY KEY,
+  product_title VARCHAR(255),
+  image_url VARCHAR(255),
+  sku VARCHAR(255),
+  price_unit DECIMAL(7,2),
+  quantity INT,
+  category_id INT NOT NULL,
+  category_title VARCHAR(255),
+  category_image_url VARCHAR(255),
+  category_path VARCHAR(512),
+  deleted BOOLEAN NOT NULL
+);
+CREATE INDEX idx_product_catalog_view_deleted_product_id ON product_catalog_view (deleted, product_id);
+CREATE INDEX idx_product_catalog_view_category_id_product_id ON product_catalog_view (category_id, product_id);
+CREATE INDEX idx_product_catalog_view_category_path ON product_catalog_view (category_path);
+CREATE INDEX idx_product_catalog_view_sku ON product_catalog_view (sku);
+INSERT INTO product_catalog_view
+(product_id, product_title, image_url, sku, price_unit, quantity, category_id, category_title, category_image_url,
+  category_path, deleted)
+SELECT p.product_id, p.product_title, p.image_url, p.sku, p.price_unit, p.quantity, c.category_id, c.category_title,
+  c.image_url, c.category_path, CASE WHEN c.category_title = 'Deleted' THEN TRUE ELSE FALSE END
+FROM products p JOIN categories c ON c.category_id = p.category_id;
@@ -0,0 +1,13 @@
+CREATE TABLE archived_products (
+  product_id INT NOT NULL PRIMARY KEY,
+  product_title VARCHAR(255),
+  image_url VARCHAR(255),
+  sku VARCHAR(255),
+  price_unit DECIMAL(7,2),
+  quantity INT,
+  created_at TIMESTAMP NULL DEFAULT NULL,
+  deleted_at TIMESTAMP NULL DEFAULT NULL,
+  archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_archived_products_sku ON archived_products (sku);
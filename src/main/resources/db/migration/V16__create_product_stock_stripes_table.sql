@@ -0,0 +1,8 @@
+CREATE TABLE product_stock_stripes (
+  product_id INT NOT NULL,
+  stripe INT NOT NULL,
+  quantity INT NOT NULL,
+  PRIMARY KEY (product_id, stripe),
+  CONSTRAINT fk_product_stock_stripes_product FOREIGN KEY (product_id) REFERENCES products (product_id)
+    ON DELETE CASCADE
+);
@@ -0,0 +1,13 @@
+CREATE TABLE catalog_audit (
+  audit_id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  entity_type VARCHAR(16) NOT NULL,
+  entity_id INT NULL,
+  action VARCHAR(32) NOT NULL,
+  field VARCHAR(32) NULL,
+  old_value VARCHAR(255) NULL,
+  new_value VARCHAR(255) NULL,
+  actor VARCHAR(64) NULL,
+  changed_at TIMESTAMP(3) NOT NULL
+);
+
+CREATE INDEX idx_catalog_audit_entity ON catalog_audit (entity_type, entity_id, audit_id);
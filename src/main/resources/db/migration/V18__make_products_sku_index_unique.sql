@@ -0,0 +1,2 @@
+CREATE UNIQUE INDEX uk_products_sku ON products (sku);
+DROP INDEX idx_products_sku ON products;
@@ -0,0 +1,8 @@
+CREATE TABLE cache_invalidations (
+  invalidation_id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  cache_name VARCHAR(64) NOT NULL,
+  cache_key INT NULL,
+  origin VARCHAR(64) NOT NULL,
+  published_at BIGINT NOT NULL
+);
+CREATE INDEX idx_cache_invalidations_published_at ON cache_invalidations (published_at);
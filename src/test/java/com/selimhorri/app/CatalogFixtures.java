@@ -0,0 +1,63 @@
+package com.selimhorri.app;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.selimhorri.app.dto.CategoryDto;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.service.CategoryService;
+import com.selimhorri.app.service.ProductService;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Categories and products with titles and SKUs unique in the shared test database.
+ */
+@RequiredArgsConstructor
+public class CatalogFixtures {
+	
+	private static final AtomicInteger SEQUENCE = new AtomicInteger();
+	
+	private final CategoryService categoryService;
+	private final ProductService productService;
+	
+	public CategoryDto category() {
+		return this.category(null);
+	}
+	
+	public CategoryDto category(final CategoryDto parent) {
+		return this.categoryService.save(CategoryDto.builder()
+				.categoryTitle("Test category " + SEQUENCE.incrementAndGet())
+				.imageUrl("http://img.test/category.png")
+				.parentCategoryDto(parent == null ? null : CategoryDto.builder()
+						.categoryId(parent.getCategoryId())
+						.build())
+				.build());
+	}
+	
+	public ProductDto product(final CategoryDto category, final double priceUnit, final int quantity) {
+		final int number = SEQUENCE.incrementAndGet();
+		return this.productService.save(ProductDto.builder()
+				.productTitle("Test product " + number)
+				.imageUrl("http://img.test/product.png")
+				.sku("TEST-SKU-" + number)
+				.priceUnit(priceUnit)
+				.quantity(quantity)
+				.categoryDto(CategoryDto.builder()
+						.categoryId(category.getCategoryId())
+						.build())
+				.build());
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,42 @@
+package com.selimhorri.app;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * The whole service on an in-memory database, without Eureka or Zipkin. Every test class carrying it shares one
+ * application context (and so one database): tests work on the products and categories they create themselves,
+ * see {@link CatalogFixtures}. Audit entries are written before the write returns; catalog snapshots go to a new
+ * directory under {@code target}, and striped stock is only maintained at start and when a test asks for it.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@SpringBootTest(properties = {
+		"eureka.client.enabled=false",
+		"spring.zipkin.enabled=false",
+		"spring.datasource.url=jdbc:h2:mem:catalog_integration_test;DB_CLOSE_DELAY=-1",
+		"app.warmup.enabled=false",
+		"app.catalog.snapshot.enabled=true",
+		"app.catalog.snapshot.directory=target/catalog-integration-test/${random.uuid}",
+		"app.audit.durability=commit",
+		"app.inventory.rebalance-interval=1h",
+		"logging.level.org.hibernate.SQL=WARN",
+		"logging.level.org.springframework.web=WARN",
+		"logging.level.org.springframework.data=WARN" })
+public @interface CatalogIntegrationTest {
+	
+}
+
+
+
+
+
+
+
+
+
+
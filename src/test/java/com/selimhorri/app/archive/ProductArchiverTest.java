@@ -0,0 +1,185 @@
+package com.selimhorri.app.archive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.selimhorri.app.CatalogFixtures;
+import com.selimhorri.app.CatalogIntegrationTest;
+import com.selimhorri.app.dto.CategoryDto;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.exception.wrapper.ProductNotFoundException;
+import com.selimhorri.app.repository.ArchivedProductRepository;
+import com.selimhorri.app.repository.CategoryRepository;
+import com.selimhorri.app.repository.ProductCatalogViewRepository;
+import com.selimhorri.app.repository.ProductRepository;
+import com.selimhorri.app.service.CategoryService;
+import com.selimhorri.app.service.ProductService;
+
+@CatalogIntegrationTest
+class ProductArchiverTest {
+	
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	
+	@Autowired
+	private ProductRepository productRepository;
+	
+	@Autowired
+	private ProductCatalogViewRepository productCatalogViewRepository;
+	
+	@Autowired
+	private ArchivedProductRepository archivedProductRepository;
+	
+	@Autowired
+	private CategoryRepository categoryRepository;
+	
+	@Autowired
+	private ProductService productService;
+	
+	@Autowired
+	private CategoryService categoryService;
+	
+	@Autowired
+	private DataSource dataSource;
+	
+	private JdbcTemplate jdbcTemplate;
+	private CatalogFixtures fixtures;
+	private ProductArchiver archiver;
+	
+	@BeforeEach
+	void setUp() {
+		this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+		this.fixtures = new CatalogFixtures(this.categoryService, this.productService);
+	}
+	
+	@AfterEach
+	void tearDown() {
+		if (this.archiver != null)
+			this.archiver.stop();
+	}
+	
+	@Test
+	void archivesProductsSoftDeletedBeforeTheRetentionInBatches() {
+		final CategoryDto category = this.fixtures.category();
+		final List<ProductDto> old = List.of(this.deletedDaysAgo(category, 3), this.deletedDaysAgo(category, 3),
+				this.deletedDaysAgo(category, 2));
+		final ProductDto recentlyDeleted = this.fixtures.product(category, 10, 1);
+		this.productService.deleteById(recentlyDeleted.getProductId());
+		final ProductDto live = this.fixtures.product(category, 10, 1);
+		
+		assertThat(this.archiver(2, 100).archive()).isEqualTo(3);
+		
+		for (final ProductDto product : old) {
+			assertThat(this.productRepository.existsById(product.getProductId())).isFalse();
+			assertThat(this.productCatalogViewRepository.existsById(product.getProductId())).isFalse();
+			assertThat(this.productService.findArchivedById(product.getProductId()).getSku())
+					.isEqualTo(product.getSku());
+		}
+		assertThat(this.productRepository.existsById(recentlyDeleted.getProductId())).isTrue();
+		assertThat(this.productRepository.existsById(live.getProductId())).isTrue();
+		assertThat(this.archiver.archive()).isZero();
+	}
+	
+	@Test
+	void runStopsAfterMaxPerRun() {
+		final CategoryDto category = this.fixtures.category();
+		for (int i = 0; i < 3; i++)
+			this.deletedDaysAgo(category, 2);
+		
+		assertThat(this.archiver(2, 2).archive()).isEqualTo(2);
+		assertThat(this.archiver.archive()).isEqualTo(1);
+	}
+	
+	@Test
+	void restoredProductKeepsItsIdAndComesBackInTheGivenCategory() {
+		final CategoryDto category = this.fixtures.category();
+		final ProductDto product = this.deletedDaysAgo(category, 2);
+		this.archiver(10, 100).archive();
+		final CategoryDto target = this.fixtures.category();
+		
+		final ProductDto restored = this.productService.restore(product.getProductId(), target.getCategoryId());
+		
+		assertThat(restored.getProductId()).isEqualTo(product.getProductId());
+		assertThat(restored.getSku()).isEqualTo(product.getSku());
+		assertThat(restored.getCategoryDto().getCategoryId()).isEqualTo(target.getCategoryId());
+		assertThat(this.archivedProductRepository.existsById(product.getProductId())).isFalse();
+		assertThat(this.productService.findById(product.getProductId()).getProductTitle())
+				.isEqualTo(product.getProductTitle());
+	}
+	
+	@Test
+	void restoreIsRefusedWhileTheSkuIsInUse() {
+		final CategoryDto category = this.fixtures.category();
+		final ProductDto product = this.deletedDaysAgo(category, 2);
+		this.archiver(10, 100).archive();
+		final ProductDto reusing = ProductDto.builder()
+				.productTitle("Reuses " + product.getSku())
+				.imageUrl("http://img.test/product.png")
+				.sku(product.getSku())
+				.priceUnit(10.0)
+				.quantity(1)
+				.categoryDto(CategoryDto.builder()
+						.categoryId(category.getCategoryId())
+						.build())
+				.build();
+		// the service keeps archived SKUs reserved, so only a write around it can take one
+		assertThatThrownBy(() -> this.productService.save(reusing)).isInstanceOf(IllegalArgumentException.class);
+		final ProductDto other = this.fixtures.product(category, 10, 1);
+		this.jdbcTemplate.update("UPDATE products SET sku = ? WHERE product_id = ?", product.getSku(),
+				other.getProductId());
+		
+		assertThatThrownBy(() -> this.productService.restore(product.getProductId(), category.getCategoryId()))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining(product.getSku());
+		assertThat(this.archivedProductRepository.existsById(product.getProductId())).isTrue();
+		assertThatThrownBy(() -> this.productService.restore(Integer.MAX_VALUE, category.getCategoryId()))
+				.isInstanceOf(ProductNotFoundException.class);
+	}
+	
+	private ProductDto deletedDaysAgo(final CategoryDto category, final int days) {
+		final ProductDto product = this.fixtures.product(category, 10, 1);
+		this.productService.deleteById(product.getProductId());
+		this.jdbcTemplate.update("UPDATE products SET updated_at = ? WHERE product_id = ?",
+				Timestamp.from(Instant.now().minus(Duration.ofDays(days))), product.getProductId());
+		return product;
+	}
+	
+	/**
+	 * Started, so that its runs are not cut short, but scheduled only after the test.
+	 */
+	private ProductArchiver archiver(final int batchSize, final int maxPerRun) {
+		this.archiver = new ProductArchiver(new TransactionTemplate(this.transactionManager), this.productRepository,
+				this.productCatalogViewRepository, this.archivedProductRepository, this.categoryRepository,
+				Duration.ofHours(1), Duration.ofDays(1), batchSize, Duration.ZERO, maxPerRun);
+		this.archiver.start();
+		return this.archiver;
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,131 @@
+package com.selimhorri.app.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AuditTrailTest {
+	
+	private final List<Object> writtenValues = new CopyOnWriteArrayList<>();
+	private volatile boolean rejectPoison = true;
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final AuditTrail auditTrail = this.auditTrail();
+	
+	@AfterEach
+	void stop() {
+		if (this.auditTrail.isRunning())
+			this.auditTrail.stop();
+	}
+	
+	@Test
+	void poisonEntryIsDeadLetteredAfterTheRetriesWithoutHoldingUpTheOthers() {
+		this.auditTrail.start();
+		this.record(1, "first");
+		this.record(2, "poison");
+		this.record(3, "third");
+		this.record(4, "fourth");
+		
+		this.auditTrail.flush();
+		this.auditTrail.flush();
+		assertThat(this.writtenValues).isEmpty();
+		assertThat(this.counter("catalog.audit.failures", null)).isEqualTo(2);
+		
+		this.auditTrail.flush();
+		assertThat(this.writtenValues).containsExactlyInAnyOrder("first", "third", "fourth");
+		assertThat(this.counter("catalog.audit.entries", "dead-lettered")).isEqualTo(1);
+		assertThat(this.counter("catalog.audit.entries", "written")).isEqualTo(3);
+		assertThat(this.registry.get("catalog.audit.queue.size").gauge().value()).isZero();
+		
+		// the next batch is not stuck behind it
+		this.record(5, "fifth");
+		this.auditTrail.flush();
+		assertThat(this.writtenValues).contains("fifth");
+	}
+	
+	@Test
+	void failedBatchIsRetriedFirstOnceTheTableAcceptsIt() {
+		this.auditTrail.start();
+		this.record(1, "poison");
+		
+		this.auditTrail.flush();
+		assertThat(this.writtenValues).isEmpty();
+		
+		this.rejectPoison = false;
+		this.record(2, "second");
+		this.auditTrail.flush();
+		assertThat(this.writtenValues).containsExactly("poison", "second");
+		assertThat(this.counter("catalog.audit.entries", "dead-lettered")).isZero();
+	}
+	
+	@Test
+	void truncatesWithoutSplittingSurrogatePairs() {
+		final String emoji = new String(Character.toChars(0x1F600));
+		
+		assertThat(AuditTrail.truncate("a".repeat(254) + emoji, 255)).isEqualTo("a".repeat(254));
+		assertThat(AuditTrail.truncate("a".repeat(253) + emoji + "b", 255)).isEqualTo("a".repeat(253) + emoji);
+		assertThat(AuditTrail.truncate("short", 255)).isEqualTo("short");
+		assertThat(AuditTrail.truncate(null, 255)).isNull();
+	}
+	
+	private void record(final int productId, final String title) {
+		this.auditTrail.changes(AuditTrail.PRODUCT, productId, "UPDATE")
+				.field("productTitle", null, title)
+				.record();
+	}
+	
+	private double counter(final String name, final String outcome) {
+		return (outcome == null ? this.registry.get(name) : this.registry.get(name).tag("outcome", outcome))
+				.functionCounter()
+				.count();
+	}
+	
+	/**
+	 * The table rejects any batch holding a "poison" value while {@link #rejectPoison}; the values written are kept
+	 * in {@link #writtenValues}.
+	 */
+	private AuditTrail auditTrail() {
+		final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+		doAnswer(invocation -> {
+			final List<Object[]> rows = invocation.getArgument(1);
+			if (this.rejectPoison && rows.stream().anyMatch(row -> "poison".equals(row[5])))
+				throw new DataIntegrityViolationException("value rejected");
+			rows.forEach(row -> this.writtenValues.add(row[5]));
+			return new int[rows.size()];
+		}).when(jdbcTemplate).batchUpdate(anyString(), anyList());
+		
+		final var auditTrail = new AuditTrail(jdbcTemplate,
+				new TransactionTemplate(mock(PlatformTransactionManager.class)), () -> "tester", true,
+				AuditTrail.Durability.PERIODIC, AuditTrail.Overflow.BLOCK, 100, 200, Duration.ofHours(1),
+				Duration.ofMillis(10), Duration.ofSeconds(1));
+		auditTrail.bindTo(this.registry);
+		return auditTrail;
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
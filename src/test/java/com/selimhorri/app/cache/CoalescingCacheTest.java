@@ -0,0 +1,268 @@
+package com.selimhorri.app.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CoalescingCacheTest {
+	
+	private static final Duration LONG = Duration.ofHours(1);
+	
+	private final ExecutorService threads = Executors.newCachedThreadPool();
+	
+	/**
+	 * Background refreshes, run when the test says so.
+	 */
+	private final List<Runnable> refreshes = new ArrayList<>();
+	
+	@AfterEach
+	void tearDown() {
+		this.threads.shutdownNow();
+		if (TransactionSynchronizationManager.isSynchronizationActive())
+			TransactionSynchronizationManager.clearSynchronization();
+	}
+	
+	@Test
+	void concurrentMissesShareOneLoad() throws Exception {
+		final CoalescingCache<Integer, String> cache = this.cache(LONG, LONG);
+		final AtomicInteger loads = new AtomicInteger();
+		final CountDownLatch loading = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Function<Integer, String> loader = key -> {
+			loads.incrementAndGet();
+			loading.countDown();
+			await(release);
+			return "value " + key;
+		};
+		
+		final List<Future<String>> callers = new ArrayList<>();
+		callers.add(this.threads.submit(() -> cache.get(1, loader)));
+		await(loading);
+		for (int i = 0; i < 7; i++)
+			callers.add(this.threads.submit(() -> cache.get(1, loader)));
+		awaitCount(cache, "coalesced", 7);
+		release.countDown();
+		
+		for (final Future<String> caller : callers)
+			assertThat(caller.get(5, TimeUnit.SECONDS)).isEqualTo("value 1");
+		assertThat(loads).hasValue(1);
+		assertThat(cache.get(1, loader)).isEqualTo("value 1");
+		assertThat(loads).hasValue(1);
+	}
+	
+	@Test
+	void failedLoadReachesEveryWaiterAndIsNotCached() throws Exception {
+		final CoalescingCache<Integer, String> cache = this.cache(LONG, LONG);
+		final CountDownLatch loading = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Future<String> first = this.threads.submit(() -> cache.get(1, key -> {
+			loading.countDown();
+			await(release);
+			throw new IllegalStateException("database down");
+		}));
+		await(loading);
+		final Future<String> second = this.threads.submit(() -> cache.get(1, key -> "not called"));
+		awaitCount(cache, "coalesced", 1);
+		release.countDown();
+		
+		for (final Future<String> caller : List.of(first, second))
+			assertThatThrownBy(() -> caller.get(5, TimeUnit.SECONDS))
+					.hasCauseInstanceOf(IllegalStateException.class)
+					.hasMessageContaining("database down");
+		assertThat(cache.size()).isZero();
+		assertThat(cache.get(1, key -> "recovered")).isEqualTo("recovered");
+	}
+	
+	@Test
+	void staleEntryIsServedWhileOneRefreshReloadsIt() throws Exception {
+		final CoalescingCache<Integer, String> cache = this.cache(Duration.ofMillis(100), LONG);
+		assertThat(cache.get(1, key -> "v1")).isEqualTo("v1");
+		Thread.sleep(150);
+		
+		assertThat(cache.get(1, key -> "v2")).isEqualTo("v1");
+		assertThat(cache.get(1, key -> "v2")).isEqualTo("v1");
+		assertThat(this.refreshes).hasSize(1);
+		
+		this.refreshes.remove(0).run();
+		assertThat(cache.get(1, key -> "v3")).isEqualTo("v2");
+		assertThat(this.refreshes).isEmpty();
+	}
+	
+	@Test
+	void failedRefreshStopsServingTheStaleEntry() throws Exception {
+		final CoalescingCache<Integer, String> cache = this.cache(Duration.ofMillis(100), LONG);
+		cache.get(1, key -> "v1");
+		Thread.sleep(150);
+		
+		assertThat(cache.get(1, key -> {
+			throw new IllegalStateException("deleted");
+		})).isEqualTo("v1");
+		this.refreshes.remove(0).run();
+		
+		assertThat(cache.size()).isZero();
+		assertThat(cache.get(1, key -> "reloaded")).isEqualTo("reloaded");
+	}
+	
+	@Test
+	void expiredEntryIsLoadedAgain() throws Exception {
+		final CoalescingCache<Integer, String> cache = this.cache(Duration.ofMillis(100), Duration.ofMillis(100));
+		cache.get(1, key -> "v1");
+		Thread.sleep(150);
+		
+		assertThat(cache.get(1, key -> "v2")).isEqualTo("v2");
+		assertThat(this.refreshes).isEmpty();
+	}
+	
+	@Test
+	void loadOverlappingAnInvalidationIsNotStored() throws Exception {
+		final CoalescingCache<Integer, String> cache = this.cache(LONG, LONG);
+		final CountDownLatch loading = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Future<String> reader = this.threads.submit(() -> cache.get(1, key -> {
+			loading.countDown();
+			await(release);
+			return "read before the write";
+		}));
+		await(loading);
+		
+		cache.invalidate(1);
+		release.countDown();
+		
+		// the reader gets what it read, but the next one does not
+		assertThat(reader.get(5, TimeUnit.SECONDS)).isEqualTo("read before the write");
+		assertThat(cache.size()).isZero();
+		assertThat(cache.get(1, key -> "written")).isEqualTo("written");
+	}
+	
+	@Test
+	void invalidationEpochCoversBulkLoadsAndRefreshes() throws Exception {
+		final CoalescingCache<Integer, String> cache = this.cache(Duration.ofMillis(100), LONG);
+		
+		assertThat(cache.getAll(List.of(1, 2), keys -> {
+			cache.invalidateAllNow();
+			return Map.of(1, "one", 2, "two");
+		})).containsOnlyKeys(1, 2);
+		assertThat(cache.size()).isZero();
+		
+		cache.get(1, key -> "v1");
+		Thread.sleep(150);
+		cache.get(1, key -> "v2");
+		cache.invalidateNow(2);
+		this.refreshes.remove(0).run();
+		assertThat(cache.get(1, key -> "v3")).isEqualTo("v1");
+	}
+	
+	@Test
+	void invalidationInTransactionDropsAgainAndNotifiesOnlyAfterCommit() {
+		final CoalescingCache<Integer, String> cache = this.cache(LONG, LONG);
+		final List<Integer> notified = new ArrayList<>();
+		cache.addInvalidationListener((name, key) -> notified.add(key));
+		cache.get(1, key -> "v1");
+		
+		TransactionSynchronizationManager.initSynchronization();
+		cache.invalidate(1);
+		assertThat(cache.size()).isZero();
+		// a reader repopulates it from not yet committed state
+		cache.get(1, key -> "uncommitted");
+		assertThat(notified).isEmpty();
+		complete(TransactionSynchronization.STATUS_COMMITTED);
+		
+		assertThat(cache.size()).isZero();
+		assertThat(notified).containsExactly(1);
+		
+		TransactionSynchronizationManager.initSynchronization();
+		cache.invalidateAll();
+		complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+		assertThat(notified).containsExactly(1);
+	}
+	
+	@Test
+	void concurrentLoadsAndInvalidationsNeverKeepAValueOlderThanTheLastWrite() throws Exception {
+		final CoalescingCache<Integer, Integer> cache = this.cache(LONG, LONG);
+		final AtomicInteger version = new AtomicInteger();
+		final Function<Integer, Integer> loader = key -> version.get();
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Future<?>> workers = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+			workers.add(this.threads.submit(() -> {
+				await(start);
+				for (int read = 0; read < 2_000; read++)
+					cache.get(1, loader);
+			}));
+		workers.add(this.threads.submit(() -> {
+			await(start);
+			for (int write = 0; write < 500; write++) {
+				version.incrementAndGet();
+				cache.invalidate(1);
+			}
+		}));
+		start.countDown();
+		for (final Future<?> worker : workers)
+			worker.get(30, TimeUnit.SECONDS);
+		
+		assertThat(cache.get(1, loader)).isEqualTo(version.get());
+	}
+	
+	private <V> CoalescingCache<Integer, V> cache(final Duration refreshAfter, final Duration expireAfter) {
+		final CoalescingCache<Integer, V> cache =
+				new CoalescingCache<>("test", refreshAfter, expireAfter, 100, this.refreshes::add);
+		cache.bindTo(new SimpleMeterRegistry());
+		return cache;
+	}
+	
+	private static void complete(final int status) {
+		final List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+		TransactionSynchronizationManager.clearSynchronization();
+		synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+	}
+	
+	private static void awaitCount(final CoalescingCache<?, ?> cache, final String result, final int count)
+			throws InterruptedException {
+		final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		cache.bindTo(registry);
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (registry.get("catalog.cache.requests").tag("result", result).functionCounter().count() < count
+				&& System.nanoTime() < deadline)
+			Thread.sleep(5);
+	}
+	
+	private static void await(final CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
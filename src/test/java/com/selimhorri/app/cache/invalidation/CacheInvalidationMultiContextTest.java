@@ -0,0 +1,128 @@
+package com.selimhorri.app.cache.invalidation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.selimhorri.app.ProductServiceApplication;
+import com.selimhorri.app.dto.CategoryDto;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.service.CategoryService;
+import com.selimhorri.app.service.ProductService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Two replicas in one JVM sharing one in-memory database: a write through one must evict the other's near cache
+ * long before the cache TTLs would.
+ */
+class CacheInvalidationMultiContextTest {
+	
+	private static final Duration PROPAGATION_TIMEOUT = Duration.ofSeconds(10);
+	
+	private static ConfigurableApplicationContext replicaA;
+	private static ConfigurableApplicationContext replicaB;
+	
+	@BeforeAll
+	static void startReplicas() {
+		// one after the other, so only the first one runs the migrations
+		replicaA = startReplica();
+		replicaB = startReplica();
+	}
+	
+	@AfterAll
+	static void stopReplicas() {
+		if (replicaB != null)
+			replicaB.close();
+		if (replicaA != null)
+			replicaA.close();
+	}
+	
+	@Test
+	void productUpdateOnOneReplicaEvictsTheOther() {
+		final ProductService productsA = replicaA.getBean(ProductService.class);
+		final ProductService productsB = replicaB.getBean(ProductService.class);
+		
+		final ProductDto product = productsA.findById(1);
+		final String originalTitle = productsB.findById(1).getProductTitle();
+		
+		product.setProductTitle(originalTitle + " (updated)");
+		productsA.update(product);
+		
+		awaitEquals(originalTitle + " (updated)", () -> productsB.findById(1).getProductTitle());
+		assertThat(replicaB.getBean(MeterRegistry.class).find("catalog.cache.invalidation.lag")
+				.tag("cache", "products").timer())
+				.isNotNull()
+				.satisfies(timer -> assertThat(timer.count()).isPositive());
+	}
+	
+	@Test
+	void categoryUpdateOnOneReplicaEvictsCategoriesAndProductsOfTheOther() {
+		final CategoryService categoriesA = replicaA.getBean(CategoryService.class);
+		final CategoryService categoriesB = replicaB.getBean(CategoryService.class);
+		final ProductService productsB = replicaB.getBean(ProductService.class);
+		
+		final CategoryDto category = categoriesA.findById(2);
+		final String originalTitle = categoriesB.findById(2).getCategoryTitle();
+		productsB.findById(3);
+		
+		category.setCategoryTitle(originalTitle + " (renamed)");
+		categoriesA.update(2, category);
+		
+		awaitEquals(originalTitle + " (renamed)", () -> categoriesB.findById(2).getCategoryTitle());
+		awaitEquals(originalTitle + " (renamed)", () -> productsB.findById(3).getCategoryDto().getCategoryTitle());
+	}
+	
+	private static ConfigurableApplicationContext startReplica() {
+		return new SpringApplicationBuilder(ProductServiceApplication.class).run(
+				"--server.port=0",
+				"--eureka.client.enabled=false",
+				"--app.warmup.enabled=false",
+				"--spring.zipkin.enabled=false",
+				"--spring.datasource.url=jdbc:h2:mem:cache_invalidation_test;DB_CLOSE_DELAY=-1",
+				"--app.cache.invalidation.poll-interval=100ms",
+				"--logging.level.org.hibernate.SQL=WARN",
+				"--logging.level.org.springframework.web=WARN",
+				"--logging.level.org.springframework.data=WARN");
+	}
+	
+	private static void awaitEquals(final String expected, final Supplier<String> actual) {
+		final long deadline = System.nanoTime() + PROPAGATION_TIMEOUT.toNanos();
+		String last = actual.get();
+		while (!expected.equals(last) && System.nanoTime() < deadline) {
+			sleep();
+			last = actual.get();
+		}
+		assertThat(last).isEqualTo(expected);
+	}
+	
+	private static void sleep() {
+		try {
+			Thread.sleep(50);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
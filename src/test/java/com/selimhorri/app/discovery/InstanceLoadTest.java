@@ -0,0 +1,118 @@
+package com.selimhorri.app.discovery;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+
+class InstanceLoadTest {
+	
+	private double poolSaturation = 0.5;
+	
+	@SuppressWarnings("unchecked")
+	private final InstanceLoad load = new InstanceLoad(Duration.ofHours(1), Duration.ofHours(1), 0.5, 0.2,
+			() -> this.poolSaturation, mock(ObjectProvider.class));
+	
+	@AfterEach
+	void tearDown() {
+		this.load.stop();
+	}
+	
+	@Test
+	void firstSampleIsTakenAsIs() {
+		for (int i = 0; i < 3; i++)
+			this.load.requestStarted();
+		this.finish(100, 1);
+		
+		this.load.sample();
+		
+		assertThat(this.load.metadata())
+				.containsEntry(InstanceLoad.IN_FLIGHT, "3.0")
+				.containsEntry(InstanceLoad.P99_MILLIS, "99.0")
+				.containsEntry(InstanceLoad.POOL_SATURATION, "0.50");
+	}
+	
+	@Test
+	void laterSamplesAreSmoothedAndKeepTheP99WithoutRequests() {
+		this.finish(100, 1);
+		this.load.sample();
+		
+		this.load.requestStarted();
+		this.load.requestStarted();
+		this.poolSaturation = 1.5;
+		this.load.sample();
+		
+		assertThat(this.load.metadata())
+				.containsEntry(InstanceLoad.IN_FLIGHT, "1.0")
+				.containsEntry(InstanceLoad.P99_MILLIS, "99.0")
+				.containsEntry(InstanceLoad.POOL_SATURATION, "1.00");
+		
+		this.finish(1, 301);
+		this.load.sample();
+		assertThat(this.load.metadata()).containsEntry(InstanceLoad.P99_MILLIS, "200.0");
+	}
+	
+	@Test
+	void p99IsTakenFromTheLatestRequestsOnly() {
+		this.finish(InstanceLoad.LATENCY_SAMPLES, 1_000);
+		this.finish(InstanceLoad.LATENCY_SAMPLES, 1);
+		
+		this.load.sample();
+		
+		assertThat(this.load.metadata()).containsEntry(InstanceLoad.P99_MILLIS,
+				String.format(Locale.ROOT, "%.1f", Math.ceil(InstanceLoad.LATENCY_SAMPLES * 0.99)));
+	}
+	
+	@Test
+	void changedWhenSomeValueMovedMoreThanMinChange() {
+		final double[] before = { 10, 100, 0.5 };
+		
+		assertThat(this.load.changed(before, new double[] { 11.9, 81, 0.59 })).isFalse();
+		assertThat(this.load.changed(before, new double[] { 10, 121, 0.5 })).isTrue();
+		assertThat(this.load.changed(before, new double[] { 10, 100, 0.39 })).isTrue();
+		// from 0 any load is a change
+		assertThat(this.load.changed(new double[] { 0, 0, 0 }, new double[] { 0.01, 0, 0 })).isTrue();
+		assertThat(this.load.changed(new double[] { 0, 0, 0 }, new double[] { 0, 0, 0 })).isFalse();
+	}
+	
+	@Test
+	void canBeStartedAgainAfterStop() {
+		this.load.start();
+		this.load.stop();
+		assertThat(this.load.isRunning()).isFalse();
+		
+		this.load.start();
+		assertThat(this.load.isRunning()).isTrue();
+	}
+	
+	/**
+	 * {@code count} requests taking {@code fromMillis}, {@code fromMillis + 1}... milliseconds.
+	 */
+	private void finish(final int count, final int fromMillis) {
+		for (int i = 0; i < count; i++) {
+			this.load.requestStarted();
+			this.load.requestFinished(TimeUnit.MILLISECONDS.toNanos(fromMillis + i));
+		}
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
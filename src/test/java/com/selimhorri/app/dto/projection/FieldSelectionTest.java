@@ -0,0 +1,109 @@
+package com.selimhorri.app.dto.projection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selimhorri.app.dto.CategoryDto;
+import com.selimhorri.app.dto.ProductDto;
+
+class FieldSelectionTest {
+	
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	
+	@Test
+	void noFieldsMeansTheFullRepresentation() {
+		assertThat(FieldSelection.ofProducts(null)).isNull();
+		assertThat(FieldSelection.ofProducts(" ")).isNull();
+		assertThat(FieldSelection.ofCategories("")).isNull();
+	}
+	
+	@Test
+	void productFieldsAreKeptInDeclarationOrder() {
+		final FieldSelection selection = FieldSelection.ofProducts(" quantity , productId,sku,productId ");
+		
+		assertThat(selection.getProductFields()).containsExactly("productId", "sku", "quantity");
+		assertThat(selection.includesCategory()).isFalse();
+	}
+	
+	@Test
+	void categorySelectsAllItsFieldsAndNestedNamesOnlyThose() {
+		assertThat(FieldSelection.ofProducts("productId,category").getCategoryFields())
+				.containsExactly("categoryId", "categoryTitle", "imageUrl");
+		
+		final FieldSelection nested = FieldSelection.ofProducts("category.categoryTitle,productTitle");
+		assertThat(nested.getProductFields()).containsExactly("productTitle");
+		assertThat(nested.getCategoryFields()).containsExactly("categoryTitle");
+		assertThat(nested.includesCategory()).isTrue();
+	}
+	
+	@Test
+	void unknownFieldsAreRefused() {
+		assertThatThrownBy(() -> FieldSelection.ofProducts("productId,price"))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("'price'");
+		assertThatThrownBy(() -> FieldSelection.ofProducts("category.sku"))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("'category.sku'");
+		assertThatThrownBy(() -> FieldSelection.ofCategories("productTitle"))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+	
+	@Test
+	void emptyNamesAreSkippedButSomeFieldMustBeLeft() {
+		assertThat(FieldSelection.ofProducts("productId,,sku,").getProductFields()).containsExactly("productId", "sku");
+		assertThatThrownBy(() -> FieldSelection.ofProducts(","))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("No field selected");
+		assertThatThrownBy(() -> FieldSelection.ofCategories(" , "))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+	
+	@Test
+	void categoriesMayAddTheirParent() {
+		final FieldSelection selection = FieldSelection.ofCategories("categoryTitle,parentCategory");
+		
+		assertThat(selection.getProductFields()).isEmpty();
+		assertThat(selection.getCategoryFields()).containsExactly("categoryTitle");
+		assertThat(selection.isParentCategory()).isTrue();
+	}
+	
+	@Test
+	void filtersWriteOnlyTheSelectedProperties() throws JsonProcessingException {
+		final ProductDto product = ProductDto.builder()
+				.productId(1)
+				.productTitle("Laptop")
+				.sku("LAP-1")
+				.priceUnit(999.0)
+				.categoryDto(CategoryDto.builder()
+						.categoryId(2)
+						.categoryTitle("Computers")
+						.build())
+				.build();
+		
+		assertThat(this.write(product, FieldSelection.ofProducts("productTitle,category.categoryTitle")))
+				.isEqualTo("{\"productTitle\":\"Laptop\",\"category\":{\"categoryTitle\":\"Computers\"}}");
+		assertThat(this.write(product, FieldSelection.ofProducts("productId,priceUnit")))
+				.isEqualTo("{\"productId\":1,\"priceUnit\":999.0}");
+	}
+	
+	private String write(final Object value, final FieldSelection selection) throws JsonProcessingException {
+		return this.objectMapper.writer(selection.toFilterProvider()).writeValueAsString(value);
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
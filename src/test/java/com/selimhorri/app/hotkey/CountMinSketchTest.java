@@ -0,0 +1,117 @@
+package com.selimhorri.app.hotkey;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class CountMinSketchTest {
+	
+	@Test
+	void widthIsRoundedUpToAPowerOfTwo() {
+		assertThat(new CountMinSketch(1000, 4).getWidth()).isEqualTo(1024);
+		assertThat(new CountMinSketch(1024, 4).getWidth()).isEqualTo(1024);
+		assertThat(new CountMinSketch(1, 1).getWidth()).isEqualTo(1);
+		assertThatThrownBy(() -> new CountMinSketch(1024, 9)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new CountMinSketch(0, 4)).isInstanceOf(IllegalArgumentException.class);
+	}
+	
+	@Test
+	void estimatesNeverUndercountAndOvercountWithinTheBound() {
+		final CountMinSketch sketch = new CountMinSketch(1024, 4);
+		final int keys = 2_000;
+		long total = 0;
+		for (int key = 0; key < keys; key++)
+			for (int i = 0; i <= key % 50; i++, total++)
+				sketch.increment(key);
+		
+		// con probabilidad 1 - e^-depth cada estimación se pasa como mucho en e * total / width
+		final double bound = Math.E * total / sketch.getWidth();
+		int beyondBound = 0;
+		for (int key = 0; key < keys; key++) {
+			final long overcount = sketch.estimate(key) - (key % 50 + 1);
+			assertThat(overcount).isNotNegative();
+			if (overcount > bound)
+				beyondBound++;
+		}
+		assertThat(beyondBound).isLessThan(keys * 5 / 100);
+		assertThat(sketch.estimate(keys + 1)).isLessThanOrEqualTo((long) bound);
+	}
+	
+	@Test
+	void incrementReturnsTheNewEstimate() {
+		final CountMinSketch sketch = new CountMinSketch(1024, 4);
+		
+		assertThat(sketch.increment(42)).isEqualTo(1);
+		assertThat(sketch.increment(42)).isEqualTo(2);
+		assertThat(sketch.estimate(42)).isEqualTo(2);
+		assertThat(sketch.estimate(43)).isZero();
+	}
+	
+	@Test
+	void decayHalvesUntilZero() {
+		final CountMinSketch sketch = new CountMinSketch(1024, 4);
+		for (int i = 0; i < 10; i++)
+			sketch.increment(7);
+		
+		sketch.decay();
+		assertThat(sketch.estimate(7)).isEqualTo(5);
+		sketch.decay();
+		assertThat(sketch.estimate(7)).isEqualTo(2);
+		sketch.decay();
+		sketch.decay();
+		assertThat(sketch.estimate(7)).isZero();
+		
+		sketch.increment(7);
+		sketch.clear();
+		assertThat(sketch.estimate(7)).isZero();
+	}
+	
+	@Test
+	void concurrentIncrementsAreAllCounted() throws Exception {
+		final CountMinSketch sketch = new CountMinSketch(1024, 4);
+		final ExecutorService threads = Executors.newFixedThreadPool(4);
+		try {
+			final CountDownLatch start = new CountDownLatch(1);
+			final List<Future<?>> workers = new ArrayList<>();
+			for (int worker = 0; worker < 4; worker++)
+				workers.add(threads.submit(() -> {
+					start.await();
+					for (int i = 0; i < 25_000; i++)
+						sketch.increment(i % 2);
+					return null;
+				}));
+			start.countDown();
+			for (final Future<?> worker : workers)
+				worker.get(30, TimeUnit.SECONDS);
+		}
+		finally {
+			threads.shutdownNow();
+		}
+		
+		assertThat(sketch.estimate(0)).isGreaterThanOrEqualTo(50_000);
+		assertThat(sketch.estimate(1)).isGreaterThanOrEqualTo(50_000);
+		assertThat(sketch.estimate(0) + sketch.estimate(1)).isEqualTo(100_000);
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
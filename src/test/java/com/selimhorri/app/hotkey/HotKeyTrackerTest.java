@@ -0,0 +1,76 @@
+package com.selimhorri.app.hotkey;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class HotKeyTrackerTest {
+	
+	@Test
+	void topListsTheHottestIdsFirst() {
+		final HotKeyTracker tracker = new HotKeyTracker(1024, 4, 3);
+		for (int id = 1; id <= 6; id++)
+			record(tracker, id, id * 10);
+		
+		assertThat(tracker.top(10)).containsExactly(new HotKey(6, 60), new HotKey(5, 50), new HotKey(4, 40));
+		assertThat(tracker.top(2)).extracting(HotKey::getId).containsExactly(6, 5);
+		assertThat(tracker.frequency(1)).isEqualTo(10);
+	}
+	
+	@Test
+	void idTurningHotAfterManyColdOnesStillEntersTheTop() {
+		final HotKeyTracker tracker = new HotKeyTracker(4096, 4, 5);
+		for (int id = 0; id < 1_000; id++)
+			record(tracker, id, 1 + id % 3);
+		
+		record(tracker, 5_000, 50);
+		
+		assertThat(tracker.top(1)).containsExactly(new HotKey(5_000, 50));
+		assertThat(tracker.top(5)).hasSize(5)
+				.allSatisfy(hotKey -> assertThat(hotKey.getFrequency()).isGreaterThanOrEqualTo(3));
+	}
+	
+	@Test
+	void decayLetsANewFavouriteOvertakeTheOldOne() {
+		final HotKeyTracker tracker = new HotKeyTracker(1024, 4, 3);
+		record(tracker, 1, 100);
+		record(tracker, 2, 1);
+		
+		tracker.decay();
+		assertThat(tracker.top(3)).containsExactly(new HotKey(1, 50));
+		tracker.decay();
+		tracker.decay();
+		record(tracker, 3, 20);
+		
+		assertThat(tracker.top(3)).containsExactly(new HotKey(3, 20), new HotKey(1, 12));
+	}
+	
+	@Test
+	void clearForgetsEverything() {
+		final HotKeyTracker tracker = new HotKeyTracker(1024, 4, 3);
+		record(tracker, 1, 10);
+		
+		tracker.clear();
+		
+		assertThat(tracker.top(3)).isEmpty();
+		assertThat(tracker.frequency(1)).isZero();
+	}
+	
+	private static void record(final HotKeyTracker tracker, final int id, final int times) {
+		for (int i = 0; i < times; i++)
+			tracker.record(id);
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,178 @@
+package com.selimhorri.app.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.selimhorri.app.CatalogFixtures;
+import com.selimhorri.app.CatalogIntegrationTest;
+import com.selimhorri.app.cache.CoalescingCache;
+import com.selimhorri.app.dto.CategoryDto;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.service.CategoryService;
+import com.selimhorri.app.service.ProductService;
+
+@CatalogIntegrationTest
+class CatalogIndexMaintainerTest {
+	
+	private static final Duration TIMEOUT = Duration.ofSeconds(15);
+	
+	@Autowired
+	private CatalogIndexMaintainer catalogIndexMaintainer;
+	
+	@Autowired
+	private ProductService productService;
+	
+	@Autowired
+	private CategoryService categoryService;
+	
+	@Autowired
+	private DataSource dataSource;
+	
+	private CatalogFixtures fixtures;
+	
+	@BeforeEach
+	void setUp() {
+		this.fixtures = new CatalogFixtures(this.categoryService, this.productService);
+	}
+	
+	@Test
+	void builtOnStartWithEveryProductNotDeleted() {
+		final JdbcTemplate jdbcTemplate = new JdbcTemplate(this.dataSource);
+		final var maintainer = new CatalogIndexMaintainer(jdbcTemplate, this.cache(), this.cache(), null);
+		maintainer.start();
+		try {
+			assertThat(maintainer.getIndex().size()).isEqualTo(jdbcTemplate.queryForObject("SELECT COUNT(*) "
+					+ "FROM products p JOIN categories c ON c.category_id = p.category_id "
+					+ "WHERE c.category_title <> 'Deleted'", Integer.class));
+		}
+		finally {
+			maintainer.stop();
+		}
+	}
+	
+	@Test
+	void productChangesAreUpsertedAndRemoved() {
+		final CategoryDto category = this.fixtures.category();
+		final ProductDto product = this.fixtures.product(category, 12.34, 3);
+		awaitEquals(List.of(product.getProductId()), () -> this.search(category, 0));
+		
+		product.setPriceUnit(99.0);
+		this.productService.update(product);
+		awaitEquals(List.of(product.getProductId()), () -> this.search(category, 9_900));
+		
+		this.productService.deleteById(product.getProductId());
+		awaitEquals(List.of(), () -> this.search(category, 0));
+	}
+	
+	@Test
+	void categoryMoveRebuildsTheTree() {
+		final CategoryDto parent = this.fixtures.category();
+		final CategoryDto child = this.fixtures.category(parent);
+		final CategoryDto newParent = this.fixtures.category();
+		final ProductDto product = this.fixtures.product(child, 10, 1);
+		awaitEquals(List.of(product.getProductId()), () -> this.search(parent, 0));
+		
+		this.categoryService.update(child.getCategoryId(), CategoryDto.builder()
+				.categoryTitle(child.getCategoryTitle())
+				.parentCategoryDto(CategoryDto.builder()
+						.categoryId(newParent.getCategoryId())
+						.build())
+				.build());
+		
+		awaitEquals(List.of(product.getProductId()), () -> this.search(newParent, 0));
+		assertThat(this.search(parent, 0)).isEmpty();
+	}
+	
+	@Test
+	void failedUpdateIsRetriedWithoutAnotherChange() {
+		final CategoryDto category = this.fixtures.category();
+		final ProductDto product = this.fixtures.product(category, 10, 1);
+		final JdbcTemplate jdbcTemplate = spy(new JdbcTemplate(this.dataSource));
+		final CoalescingCache<Integer, Object> productCache = this.cache();
+		final var maintainer = new CatalogIndexMaintainer(jdbcTemplate, productCache, this.cache(), null);
+		maintainer.start();
+		try {
+			product.setPriceUnit(20.0);
+			this.productService.update(product);
+			doThrow(new DataAccessResourceFailureException("database down"))
+					.doCallRealMethod()
+					.when(jdbcTemplate).query(startsWith("SELECT p.product_id"), any(RowCallbackHandler.class));
+			productCache.invalidate(product.getProductId());
+			
+			awaitEquals(List.of(product.getProductId()), () -> ids(maintainer.getIndex().search(CatalogQuery.builder()
+					.categoryId(category.getCategoryId())
+					.minPriceCents(2_000)
+					.build())));
+		}
+		finally {
+			maintainer.stop();
+		}
+	}
+	
+	private List<Integer> search(final CategoryDto category, final long minPriceCents) {
+		return ids(this.catalogIndexMaintainer.getIndex().search(CatalogQuery.builder()
+				.categoryId(category.getCategoryId())
+				.minPriceCents(minPriceCents)
+				.limit(CatalogIndex.MAX_LIMIT)
+				.build()));
+	}
+	
+	private <V> CoalescingCache<Integer, V> cache() {
+		return new CoalescingCache<>("test", Duration.ofMinutes(1), Duration.ofMinutes(1), 100, Runnable::run);
+	}
+	
+	private static List<Integer> ids(final CatalogQueryResult result) {
+		return Arrays.stream(result.getProductIds()).boxed().collect(Collectors.toList());
+	}
+	
+	private static <T> void awaitEquals(final T expected, final Supplier<T> actual) {
+		final long deadline = System.nanoTime() + TIMEOUT.toNanos();
+		T last = actual.get();
+		while (!expected.equals(last) && System.nanoTime() < deadline) {
+			sleep();
+			last = actual.get();
+		}
+		assertThat(last).isEqualTo(expected);
+	}
+	
+	private static void sleep() {
+		try {
+			Thread.sleep(50);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
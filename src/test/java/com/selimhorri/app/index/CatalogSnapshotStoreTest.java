@@ -0,0 +1,174 @@
+package com.selimhorri.app.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.selimhorri.app.CatalogFixtures;
+import com.selimhorri.app.CatalogIntegrationTest;
+import com.selimhorri.app.dto.CategoryDto;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.index.CatalogSnapshot.ProductRow;
+import com.selimhorri.app.service.CategoryService;
+import com.selimhorri.app.service.ProductService;
+
+@CatalogIntegrationTest
+class CatalogSnapshotStoreTest {
+	
+	@Autowired
+	private DataSource dataSource;
+	
+	@Autowired
+	private CatalogSnapshotStore applicationStore;
+	
+	@Autowired
+	private ProductService productService;
+	
+	@Autowired
+	private CategoryService categoryService;
+	
+	@TempDir
+	Path directory;
+	
+	private JdbcTemplate jdbcTemplate;
+	private CatalogSnapshotStore store;
+	private CatalogFixtures fixtures;
+	
+	@BeforeEach
+	void setUp() {
+		this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+		this.store = this.store("test-database", Duration.ofHours(1));
+		this.fixtures = new CatalogFixtures(this.categoryService, this.productService);
+	}
+	
+	@Test
+	void startupWritesTheFirstSnapshot() {
+		assertThat(this.applicationStore.current()).isNotNull();
+	}
+	
+	@Test
+	void incrementalSnapshotMergesChangesSoftDeletesAndTheCatchUpMargin() throws IOException {
+		final CategoryDto category = this.fixtures.category();
+		final ProductDto unchanged = this.fixtures.product(category, 10, 1);
+		final ProductDto repriced = this.fixtures.product(category, 10, 1);
+		final ProductDto deleted = this.fixtures.product(category, 10, 1);
+		final ProductDto lateInMargin = this.fixtures.product(category, 10, 1);
+		final ProductDto lateBeyondMargin = this.fixtures.product(category, 10, 1);
+		
+		final CatalogSnapshot full = this.store.write();
+		assertThat(products(full)).containsKeys(unchanged.getProductId(), repriced.getProductId(),
+				deleted.getProductId(), lateInMargin.getProductId(), lateBeyondMargin.getProductId());
+		
+		final ProductDto added = this.fixtures.product(category, 5, 2);
+		this.jdbcTemplate.update("UPDATE products SET price_unit = 99.5, updated_at = CURRENT_TIMESTAMP "
+				+ "WHERE product_id = ?", repriced.getProductId());
+		this.productService.deleteById(deleted.getProductId());
+		// transactions that committed after the watermark, with updated_at taken before it
+		this.jdbcTemplate.update("UPDATE products SET quantity = 7, updated_at = ? WHERE product_id = ?",
+				new Timestamp(full.getWatermark() - 30_000), lateInMargin.getProductId());
+		this.jdbcTemplate.update("UPDATE products SET quantity = 8, updated_at = ? WHERE product_id = ?",
+				new Timestamp(full.getWatermark() - 120_000), lateBeyondMargin.getProductId());
+		
+		final CatalogSnapshot incremental = this.store.write();
+		assertThat(incremental.getVersion()).isGreaterThan(full.getVersion());
+		final Map<Integer, ProductRow> products = products(incremental);
+		assertThat(products.get(unchanged.getProductId())).isEqualTo(products(full).get(unchanged.getProductId()));
+		assertThat(products.get(repriced.getProductId()).getPriceCents()).isEqualTo(9950);
+		assertThat(products).doesNotContainKey(deleted.getProductId());
+		assertThat(products.get(added.getProductId()).getSku()).isEqualTo(added.getSku());
+		assertThat(products.get(lateInMargin.getProductId()).getQuantity()).isEqualTo(7);
+		// beyond the margin it waits for the next full snapshot
+		assertThat(products.get(lateBeyondMargin.getProductId()).getQuantity()).isEqualTo(1);
+	}
+	
+	@Test
+	void fullSnapshotLeavesOutSoftDeletedProducts() throws IOException {
+		final CategoryDto category = this.fixtures.category();
+		final ProductDto live = this.fixtures.product(category, 10, 1);
+		final ProductDto deleted = this.fixtures.product(category, 10, 1);
+		this.productService.deleteById(deleted.getProductId());
+		
+		final Map<Integer, ProductRow> products = products(this.store.write());
+		
+		assertThat(products).containsKey(live.getProductId())
+				.doesNotContainKey(deleted.getProductId());
+	}
+	
+	@Test
+	void snapshotOfAnotherDatabaseIsNotOpened() throws IOException {
+		this.store.start();
+		final CatalogSnapshot written = this.store.write();
+		this.store.stop();
+		
+		final CatalogSnapshotStore other = this.store("other-database", Duration.ofHours(1));
+		other.start();
+		other.stop();
+		assertThat(other.current()).isNull();
+		
+		final CatalogSnapshotStore same = this.store("test-database", Duration.ofHours(1));
+		same.start();
+		same.stop();
+		assertThat(same.current().getVersion()).isEqualTo(written.getVersion());
+		assertThat(same.current().getDatabase()).isEqualTo(CatalogSnapshotStore.fingerprint("test-database"));
+	}
+	
+	@Test
+	void mergesStopOnceTheFullSnapshotIsOlderThanMaxAge() throws Exception {
+		final CategoryDto category = this.fixtures.category();
+		final ProductDto lateBeyondMargin = this.fixtures.product(category, 10, 1);
+		final CatalogSnapshotStore store = this.store("test-database", Duration.ofSeconds(2));
+		
+		final CatalogSnapshot full = store.write();
+		assertThat(full.getFullVersion()).isEqualTo(full.getVersion());
+		this.jdbcTemplate.update("UPDATE products SET quantity = 8, updated_at = ? WHERE product_id = ?",
+				new Timestamp(full.getWatermark() - 120_000), lateBeyondMargin.getProductId());
+		Thread.sleep(1_200);
+		final CatalogSnapshot incremental = store.write();
+		assertThat(incremental.getFullVersion()).isEqualTo(full.getVersion());
+		assertThat(products(incremental).get(lateBeyondMargin.getProductId()).getQuantity()).isEqualTo(1);
+		
+		// the incremental one is still recent, but the chain it belongs to is not
+		Thread.sleep(1_200);
+		assertThat(store.current()).isNotNull();
+		final CatalogSnapshot rewritten = store.write();
+		assertThat(rewritten.getFullVersion()).isEqualTo(rewritten.getVersion());
+		assertThat(products(rewritten).get(lateBeyondMargin.getProductId()).getQuantity()).isEqualTo(8);
+	}
+	
+	private CatalogSnapshotStore store(final String database, final Duration maxAge) {
+		return new CatalogSnapshotStore(this.jdbcTemplate, () -> database, this.directory, Duration.ofHours(1),
+				Duration.ofMinutes(1), maxAge, 2);
+	}
+	
+	private static Map<Integer, ProductRow> products(final CatalogSnapshot snapshot) {
+		final Map<Integer, ProductRow> products = new HashMap<>();
+		snapshot.forEachProduct(product -> products.put(product.getProductId(), product));
+		return products;
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,106 @@
+package com.selimhorri.app.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.selimhorri.app.index.CatalogSnapshot.CategoryRow;
+import com.selimhorri.app.index.CatalogSnapshot.ProductRow;
+
+class CatalogSnapshotTest {
+	
+	private static final CategoryRow ROOT = new CategoryRow(1, null, "Electrónica", "http://img.test/1.png", "/1/");
+	private static final CategoryRow CHILD = new CategoryRow(2, 1, "Portátiles", null, "/1/2/");
+	private static final ProductRow LAPTOP =
+			new ProductRow(10, 2, 129_999, 3, 1_760_000_000_000L, "Portátil 14\" ✓", "http://img.test/10.png", "LAP-10");
+	private static final ProductRow CABLE = new ProductRow(11, 1, 0, 0, 0, "Cable", null, null);
+	
+	@TempDir
+	Path directory;
+	
+	@Test
+	void writtenSnapshotIsReadBackFromTheMappedFile() throws IOException {
+		final Path file = this.directory.resolve("catalog-1.snapshot");
+		try (final CatalogSnapshot.Writer out = CatalogSnapshot.writer(file, 1_760_000_000_500L, 1_760_000_000_000L,
+				1_750_000_000_000L, 42)) {
+			out.category(ROOT);
+			out.category(CHILD);
+			out.product(LAPTOP);
+			out.product(CABLE);
+			out.commit();
+		}
+		
+		final CatalogSnapshot snapshot = CatalogSnapshot.open(file);
+		assertThat(snapshot.getVersion()).isEqualTo(1_760_000_000_500L);
+		assertThat(snapshot.getWatermark()).isEqualTo(1_760_000_000_000L);
+		assertThat(snapshot.getFullVersion()).isEqualTo(1_750_000_000_000L);
+		assertThat(snapshot.getDatabase()).isEqualTo(42);
+		assertThat(snapshot.getCategoryCount()).isEqualTo(2);
+		assertThat(snapshot.getProductCount()).isEqualTo(2);
+		assertThat(snapshot.getSize()).isEqualTo(Files.size(file));
+		
+		final List<CategoryRow> categories = new ArrayList<>();
+		snapshot.forEachCategory(categories::add);
+		assertThat(categories).containsExactly(ROOT, CHILD);
+		final List<ProductRow> products = new ArrayList<>();
+		snapshot.forEachProduct(products::add);
+		assertThat(products).containsExactly(LAPTOP, CABLE);
+		// every iterator starts over
+		assertThat(snapshot.products().next()).isEqualTo(LAPTOP);
+		assertThat(this.directory.resolve("catalog-1.snapshot.tmp")).doesNotExist();
+	}
+	
+	@Test
+	void emptySnapshotHasNoRows() throws IOException {
+		final Path file = this.directory.resolve("catalog-2.snapshot");
+		try (final CatalogSnapshot.Writer out = CatalogSnapshot.writer(file, 2, 1, 2, 42)) {
+			out.commit();
+		}
+		
+		final CatalogSnapshot snapshot = CatalogSnapshot.open(file);
+		assertThat(snapshot.getCategoryCount()).isZero();
+		assertThat(snapshot.products().hasNext()).isFalse();
+	}
+	
+	@Test
+	void uncommittedWriterLeavesNoFile() throws IOException {
+		final Path file = this.directory.resolve("catalog-3.snapshot");
+		try (final CatalogSnapshot.Writer out = CatalogSnapshot.writer(file, 3, 1, 3, 42)) {
+			out.category(ROOT);
+			out.product(LAPTOP);
+			assertThatThrownBy(() -> out.product(LAPTOP)).isInstanceOf(IllegalStateException.class);
+			assertThatThrownBy(() -> out.category(CHILD)).isInstanceOf(IllegalStateException.class);
+		}
+		
+		assertThat(this.directory).isEmptyDirectory();
+	}
+	
+	@Test
+	void otherFilesAreRejected() throws IOException {
+		final Path file = Files.writeString(this.directory.resolve("catalog-4.snapshot"), "not a snapshot, just text");
+		
+		assertThatThrownBy(() -> CatalogSnapshot.open(file)).isInstanceOf(IOException.class)
+				.hasMessageContaining("Not a catalog snapshot");
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
@@ -0,0 +1,223 @@
+package com.selimhorri.app.inventory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.selimhorri.app.CatalogFixtures;
+import com.selimhorri.app.CatalogIntegrationTest;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.exception.wrapper.InsufficientStockException;
+import com.selimhorri.app.exception.wrapper.ProductNotFoundException;
+import com.selimhorri.app.service.CategoryService;
+import com.selimhorri.app.service.ProductService;
+import com.selimhorri.app.service.ProductStockService;
+
+@CatalogIntegrationTest
+class StripedStockTest {
+	
+	@Autowired
+	private ProductStockService productStockService;
+	
+	@Autowired
+	private StripedStock stripedStock;
+	
+	@Autowired
+	private ProductService productService;
+	
+	@Autowired
+	private CategoryService categoryService;
+	
+	@Autowired
+	private DataSource dataSource;
+	
+	private final ExecutorService threads = Executors.newCachedThreadPool();
+	
+	private JdbcTemplate jdbcTemplate;
+	private CatalogFixtures fixtures;
+	
+	@BeforeEach
+	void setUp() {
+		this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+		this.fixtures = new CatalogFixtures(this.categoryService, this.productService);
+	}
+	
+	@AfterEach
+	void tearDown() {
+		this.threads.shutdownNow();
+	}
+	
+	@Test
+	void decrementTakesFromOneStripe() {
+		final Integer productId = this.stripedProduct(40, 4);
+		
+		assertThat(this.productStockService.decrement(productId, 3).getQuantity()).isEqualTo(37);
+		assertThat(this.stripes(productId)).hasSize(4)
+				.containsOnly(10, 7);
+	}
+	
+	@Test
+	void decrementLargerThanAnyStripeTakesFromSeveral() {
+		final Integer productId = this.stripedProduct(40, 4);
+		
+		assertThat(this.productStockService.decrement(productId, 25).getQuantity()).isEqualTo(15);
+		assertThat(this.stripes(productId)).containsExactly(0, 0, 5, 10);
+		assertThatThrownBy(() -> this.productStockService.decrement(productId, 16))
+				.isInstanceOf(InsufficientStockException.class);
+		assertThat(StripedStock.sum(this.stripes(productId))).isEqualTo(15);
+	}
+	
+	@Test
+	void decrementFallsBackToTheProductRowWhenUnstripedElsewhere() {
+		final Integer productId = this.stripedProduct(40, 4);
+		// unstriped by another replica: the stripes are gone, but this one still knows them
+		this.jdbcTemplate.update("DELETE FROM product_stock_stripes WHERE product_id = ?", productId);
+		assertThat(this.stripedStock.stripes(productId)).isEqualTo(4);
+		
+		assertThat(this.productStockService.decrement(productId, 5).getQuantity()).isEqualTo(35);
+		assertThat(this.stripedStock.stripes(productId)).isNull();
+		assertThat(this.quantity(productId)).isEqualTo(35);
+	}
+	
+	@Test
+	void softDeletedStripedProductIsNotDecrementedAndIsUnstriped() {
+		final Integer productId = this.stripedProduct(40, 4);
+		this.productService.deleteById(productId);
+		
+		assertThatThrownBy(() -> this.productStockService.decrement(productId, 1))
+				.isInstanceOf(ProductNotFoundException.class);
+		assertThat(StripedStock.sum(this.stripes(productId))).isEqualTo(40);
+		
+		this.stripedStock.maintain();
+		assertThat(this.stripes(productId)).isEmpty();
+		assertThat(this.stripedStock.stripes(productId)).isNull();
+		assertThat(this.quantity(productId)).isEqualTo(40);
+	}
+	
+	@Test
+	void maintenanceRebalancesSkewedStripesAndPublishesTheTotal() {
+		final Integer productId = this.stripedProduct(40, 4);
+		this.jdbcTemplate.update("UPDATE product_stock_stripes "
+				+ "SET quantity = CASE stripe WHEN 0 THEN 2 WHEN 3 THEN 38 ELSE 0 END WHERE product_id = ?", productId);
+		
+		this.stripedStock.maintain();
+		
+		assertThat(this.stripes(productId)).containsExactly(10, 10, 10, 10);
+		assertThat(this.quantity(productId)).isEqualTo(40);
+		assertThat(this.productService.findById(productId).getQuantity()).isEqualTo(40);
+	}
+	
+	@Test
+	void concurrentDecrementsNeverOversell() throws Exception {
+		final Integer productId = this.stripedProduct(50, 4);
+		final AtomicInteger sold = new AtomicInteger();
+		final AtomicInteger refused = new AtomicInteger();
+		
+		this.concurrently(8, () -> {
+			for (int i = 0; i < 10; i++) {
+				try {
+					this.productStockService.decrement(productId, 1);
+					sold.incrementAndGet();
+				}
+				catch (InsufficientStockException e) {
+					refused.incrementAndGet();
+				}
+			}
+		});
+		
+		assertThat(sold).hasValue(50);
+		assertThat(refused).hasValue(30);
+		assertThat(this.stripes(productId)).containsOnly(0);
+	}
+	
+	@Test
+	void concurrentDecrementsAndRebalancesKeepTheTotal() throws Exception {
+		final Integer productId = this.stripedProduct(400, 4);
+		final AtomicBoolean decrementing = new AtomicBoolean(true);
+		final Future<?> rebalancer = this.threads.submit(() -> {
+			while (decrementing.get()) {
+				this.stripedStock.maintain();
+				Thread.sleep(5);
+			}
+			return null;
+		});
+		
+		try {
+			// distintas cantidades, para que alguna franja quede por debajo de la mitad y se reequilibre
+			this.concurrently(4, () -> {
+				for (int i = 0; i < 25; i++)
+					this.productStockService.decrement(productId, 1 + i % 3);
+			});
+		}
+		finally {
+			decrementing.set(false);
+		}
+		rebalancer.get(30, TimeUnit.SECONDS);
+		
+		final int taken = 4 * (9 * 1 + 8 * 2 + 8 * 3);
+		assertThat(StripedStock.sum(this.stripes(productId))).isEqualTo(400 - taken);
+		this.stripedStock.maintain();
+		assertThat(this.quantity(productId)).isEqualTo(400 - taken);
+	}
+	
+	private Integer stripedProduct(final int quantity, final int stripes) {
+		final ProductDto product = this.fixtures.product(this.fixtures.category(), 10, quantity);
+		this.productStockService.stripe(product.getProductId(), stripes);
+		return product.getProductId();
+	}
+	
+	private List<Integer> stripes(final Integer productId) {
+		return this.jdbcTemplate.queryForList(
+				"SELECT quantity FROM product_stock_stripes WHERE product_id = ? ORDER BY stripe", Integer.class,
+				productId);
+	}
+	
+	private Integer quantity(final Integer productId) {
+		return this.jdbcTemplate.queryForObject("SELECT quantity FROM products WHERE product_id = ?", Integer.class,
+				productId);
+	}
+	
+	private void concurrently(final int workers, final Runnable work) throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Future<?>> running = new ArrayList<>();
+		for (int i = 0; i < workers; i++)
+			running.add(this.threads.submit(() -> {
+				start.await();
+				work.run();
+				return null;
+			}));
+		start.countDown();
+		for (final Future<?> worker : running)
+			worker.get(60, TimeUnit.SECONDS);
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
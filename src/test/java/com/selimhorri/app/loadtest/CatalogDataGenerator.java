@@ -0,0 +1,169 @@
+package com.selimhorri.app.loadtest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.selimhorri.app.repository.ProductCatalogViewRepository;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Fills the {@code categories} and {@code products} tables with a large, reproducible synthetic catalog.
+ *
+ * The category tree has {@code depth} levels with {@code fanout} children per node (capped by
+ * {@code maxCategories}); products are spread over the whole tree with a bias towards leaves, as in a real
+ * storefront. The same seed always produces the same catalog, so two builds can be load tested on identical data.
+ * Works against H2 and MySQL; explicit ids are used so the tree can be built without a round trip per row, taken
+ * past both the existing rows and the blocks already handed out from {@code id_sequences}.
+ */
+@Slf4j
+public class CatalogDataGenerator {
+
+	private static final int BATCH_SIZE = 1_000;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public CatalogDataGenerator(final DataSource dataSource) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	public GeneratedCatalog generate(final int productCount, final int depth, final int fanout,
+			final int maxCategories, final long seed) {
+
+		log.info("*** generating catalog; products={}, depth={}, fanout={}, seed={} *",
+				productCount, depth, fanout, seed);
+		final var random = new Random(seed);
+		final int firstCategoryId = this.nextId("categories", "category_id");
+		final int firstProductId = this.nextId("products", "product_id");
+
+		// Breadth-first: parents are always inserted before their children
+		final List<Object[]> categoryRows = new ArrayList<>();
+		final List<Integer> leaves = new ArrayList<>();
+		final List<Integer> inner = new ArrayList<>();
+		final Map<Integer, String> paths = new HashMap<>();
+		List<Integer> level = new ArrayList<>();
+		level.add(null);
+		int nextCategoryId = firstCategoryId;
+		for (int d = 0; d < depth && nextCategoryId - firstCategoryId < maxCategories; d++) {
+			final List<Integer> children = new ArrayList<>();
+			for (final Integer parentId : level) {
+				for (int f = 0; f < fanout && nextCategoryId - firstCategoryId < maxCategories; f++) {
+					final int categoryId = nextCategoryId++;
+					final String path = (parentId == null ? "/" : paths.get(parentId)) + categoryId + "/";
+					paths.put(categoryId, path);
+					categoryRows.add(new Object[] { categoryId, parentId, "Category " + seed + "-" + categoryId,
+							"https://img.example/c/" + categoryId + ".png", path });
+					children.add(categoryId);
+				}
+			}
+			if (d == depth - 1 || nextCategoryId - firstCategoryId >= maxCategories)
+				leaves.addAll(children);
+			else
+				inner.addAll(children);
+			level = children;
+		}
+		this.jdbcTemplate.batchUpdate(
+				"INSERT INTO categories (category_id, parent_category_id, category_title, image_url, category_path) "
+						+ "VALUES (?, ?, ?, ?, ?)",
+				categoryRows, BATCH_SIZE, (ps, row) -> {
+					ps.setInt(1, (Integer) row[0]);
+					ps.setObject(2, row[1]);
+					ps.setString(3, (String) row[2]);
+					ps.setString(4, (String) row[3]);
+					ps.setString(5, (String) row[4]);
+				});
+
+		// 90% of the products hang from leaves, the rest from inner nodes
+		final int[] productCategory = new int[productCount];
+		final List<Object[]> productRows = new ArrayList<>(BATCH_SIZE);
+		for (int i = 0; i < productCount; i++) {
+			final int productId = firstProductId + i;
+			final List<Integer> pool = inner.isEmpty() || random.nextInt(10) != 0 ? leaves : inner;
+			productCategory[i] = pool.get(random.nextInt(pool.size()));
+			productRows.add(new Object[] { productId, productCategory[i], "Product " + productId,
+					"https://img.example/p/" + productId + ".png", sku(seed, productId),
+					Math.round(random.nextDouble() * 99_999) / 100.0, random.nextInt(500) });
+			if (productRows.size() == BATCH_SIZE || i == productCount - 1) {
+				this.jdbcTemplate.batchUpdate(
+						"INSERT INTO products (product_id, category_id, product_title, image_url, sku, price_unit, quantity) "
+								+ "VALUES (?, ?, ?, ?, ?, ?, ?)",
+						productRows, BATCH_SIZE, (ps, row) -> {
+							ps.setInt(1, (Integer) row[0]);
+							ps.setInt(2, (Integer) row[1]);
+							ps.setString(3, (String) row[2]);
+							ps.setString(4, (String) row[3]);
+							ps.setString(5, (String) row[4]);
+							ps.setDouble(6, (Double) row[5]);
+							ps.setInt(7, (Integer) row[6]);
+						});
+				productRows.clear();
+			}
+		}
+
+		this.jdbcTemplate.update(ProductCatalogViewRepository.INSERT_FROM_PRODUCTS + "WHERE p.product_id >= ?",
+				firstProductId);
+
+		this.advanceSequence("categories", nextCategoryId);
+		this.advanceSequence("products", firstProductId + productCount);
+		log.info("*** catalog generated; categories={}, products={} *", categoryRows.size(), productCount);
+
+		return GeneratedCatalog.builder()
+				.seed(seed)
+				.firstCategoryId(firstCategoryId)
+				.categoryCount(categoryRows.size())
+				.firstProductId(firstProductId)
+				.productCategory(productCategory)
+				.build();
+	}
+
+	public static String sku(final long seed, final int productId) {
+		return "LT-" + seed + "-" + productId;
+	}
+
+	/**
+	 * A running instance may hold a block of ids above the highest row, so start past the sequence as well.
+	 */
+	private int nextId(final String table, final String column) {
+		final Integer max = this.jdbcTemplate.queryForObject(
+				"SELECT MAX(" + column + ") FROM " + table, Integer.class);
+		final Long lastHandedOut = this.jdbcTemplate.queryForObject(
+				"SELECT MAX(last_id) FROM id_sequences WHERE sequence_name = ?", Long.class, table);
+		return (int) Math.max(max == null ? 0 : max, lastHandedOut == null ? 0 : lastHandedOut) + 1;
+	}
+
+	/**
+	 * The rows were inserted with explicit ids, so the entities must be given ids from {@code next} on.
+	 */
+	private void advanceSequence(final String sequenceName, final int next) {
+		this.jdbcTemplate.update("UPDATE id_sequences SET last_id = GREATEST(last_id, ?) WHERE sequence_name = ?",
+				next - 1, sequenceName);
+	}
+
+	@Getter
+	@Builder
+	public static final class GeneratedCatalog {
+
+		private final long seed;
+		private final int firstCategoryId;
+		private final int categoryCount;
+		private final int firstProductId;
+		private final int[] productCategory;
+
+		public int productCount() {
+			return this.productCategory.length;
+		}
+
+	}
+
+
+
+}
@@ -0,0 +1,372 @@
+package com.selimhorri.app.loadtest;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.selimhorri.app.ProductServiceApplication;
+import com.selimhorri.app.loadtest.CatalogDataGenerator.GeneratedCatalog;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Self-contained load driver: boots product-service in-process, seeds it with {@link CatalogDataGenerator} and
+ * replays a weighted mix of {@code ProductResource}/{@code CategoryResource} calls from a fixed number of
+ * closed-loop workers. Latency percentiles, throughput and errors per operation are written as JSON so reports
+ * of two builds can be diffed.
+ *
+ * <pre>
+ * mvn -B -P load-test test-compile exec:java -Dloadtest.products=100000 -Dloadtest.concurrency=64
+ * </pre>
+ *
+ * Every knob is a {@code loadtest.*} system property (see {@link #main(String[])}); any other system property,
+ * e.g. {@code spring.datasource.url}, is handed to the application, so the same run can target a local MySQL.
+ */
+@Slf4j
+public final class LoadTestDriver {
+
+	enum Operation {
+
+		PRODUCT_LIST("product-list"),
+		PRODUCT_GET("product-get"),
+		PRODUCT_UPDATE("product-update"),
+		CATEGORY_LIST("category-list"),
+		CATEGORY_GET("category-get");
+
+		private final String key;
+
+		Operation(final String key) {
+			this.key = key;
+		}
+
+		static Operation of(final String key) {
+			return Arrays.stream(values())
+					.filter(operation -> operation.key.equals(key.trim()))
+					.findFirst()
+					.orElseThrow(() -> new IllegalArgumentException("Unknown load test operation: " + key));
+		}
+
+	}
+
+	private static final String DEFAULT_MIX = "product-get=70,category-get=15,category-list=5,product-update=8,product-list=2";
+
+	private final HttpClient httpClient;
+	private final String baseUrl;
+	private final GeneratedCatalog catalog;
+	private final Operation[] schedule;
+	private final ZipfSampler productSampler;
+
+	/**
+	 * Query string appended to the product reads, e.g. {@code ?fields=productId,productTitle}; empty for none.
+	 */
+	private final String productQuery;
+
+	private LoadTestDriver(final HttpClient httpClient, final String baseUrl, final GeneratedCatalog catalog,
+			final Operation[] schedule, final double skew, final String productFields) {
+		this.httpClient = httpClient;
+		this.baseUrl = baseUrl;
+		this.catalog = catalog;
+		this.schedule = schedule;
+		this.productSampler = new ZipfSampler(catalog.productCount(), skew);
+		this.productQuery = productFields.isBlank() ? "" : "?fields=" + productFields;
+	}
+
+	public static void main(final String[] args) throws Exception {
+
+		final int products = Integer.getInteger("loadtest.products", 10_000);
+		final int depth = Integer.getInteger("loadtest.depth", 5);
+		final int fanout = Integer.getInteger("loadtest.fanout", 6);
+		final int maxCategories = Integer.getInteger("loadtest.max-categories", 2_000);
+		final long seed = Long.getLong("loadtest.seed", 42L);
+		final int concurrency = Integer.getInteger("loadtest.concurrency", 32);
+		final int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 10);
+		final int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 60);
+		final double skew = Double.parseDouble(System.getProperty("loadtest.skew", "1.0"));
+		final String mix = System.getProperty("loadtest.mix", DEFAULT_MIX);
+		final String productFields = System.getProperty("loadtest.product-fields", "");
+		final File output = new File(System.getProperty("loadtest.output", "target/loadtest/report.json"));
+
+		// Passed as arguments so they win over the profile files (e.g. the fixed port of application-dev.yml)
+		final List<String> arguments = new ArrayList<>(List.of(
+				"--server.port=0",
+				"--eureka.client.enabled=false",
+				"--spring.zipkin.enabled=false",
+				"--spring.jpa.show-sql=false",
+				"--logging.level.root=WARN",
+				"--logging.level.org.hibernate=WARN",
+				"--logging.level.org.hibernate.SQL=WARN",
+				"--logging.level.org.springframework=WARN",
+				"--logging.level.org.springframework.web=WARN",
+				"--logging.level.org.springframework.data=WARN",
+				"--logging.level.com.selimhorri.app.loadtest=INFO"));
+		arguments.addAll(List.of(args));
+		final ConfigurableApplicationContext context = new SpringApplicationBuilder(ProductServiceApplication.class)
+				.run(arguments.toArray(String[]::new));
+		final ExecutorService httpExecutor = Executors.newFixedThreadPool(Math.max(2, concurrency / 4));
+		try {
+			final int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+			final String contextPath = context.getEnvironment().getProperty("server.servlet.context-path", "");
+			final GeneratedCatalog catalog = new CatalogDataGenerator(context.getBean(DataSource.class))
+					.generate(products, depth, fanout, maxCategories, seed);
+
+			final var driver = new LoadTestDriver(
+					HttpClient.newBuilder()
+							.connectTimeout(Duration.ofSeconds(5))
+							.executor(httpExecutor)
+							.build(),
+					"http://localhost:" + port + contextPath,
+					catalog,
+					schedule(mix),
+					skew,
+					productFields);
+
+			log.info("*** warming up for {}s *", warmupSeconds);
+			driver.run(concurrency, warmupSeconds, seed);
+			log.info("*** measuring for {}s at concurrency {} *", durationSeconds, concurrency);
+			final Instant startedAt = Instant.now();
+			final Map<Operation, Stats> stats = driver.run(concurrency, durationSeconds, seed + 1);
+
+			final Map<String, Object> config = new LinkedHashMap<>();
+			config.put("products", products);
+			config.put("categories", catalog.getCategoryCount());
+			config.put("depth", depth);
+			config.put("fanout", fanout);
+			config.put("seed", seed);
+			config.put("concurrency", concurrency);
+			config.put("warmupSeconds", warmupSeconds);
+			config.put("durationSeconds", durationSeconds);
+			config.put("skew", skew);
+			config.put("mix", mix);
+			config.put("productFields", productFields);
+			config.put("profiles", context.getEnvironment().getActiveProfiles());
+
+			final Map<String, Object> report = new LinkedHashMap<>();
+			report.put("startedAt", startedAt.toString());
+			report.put("config", config);
+			report.put("totals", Stats.merge(stats.values()).toReport(durationSeconds));
+			final Map<String, Object> operations = new LinkedHashMap<>();
+			stats.forEach((operation, operationStats) ->
+					operations.put(operation.key, operationStats.toReport(durationSeconds)));
+			report.put("operations", operations);
+
+			final ObjectMapper objectMapper = new JsonMapper().enable(SerializationFeature.INDENT_OUTPUT);
+			output.getAbsoluteFile().getParentFile().mkdirs();
+			objectMapper.writeValue(output, report);
+			System.out.println(objectMapper.writeValueAsString(report));
+			log.info("*** report written to {} *", output.getAbsolutePath());
+		}
+		finally {
+			httpExecutor.shutdownNow();
+			context.close();
+		}
+	}
+
+	/**
+	 * Expands {@code op=weight,...} into a 100-slot schedule that workers index with a random number.
+	 */
+	static Operation[] schedule(final String mix) {
+		final Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+		for (final String entry : mix.split(",")) {
+			final String[] pair = entry.split("=");
+			weights.put(Operation.of(pair[0]), Integer.parseInt(pair[1].trim()));
+		}
+		final int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+		final List<Operation> slots = new ArrayList<>();
+		weights.forEach((operation, weight) -> {
+			for (int i = 0; i < Math.max(1, Math.round(weight * 100f / total)); i++)
+				slots.add(operation);
+		});
+		return slots.toArray(Operation[]::new);
+	}
+
+	private Map<Operation, Stats> run(final int concurrency, final int seconds, final long seed) throws Exception {
+
+		final ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		final List<Future<Map<Operation, Stats>>> futures = new ArrayList<>();
+		for (int w = 0; w < concurrency; w++) {
+			final var random = new Random(seed * 31 + w);
+			futures.add(workers.submit(() -> {
+				final Map<Operation, Stats> local = new EnumMap<>(Operation.class);
+				while (System.nanoTime() < deadline) {
+					final Operation operation = this.schedule[random.nextInt(this.schedule.length)];
+					final HttpRequest request = this.request(operation, random);
+					final long start = System.nanoTime();
+					final Stats stats = local.computeIfAbsent(operation, key -> new Stats());
+					try {
+						final HttpResponse<byte[]> response = this.httpClient.send(request,
+								HttpResponse.BodyHandlers.ofByteArray());
+						if (response.statusCode() / 100 == 2)
+							stats.success(System.nanoTime() - start, response.body().length);
+						else
+							stats.error(String.valueOf(response.statusCode()));
+					}
+					catch (Exception e) {
+						stats.error(e.getClass().getSimpleName());
+					}
+				}
+				return local;
+			}));
+		}
+
+		final Map<Operation, Stats> merged = new EnumMap<>(Operation.class);
+		for (final Future<Map<Operation, Stats>> future : futures)
+			future.get().forEach((operation, stats) ->
+					merged.computeIfAbsent(operation, key -> new Stats()).add(stats));
+		workers.shutdown();
+		return merged;
+	}
+
+	private HttpRequest request(final Operation operation, final Random random) {
+
+		final int index = this.productSampler.sample(random);
+		final int productId = this.catalog.getFirstProductId() + index;
+		switch (operation) {
+			case PRODUCT_LIST:
+				return get("/api/products" + this.productQuery);
+			case PRODUCT_GET:
+				return get("/api/products/" + productId + this.productQuery);
+			case CATEGORY_LIST:
+				return get("/api/categories");
+			case CATEGORY_GET:
+				return get("/api/categories/"
+						+ (this.catalog.getFirstCategoryId() + random.nextInt(this.catalog.getCategoryCount())));
+			case PRODUCT_UPDATE:
+				final String body = String.format(Locale.ROOT,
+						"{\"productTitle\":\"Product %d\",\"imageUrl\":\"https://img.example/p/%d.png\","
+								+ "\"sku\":\"%s\",\"priceUnit\":%.2f,\"quantity\":%d,\"category\":{\"categoryId\":%d}}",
+						productId, productId, CatalogDataGenerator.sku(this.catalog.getSeed(), productId),
+						Math.round(random.nextDouble() * 99_999) / 100.0, random.nextInt(500),
+						this.catalog.getProductCategory()[index]);
+				return HttpRequest.newBuilder(URI.create(this.baseUrl + "/api/products/" + productId))
+						.timeout(Duration.ofSeconds(30))
+						.header("Content-Type", "application/json")
+						.PUT(HttpRequest.BodyPublishers.ofString(body))
+						.build();
+			default:
+				throw new IllegalStateException("Unhandled operation " + operation);
+		}
+	}
+
+	private HttpRequest get(final String path) {
+		return HttpRequest.newBuilder(URI.create(this.baseUrl + path))
+				.timeout(Duration.ofSeconds(30))
+				.GET()
+				.build();
+	}
+
+	/**
+	 * Latency histogram (microseconds, 3 significant digits) plus error and payload counters.
+	 */
+	static final class Stats {
+
+		private final Histogram histogram = new Histogram(TimeUnit.MINUTES.toMicros(1), 3);
+		private final Map<String, Long> errorsByCause = new TreeMap<>();
+		private long errors;
+		private long bytes;
+
+		void success(final long nanos, final int responseBytes) {
+			this.histogram.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos),
+					this.histogram.getHighestTrackableValue()));
+			this.bytes += responseBytes;
+		}
+
+		void error(final String cause) {
+			this.errors++;
+			this.errorsByCause.merge(cause, 1L, Long::sum);
+		}
+
+		void add(final Stats other) {
+			this.histogram.add(other.histogram);
+			this.errors += other.errors;
+			this.bytes += other.bytes;
+			other.errorsByCause.forEach((cause, count) -> this.errorsByCause.merge(cause, count, Long::sum));
+		}
+
+		static Stats merge(final Iterable<Stats> all) {
+			final var merged = new Stats();
+			all.forEach(merged::add);
+			return merged;
+		}
+
+		Map<String, Object> toReport(final int seconds) {
+			final long successes = this.histogram.getTotalCount();
+			final Map<String, Object> latency = new LinkedHashMap<>();
+			latency.put("p50", millis(this.histogram.getValueAtPercentile(50)));
+			latency.put("p95", millis(this.histogram.getValueAtPercentile(95)));
+			latency.put("p99", millis(this.histogram.getValueAtPercentile(99)));
+			latency.put("max", millis(this.histogram.getMaxValue()));
+			latency.put("mean", Math.round(this.histogram.getMean()) / 1000.0);
+
+			final Map<String, Object> report = new LinkedHashMap<>();
+			report.put("requests", successes + this.errors);
+			report.put("errors", this.errors);
+			report.put("errorsByCause", this.errorsByCause);
+			report.put("throughputPerSecond", Math.round((successes + this.errors) * 10.0 / seconds) / 10.0);
+			report.put("latencyMillis", latency);
+			report.put("meanResponseBytes", successes == 0 ? 0 : this.bytes / successes);
+			return report;
+		}
+
+		private static double millis(final long micros) {
+			return micros / 1000.0;
+		}
+
+	}
+
+	/**
+	 * Picks product indexes with a Zipf distribution so a few products are hot, as during a sale;
+	 * a skew of 0 is uniform.
+	 */
+	static final class ZipfSampler {
+
+		private final double[] cumulative;
+
+		ZipfSampler(final int size, final double skew) {
+			this.cumulative = new double[size];
+			double sum = 0;
+			for (int i = 0; i < size; i++) {
+				sum += 1.0 / Math.pow(i + 1, skew);
+				this.cumulative[i] = sum;
+			}
+			for (int i = 0; i < size; i++)
+				this.cumulative[i] /= sum;
+		}
+
+		int sample(final Random random) {
+			final int index = Arrays.binarySearch(this.cumulative, random.nextDouble());
+			return Math.min(index >= 0 ? index : -index - 1, this.cumulative.length - 1);
+		}
+
+	}
+
+
+
+}
@@ -0,0 +1,206 @@
+package com.selimhorri.app.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import com.selimhorri.app.CatalogFixtures;
+import com.selimhorri.app.CatalogIntegrationTest;
+import com.selimhorri.app.dto.CategoryDto;
+import com.selimhorri.app.dto.ProductBulkOperationDto;
+import com.selimhorri.app.dto.ProductBulkOperationDto.Operation;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.dto.projection.FieldSelection;
+import com.selimhorri.app.service.CategoryService;
+import com.selimhorri.app.service.ProductService;
+
+@CatalogIntegrationTest
+class ProductCatalogViewRepositoryTest {
+	
+	@Autowired
+	private ProductService productService;
+	
+	@Autowired
+	private CategoryService categoryService;
+	
+	@Autowired
+	private DataSource dataSource;
+	
+	private NamedParameterJdbcTemplate jdbcTemplate;
+	private CatalogFixtures fixtures;
+	
+	@BeforeEach
+	void setUp() {
+		this.jdbcTemplate = new NamedParameterJdbcTemplate(this.dataSource);
+		this.fixtures = new CatalogFixtures(this.categoryService, this.productService);
+	}
+	
+	@Test
+	void viewFollowsSingleWrites() {
+		final CategoryDto category = this.fixtures.category();
+		final CategoryDto other = this.fixtures.category();
+		final ProductDto product = this.fixtures.product(category, 10, 4);
+		this.assertViewMatchesProducts(product);
+		
+		this.productService.update(product.getProductId(), ProductDto.builder()
+				.productTitle(product.getProductTitle() + " (updated)")
+				.imageUrl(product.getImageUrl())
+				.sku(product.getSku())
+				.priceUnit(11.5)
+				.quantity(3)
+				.categoryDto(CategoryDto.builder()
+						.categoryId(other.getCategoryId())
+						.build())
+				.build());
+		this.assertViewMatchesProducts(product);
+		
+		this.productService.deleteById(product.getProductId());
+		this.assertViewMatchesProducts(product);
+	}
+	
+	@Test
+	void viewFollowsBulkUpdates() {
+		final CategoryDto category = this.fixtures.category();
+		final CategoryDto subcategory = this.fixtures.category(category);
+		final CategoryDto target = this.fixtures.category();
+		final ProductDto direct = this.fixtures.product(category, 10, 1);
+		final ProductDto nested = this.fixtures.product(subcategory, 20, 1);
+		final ProductDto[] products = { direct, nested };
+		
+		this.productService.bulkUpdate(ProductBulkOperationDto.builder()
+				.operation(Operation.REPRICE_PERCENT)
+				.categoryId(category.getCategoryId())
+				.includeSubcategories(true)
+				.value(10.0)
+				.build());
+		this.assertViewMatchesProducts(products);
+		
+		this.productService.bulkUpdate(ProductBulkOperationDto.builder()
+				.operation(Operation.REPRICE_ABSOLUTE)
+				.productIds(List.of(nested.getProductId()))
+				.value(-1.0)
+				.build());
+		this.assertViewMatchesProducts(products);
+		
+		this.productService.bulkUpdate(ProductBulkOperationDto.builder()
+				.operation(Operation.RECATEGORIZE)
+				.categoryId(subcategory.getCategoryId())
+				.targetCategoryId(target.getCategoryId())
+				.build());
+		this.assertViewMatchesProducts(products);
+		
+		this.productService.bulkUpdate(ProductBulkOperationDto.builder()
+				.operation(Operation.SOFT_DELETE)
+				.categoryId(category.getCategoryId())
+				.build());
+		this.assertViewMatchesProducts(products);
+	}
+	
+	@Test
+	void viewFollowsCategoryRenamesAndMoves() {
+		final CategoryDto parent = this.fixtures.category();
+		final CategoryDto child = this.fixtures.category(parent);
+		final CategoryDto grandchild = this.fixtures.category(child);
+		final CategoryDto newParent = this.fixtures.category();
+		final ProductDto[] products = { this.fixtures.product(parent, 10, 1), this.fixtures.product(child, 10, 1),
+				this.fixtures.product(grandchild, 10, 1) };
+		
+		this.categoryService.update(parent.getCategoryId(), CategoryDto.builder()
+				.categoryTitle(parent.getCategoryTitle() + " (renamed)")
+				.imageUrl("http://img.test/renamed.png")
+				.build());
+		this.assertViewMatchesProducts(products);
+		
+		// the path prefix of the whole subtree is rewritten
+		this.categoryService.update(child.getCategoryId(), CategoryDto.builder()
+				.categoryTitle(child.getCategoryTitle())
+				.parentCategoryDto(CategoryDto.builder()
+						.categoryId(newParent.getCategoryId())
+						.build())
+				.build());
+		this.assertViewMatchesProducts(products);
+		assertThat(this.productService.findAllByCategorySubtree(newParent.getCategoryId())).hasSize(2);
+		
+		this.categoryService.deleteById(child.getCategoryId());
+		this.assertViewMatchesProducts(products);
+	}
+	
+	@Test
+	void projectionReadsOnlyTheSelectedFields() {
+		final CategoryDto category = this.fixtures.category();
+		final CategoryDto subcategory = this.fixtures.category(category);
+		final ProductDto product = this.fixtures.product(subcategory, 12.5, 3);
+		
+		final List<ProductDto> projected = this.productService.findAllByCategorySubtree(category.getCategoryId(),
+				FieldSelection.ofProducts("sku,priceUnit,category.categoryTitle"));
+		
+		assertThat(projected).singleElement()
+				.satisfies(dto -> {
+					assertThat(dto.getSku()).isEqualTo(product.getSku());
+					assertThat(dto.getPriceUnit()).isEqualTo(12.5);
+					assertThat(dto.getProductId()).isNull();
+					assertThat(dto.getProductTitle()).isNull();
+					assertThat(dto.getQuantity()).isNull();
+					assertThat(dto.getCategoryDto().getCategoryTitle()).isEqualTo(subcategory.getCategoryTitle());
+					assertThat(dto.getCategoryDto().getCategoryId()).isNull();
+				});
+	}
+	
+	@Test
+	void projectionWithoutCategoryFieldsHasNoCategory() {
+		final CategoryDto category = this.fixtures.category();
+		final ProductDto product = this.fixtures.product(category, 5, 1);
+		
+		final List<ProductDto> projected = this.productService.findAll(FieldSelection.ofProducts("productId"));
+		
+		assertThat(projected).contains(ProductDto.builder()
+				.productId(product.getProductId())
+				.build());
+		assertThat(projected).allSatisfy(dto -> assertThat(dto.getCategoryDto()).isNull());
+	}
+	
+	/**
+	 * The view rows of the products are what the view would be built from {@code products} and {@code categories}.
+	 */
+	private void assertViewMatchesProducts(final ProductDto... products) {
+		final Map<String, ?> ids = Map.of("productIds", Arrays.stream(products)
+				.map(ProductDto::getProductId)
+				.collect(Collectors.toList()));
+		final List<Map<String, Object>> expected = this.jdbcTemplate.queryForList(
+				"SELECT p.product_id, p.product_title, p.image_url, p.sku, p.price_unit, p.quantity, "
+						+ "c.category_id, c.category_title, c.image_url AS category_image_url, c.category_path, "
+						+ "CASE WHEN c.category_title = 'Deleted' THEN TRUE ELSE FALSE END AS deleted "
+						+ "FROM products p JOIN categories c ON c.category_id = p.category_id "
+						+ "WHERE p.product_id IN (:productIds) ORDER BY p.product_id", ids);
+		final List<Map<String, Object>> actual = this.jdbcTemplate.queryForList(
+				"SELECT product_id, product_title, image_url, sku, price_unit, quantity, category_id, category_title, "
+						+ "category_image_url, category_path, deleted FROM product_catalog_view "
+						+ "WHERE product_id IN (:productIds) ORDER BY product_id", ids);
+		
+		assertThat(actual).hasSize(products.length)
+				.isEqualTo(expected);
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
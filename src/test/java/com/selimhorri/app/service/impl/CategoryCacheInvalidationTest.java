@@ -0,0 +1,83 @@
+package com.selimhorri.app.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.selimhorri.app.CatalogFixtures;
+import com.selimhorri.app.CatalogIntegrationTest;
+import com.selimhorri.app.dto.CategoryDto;
+import com.selimhorri.app.service.CategoryService;
+import com.selimhorri.app.service.ProductService;
+
+/**
+ * Category DTOs embed their parent: a change of one category must not leave its children cached with the old one.
+ */
+@CatalogIntegrationTest
+class CategoryCacheInvalidationTest {
+	
+	@Autowired
+	private CategoryService categoryService;
+	
+	@Autowired
+	private ProductService productService;
+	
+	private CatalogFixtures fixtures;
+	
+	@BeforeEach
+	void setUp() {
+		this.fixtures = new CatalogFixtures(this.categoryService, this.productService);
+	}
+	
+	@Test
+	void renamedParentIsSeenThroughCachedChild() {
+		final CategoryDto parent = this.fixtures.category();
+		final CategoryDto child = this.fixtures.category(parent);
+		assertThat(this.categoryService.findById(child.getCategoryId()).getParentCategoryDto().getCategoryTitle())
+				.isEqualTo(parent.getCategoryTitle());
+		
+		this.categoryService.update(parent.getCategoryId(), CategoryDto.builder()
+				.categoryTitle(parent.getCategoryTitle() + " (renamed)")
+				.build());
+		
+		assertThat(this.categoryService.findById(child.getCategoryId()).getParentCategoryDto().getCategoryTitle())
+				.isEqualTo(parent.getCategoryTitle() + " (renamed)");
+	}
+	
+	@Test
+	void movedCategoryIsSeenThroughCachedChild() {
+		final CategoryDto parent = this.fixtures.category();
+		final CategoryDto child = this.fixtures.category(parent);
+		final CategoryDto grandchild = this.fixtures.category(child);
+		final CategoryDto newParent = this.fixtures.category();
+		this.categoryService.findById(child.getCategoryId());
+		this.categoryService.findById(grandchild.getCategoryId());
+		
+		this.categoryService.update(child.getCategoryId(), CategoryDto.builder()
+				.categoryTitle(child.getCategoryTitle() + " (moved)")
+				.parentCategoryDto(CategoryDto.builder()
+						.categoryId(newParent.getCategoryId())
+						.build())
+				.build());
+		
+		assertThat(this.categoryService.findById(child.getCategoryId()).getParentCategoryDto().getCategoryId())
+				.isEqualTo(newParent.getCategoryId());
+		assertThat(this.categoryService.findById(grandchild.getCategoryId()).getParentCategoryDto().getCategoryTitle())
+				.isEqualTo(child.getCategoryTitle() + " (moved)");
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
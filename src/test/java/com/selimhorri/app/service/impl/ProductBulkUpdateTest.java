@@ -0,0 +1,223 @@
+package com.selimhorri.app.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.selimhorri.app.CatalogFixtures;
+import com.selimhorri.app.CatalogIntegrationTest;
+import com.selimhorri.app.dto.CatalogAuditDto;
+import com.selimhorri.app.dto.CategoryDto;
+import com.selimhorri.app.dto.ProductBulkOperationDto;
+import com.selimhorri.app.dto.ProductBulkOperationDto.Operation;
+import com.selimhorri.app.dto.ProductBulkResultDto;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.exception.wrapper.ProductNotFoundException;
+import com.selimhorri.app.service.CategoryService;
+import com.selimhorri.app.service.ProductService;
+
+@CatalogIntegrationTest
+class ProductBulkUpdateTest {
+	
+	@Autowired
+	private ProductService productService;
+	
+	@Autowired
+	private CategoryService categoryService;
+	
+	private CatalogFixtures fixtures;
+	
+	@BeforeEach
+	void setUp() {
+		this.fixtures = new CatalogFixtures(this.categoryService, this.productService);
+	}
+	
+	@Test
+	void categoryFilterRecordsEveryProductChangedInItsHistory() {
+		final CategoryDto category = this.fixtures.category();
+		final CategoryDto subcategory = this.fixtures.category(category);
+		final ProductDto direct = this.fixtures.product(category, 10, 1);
+		final ProductDto nested = this.fixtures.product(subcategory, 20, 1);
+		final ProductDto deleted = this.fixtures.product(category, 30, 1);
+		this.productService.deleteById(deleted.getProductId());
+		
+		this.productService.bulkUpdate(ProductBulkOperationDto.builder()
+				.operation(Operation.REPRICE_ABSOLUTE)
+				.categoryId(category.getCategoryId())
+				.includeSubcategories(true)
+				.value(1.0)
+				.build());
+		
+		assertThat(this.bulkEntries(direct)).hasSize(1);
+		assertThat(this.bulkEntries(nested)).hasSize(1)
+				.first()
+				.satisfies(entry -> {
+					assertThat(entry.getField()).isEqualTo("priceUnit");
+					assertThat(entry.getOldValue()).isEqualTo("20.0");
+					assertThat(entry.getNewValue()).isEqualTo("21.0");
+				});
+		assertThat(this.bulkEntries(deleted)).isEmpty();
+	}
+	
+	@Test
+	void idFilterRecordsOnlyTheProductsChanged() {
+		final CategoryDto category = this.fixtures.category();
+		final ProductDto live = this.fixtures.product(category, 10, 1);
+		final ProductDto deleted = this.fixtures.product(category, 10, 1);
+		this.productService.deleteById(deleted.getProductId());
+		final int missingId = Integer.MAX_VALUE;
+		
+		this.productService.bulkUpdate(ProductBulkOperationDto.builder()
+				.operation(Operation.REPRICE_PERCENT)
+				.productIds(List.of(live.getProductId(), deleted.getProductId(), missingId))
+				.value(10.0)
+				.build());
+		
+		assertThat(this.bulkEntries(live)).hasSize(1)
+				.first()
+				.satisfies(entry -> {
+					assertThat(entry.getOldValue()).isEqualTo("10.0");
+					assertThat(entry.getNewValue()).isEqualTo("11.0");
+				});
+		assertThat(this.bulkEntries(deleted)).isEmpty();
+		assertThat(this.productService.findHistory(missingId, null, 20)).isEmpty();
+	}
+	
+	@Test
+	void repriceLeavingThePriceRangeIsRefusedAsAWhole() {
+		final CategoryDto category = this.fixtures.category();
+		final ProductDto cheap = this.fixtures.product(category, 10, 1);
+		final ProductDto dear = this.fixtures.product(category, 20, 1);
+		
+		assertThatThrownBy(() -> this.productService.bulkUpdate(ProductBulkOperationDto.builder()
+				.operation(Operation.REPRICE_ABSOLUTE)
+				.categoryId(category.getCategoryId())
+				.value(-15.0)
+				.build()))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageStartingWith("1 productos");
+		assertThatThrownBy(() -> this.productService.bulkUpdate(ProductBulkOperationDto.builder()
+				.operation(Operation.REPRICE_PERCENT)
+				.productIds(List.of(cheap.getProductId(), dear.getProductId()))
+				.value(1_000_000.0)
+				.build()))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageStartingWith("2 productos");
+		
+		assertThat(this.productService.findById(cheap.getProductId()).getPriceUnit()).isEqualTo(10);
+		assertThat(this.productService.findById(dear.getProductId()).getPriceUnit()).isEqualTo(20);
+		assertThat(this.bulkEntries(cheap)).isEmpty();
+	}
+	
+	@Test
+	void productsAreChosenEitherByIdOrByCategory() {
+		final CategoryDto category = this.fixtures.category();
+		final ProductDto product = this.fixtures.product(category, 10, 1);
+		
+		assertThatThrownBy(() -> this.productService.bulkUpdate(ProductBulkOperationDto.builder()
+				.operation(Operation.REPRICE_ABSOLUTE)
+				.productIds(List.of(product.getProductId()))
+				.categoryId(category.getCategoryId())
+				.value(1.0)
+				.build()))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> this.productService.bulkUpdate(ProductBulkOperationDto.builder()
+				.operation(Operation.REPRICE_ABSOLUTE)
+				.productIds(List.of())
+				.value(1.0)
+				.build()))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+	
+	@Test
+	void categoryFilterTakesTheSubtreeOnlyWhenAsked() {
+		final CategoryDto category = this.fixtures.category();
+		final CategoryDto subcategory = this.fixtures.category(category);
+		final ProductDto direct = this.fixtures.product(category, 10, 1);
+		final ProductDto nested = this.fixtures.product(subcategory, 10, 1);
+		
+		final ProductBulkResultDto categoryOnly = this.productService.bulkUpdate(ProductBulkOperationDto.builder()
+				.operation(Operation.REPRICE_PERCENT)
+				.categoryId(category.getCategoryId())
+				.value(50.0)
+				.build());
+		
+		assertThat(categoryOnly.getAffectedProducts()).isEqualTo(1);
+		assertThat(this.productService.findById(direct.getProductId()).getPriceUnit()).isEqualTo(15);
+		assertThat(this.productService.findById(nested.getProductId()).getPriceUnit()).isEqualTo(10);
+		
+		final ProductBulkResultDto subtree = this.productService.bulkUpdate(ProductBulkOperationDto.builder()
+				.operation(Operation.REPRICE_PERCENT)
+				.categoryId(category.getCategoryId())
+				.includeSubcategories(true)
+				.value(-10.0)
+				.build());
+		
+		assertThat(subtree.getAffectedProducts()).isEqualTo(2);
+		assertThat(this.productService.findById(direct.getProductId()).getPriceUnit()).isEqualTo(13.5);
+		assertThat(this.productService.findById(nested.getProductId()).getPriceUnit()).isEqualTo(9);
+	}
+	
+	@Test
+	void affectedCountLeavesOutMissingDuplicatedAndDeletedProducts() {
+		final CategoryDto category = this.fixtures.category();
+		final CategoryDto target = this.fixtures.category();
+		final ProductDto first = this.fixtures.product(category, 10, 1);
+		final ProductDto second = this.fixtures.product(category, 10, 1);
+		final ProductDto deleted = this.fixtures.product(category, 10, 1);
+		this.productService.deleteById(deleted.getProductId());
+		
+		final ProductBulkResultDto moved = this.productService.bulkUpdate(ProductBulkOperationDto.builder()
+				.operation(Operation.RECATEGORIZE)
+				.productIds(List.of(first.getProductId(), first.getProductId(), deleted.getProductId(),
+						Integer.MAX_VALUE))
+				.targetCategoryId(target.getCategoryId())
+				.build());
+		
+		assertThat(moved.getOperation()).isEqualTo(Operation.RECATEGORIZE);
+		assertThat(moved.getAffectedProducts()).isEqualTo(1);
+		assertThat(this.productService.findById(first.getProductId()).getCategoryDto().getCategoryId())
+				.isEqualTo(target.getCategoryId());
+		assertThat(this.bulkEntries(first)).hasSize(1)
+				.first()
+				.satisfies(entry -> {
+					assertThat(entry.getOldValue()).isEqualTo(String.valueOf(category.getCategoryId()));
+					assertThat(entry.getNewValue()).isEqualTo(String.valueOf(target.getCategoryId()));
+				});
+		
+		final ProductBulkResultDto softDeleted = this.productService.bulkUpdate(ProductBulkOperationDto.builder()
+				.operation(Operation.SOFT_DELETE)
+				.categoryId(category.getCategoryId())
+				.build());
+		
+		assertThat(softDeleted.getAffectedProducts()).isEqualTo(1);
+		assertThat(this.productService.findAllByCategorySubtree(category.getCategoryId())).isEmpty();
+		assertThatThrownBy(() -> this.productService.findById(second.getProductId()))
+				.isInstanceOf(ProductNotFoundException.class);
+	}
+	
+	private List<CatalogAuditDto> bulkEntries(final ProductDto product) {
+		return this.productService.findHistory(product.getProductId(), null, 20).stream()
+				.filter(entry -> entry.getAction().startsWith("BULK_"))
+				.collect(Collectors.toList());
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
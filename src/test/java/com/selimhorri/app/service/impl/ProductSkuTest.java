@@ -0,0 +1,97 @@
+package com.selimhorri.app.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.selimhorri.app.CatalogFixtures;
+import com.selimhorri.app.CatalogIntegrationTest;
+import com.selimhorri.app.dto.CategoryDto;
+import com.selimhorri.app.dto.ProductDto;
+import com.selimhorri.app.service.CategoryService;
+import com.selimhorri.app.service.ProductService;
+
+@CatalogIntegrationTest
+class ProductSkuTest {
+	
+	@Autowired
+	private ProductService productService;
+	
+	@Autowired
+	private CategoryService categoryService;
+	
+	@Autowired
+	private DataSource dataSource;
+	
+	private CatalogFixtures fixtures;
+	
+	@BeforeEach
+	void setUp() {
+		this.fixtures = new CatalogFixtures(this.categoryService, this.productService);
+	}
+	
+	@Test
+	void skuInUseIsRefusedByTheUniqueIndex() {
+		final CategoryDto category = this.fixtures.category();
+		final ProductDto taken = this.fixtures.product(category, 10, 1);
+		final ProductDto other = this.fixtures.product(category, 10, 1);
+		
+		assertThatThrownBy(() -> this.productService.save(withSku(taken, null, taken.getSku(), category)))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining(taken.getSku());
+		assertThatThrownBy(() -> this.productService.update(other.getProductId(),
+						withSku(other, other.getProductId(), taken.getSku(), category)))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining(taken.getSku());
+		assertThat(this.productService.findById(other.getProductId()).getSku()).isEqualTo(other.getSku());
+		// its own SKU is not a conflict
+		assertThat(this.productService.update(other.getProductId(),
+				withSku(other, other.getProductId(), other.getSku(), category)).getSku()).isEqualTo(other.getSku());
+	}
+	
+	@Test
+	void skuIsUniqueAlsoForWritesAroundTheService() {
+		final CategoryDto category = this.fixtures.category();
+		final ProductDto taken = this.fixtures.product(category, 10, 1);
+		final ProductDto other = this.fixtures.product(category, 10, 1);
+		
+		assertThatThrownBy(() -> new JdbcTemplate(this.dataSource).update(
+						"UPDATE products SET sku = ? WHERE product_id = ?", taken.getSku(), other.getProductId()))
+				.isInstanceOf(DataIntegrityViolationException.class);
+	}
+	
+	private static ProductDto withSku(final ProductDto product, final Integer productId, final String sku,
+			final CategoryDto category) {
+		return ProductDto.builder()
+				.productId(productId)
+				.productTitle(product.getProductTitle())
+				.imageUrl(product.getImageUrl())
+				.sku(sku)
+				.priceUnit(product.getPriceUnit())
+				.quantity(product.getQuantity())
+				.categoryDto(CategoryDto.builder()
+						.categoryId(category.getCategoryId())
+						.build())
+				.build();
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+
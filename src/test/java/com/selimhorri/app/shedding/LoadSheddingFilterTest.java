@@ -0,0 +1,95 @@
+package com.selimhorri.app.shedding;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import javax.servlet.FilterChain;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class LoadSheddingFilterTest {
+	
+	private final CircuitBreaker circuitBreaker = CircuitBreaker.of("productService", CircuitBreakerConfig.custom()
+			.slidingWindowSize(10)
+			.minimumNumberOfCalls(5)
+			.failureRateThreshold(50)
+			.build());
+	
+	private final LoadSheddingFilter filter = new LoadSheddingFilter(
+			List.of(EndpointGroup.builder()
+					.name("read")
+					.methods(Set.of("GET"))
+					.patterns(List.of("/api/**"))
+					.circuitBreaker(this.circuitBreaker)
+					.build()),
+			Duration.ofSeconds(1), new ObjectMapper().findAndRegisterModules(), new SimpleMeterRegistry());
+	
+	@Test
+	void exportWithoutSnapshotKeepsTheCircuitClosed() throws Exception {
+		for (int i = 0; i < 20; i++)
+			assertThat(this.get("/api/products/export", 503, "60").getStatus()).isEqualTo(503);
+		
+		assertThat(this.circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+		assertThat(this.circuitBreaker.getMetrics().getNumberOfFailedCalls()).isZero();
+	}
+	
+	@Test
+	void streamOverSubscriberLimitKeepsTheCircuitClosed() throws Exception {
+		for (int i = 0; i < 20; i++)
+			assertThat(this.get("/api/products/stream", 503, "10").getStatus()).isEqualTo(503);
+		
+		assertThat(this.circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+		assertThat(this.circuitBreaker.getMetrics().getNumberOfFailedCalls()).isZero();
+	}
+	
+	@Test
+	void serverErrorsOpenTheCircuit() throws Exception {
+		for (int i = 0; i < 5; i++)
+			this.get("/api/products/1", 503, null);
+		
+		assertThat(this.circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+		final MockHttpServletResponse rejected = this.get("/api/products/1", 200, null);
+		assertThat(rejected.getStatus()).isEqualTo(503);
+		assertThat(rejected.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+	}
+	
+	private MockHttpServletResponse get(final String path, final int status, final String retryAfter)
+			throws Exception {
+		final var request = new MockHttpServletRequest("GET", "/product-service" + path);
+		request.setContextPath("/product-service");
+		final var response = new MockHttpServletResponse();
+		final FilterChain chain = (req, res) -> {
+			final var httpResponse = (MockHttpServletResponse) res;
+			httpResponse.setStatus(status);
+			if (retryAfter != null)
+				httpResponse.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+		};
+		this.filter.doFilter(request, response, chain);
+		return response;
+	}
+	
+	
+	
+}
+
+
+
+
+
+
+
+
+
+